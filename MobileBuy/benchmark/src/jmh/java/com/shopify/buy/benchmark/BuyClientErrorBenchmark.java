@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.shopify.buy.dataprovider.BuyClientError;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Measures parsing of the {@code 422} error body of a checkout update with an increasing number of line item errors.
+ */
+@State(Scope.Benchmark)
+public class BuyClientErrorBenchmark {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Param({"1", "10", "100"})
+    public int lineItemCount;
+
+    private String errorBody;
+
+    @Setup
+    public void setUp() {
+        errorBody = new ShopDataGenerator.Builder().build().checkoutErrors(lineItemCount);
+    }
+
+    @Benchmark
+    public BuyClientError create() {
+        return newError();
+    }
+
+    @Benchmark
+    public Map<String, String> getErrors() {
+        return newError().getErrors("checkout", "email");
+    }
+
+    @Benchmark
+    public List<Map<String, String>> getLineItemErrors() {
+        return newError().getLineItemErrors("quantity");
+    }
+
+    private BuyClientError newError() {
+        // the error body can only be read once, so every error needs its own response
+        return new BuyClientError(Response.error(422, ResponseBody.create(JSON, errorBody)));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.shopify.buy.model.Cart;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductVariant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Measures {@link Cart} mutations for carts with an increasing number of distinct variants.
+ */
+@State(Scope.Benchmark)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int variantCount;
+
+    private List<ProductVariant> variants;
+
+    private Cart filledCart;
+
+    private int nextVariant;
+
+    @Setup
+    public void setUp() {
+        final ShopDataGenerator generator = new ShopDataGenerator.Builder().build();
+        variants = Product.fromJson(generator.product(generator.productId(0), variantCount)).getVariants();
+        filledCart = fill(new Cart());
+    }
+
+    /**
+     * Adds every variant twice, bumps its quantity, then removes it again.
+     */
+    @Benchmark
+    public Cart mutations() {
+        final Cart cart = fill(new Cart());
+        for (ProductVariant variant : variants) {
+            cart.setVariantQuantity(variant, 5);
+        }
+        for (ProductVariant variant : variants) {
+            cart.decrementVariant(variant);
+        }
+        for (ProductVariant variant : variants) {
+            cart.setVariantQuantity(variant, 0);
+        }
+        return cart;
+    }
+
+    /**
+     * Adds and removes one unit of a variant in the filled cart and reads its totals. The cost should not grow with the number of lines.
+     */
+    @Benchmark
+    public double lineUpdate() {
+        final ProductVariant variant = variants.get(nextVariant);
+        nextVariant = (nextVariant + 1) % variants.size();
+
+        filledCart.addVariant(variant);
+        filledCart.decrementVariant(variant);
+        return filledCart.getTotalQuantity() + filledCart.getSubtotal();
+    }
+
+    @Benchmark
+    public double subtotal() {
+        return filledCart.getSubtotal();
+    }
+
+    @Benchmark
+    public Checkout toCheckout() {
+        return new Checkout(filledCart);
+    }
+
+    private Cart fill(Cart cart) {
+        for (ProductVariant variant : variants) {
+            cart.addVariant(variant);
+            cart.addVariant(variant);
+        }
+        return cart;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.shopify.buy.model.Checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the {@link Checkout} JSON round trips for checkouts with an increasing number of line items.
+ */
+@State(Scope.Benchmark)
+public class CheckoutBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    public int lineItemCount;
+
+    private String checkoutJson;
+
+    private Checkout checkout;
+
+    @Setup
+    public void setUp() {
+        checkoutJson = new ShopDataGenerator.Builder().build().checkout("8a3b2c1d4e5f60718293a4b5c6d7e8f9", lineItemCount);
+        checkout = Checkout.fromJson(checkoutJson);
+    }
+
+    @Benchmark
+    public Checkout fromJson() {
+        return Checkout.fromJson(checkoutJson);
+    }
+
+    @Benchmark
+    public Checkout copy() {
+        return checkout.copy();
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return checkout.toJsonString();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.shopify.buy.model.Product;
+import com.shopify.buy.utils.StringPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link Product#fromJson(String)} for products with an increasing number of variants.
+ */
+@State(Scope.Benchmark)
+public class ProductBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int variantCount;
+
+    private String productJson;
+
+    private StringPool stringPool;
+
+    @Setup
+    public void setUp() {
+        final ShopDataGenerator generator = new ShopDataGenerator.Builder().build();
+        productJson = generator.product(generator.productId(0), variantCount);
+        stringPool = new StringPool();
+    }
+
+    @Benchmark
+    public Product fromJson() {
+        return Product.fromJson(productJson);
+    }
+
+    @Benchmark
+    public Product fromJsonWithStringPool() {
+        return Product.fromJson(productJson, stringPool);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.shopify.buy.benchmark.load.ShopServer;
+import com.shopify.buy.dataprovider.BuyClient;
+import com.shopify.buy.dataprovider.BuyClientBuilder;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.LineItem;
+import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductProjection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.schedulers.Schedulers;
+
+/**
+ * Measures a full {@link BuyClient} call: interceptors, OkHttp, the Rx call adapter and the Gson converters, against a
+ * local {@link ShopServer} that serves payloads of an increasing size.
+ */
+@State(Scope.Benchmark)
+public class RetrofitPipelineBenchmark {
+
+    /**
+     * The number of products in the listing page, and of line items in the checkout.
+     */
+    @Param({"1", "10", "50"})
+    public int payloadSize;
+
+    private ShopServer server;
+
+    private BuyClient buyClient;
+
+    private String checkoutToken;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new ShopServer.Builder().build();
+        server.start();
+
+        buyClient = new BuyClientBuilder()
+            .shopDomain("benchmark.myshopify.com")
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("benchmark")
+            .productPageSize(payloadSize)
+            .callbackScheduler(Schedulers.immediate())
+            .interceptors(server.interceptor())
+            .build();
+
+        final List<LineItem> lineItems = new ArrayList<>();
+        for (int i = 0; i < payloadSize; i++) {
+            lineItems.add(new LineItem((long) i + 1, true, 1));
+        }
+        final Checkout checkout = new Checkout();
+        checkout.setLineItems(lineItems);
+        checkoutToken = buyClient.createCheckout(checkout).toBlocking().first().getToken();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public List<Product> getProducts() {
+        return buyClient.getProducts(1).toBlocking().first();
+    }
+
+    @Benchmark
+    public List<Product> getProductsCardProjection() {
+        return buyClient.getProducts(ProductProjection.CARD, 1, null).toBlocking().first();
+    }
+
+    @Benchmark
+    public Checkout getCheckout() {
+        return buyClient.getCheckout(checkoutToken).toBlocking().first();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.google.gson.JsonPrimitive;
+import com.shopify.buy.utils.CurrencyFormatter;
+import com.shopify.buy.utils.DateUtility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Measures the date parsing and currency formatting helpers used while rendering products and checkouts.
+ */
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+    private static final String DATE = "2016-05-10T10:15:30-04:00";
+
+    private static final String SHIPPING_DATE = "2016-05-12T10:15:30.000-0400";
+
+    private DateUtility.DateDeserializer dateDeserializer;
+
+    private JsonPrimitive defaultDate;
+
+    private JsonPrimitive shippingDate;
+
+    @Setup
+    public void setUp() {
+        dateDeserializer = new DateUtility.DateDeserializer();
+        defaultDate = new JsonPrimitive(DATE);
+        shippingDate = new JsonPrimitive(SHIPPING_DATE);
+    }
+
+    @Benchmark
+    public Date toDate() {
+        return DateUtility.toDate(DATE);
+    }
+
+    @Benchmark
+    public Date deserializeDefaultDate() {
+        return dateDeserializer.deserialize(defaultDate, Date.class, null);
+    }
+
+    /**
+     * Shipping dates only match the second pattern, so this includes the cost of the failed first attempt.
+     */
+    @Benchmark
+    public Date deserializeShippingDate() {
+        return dateDeserializer.deserialize(shippingDate, Date.class, null);
+    }
+
+    @Benchmark
+    public String formatCurrency() {
+        return CurrencyFormatter.getFormatter(Locale.CANADA, "CAD").format(1234.5);
+    }
+
+    @Benchmark
+    public String formatCurrencyWithoutSymbol() {
+        return CurrencyFormatter.getFormatter(Locale.GERMANY, "EUR", false, true, true).format(1234.5);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.net.HttpURLConnection;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import retrofit2.Response;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Measures a long polling session, e.g. waiting for shipping rates or for a checkout completion: the {@code 202 Accepted} signal
+ * thrown on each poll and the polling policy resubscribing the request, without the network and without the polling interval.
+ * <p>
+ * {@link #pollingSession()} goes through the SDK handlers. {@link #pollingSessionEagerErrors()} is the baseline, it signals each
+ * poll with a {@link BuyClientError} whose error body is read and parsed right away, as every {@code BuyClientError} used to.
+ * Lives in the {@code dataprovider} package to reach the package private policies.
+ */
+@State(Scope.Benchmark)
+public class PollingBenchmark {
+
+    private static final int[] SUCCESS_CODES = {HttpURLConnection.HTTP_OK};
+
+    @Param({"10", "100"})
+    public int pollCount;
+
+    private Response<String> acceptedResponse;
+
+    private Response<String> okResponse;
+
+    @Setup
+    public void setUp() {
+        final Request request = new Request.Builder().url("https://benchmark.myshopify.com/api/checkouts/token/shipping_rates.json").build();
+        acceptedResponse = Response.success("{}", new okhttp3.Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(HttpURLConnection.HTTP_ACCEPTED)
+            .message("Accepted")
+            .build());
+        okResponse = Response.success("{\"shipping_rates\":[]}", new okhttp3.Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(HttpURLConnection.HTTP_OK)
+            .message("OK")
+            .build());
+    }
+
+    @Benchmark
+    public Response<String> pollingSession() {
+        return poll(new RetrofitSuccessHttpStatusCodeHandler<Response<String>>(SUCCESS_CODES));
+    }
+
+    @Benchmark
+    public Response<String> pollingSessionEagerErrors() {
+        return poll(new Action1<Response<String>>() {
+            @Override
+            public void call(Response<String> response) {
+                if (response.code() != HttpURLConnection.HTTP_OK) {
+                    final BuyClientError error = new BuyClientError(response);
+                    error.getRetrofitErrorBody();
+                    throw error;
+                }
+            }
+        });
+    }
+
+    private Response<String> poll(final Action1<Response<String>> statusCodeHandler) {
+        final int[] remainingPolls = {pollCount};
+        return Observable
+            .defer(new Func0<Observable<Response<String>>>() {
+                @Override
+                public Observable<Response<String>> call() {
+                    return Observable.just(remainingPolls[0]-- > 0 ? acceptedResponse : okResponse);
+                }
+            })
+            .doOnNext(statusCodeHandler)
+            .retryWhen(new PollingPolicyProvider(0, Long.MAX_VALUE, Schedulers.immediate()).provide())
+            .toBlocking()
+            .single();
+    }
+}
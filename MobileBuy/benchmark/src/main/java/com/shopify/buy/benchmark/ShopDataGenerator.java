@@ -0,0 +1,807 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shopify.buy.utils.DateUtility;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Generates the JSON bodies of the Shopify API responses used by the SDK for a synthetic shop of arbitrary size.
+ * <p>
+ * The output is deterministic: the same seed and scale always produce the same bytes. Every entity is derived from its own
+ * id, so any page of a very large catalog can be generated on its own without materializing the rest of it.
+ */
+public final class ShopDataGenerator {
+
+    /**
+     * Shopify does not allow more than 100 variants per product.
+     */
+    public static final int MAX_VARIANTS = 100;
+
+    static final long PRODUCT_ID_BASE = 2000000000L;
+
+    static final long COLLECTION_ID_BASE = 100000000L;
+
+    private static final long SALT_PRODUCT = 1;
+    private static final long SALT_COLLECTION = 2;
+    private static final long SALT_CHECKOUT = 3;
+    private static final long SALT_ORDER = 4;
+    private static final long SALT_SHIPPING = 5;
+
+    private static final long BASE_DATE_MS = 1451624400000L; // 2016-01-01T00:00:00-05:00
+    private static final long DAY_MS = 24L * 60L * 60L * 1000L;
+
+    private static final String[] ADJECTIVES = {"Aerodynamic", "Awesome", "Durable", "Ergonomic", "Fantastic", "Gorgeous", "Heavy Duty",
+        "Incredible", "Intelligent", "Lightweight", "Mediocre", "Practical", "Rustic", "Sleek", "Small", "Synergistic"};
+    private static final String[] MATERIALS = {"Aluminum", "Bronze", "Concrete", "Copper", "Cotton", "Granite", "Leather", "Linen", "Marble",
+        "Paper", "Plastic", "Rubber", "Silk", "Steel", "Wool", "Wooden"};
+    private static final String[] NOUNS = {"Bag", "Bench", "Bottle", "Car", "Chair", "Clock", "Coat", "Computer", "Gloves", "Hat", "Keyboard",
+        "Knife", "Lamp", "Pants", "Plate", "Shirt", "Shoes", "Table", "Wallet", "Watch"};
+    private static final String[] VENDORS = {"Bergnaum Inc", "Carter Group", "Harber LLC", "Kutch and Sons", "McCullough Group",
+        "Reichert-Romaguera", "Schamberger Ltd", "Wolff-Hane"};
+    private static final String[] PRODUCT_TYPES = {"Accessories", "Apparel", "Footwear", "Home", "Kitchen", "Outdoors", "Toys"};
+    private static final String[] TAG_WORDS = {"autumn", "bestseller", "clearance", "eco", "featured", "gift", "limited", "new",
+        "organic", "premium", "sale", "spring", "summer", "vintage", "winter"};
+
+    private static final String[][] OPTIONS = {
+        {"Size", "XS", "S", "M", "L", "XL", "XXL", "3XL"},
+        {"Color", "Black", "White", "Red", "Green", "Blue", "Teal", "Yellow", "Purple", "Orange", "Grey"},
+        {"Material", "Cotton", "Wool", "Linen", "Silk", "Leather", "Denim"},
+        {"Style", "Classic", "Slim", "Relaxed", "Cropped"}
+    };
+
+    private static final String[][] SHIPPING_SERVICES = {
+        {"canada_post-DOM.RP", "Regular Parcel", "5"},
+        {"canada_post-DOM.EP", "Expedited Parcel", "3"},
+        {"canada_post-DOM.XP", "Xpresspost", "2"},
+        {"canada_post-DOM.PC", "Priority", "1"},
+        {"shopify-Standard", "Standard Shipping", "7"},
+        {"shopify-Express", "Express Shipping", "2"}
+    };
+
+    private final long seed;
+
+    private final int productCount;
+
+    private final int collectionCount;
+
+    private final int tagCount;
+
+    private final int maxVariants;
+
+    private final int maxImages;
+
+    private final SimpleDateFormat dateFormat;
+
+    private ShopDataGenerator(Builder builder) {
+        seed = builder.seed;
+        productCount = builder.productCount;
+        collectionCount = builder.collectionCount;
+        tagCount = builder.tagCount;
+        maxVariants = builder.maxVariants;
+        maxImages = builder.maxImages;
+
+        dateFormat = new SimpleDateFormat(DateUtility.DEFAULT_DATE_PATTERN, Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("America/Toronto"));
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public int getCollectionCount() {
+        return collectionCount;
+    }
+
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    /**
+     * @param index the position of the product in the catalog, from 0 to {@link #getProductCount()} - 1
+     * @return the id of the product
+     */
+    public long productId(int index) {
+        return PRODUCT_ID_BASE + index;
+    }
+
+    /**
+     * @param index the position of the collection in the shop, from 0 to {@link #getCollectionCount()} - 1
+     * @return the id of the collection
+     */
+    public long collectionId(int index) {
+        return COLLECTION_ID_BASE + index;
+    }
+
+    /**
+     * @param productId the id of the product
+     * @return the product listing JSON, as parsed by {@link com.shopify.buy.model.Product#fromJson(String)}
+     */
+    public String product(long productId) {
+        return productElement(productId, -1).toString();
+    }
+
+    /**
+     * @param productId    the id of the product
+     * @param variantCount the exact number of variants of the product, from 1 to {@link #MAX_VARIANTS}
+     * @return the product listing JSON, as parsed by {@link com.shopify.buy.model.Product#fromJson(String)}
+     */
+    public String product(long productId, int variantCount) {
+        if (variantCount < 1 || variantCount > MAX_VARIANTS) {
+            throw new IllegalArgumentException("variantCount must be between 1 and " + MAX_VARIANTS);
+        }
+        return productElement(productId, variantCount).toString();
+    }
+
+    /**
+     * @param page     the page, starting at 1
+     * @param pageSize the number of products per page
+     * @return the body of a {@code product_listings.json} response, empty past the end of the catalog
+     */
+    public String productListings(int page, int pageSize) {
+        final JsonArray products = new JsonArray();
+        final int start = (page - 1) * pageSize;
+        for (int i = start; i < start + pageSize && i < productCount; i++) {
+            products.add(productElement(productId(i), -1));
+        }
+        return wrap("product_listings", products);
+    }
+
+    /**
+     * Products are spread round robin over the collections.
+     *
+     * @param collectionId the id of the collection
+     * @param page         the page, starting at 1
+     * @param pageSize     the number of products per page
+     * @return the body of a {@code product_listings.json?collection_id=} response, empty past the end of the collection
+     */
+    public String productListings(long collectionId, int page, int pageSize) {
+        final JsonArray products = new JsonArray();
+        final int collectionIndex = (int) (collectionId - COLLECTION_ID_BASE);
+        if (collectionCount > 0 && collectionIndex >= 0 && collectionIndex < collectionCount) {
+            final int start = (page - 1) * pageSize;
+            for (int i = start; i < start + pageSize; i++) {
+                final long productIndex = (long) i * collectionCount + collectionIndex;
+                if (productIndex >= productCount) {
+                    break;
+                }
+                products.add(productElement(productId((int) productIndex), -1));
+            }
+        }
+        return wrap("product_listings", products);
+    }
+
+    /**
+     * @param productIds the ids of the products
+     * @return the body of a {@code product_listings.json?product_ids=} response
+     */
+    public String productListings(List<Long> productIds) {
+        final JsonArray products = new JsonArray();
+        for (Long productId : productIds) {
+            products.add(productElement(productId, -1));
+        }
+        return wrap("product_listings", products);
+    }
+
+    /**
+     * Keeps only the requested fields of the products, as the API does for the {@code fields} query parameter.
+     *
+     * @param productListings the body of a {@code product_listings.json} response
+     * @param fields          the comma separated names of the fields to keep, all of them if {@code null}
+     * @return the body with the products reduced to the given fields
+     */
+    public static String projectProductListings(String productListings, String fields) {
+        if (fields == null) {
+            return productListings;
+        }
+
+        final Set<String> fieldSet = new HashSet<>(Arrays.asList(fields.split(",")));
+        final JsonArray products = new JsonArray();
+        for (JsonElement product : new JsonParser().parse(productListings).getAsJsonObject().getAsJsonArray("product_listings")) {
+            final JsonObject projected = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : product.getAsJsonObject().entrySet()) {
+                if (fieldSet.contains(entry.getKey())) {
+                    projected.add(entry.getKey(), entry.getValue());
+                }
+            }
+            products.add(projected);
+        }
+        return wrap("product_listings", products);
+    }
+
+    /**
+     * @param page     the page, starting at 1
+     * @param pageSize the number of collections per page
+     * @return the body of a {@code collection_listings.json} response, empty past the last collection
+     */
+    public String collectionListings(int page, int pageSize) {
+        final JsonArray collections = new JsonArray();
+        final int start = (page - 1) * pageSize;
+        for (int i = start; i < start + pageSize && i < collectionCount; i++) {
+            collections.add(collectionElement(i));
+        }
+        return wrap("collection_listings", collections);
+    }
+
+    /**
+     * @param page     the page, starting at 1
+     * @param pageSize the number of tags per page
+     * @return the body of a {@code product_listings/tags.json} response, empty past the last tag
+     */
+    public String productTags(int page, int pageSize) {
+        final JsonArray tags = new JsonArray();
+        final int start = (page - 1) * pageSize;
+        for (int i = start; i < start + pageSize && i < tagCount; i++) {
+            final JsonObject tag = new JsonObject();
+            tag.addProperty("title", tag(i));
+            tags.add(tag);
+        }
+        return wrap("tags", tags);
+    }
+
+    /**
+     * @param token         the checkout token
+     * @param lineItemCount the number of line items, each one referencing a variant of the catalog
+     * @return the checkout JSON, as parsed by {@link com.shopify.buy.model.Checkout#fromJson(String)}
+     */
+    public String checkout(String token, int lineItemCount) {
+        return checkoutElement(token, lineItemCount).toString();
+    }
+
+    /**
+     * @param token         the checkout token
+     * @param lineItemCount the number of line items, each one referencing a variant of the catalog
+     * @return the body of a {@code checkouts.json} or {@code checkouts/{token}.json} response
+     */
+    public String checkoutResponse(String token, int lineItemCount) {
+        return wrap("checkout", checkoutElement(token, lineItemCount));
+    }
+
+    /**
+     * @param token     the checkout token
+     * @param rateCount the number of shipping rates
+     * @return the body of a {@code checkouts/{token}/shipping_rates.json} response
+     */
+    public String shippingRates(String token, int rateCount) {
+        final Random random = random(SALT_SHIPPING, token.hashCode());
+        final JsonArray rates = new JsonArray();
+        for (int i = 0; i < rateCount; i++) {
+            rates.add(shippingRateElement(random, i));
+        }
+        return wrap("shipping_rates", rates);
+    }
+
+    /**
+     * @param orderId       the id of the order
+     * @param lineItemCount the number of line items of the order
+     * @return the body of a {@code customers/{customerId}/orders/{orderId}} response
+     */
+    public String order(long orderId, int lineItemCount) {
+        return wrap("order", orderElement(orderId, lineItemCount));
+    }
+
+    /**
+     * @param customerId    the id of the customer
+     * @param orderCount    the number of orders
+     * @param lineItemCount the number of line items of each order
+     * @return the body of a {@code customers/{customerId}/orders.json} response
+     */
+    public String orders(long customerId, int orderCount, int lineItemCount) {
+        final JsonArray orders = new JsonArray();
+        for (int i = 0; i < orderCount; i++) {
+            orders.add(orderElement(customerId * 1000 + i, lineItemCount));
+        }
+        return wrap("orders", orders);
+    }
+
+    /**
+     * @param lineItemCount the number of line items with a quantity error
+     * @return the body of a {@code 422} response to a checkout update
+     */
+    public String checkoutErrors(int lineItemCount) {
+        final JsonArray lineItemErrors = new JsonArray();
+        for (int i = 0; i < lineItemCount; i++) {
+            final JsonObject lineItemError = new JsonObject();
+            lineItemError.add("quantity", errors(error("not_enough_in_stock", "Not enough items available. Only " + i + " left.")));
+            lineItemErrors.add(lineItemError);
+        }
+
+        final JsonObject checkout = new JsonObject();
+        checkout.add("email", errors(error("invalid", "is invalid")));
+        checkout.add("line_items", lineItemErrors);
+
+        final JsonObject errors = new JsonObject();
+        errors.add("checkout", checkout);
+        return wrap("errors", errors);
+    }
+
+    /**
+     * @param variantCount the exact number of variants, or -1 for the natural fan-out of the product
+     */
+    private JsonObject productElement(long productId, int variantCount) {
+        final Random random = random(SALT_PRODUCT, productId);
+        final String title = pick(random, ADJECTIVES) + " " + pick(random, MATERIALS) + " " + pick(random, NOUNS);
+        final long createdAt = BASE_DATE_MS + random.nextInt(365) * DAY_MS;
+
+        final JsonObject product = new JsonObject();
+        product.addProperty("product_id", productId);
+        product.addProperty("title", title);
+        product.addProperty("handle", title.toLowerCase(Locale.US).replace(' ', '-') + "-" + productId);
+        product.addProperty("body_html", "<p>The " + title + " is " + pick(random, ADJECTIVES).toLowerCase(Locale.US)
+            + " and made of " + pick(random, MATERIALS).toLowerCase(Locale.US) + ".</p>");
+        product.addProperty("published_at", date(createdAt + DAY_MS));
+        product.addProperty("created_at", date(createdAt));
+        product.addProperty("updated_at", date(createdAt + random.nextInt(30) * DAY_MS));
+        product.addProperty("vendor", pick(random, VENDORS));
+        product.addProperty("product_type", pick(random, PRODUCT_TYPES));
+        product.addProperty("available", random.nextInt(10) != 0);
+        product.addProperty("published", true);
+
+        final StringBuilder tags = new StringBuilder();
+        final int productTagCount = tagCount == 0 ? 0 : 1 + random.nextInt(Math.min(5, tagCount));
+        for (int i = 0; i < productTagCount; i++) {
+            if (i > 0) {
+                tags.append(", ");
+            }
+            tags.append(tag(random.nextInt(tagCount)));
+        }
+        product.addProperty("tags", tags.toString());
+
+        // 1 to 3 options, most products have 2
+        final int optionRoll = random.nextInt(20);
+        int optionCount = optionRoll < 6 ? 1 : optionRoll < 15 ? 2 : 3;
+        if (variantCount > 0) {
+            // just enough options to reach the requested number of variants, with all of their values
+            int combinations = 1;
+            optionCount = 0;
+            while (optionCount == 0 || combinations < variantCount) {
+                combinations *= option(productId, ++optionCount).length - 1;
+            }
+        }
+
+        final List<String[]> optionValues = new ArrayList<>();
+        final JsonArray options = new JsonArray();
+        for (int position = 1; position <= optionCount; position++) {
+            final String[] option = option(productId, position);
+            final int randomValueCount = Math.min(option.length - 1, 2 + random.nextInt(option.length - 2));
+            final int valueCount = variantCount > 0 ? option.length - 1 : randomValueCount;
+            final String[] values = new String[valueCount + 1];
+            values[0] = option[0];
+            System.arraycopy(option, 1, values, 1, valueCount);
+            optionValues.add(values);
+
+            final JsonObject optionElement = new JsonObject();
+            optionElement.addProperty("id", optionId(productId, position));
+            optionElement.addProperty("name", option[0]);
+            optionElement.addProperty("position", position);
+            optionElement.addProperty("product_id", String.valueOf(productId));
+            options.add(optionElement);
+        }
+        product.add("options", options);
+
+        // every combination of the option values, up to the variant limit
+        int combinations = 1;
+        for (String[] values : optionValues) {
+            combinations *= values.length - 1;
+        }
+        final int productVariantCount = variantCount > 0 ? variantCount : Math.min(combinations, maxVariants);
+        final int imageCount = Math.min(productVariantCount, 1 + random.nextInt(maxImages));
+        final int basePriceCents = (5 + random.nextInt(496)) * 100 - (random.nextBoolean() ? 1 : 0);
+
+        final JsonArray variants = new JsonArray();
+        for (int i = 0; i < productVariantCount; i++) {
+            final long variantId = variantId(productId, i);
+
+            final JsonArray variantOptionValues = new JsonArray();
+            final StringBuilder variantTitle = new StringBuilder();
+            int remainder = i;
+            for (int position = 1; position <= optionCount; position++) {
+                final String[] values = optionValues.get(position - 1);
+                final String value = values[1 + remainder % (values.length - 1)];
+                remainder /= values.length - 1;
+
+                final JsonObject optionValue = new JsonObject();
+                optionValue.addProperty("option_id", optionId(productId, position));
+                optionValue.addProperty("name", values[0]);
+                optionValue.addProperty("value", value);
+                variantOptionValues.add(optionValue);
+
+                if (position > 1) {
+                    variantTitle.append(" / ");
+                }
+                variantTitle.append(value);
+            }
+
+            final int priceCents = basePriceCents + (i % 3) * 500;
+            final JsonObject variant = new JsonObject();
+            variant.addProperty("id", variantId);
+            variant.addProperty("title", variantTitle.toString());
+            variant.addProperty("price", price(priceCents));
+            if (random.nextInt(4) == 0) {
+                variant.addProperty("compare_at_price", price(priceCents + priceCents / 4));
+            } else {
+                variant.add("compare_at_price", JsonNull.INSTANCE);
+            }
+            variant.addProperty("sku", "SKU-" + variantId);
+            variant.addProperty("grams", 100 + random.nextInt(5000));
+            variant.addProperty("requires_shipping", true);
+            variant.addProperty("taxable", true);
+            variant.addProperty("position", i + 1);
+            variant.addProperty("available", random.nextInt(8) != 0);
+            variant.addProperty("created_at", date(createdAt));
+            variant.addProperty("updated_at", date(createdAt));
+            variant.add("option_values", variantOptionValues);
+            variants.add(variant);
+        }
+
+        // the first image is the product image, the others are shared by the variants round robin
+        final JsonArray images = new JsonArray();
+        for (int i = 0; i < imageCount; i++) {
+            final long imageId = productId * 1000 + 500 + i;
+            final JsonArray variantIds = new JsonArray();
+            if (i > 0) {
+                for (int v = i - 1; v < productVariantCount; v += imageCount - 1) {
+                    variantIds.add(variantId(productId, v));
+                }
+            }
+
+            final JsonObject image = new JsonObject();
+            image.addProperty("id", imageId);
+            image.addProperty("product_id", productId);
+            image.addProperty("position", i + 1);
+            image.addProperty("created_at", date(createdAt));
+            image.addProperty("updated_at", date(createdAt));
+            image.addProperty("src", "https://cdn.shopify.com/s/files/1/0957/5792/products/" + imageId + ".jpeg?v=" + (createdAt / 1000));
+            image.add("variant_ids", variantIds);
+            images.add(image);
+        }
+
+        product.add("images", images);
+        product.add("variants", variants);
+        return product;
+    }
+
+    private JsonObject collectionElement(int index) {
+        final long collectionId = collectionId(index);
+        final Random random = random(SALT_COLLECTION, collectionId);
+        final String title = index == 0 ? "Frontpage" : pick(random, ADJECTIVES) + " " + pick(random, PRODUCT_TYPES);
+        final long createdAt = BASE_DATE_MS + random.nextInt(365) * DAY_MS;
+
+        final JsonObject image = new JsonObject();
+        image.addProperty("created_at", date(createdAt));
+        image.addProperty("src", "https://cdn.shopify.com/s/files/1/0957/5792/collections/" + collectionId + ".jpeg?v=" + (createdAt / 1000));
+
+        final JsonObject collection = new JsonObject();
+        collection.addProperty("collection_id", collectionId);
+        collection.addProperty("title", title);
+        collection.addProperty("handle", title.toLowerCase(Locale.US).replace(' ', '-') + "-" + index);
+        collection.addProperty("body_html", "<p>" + title + "</p>");
+        collection.addProperty("published", true);
+        collection.addProperty("created_at", date(createdAt));
+        collection.addProperty("updated_at", date(createdAt));
+        collection.addProperty("published_at", date(createdAt));
+        collection.add("image", image);
+        return collection;
+    }
+
+    private JsonObject checkoutElement(String token, int lineItemCount) {
+        final Random random = random(SALT_CHECKOUT, token.hashCode());
+
+        final JsonArray lineItems = lineItems(random, lineItemCount);
+        long subtotalCents = 0;
+        for (JsonElement lineItem : lineItems) {
+            subtotalCents += cents(lineItem.getAsJsonObject().get("line_price").getAsString());
+        }
+        final long taxCents = subtotalCents * 13 / 100;
+        final long shippingCents = 1050;
+        final long createdAt = BASE_DATE_MS + random.nextInt(365) * DAY_MS;
+
+        final JsonObject taxLine = new JsonObject();
+        taxLine.addProperty("price", price(taxCents));
+        taxLine.addProperty("rate", "0.13");
+        taxLine.addProperty("title", "HST");
+        final JsonArray taxLines = new JsonArray();
+        taxLines.add(taxLine);
+
+        final JsonObject attribute = new JsonObject();
+        attribute.addProperty("name", "gift_wrap");
+        attribute.addProperty("value", String.valueOf(random.nextBoolean()));
+        final JsonArray attributes = new JsonArray();
+        attributes.add(attribute);
+
+        final JsonObject checkout = new JsonObject();
+        checkout.addProperty("token", token);
+        checkout.addProperty("email", "shopper" + random.nextInt(100000) + "@example.com");
+        checkout.addProperty("requires_shipping", true);
+        checkout.addProperty("taxes_included", false);
+        checkout.addProperty("currency", "CAD");
+        checkout.addProperty("subtotal_price", price(subtotalCents));
+        checkout.addProperty("total_tax", price(taxCents));
+        checkout.addProperty("total_price", price(subtotalCents + taxCents + shippingCents));
+        checkout.addProperty("payment_due", price(subtotalCents + taxCents + shippingCents));
+        checkout.addProperty("payment_url", "https://us-west-2-deposit.cs.shopify.com/sessions");
+        checkout.addProperty("web_url", "https://checkout.shopify.com/9575792/checkouts/" + token);
+        checkout.addProperty("reservation_time", 300);
+        checkout.addProperty("reservation_time_left", 300);
+        checkout.addProperty("created_at", date(createdAt));
+        checkout.add("shipping_address", address(random));
+        checkout.add("billing_address", address(random));
+        checkout.add("shipping_rate", shippingRateElement(random, 1));
+        checkout.add("tax_lines", taxLines);
+        checkout.add("line_items", lineItems);
+        checkout.add("gift_cards", new JsonArray());
+        checkout.add("attributes", attributes);
+        return checkout;
+    }
+
+    private JsonObject shippingRateElement(Random random, int index) {
+        final String[] service = SHIPPING_SERVICES[index % SHIPPING_SERVICES.length];
+        final int priceCents = 500 + random.nextInt(3000);
+        final long deliveryDate = BASE_DATE_MS + (365 + Integer.parseInt(service[2])) * DAY_MS;
+
+        final SimpleDateFormat shippingDateFormat = new SimpleDateFormat(DateUtility.SHIPPING_DATE_PATTERN, Locale.US);
+        shippingDateFormat.setTimeZone(dateFormat.getTimeZone());
+        final JsonArray deliveryRange = new JsonArray();
+        deliveryRange.add(shippingDateFormat.format(new Date(deliveryDate)));
+        deliveryRange.add(shippingDateFormat.format(new Date(deliveryDate + 2 * DAY_MS)));
+
+        final JsonObject shippingRate = new JsonObject();
+        shippingRate.addProperty("id", service[0] + "-" + price(priceCents) + (index >= SHIPPING_SERVICES.length ? "-" + index : ""));
+        shippingRate.addProperty("price", price(priceCents));
+        shippingRate.addProperty("title", service[1]);
+        shippingRate.add("delivery_range", deliveryRange);
+        return shippingRate;
+    }
+
+    private JsonObject orderElement(long orderId, int lineItemCount) {
+        final Random random = random(SALT_ORDER, orderId);
+        final JsonArray lineItems = lineItems(random, lineItemCount);
+        final int fulfilledCount = random.nextInt(lineItemCount + 1);
+        final JsonArray fulfilled = new JsonArray();
+        final JsonArray unfulfilled = new JsonArray();
+        long totalCents = 0;
+        for (int i = 0; i < lineItems.size(); i++) {
+            final JsonObject lineItem = lineItems.get(i).getAsJsonObject();
+            totalCents += cents(lineItem.get("line_price").getAsString());
+            (i < fulfilledCount ? fulfilled : unfulfilled).add(lineItem);
+        }
+        final long processedAt = BASE_DATE_MS + random.nextInt(365) * DAY_MS;
+        final int orderNumber = 1000 + (int) (orderId % 100000);
+
+        final JsonObject order = new JsonObject();
+        order.addProperty("id", orderId);
+        order.addProperty("order_number", String.valueOf(orderNumber));
+        order.addProperty("name", "#" + orderNumber);
+        order.addProperty("processed_at", date(processedAt));
+        order.addProperty("status_url", "https://checkout.shopify.com/9575792/orders/" + orderId);
+        order.addProperty("order_status_url", "https://checkout.shopify.com/9575792/orders/" + orderId + "/status");
+        order.addProperty("currency", "CAD");
+        order.addProperty("total_price", price(totalCents + totalCents * 13 / 100));
+        order.addProperty("cancelled", false);
+        order.add("line_items", lineItems);
+        order.add("fulfilled_line_items", fulfilled);
+        order.add("unfulfilled_line_items", unfulfilled);
+        return order;
+    }
+
+    private JsonArray lineItems(Random random, int lineItemCount) {
+        final JsonArray lineItems = new JsonArray();
+        for (int i = 0; i < lineItemCount; i++) {
+            final long productId = productId(productCount == 0 ? 0 : random.nextInt(productCount));
+            final JsonObject product = productElement(productId, -1);
+            final JsonArray variants = product.getAsJsonArray("variants");
+            final JsonObject variant = variants.get(random.nextInt(variants.size())).getAsJsonObject();
+            final int quantity = 1 + (random.nextInt(10) == 0 ? random.nextInt(9) : 0);
+            final long priceCents = cents(variant.get("price").getAsString());
+
+            final JsonObject properties = new JsonObject();
+            if (random.nextInt(5) == 0) {
+                properties.addProperty("engraving", "Line " + (i + 1));
+            }
+
+            final JsonObject lineItem = new JsonObject();
+            lineItem.addProperty("id", Long.toHexString(random.nextLong()));
+            lineItem.addProperty("product_id", String.valueOf(productId));
+            lineItem.addProperty("variant_id", variant.get("id").getAsLong());
+            lineItem.addProperty("sku", variant.get("sku").getAsString());
+            lineItem.addProperty("title", product.get("title").getAsString());
+            lineItem.addProperty("variant_title", variant.get("title").getAsString());
+            lineItem.addProperty("taxable", true);
+            lineItem.addProperty("requires_shipping", true);
+            lineItem.addProperty("price", price(priceCents));
+            lineItem.add("compare_at_price", variant.get("compare_at_price"));
+            lineItem.addProperty("line_price", price(priceCents * quantity));
+            lineItem.addProperty("quantity", quantity);
+            lineItem.addProperty("grams", variant.get("grams").getAsLong());
+            lineItem.addProperty("fulfillment_service", "manual");
+            lineItem.add("properties", properties);
+            lineItems.add(lineItem);
+        }
+        return lineItems;
+    }
+
+    private JsonObject address(Random random) {
+        final JsonObject address = new JsonObject();
+        address.addProperty("address1", (1 + random.nextInt(999)) + " Elgin Street");
+        address.addProperty("address2", random.nextBoolean() ? "Suite " + (100 + random.nextInt(900)) : "");
+        address.addProperty("city", "Ottawa");
+        address.addProperty("company", random.nextBoolean() ? pick(random, VENDORS) : "");
+        address.addProperty("first_name", "Shopper");
+        address.addProperty("last_name", String.valueOf(random.nextInt(100000)));
+        address.addProperty("phone", "613-555-" + (1000 + random.nextInt(9000)));
+        address.addProperty("country", "Canada");
+        address.addProperty("country_code", "CA");
+        address.addProperty("province", "Ontario");
+        address.addProperty("province_code", "ON");
+        address.addProperty("zip", "K2P 1L4");
+        return address;
+    }
+
+    private String tag(int index) {
+        final String word = TAG_WORDS[index % TAG_WORDS.length];
+        return index < TAG_WORDS.length ? word : word + "-" + (index / TAG_WORDS.length);
+    }
+
+    private String date(long timeMs) {
+        return dateFormat.format(new Date(timeMs));
+    }
+
+    private Random random(long salt, long id) {
+        // SplitMix64 finalizer, so that consecutive ids do not produce correlated sequences
+        long z = seed + salt * 0x9E3779B97F4A7C15L + id * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    private static String[] option(long productId, int position) {
+        return OPTIONS[(position - 1 + (int) (productId % 2)) % OPTIONS.length];
+    }
+
+    private static long variantId(long productId, int index) {
+        return productId * 1000 + index;
+    }
+
+    private static long optionId(long productId, int position) {
+        return productId * 10 + position;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String price(long cents) {
+        return cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100;
+    }
+
+    private static long cents(String price) {
+        final int dot = price.indexOf('.');
+        return Long.parseLong(price.substring(0, dot)) * 100 + Long.parseLong(price.substring(dot + 1));
+    }
+
+    private static JsonObject error(String code, String message) {
+        final JsonObject error = new JsonObject();
+        error.addProperty("code", code);
+        error.addProperty("message", message);
+        return error;
+    }
+
+    private static JsonArray errors(JsonObject... errors) {
+        final JsonArray array = new JsonArray();
+        for (JsonObject error : errors) {
+            array.add(error);
+        }
+        return array;
+    }
+
+    private static String wrap(String key, JsonElement element) {
+        final JsonObject wrapper = new JsonObject();
+        wrapper.add(key, element);
+        return wrapper.toString();
+    }
+
+    /**
+     * Builds a {@link ShopDataGenerator}. By default the shop has 1000 products, 20 collections and 100 tags.
+     */
+    public static class Builder {
+
+        private long seed = 42;
+
+        private int productCount = 1000;
+
+        private int collectionCount = 20;
+
+        private int tagCount = 100;
+
+        private int maxVariants = MAX_VARIANTS;
+
+        private int maxImages = 10;
+
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder productCount(final int productCount) {
+            if (productCount < 1) {
+                throw new IllegalArgumentException("productCount must be positive");
+            }
+            this.productCount = productCount;
+            return this;
+        }
+
+        public Builder collectionCount(final int collectionCount) {
+            if (collectionCount < 0) {
+                throw new IllegalArgumentException("collectionCount cannot be negative");
+            }
+            this.collectionCount = collectionCount;
+            return this;
+        }
+
+        public Builder tagCount(final int tagCount) {
+            if (tagCount < 0) {
+                throw new IllegalArgumentException("tagCount cannot be negative");
+            }
+            this.tagCount = tagCount;
+            return this;
+        }
+
+        /**
+         * @param maxVariants the maximum number of variants per product, products have every combination of their option values up to this limit
+         * @param maxImages   the maximum number of images per product
+         * @return this builder
+         */
+        public Builder fanOut(final int maxVariants, final int maxImages) {
+            if (maxVariants < 1 || maxVariants > MAX_VARIANTS) {
+                throw new IllegalArgumentException("maxVariants must be between 1 and " + MAX_VARIANTS);
+            }
+            if (maxImages < 1) {
+                throw new IllegalArgumentException("maxImages must be positive");
+            }
+            this.maxVariants = maxVariants;
+            this.maxImages = maxImages;
+            return this;
+        }
+
+        public ShopDataGenerator build() {
+            return new ShopDataGenerator(this);
+        }
+    }
+}
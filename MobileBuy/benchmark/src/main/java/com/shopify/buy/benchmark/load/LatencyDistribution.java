@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.load;
+
+import java.util.Random;
+
+/**
+ * A distribution of delays, in milliseconds, used for the server latency and the shoppers' think time.
+ */
+public abstract class LatencyDistribution {
+
+    private static final double P99_Z_SCORE = 2.326;
+
+    /**
+     * @param random the source of randomness
+     * @return the next delay in milliseconds
+     */
+    public abstract long nextDelayMs(Random random);
+
+    /**
+     * @return a distribution that never waits
+     */
+    public static LatencyDistribution none() {
+        return constant(0);
+    }
+
+    /**
+     * @param delayMs the delay in milliseconds
+     * @return a distribution that always returns the same delay
+     */
+    public static LatencyDistribution constant(final long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("delayMs cannot be negative");
+        }
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMs(Random random) {
+                return delayMs;
+            }
+
+            @Override
+            public String toString() {
+                return "constant(" + delayMs + "ms)";
+            }
+        };
+    }
+
+    /**
+     * @param minMs the smallest delay in milliseconds
+     * @param maxMs the largest delay in milliseconds
+     * @return a distribution of delays uniformly spread between the two bounds
+     */
+    public static LatencyDistribution uniform(final long minMs, final long maxMs) {
+        if (minMs < 0 || maxMs < minMs) {
+            throw new IllegalArgumentException("the bounds must satisfy 0 <= minMs <= maxMs");
+        }
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMs(Random random) {
+                return minMs + (long) (random.nextDouble() * (maxMs - minMs + 1));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + minMs + "ms, " + maxMs + "ms)";
+            }
+        };
+    }
+
+    /**
+     * Server latencies are long tailed, a log-normal distribution is a good fit for them.
+     *
+     * @param medianMs the median delay in milliseconds
+     * @param p99Ms    the 99th percentile of the delays in milliseconds
+     * @return a log-normal distribution with the given median and 99th percentile
+     */
+    public static LatencyDistribution logNormal(final long medianMs, final long p99Ms) {
+        if (medianMs <= 0 || p99Ms < medianMs) {
+            throw new IllegalArgumentException("the percentiles must satisfy 0 < medianMs <= p99Ms");
+        }
+        final double mu = Math.log(medianMs);
+        final double sigma = Math.log((double) p99Ms / medianMs) / P99_Z_SCORE;
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMs(Random random) {
+                return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "logNormal(p50=" + medianMs + "ms, p99=" + p99Ms + "ms)";
+            }
+        };
+    }
+}
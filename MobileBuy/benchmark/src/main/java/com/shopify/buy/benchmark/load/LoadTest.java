@@ -0,0 +1,406 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.load;
+
+import com.shopify.buy.benchmark.ShopDataGenerator;
+import com.shopify.buy.dataprovider.BuyClient;
+import com.shopify.buy.dataprovider.BuyClientBuilder;
+import com.shopify.buy.dataprovider.BuyClientMetricsAggregator;
+import com.shopify.buy.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.schedulers.Schedulers;
+
+/**
+ * Runs N concurrent simulated {@link Shopper}s, by default each with its own {@link BuyClient} like on separate devices, against a local
+ * {@link ShopServer} for a fixed duration, and reports the throughput, the latency percentiles of every operation and the
+ * thread counts.
+ * <p>
+ * It can be run from the command line with {@code ./gradlew :benchmark:loadTest -PloadTestArgs="shoppers=50 duration=60"},
+ * see {@link #main(String[])} for the options.
+ */
+public final class LoadTest {
+
+    private static final long THREAD_SAMPLING_INTERVAL_MS = 100;
+
+    private final ShopServer server;
+
+    private final int shopperCount;
+
+    private final long durationMs;
+
+    private final LatencyDistribution thinkTime;
+
+    private final int maxCartSize;
+
+    private final boolean sharedClient;
+
+    private final long seed;
+
+    private LoadTest(Builder builder) {
+        server = builder.server;
+        shopperCount = builder.shopperCount;
+        durationMs = builder.durationMs;
+        thinkTime = builder.thinkTime;
+        maxCartSize = builder.maxCartSize;
+        sharedClient = builder.sharedClient;
+        seed = builder.seed;
+    }
+
+    /**
+     * Starts the server, runs the shoppers until the duration elapses, waits for their last session and shuts the server down.
+     *
+     * @return the report of the run
+     * @throws IOException          if the server cannot be started
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the shoppers
+     */
+    public LoadTestReport run() throws IOException, InterruptedException {
+        final int baselineThreadCount = ManagementFactory.getThreadMXBean().getThreadCount();
+        final ThreadSampler threadSampler = new ThreadSampler();
+
+        server.start();
+        try {
+            final BuyClientMetricsAggregator metrics = new BuyClientMetricsAggregator();
+            final ShopDataGenerator generator = server.getGenerator();
+            final int productPageCount = Math.max(1, (generator.getProductCount() + BuyClientBuilder.DEFAULT_PAGE_SIZE - 1) / BuyClientBuilder.DEFAULT_PAGE_SIZE);
+
+            final AtomicLong completedSessions = new AtomicLong();
+            final AtomicLong failedSessions = new AtomicLong();
+            final ConcurrentMap<String, AtomicLong> sessionFailures = new ConcurrentHashMap<>();
+            final LatencyHistogram sessionLatency = new LatencyHistogram();
+            final CountDownLatch finished = new CountDownLatch(shopperCount);
+
+            final long startNanos = System.nanoTime();
+            final long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMs);
+            threadSampler.start();
+
+            final BuyClient sharedBuyClient = sharedClient ? buildClient(metrics) : null;
+            final ThreadFactory shopperThreadFactory = new NamedThreadFactory("shopper-");
+            for (int i = 0; i < shopperCount; i++) {
+                final Shopper shopper = new Shopper(sharedClient ? sharedBuyClient : buildClient(metrics), new Random(seed + i), productPageCount, maxCartSize, thinkTime);
+                shopperThreadFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (System.nanoTime() < deadlineNanos) {
+                                final long sessionStartNanos = System.nanoTime();
+                                try {
+                                    shopper.shop();
+                                    completedSessions.incrementAndGet();
+                                } catch (RuntimeException e) {
+                                    failedSessions.incrementAndGet();
+                                    increment(sessionFailures, e.getClass().getSimpleName());
+                                }
+                                sessionLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sessionStartNanos));
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            finished.countDown();
+                        }
+                    }
+                }).start();
+            }
+
+            finished.await();
+            final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            threadSampler.stop();
+
+            final Map<String, Long> failures = new HashMap<>();
+            for (Map.Entry<String, AtomicLong> entry : sessionFailures.entrySet()) {
+                failures.put(entry.getKey(), entry.getValue().get());
+            }
+
+            return new LoadTestReport(shopperCount, elapsedMs, completedSessions.get(), failedSessions.get(), failures, sessionLatency,
+                metrics.getOperationStats(), server.getRequestCount(), baselineThreadCount, threadSampler.getPeakThreadCount(),
+                threadSampler.getPeakThreadCountByGroup());
+        } finally {
+            threadSampler.stop();
+            server.shutdown();
+        }
+    }
+
+    private BuyClient buildClient(BuyClientMetricsAggregator metrics) {
+        return new BuyClientBuilder()
+            .shopDomain("loadtest.myshopify.com")
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("loadtest")
+            .callbackScheduler(Schedulers.immediate())
+            .metricsListener(metrics)
+            .interceptors(server.interceptor())
+            .build();
+    }
+
+    private static void increment(ConcurrentMap<String, AtomicLong> counts, String key) {
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            final AtomicLong newCount = new AtomicLong();
+            count = counts.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Runs a load test and prints its report. The options are {@code key=value} arguments:
+     * <ul>
+     * <li>{@code shoppers}: number of concurrent shoppers, 10 by default</li>
+     * <li>{@code duration}: duration of the run in seconds, 30 by default</li>
+     * <li>{@code products}: number of products in the shop, 1000 by default</li>
+     * <li>{@code latencyMedianMs}, {@code latencyP99Ms}: log-normal server latency, none by default</li>
+     * <li>{@code errorRate}, {@code disconnectRate}: fractions of requests failing with a 503 or a dropped connection, 0 by default</li>
+     * <li>{@code shippingRatesPolls}, {@code completionPolls}: number of 202 responses before success, 1 by default</li>
+     * <li>{@code bandwidth}: response bandwidth cap in bytes per second, none by default</li>
+     * <li>{@code callLimit}, {@code callLeakRate}: size and leak rate per second of the API call bucket, no limit and 2 by default</li>
+     * <li>{@code thinkTimeMs}: maximum uniform think time of the shoppers between steps, 0 by default</li>
+     * <li>{@code cartSize}: maximum number of products added to the cart, 3 by default</li>
+     * <li>{@code sharedClient}: whether all the shoppers share one client, false by default</li>
+     * <li>{@code seed}: seed of the shop data and of the shoppers, 42 by default</li>
+     * </ul>
+     *
+     * @param args the options
+     * @throws Exception if the load test cannot run
+     */
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("options must be of the form key=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        final long seed = Long.parseLong(option(options, "seed", "42"));
+        final ShopServer.Builder serverBuilder = new ShopServer.Builder()
+            .generator(new ShopDataGenerator.Builder().seed(seed).productCount(Integer.parseInt(option(options, "products", "1000"))).build())
+            .faults(Double.parseDouble(option(options, "errorRate", "0")), Double.parseDouble(option(options, "disconnectRate", "0")))
+            .polling(Integer.parseInt(option(options, "shippingRatesPolls", "1")), Integer.parseInt(option(options, "completionPolls", "1")))
+            .bandwidth(Long.parseLong(option(options, "bandwidth", "0")))
+            .callLimit(Integer.parseInt(option(options, "callLimit", "0")), Double.parseDouble(option(options, "callLeakRate", "2")));
+        if (options.containsKey("latencyMedianMs")) {
+            final long medianMs = Long.parseLong(options.get("latencyMedianMs"));
+            serverBuilder.latency(LatencyDistribution.logNormal(medianMs, Long.parseLong(option(options, "latencyP99Ms", String.valueOf(medianMs * 4)))));
+        }
+
+        final LoadTest loadTest = new Builder()
+            .server(serverBuilder.build())
+            .shopperCount(Integer.parseInt(option(options, "shoppers", "10")))
+            .duration(Long.parseLong(option(options, "duration", "30")), TimeUnit.SECONDS)
+            .thinkTime(LatencyDistribution.uniform(0, Long.parseLong(option(options, "thinkTimeMs", "0"))))
+            .maxCartSize(Integer.parseInt(option(options, "cartSize", "3")))
+            .sharedClient(Boolean.parseBoolean(option(options, "sharedClient", "false")))
+            .seed(seed)
+            .build();
+
+        System.out.println(loadTest.run());
+        System.exit(0);
+    }
+
+    private static String option(Map<String, String> options, String key, String defaultValue) {
+        final String value = options.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Samples the live threads while the load test runs to find the peak counts, in total and by group.
+     */
+    private static final class ThreadSampler implements Runnable {
+
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("thread-sampler-"));
+
+        private final Map<String, Integer> peakThreadCountByGroup = new HashMap<>();
+
+        private int peakThreadCount;
+
+        void start() {
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+            executor.scheduleAtFixedRate(this, 0, THREAD_SAMPLING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() throws InterruptedException {
+            executor.shutdown();
+            executor.awaitTermination(THREAD_SAMPLING_INTERVAL_MS * 10, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public synchronized void run() {
+            final Map<String, Integer> counts = new HashMap<>();
+            final Set<Thread> threads = Thread.getAllStackTraces().keySet();
+            peakThreadCount = Math.max(peakThreadCount, threads.size());
+            for (Thread thread : threads) {
+                final String group = groupOf(thread.getName());
+                final Integer count = counts.get(group);
+                counts.put(group, count == null ? 1 : count + 1);
+            }
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                final Integer peak = peakThreadCountByGroup.get(entry.getKey());
+                if (peak == null || peak < entry.getValue()) {
+                    peakThreadCountByGroup.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        synchronized int getPeakThreadCount() {
+            return Math.max(peakThreadCount, ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        }
+
+        synchronized Map<String, Integer> getPeakThreadCountByGroup() {
+            return new HashMap<>(peakThreadCountByGroup);
+        }
+
+        private static String groupOf(String threadName) {
+            if (threadName.startsWith("OkHttp")) {
+                return "okhttp";
+            }
+            if (threadName.startsWith("Rx")) {
+                return "rx";
+            }
+            if (threadName.startsWith("MockWebServer")) {
+                return "server";
+            }
+            if (threadName.startsWith("shopper-")) {
+                return "shoppers";
+            }
+            return "other";
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, prefix + count.incrementAndGet());
+        }
+    }
+
+    /**
+     * Builds a {@link LoadTest}. By default 10 shoppers without think time run for 30 seconds against a default {@link ShopServer}.
+     */
+    public static class Builder {
+
+        private ShopServer server;
+
+        private int shopperCount = 10;
+
+        private long durationMs = TimeUnit.SECONDS.toMillis(30);
+
+        private LatencyDistribution thinkTime = LatencyDistribution.none();
+
+        private int maxCartSize = 3;
+
+        private boolean sharedClient;
+
+        private long seed = 42;
+
+        /**
+         * @param server the server to run against, it must not be started, the load test starts and shuts it down
+         * @return this builder
+         */
+        public Builder server(final ShopServer server) {
+            this.server = server;
+            return this;
+        }
+
+        public Builder shopperCount(final int shopperCount) {
+            if (shopperCount < 1) {
+                throw new IllegalArgumentException("shopperCount must be positive");
+            }
+            this.shopperCount = shopperCount;
+            return this;
+        }
+
+        public Builder duration(final long duration, final TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be positive");
+            }
+            this.durationMs = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder thinkTime(final LatencyDistribution thinkTime) {
+            if (thinkTime == null) {
+                throw new NullPointerException("thinkTime cannot be null");
+            }
+            this.thinkTime = thinkTime;
+            return this;
+        }
+
+        public Builder maxCartSize(final int maxCartSize) {
+            if (maxCartSize < 1) {
+                throw new IllegalArgumentException("maxCartSize must be positive");
+            }
+            this.maxCartSize = maxCartSize;
+            return this;
+        }
+
+        /**
+         * @param sharedClient {@code true} to have all the shoppers share a single client, which exercises its connection pool and
+         *                     dispatcher under concurrency, {@code false} to give each shopper its own client like separate devices
+         * @return this builder
+         */
+        public Builder sharedClient(final boolean sharedClient) {
+            this.sharedClient = sharedClient;
+            return this;
+        }
+
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public LoadTest build() {
+            if (server == null) {
+                server = new ShopServer.Builder().build();
+            }
+            return new LoadTest(this);
+        }
+    }
+}
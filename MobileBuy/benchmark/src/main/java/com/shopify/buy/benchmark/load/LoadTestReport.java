@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.load;
+
+import com.shopify.buy.dataprovider.BuyClientMetricsAggregator;
+import com.shopify.buy.utils.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of a {@link LoadTest} run. Latencies are in microseconds, like in {@link BuyClientMetricsAggregator}.
+ */
+public final class LoadTestReport {
+
+    private final int shopperCount;
+
+    private final long durationMs;
+
+    private final long completedSessions;
+
+    private final long failedSessions;
+
+    private final Map<String, Long> sessionFailures;
+
+    private final LatencyHistogram sessionLatency;
+
+    private final Map<String, BuyClientMetricsAggregator.Stats> operationStats;
+
+    private final long serverRequestCount;
+
+    private final int baselineThreadCount;
+
+    private final int peakThreadCount;
+
+    private final Map<String, Integer> peakThreadCountByGroup;
+
+    LoadTestReport(final int shopperCount, final long durationMs, final long completedSessions, final long failedSessions,
+                   final Map<String, Long> sessionFailures, final LatencyHistogram sessionLatency,
+                   final Map<String, BuyClientMetricsAggregator.Stats> operationStats, final long serverRequestCount,
+                   final int baselineThreadCount, final int peakThreadCount, final Map<String, Integer> peakThreadCountByGroup) {
+        this.shopperCount = shopperCount;
+        this.durationMs = durationMs;
+        this.completedSessions = completedSessions;
+        this.failedSessions = failedSessions;
+        this.sessionFailures = Collections.unmodifiableMap(new TreeMap<>(sessionFailures));
+        this.sessionLatency = sessionLatency;
+        this.operationStats = Collections.unmodifiableMap(new TreeMap<>(operationStats));
+        this.serverRequestCount = serverRequestCount;
+        this.baselineThreadCount = baselineThreadCount;
+        this.peakThreadCount = peakThreadCount;
+        this.peakThreadCountByGroup = Collections.unmodifiableMap(new TreeMap<>(peakThreadCountByGroup));
+    }
+
+    public int getShopperCount() {
+        return shopperCount;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public long getCompletedSessions() {
+        return completedSessions;
+    }
+
+    public long getFailedSessions() {
+        return failedSessions;
+    }
+
+    /**
+     * @return the number of failed sessions by the simple class name of the error that ended them
+     */
+    public Map<String, Long> getSessionFailures() {
+        return sessionFailures;
+    }
+
+    /**
+     * @return the latency of the sessions, including the think time
+     */
+    public LatencyHistogram getSessionLatency() {
+        return sessionLatency;
+    }
+
+    /**
+     * @return the statistics of each {@code BuyClient} operation, by operation name
+     */
+    public Map<String, BuyClientMetricsAggregator.Stats> getOperationStats() {
+        return operationStats;
+    }
+
+    /**
+     * @return the number of sessions, successful or not, finished per second
+     */
+    public double getSessionThroughput() {
+        return (completedSessions + failedSessions) * 1000.0 / durationMs;
+    }
+
+    /**
+     * @return the number of {@code BuyClient} calls finished per second
+     */
+    public double getCallThroughput() {
+        long calls = 0;
+        for (BuyClientMetricsAggregator.Stats stats : operationStats.values()) {
+            calls += stats.getCount();
+        }
+        return calls * 1000.0 / durationMs;
+    }
+
+    /**
+     * @return the number of HTTP requests received by the server
+     */
+    public long getServerRequestCount() {
+        return serverRequestCount;
+    }
+
+    /**
+     * @return the number of live threads before the clients were created
+     */
+    public int getBaselineThreadCount() {
+        return baselineThreadCount;
+    }
+
+    /**
+     * @return the highest number of live threads during the run
+     */
+    public int getPeakThreadCount() {
+        return peakThreadCount;
+    }
+
+    /**
+     * @return the highest number of live threads during the run, by group: {@code okhttp}, {@code rx}, {@code server},
+     * {@code shoppers} and {@code other}
+     */
+    public Map<String, Integer> getPeakThreadCountByGroup() {
+        return peakThreadCountByGroup;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%d shoppers for %.1fs%n", shopperCount, durationMs / 1000.0));
+        sb.append(String.format(Locale.US, "sessions: %d completed, %d failed %s, %.2f/s%n", completedSessions, failedSessions, sessionFailures, getSessionThroughput()));
+        sb.append(String.format(Locale.US, "session latency (ms): %s%n", percentiles(sessionLatency)));
+        sb.append(String.format(Locale.US, "calls: %.2f/s, server requests: %d%n", getCallThroughput(), serverRequestCount));
+        sb.append(String.format(Locale.US, "threads: %d baseline, %d peak %s%n", baselineThreadCount, peakThreadCount, peakThreadCountByGroup));
+        sb.append(String.format(Locale.US, "%n%-40s %8s %7s %7s %6s %9s %9s %9s %9s%n", "operation", "count", "errors", "retries", "polls", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, BuyClientMetricsAggregator.Stats> entry : operationStats.entrySet()) {
+            final BuyClientMetricsAggregator.Stats stats = entry.getValue();
+            final LatencyHistogram latency = stats.getLatency();
+            sb.append(String.format(Locale.US, "%-40s %8d %7d %7d %6d %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), stats.getCount(), stats.getErrorCount(),
+                stats.getRetryCount(), stats.getPollCount(), millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getMaxValue())));
+        }
+        return sb.toString();
+    }
+
+    private static String percentiles(LatencyHistogram histogram) {
+        return String.format(Locale.US, "p50=%.1f p90=%.1f p99=%.1f max=%.1f", millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.load;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shopify.buy.benchmark.ShopDataGenerator;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * A local HTTP server that emulates the {@code api/apps/{appId}/...}, {@code api/checkouts/...} and card vault endpoints used by
+ * the SDK, with the data of a {@link ShopDataGenerator} shop.
+ * <p>
+ * Every response can be delayed by a {@link LatencyDistribution}, replaced by a server error or a dropped connection at a
+ * given rate, and throttled to a given bandwidth. Shipping rates and checkout completion answer {@code 202 Accepted} a
+ * configurable number of times before succeeding, so the SDK polls them like it does against a real shop.
+ * <p>
+ * The SDK only talks https to the shop domain, so clients must be built with {@link #interceptor()} which sends all their
+ * requests to this server instead.
+ */
+public final class ShopServer {
+
+    private static final Pattern PRODUCT_LISTINGS = Pattern.compile("/api/apps/[^/]+/product_listings\\.json");
+    private static final Pattern PRODUCT_TAGS = Pattern.compile("/api/apps/[^/]+/product_listings/tags\\.json");
+    private static final Pattern COLLECTION_LISTINGS = Pattern.compile("/api/apps/[^/]+/collection_listings\\.json");
+    private static final Pattern CHECKOUTS = Pattern.compile("/api/checkouts\\.json");
+    private static final Pattern CHECKOUT = Pattern.compile("/api/checkouts/([^/]+)\\.json");
+    private static final Pattern SHIPPING_RATES = Pattern.compile("/api/checkouts/([^/]+)/shipping_rates\\.json");
+    private static final Pattern COMPLETE = Pattern.compile("/api/checkouts/([^/]+)/complete\\.json");
+    private static final Pattern PROCESSING = Pattern.compile("/api/checkouts/([^/]+)/processing\\.json");
+    private static final Pattern ORDERS = Pattern.compile("/api/customers/([0-9]+)/orders\\.json");
+    private static final Pattern CARD_VAULT = Pattern.compile("/sessions");
+    private static final Pattern HANDLE_PRODUCT_ID = Pattern.compile(".*-([0-9]+)");
+
+    private static final int DEFAULT_PAGE_SIZE = 25;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final String CALL_LIMIT_HEADER = "X-Shopify-Shop-Api-Call-Limit";
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final ShopDataGenerator generator;
+
+    private final LatencyDistribution latency;
+
+    private final double errorRate;
+
+    private final double disconnectRate;
+
+    private final int shippingRatesPollCount;
+
+    private final int completionPollCount;
+
+    private final int shippingRateCount;
+
+    private final long bandwidthBytesPerSecond;
+
+    private final int callLimit;
+
+    private final double callLeakRatePerNano;
+
+    private final String callRetryAfter;
+
+    // guarded by this
+    private double callLevel;
+
+    private long callLevelNanos = System.nanoTime();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong checkoutSequence = new AtomicLong();
+
+    private final ConcurrentMap<String, Integer> checkoutLineItemCounts = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicInteger> pendingShippingRatesPolls = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicInteger> pendingCompletionPolls = new ConcurrentHashMap<>();
+
+    private ShopServer(Builder builder) {
+        generator = builder.generator;
+        latency = builder.latency;
+        errorRate = builder.errorRate;
+        disconnectRate = builder.disconnectRate;
+        shippingRatesPollCount = builder.shippingRatesPollCount;
+        completionPollCount = builder.completionPollCount;
+        shippingRateCount = builder.shippingRateCount;
+        bandwidthBytesPerSecond = builder.bandwidthBytesPerSecond;
+        callLimit = builder.callLimit;
+        callLeakRatePerNano = builder.callLeakRatePerSecond / TimeUnit.SECONDS.toNanos(1);
+        callRetryAfter = callLimit > 0 ? String.valueOf(1 / builder.callLeakRatePerSecond) : null;
+    }
+
+    public void start() throws IOException {
+        server.setDispatcher(new ShopDispatcher());
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public ShopDataGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * @return the number of requests received so far, including the failed ones
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return an application interceptor that sends every request of a client to this server, keeping the path and query
+     */
+    public Interceptor interceptor() {
+        final HttpUrl serverUrl = server.url("/");
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                final Request request = chain.request();
+                final HttpUrl url = request.url().newBuilder()
+                    .scheme(serverUrl.scheme())
+                    .host(serverUrl.host())
+                    .port(serverUrl.port())
+                    .build();
+                return chain.proceed(request.newBuilder().url(url).build());
+            }
+        };
+    }
+
+    private final class ShopDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            requestCount.incrementAndGet();
+            final Random random = ThreadLocalRandom.current();
+
+            final long delayMs = latency.nextDelayMs(random);
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+
+            if (disconnectRate > 0 && random.nextDouble() < disconnectRate) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+
+            final String callCount = callLimit > 0 && !CARD_VAULT.matcher(server.url(request.getPath()).encodedPath()).matches() ? takeCall() : null;
+
+            final MockResponse response;
+            if (callLimit > 0 && callCount == null) {
+                response = json(HTTP_TOO_MANY_REQUESTS, "{\"errors\":\"Exceeded API call limit\"}")
+                    .setHeader("Retry-After", callRetryAfter);
+            } else if (errorRate > 0 && random.nextDouble() < errorRate) {
+                response = json(HttpURLConnection.HTTP_UNAVAILABLE, "{\"errors\":\"Service Unavailable\"}");
+            } else {
+                response = route(request);
+            }
+            if (callCount != null) {
+                response.setHeader(CALL_LIMIT_HEADER, callCount);
+            }
+
+            if (bandwidthBytesPerSecond > 0) {
+                response.throttleBody(Math.max(1, bandwidthBytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        }
+
+        private MockResponse route(RecordedRequest request) {
+            final HttpUrl url = server.url(request.getPath());
+            final String path = url.encodedPath();
+            final String method = request.getMethod();
+            Matcher matcher;
+
+            if ("GET".equals(method) && PRODUCT_LISTINGS.matcher(path).matches()) {
+                return json(HttpURLConnection.HTTP_OK, ShopDataGenerator.projectProductListings(productListings(url), url.queryParameter("fields")));
+            }
+
+            if ("GET".equals(method) && PRODUCT_TAGS.matcher(path).matches()) {
+                return json(HttpURLConnection.HTTP_OK, generator.productTags(page(url), pageSize(url)));
+            }
+
+            if ("GET".equals(method) && COLLECTION_LISTINGS.matcher(path).matches()) {
+                final boolean byHandle = url.queryParameter("handle") != null;
+                return json(HttpURLConnection.HTTP_OK, generator.collectionListings(byHandle ? 1 : page(url), byHandle ? 1 : pageSize(url)));
+            }
+
+            if ("POST".equals(method) && CHECKOUTS.matcher(path).matches()) {
+                final String token = String.format("%032x", checkoutSequence.incrementAndGet());
+                final int lineItemCount = Math.max(1, lineItemCount(request));
+                checkoutLineItemCounts.put(token, lineItemCount);
+                return json(HttpURLConnection.HTTP_CREATED, generator.checkoutResponse(token, lineItemCount));
+            }
+
+            if (("GET".equals(method) || "PATCH".equals(method)) && (matcher = CHECKOUT.matcher(path)).matches()) {
+                final String token = matcher.group(1);
+                // partial updates do not send the line items again
+                final int updatedLineItemCount = "PATCH".equals(method) ? lineItemCount(request) : 0;
+                final Integer lineItemCount = updatedLineItemCount > 0 ? Integer.valueOf(updatedLineItemCount) : checkoutLineItemCounts.get(token);
+                if (updatedLineItemCount > 0) {
+                    checkoutLineItemCounts.put(token, updatedLineItemCount);
+                }
+                return json(HttpURLConnection.HTTP_OK, generator.checkoutResponse(token, lineItemCount != null ? lineItemCount : 1));
+            }
+
+            if ("GET".equals(method) && (matcher = SHIPPING_RATES.matcher(path)).matches()) {
+                final String token = matcher.group(1);
+                if (poll(pendingShippingRatesPolls, token, shippingRatesPollCount)) {
+                    return json(HttpURLConnection.HTTP_ACCEPTED, "{}");
+                }
+                return json(HttpURLConnection.HTTP_OK, generator.shippingRates(token, shippingRateCount));
+            }
+
+            if ("POST".equals(method) && (matcher = COMPLETE.matcher(path)).matches()) {
+                pendingCompletionPolls.put(matcher.group(1), new AtomicInteger(completionPollCount));
+                return json(HttpURLConnection.HTTP_ACCEPTED, "");
+            }
+
+            if ("GET".equals(method) && (matcher = PROCESSING.matcher(path)).matches()) {
+                final String token = matcher.group(1);
+                if (poll(pendingCompletionPolls, token, completionPollCount)) {
+                    return json(HttpURLConnection.HTTP_ACCEPTED, "");
+                }
+                pendingCompletionPolls.remove(token);
+                pendingShippingRatesPolls.remove(token);
+                checkoutLineItemCounts.remove(token);
+                return json(HttpURLConnection.HTTP_OK, "");
+            }
+
+            if ("GET".equals(method) && (matcher = ORDERS.matcher(path)).matches()) {
+                return json(HttpURLConnection.HTTP_OK, generator.orders(Long.parseLong(matcher.group(1)), 10, 3));
+            }
+
+            if ("POST".equals(method) && CARD_VAULT.matcher(path).matches()) {
+                return json(HttpURLConnection.HTTP_OK, "{\"id\":\"east-" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + "\"}");
+            }
+
+            return json(HttpURLConnection.HTTP_NOT_FOUND, "{\"errors\":\"Not Found\"}");
+        }
+
+        private String productListings(HttpUrl url) {
+            final String productIds = url.queryParameter("product_ids");
+            if (productIds != null) {
+                final List<Long> ids = new ArrayList<>();
+                for (String id : productIds.split(",")) {
+                    ids.add(Long.parseLong(id.trim()));
+                }
+                return generator.productListings(ids);
+            }
+
+            final String handle = url.queryParameter("handle");
+            if (handle != null) {
+                final Matcher matcher = HANDLE_PRODUCT_ID.matcher(handle);
+                final List<Long> ids = new ArrayList<>();
+                if (matcher.matches()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                }
+                return generator.productListings(ids);
+            }
+
+            final String collectionId = url.queryParameter("collection_id");
+            if (collectionId != null) {
+                return generator.productListings(Long.parseLong(collectionId), page(url), pageSize(url));
+            }
+
+            return generator.productListings(page(url), pageSize(url));
+        }
+    }
+
+    /**
+     * Adds a call to the leaky bucket of the shop.
+     *
+     * @return the value of the call limit header of the accepted call, {@code null} if the bucket is full
+     */
+    private synchronized String takeCall() {
+        final long now = System.nanoTime();
+        callLevel = Math.max(0, callLevel - (now - callLevelNanos) * callLeakRatePerNano);
+        callLevelNanos = now;
+        if (callLevel + 1 > callLimit) {
+            return null;
+        }
+        callLevel += 1;
+        return (int) Math.ceil(callLevel) + "/" + callLimit;
+    }
+
+    /**
+     * @return {@code true} while the resource is still pending, counting down from {@code pollCount}
+     */
+    private static boolean poll(ConcurrentMap<String, AtomicInteger> pendingPolls, String token, int pollCount) {
+        AtomicInteger pending = pendingPolls.get(token);
+        if (pending == null) {
+            final AtomicInteger newPending = new AtomicInteger(pollCount);
+            pending = pendingPolls.putIfAbsent(token, newPending);
+            if (pending == null) {
+                pending = newPending;
+            }
+        }
+        return pending.getAndDecrement() > 0;
+    }
+
+    /**
+     * @return the number of line items in the checkout sent with the request, 0 if it has none
+     */
+    private static int lineItemCount(RecordedRequest request) {
+        try {
+            final JsonObject body = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject();
+            final JsonElement checkout = body.get("checkout");
+            if (checkout != null && checkout.isJsonObject()) {
+                final JsonArray lineItems = checkout.getAsJsonObject().getAsJsonArray("line_items");
+                if (lineItems != null) {
+                    return lineItems.size();
+                }
+            }
+        } catch (RuntimeException e) {
+            // not a checkout
+        }
+        return 0;
+    }
+
+    private static int page(HttpUrl url) {
+        final String page = url.queryParameter("page");
+        return page != null ? Math.max(1, Integer.parseInt(page)) : 1;
+    }
+
+    private static int pageSize(HttpUrl url) {
+        final String limit = url.queryParameter("limit");
+        return limit != null ? Math.max(1, Integer.parseInt(limit)) : DEFAULT_PAGE_SIZE;
+    }
+
+    private static MockResponse json(int code, String body) {
+        return new MockResponse()
+            .setResponseCode(code)
+            .setHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody(body);
+    }
+
+    /**
+     * Builds a {@link ShopServer}. By default it serves a {@link ShopDataGenerator} shop with no latency, no errors, no bandwidth
+     * cap and a single {@code 202} poll for shipping rates and checkout completion.
+     */
+    public static class Builder {
+
+        private ShopDataGenerator generator;
+
+        private LatencyDistribution latency = LatencyDistribution.none();
+
+        private double errorRate;
+
+        private double disconnectRate;
+
+        private int shippingRatesPollCount = 1;
+
+        private int completionPollCount = 1;
+
+        private int shippingRateCount = 3;
+
+        private long bandwidthBytesPerSecond;
+
+        private int callLimit;
+
+        private double callLeakRatePerSecond;
+
+        public Builder generator(final ShopDataGenerator generator) {
+            this.generator = generator;
+            return this;
+        }
+
+        /**
+         * @param latency the distribution of the delay before each response
+         * @return this builder
+         */
+        public Builder latency(final LatencyDistribution latency) {
+            if (latency == null) {
+                throw new NullPointerException("latency cannot be null");
+            }
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate      the fraction of requests answered with {@code 503 Service Unavailable}
+         * @param disconnectRate the fraction of requests whose connection is dropped without a response
+         * @return this builder
+         */
+        public Builder faults(final double errorRate, final double disconnectRate) {
+            if (errorRate < 0 || errorRate > 1 || disconnectRate < 0 || disconnectRate > 1) {
+                throw new IllegalArgumentException("rates must be between 0 and 1");
+            }
+            this.errorRate = errorRate;
+            this.disconnectRate = disconnectRate;
+            return this;
+        }
+
+        /**
+         * @param shippingRatesPollCount the number of {@code 202} responses before the shipping rates are returned
+         * @param completionPollCount    the number of {@code 202} responses before a checkout completion succeeds
+         * @return this builder
+         */
+        public Builder polling(final int shippingRatesPollCount, final int completionPollCount) {
+            if (shippingRatesPollCount < 0 || completionPollCount < 0) {
+                throw new IllegalArgumentException("poll counts cannot be negative");
+            }
+            this.shippingRatesPollCount = shippingRatesPollCount;
+            this.completionPollCount = completionPollCount;
+            return this;
+        }
+
+        public Builder shippingRateCount(final int shippingRateCount) {
+            if (shippingRateCount < 1) {
+                throw new IllegalArgumentException("shippingRateCount must be positive");
+            }
+            this.shippingRateCount = shippingRateCount;
+            return this;
+        }
+
+        /**
+         * @param bandwidthBytesPerSecond the maximum rate at which each response body is sent, 0 for no limit
+         * @return this builder
+         */
+        public Builder bandwidth(final long bandwidthBytesPerSecond) {
+            if (bandwidthBytesPerSecond < 0) {
+                throw new IllegalArgumentException("bandwidthBytesPerSecond cannot be negative");
+            }
+            this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Limits the API calls like the shop does: every call but the card vault ones takes a place in a leaky bucket, the calls
+         * that find it full are answered with {@code 429 Too Many Requests}, and the accepted ones carry the call limit header.
+         *
+         * @param callLimit             the size of the bucket, 0 for no limit
+         * @param callLeakRatePerSecond the number of calls leaking from the bucket every second
+         * @return this builder
+         */
+        public Builder callLimit(final int callLimit, final double callLeakRatePerSecond) {
+            if (callLimit < 0) {
+                throw new IllegalArgumentException("callLimit cannot be negative");
+            }
+            if (callLimit > 0 && callLeakRatePerSecond <= 0) {
+                throw new IllegalArgumentException("callLeakRatePerSecond must be positive");
+            }
+            this.callLimit = callLimit;
+            this.callLeakRatePerSecond = callLeakRatePerSecond;
+            return this;
+        }
+
+        public ShopServer build() {
+            if (generator == null) {
+                generator = new ShopDataGenerator.Builder().build();
+            }
+            return new ShopServer(this);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.load;
+
+import com.shopify.buy.dataprovider.BuyClient;
+import com.shopify.buy.model.Address;
+import com.shopify.buy.model.Cart;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.Collection;
+import com.shopify.buy.model.CreditCard;
+import com.shopify.buy.model.PaymentToken;
+import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductVariant;
+import com.shopify.buy.model.ShippingRate;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A simulated shopper: browses the catalog, fills a cart and goes through the whole native checkout, waiting for the
+ * think time between steps like a person using the app would.
+ */
+final class Shopper {
+
+    private final BuyClient buyClient;
+
+    private final Random random;
+
+    private final int productPageCount;
+
+    private final int maxCartSize;
+
+    private final LatencyDistribution thinkTime;
+
+    Shopper(final BuyClient buyClient, final Random random, final int productPageCount, final int maxCartSize, final LatencyDistribution thinkTime) {
+        this.buyClient = buyClient;
+        this.random = random;
+        this.productPageCount = productPageCount;
+        this.maxCartSize = maxCartSize;
+        this.thinkTime = thinkTime;
+    }
+
+    /**
+     * Runs one shopping session, from the collections screen to the completed checkout.
+     *
+     * @throws InterruptedException if the shopper is interrupted while thinking
+     */
+    void shop() throws InterruptedException {
+        final List<Collection> collections = buyClient.getCollections(1).toBlocking().first();
+        think();
+
+        final List<Product> products;
+        if (!collections.isEmpty() && random.nextBoolean()) {
+            final Collection collection = collections.get(random.nextInt(collections.size()));
+            products = buyClient.getProducts(1, collection.getCollectionId(), null, null).toBlocking().first();
+        } else {
+            products = buyClient.getProducts(1 + random.nextInt(productPageCount)).toBlocking().first();
+        }
+        think();
+
+        final Cart cart = new Cart();
+        final int cartSize = products.isEmpty() ? 0 : 1 + random.nextInt(maxCartSize);
+        for (int i = 0; i < cartSize; i++) {
+            final Product listedProduct = products.get(random.nextInt(products.size()));
+            final Product product = buyClient.getProduct(listedProduct.getProductId()).toBlocking().first();
+            final List<ProductVariant> variants = product.getVariants();
+            cart.addVariant(variants.get(random.nextInt(variants.size())));
+            think();
+        }
+
+        if (cart.isEmpty()) {
+            return;
+        }
+
+        Checkout checkout = buyClient.createCheckout(new Checkout(cart)).toBlocking().first();
+        think();
+
+        checkout.setEmail("shopper" + random.nextInt(100000) + "@example.com");
+        checkout.setShippingAddress(address());
+        checkout.setBillingAddress(address());
+        checkout = buyClient.updateCheckout(checkout).toBlocking().first();
+
+        final List<ShippingRate> shippingRates = buyClient.getShippingRates(checkout.getToken()).toBlocking().first();
+        think();
+
+        checkout.setShippingRate(shippingRates.get(random.nextInt(shippingRates.size())));
+        checkout = buyClient.updateCheckout(checkout).toBlocking().first();
+        think();
+
+        final PaymentToken paymentToken = buyClient.storeCreditCard(creditCard(), checkout).toBlocking().first();
+        buyClient.completeCheckout(paymentToken, checkout.getToken()).toBlocking().first();
+    }
+
+    private void think() throws InterruptedException {
+        final long delayMs = thinkTime.nextDelayMs(random);
+        if (delayMs > 0) {
+            Thread.sleep(delayMs);
+        }
+    }
+
+    private Address address() {
+        final Address address = new Address();
+        address.setFirstName("Shopper");
+        address.setLastName(String.valueOf(random.nextInt(100000)));
+        address.setAddress1((1 + random.nextInt(999)) + " Elgin Street");
+        address.setCity("Ottawa");
+        address.setProvinceCode("ON");
+        address.setCountryCode("CA");
+        address.setZip("K2P 1L4");
+        address.setPhone("613-555-" + (1000 + random.nextInt(9000)));
+        return address;
+    }
+
+    private CreditCard creditCard() {
+        final CreditCard card = new CreditCard();
+        card.setNumber("4242424242424242");
+        card.setFirstName("Shopper");
+        card.setLastName("Load");
+        card.setMonth("12");
+        card.setYear("2030");
+        card.setVerificationValue("123");
+        return card;
+    }
+}
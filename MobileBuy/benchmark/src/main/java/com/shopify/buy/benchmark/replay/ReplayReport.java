@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.replay;
+
+import com.shopify.buy.dataprovider.TrafficArchive;
+import com.shopify.buy.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link TrafficReplay} run, next to the recorded values. Latencies are in microseconds, like in
+ * {@link com.shopify.buy.dataprovider.BuyClientMetricsAggregator}.
+ */
+public final class ReplayReport {
+
+    private final int exchangeCount;
+
+    private final long recordedDurationMs;
+
+    private final Map<String, EndpointStats> endpointStats = new TreeMap<>();
+
+    private long replayedDurationMs;
+
+    private long unmatchedRequestCount;
+
+    ReplayReport(final List<TrafficArchive.Exchange> exchanges) {
+        long recordedDurationMs = 0;
+        for (TrafficArchive.Exchange exchange : exchanges) {
+            stats(exchange).recorded.recordValue(TimeUnit.MILLISECONDS.toMicros(exchange.getDurationMs()));
+            recordedDurationMs = Math.max(recordedDurationMs, exchange.getStartOffsetMs() + exchange.getDurationMs());
+        }
+        this.exchangeCount = exchanges.size();
+        this.recordedDurationMs = recordedDurationMs;
+    }
+
+    void recordReplayed(final TrafficArchive.Exchange exchange, final long durationNanos, final IOException error) {
+        final EndpointStats stats = stats(exchange);
+        stats.replayed.recordValue(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        // the requests that failed during the recording are expected to fail again
+        if ((error != null) != (exchange.getError() != null)) {
+            synchronized (stats) {
+                stats.mismatchCount++;
+            }
+        }
+    }
+
+    void setReplayedDurationMs(final long replayedDurationMs, final long unmatchedRequestCount) {
+        this.replayedDurationMs = replayedDurationMs;
+        this.unmatchedRequestCount = unmatchedRequestCount;
+    }
+
+    public int getExchangeCount() {
+        return exchangeCount;
+    }
+
+    /**
+     * @return the time between the first request and the last response of the recorded session, in milliseconds
+     */
+    public long getRecordedDurationMs() {
+        return recordedDurationMs;
+    }
+
+    /**
+     * @return the time between the first request and the last response of the replayed session, in milliseconds
+     */
+    public long getReplayedDurationMs() {
+        return replayedDurationMs;
+    }
+
+    /**
+     * @return the number of replayed requests that matched no recorded exchange
+     */
+    public long getUnmatchedRequestCount() {
+        return unmatchedRequestCount;
+    }
+
+    /**
+     * @return the recorded and replayed latencies, keyed by {@link TrafficArchive.Exchange#getEndpoint()}
+     */
+    public Map<String, EndpointStats> getEndpointStats() {
+        return Collections.unmodifiableMap(endpointStats);
+    }
+
+    private EndpointStats stats(final TrafficArchive.Exchange exchange) {
+        final String endpoint = exchange.getEndpoint() != null ? exchange.getEndpoint() : exchange.getMethod() + " " + exchange.getUrl();
+        synchronized (endpointStats) {
+            EndpointStats stats = endpointStats.get(endpoint);
+            if (stats == null) {
+                stats = new EndpointStats();
+                endpointStats.put(endpoint, stats);
+            }
+            return stats;
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%d exchanges, %d unmatched requests%n", exchangeCount, unmatchedRequestCount));
+        sb.append(String.format(Locale.US, "session (ms): recorded %d, replayed %d (%+.1f%%)%n", recordedDurationMs, replayedDurationMs,
+            recordedDurationMs > 0 ? (replayedDurationMs - recordedDurationMs) * 100.0 / recordedDurationMs : 0.0));
+        sb.append(String.format(Locale.US, "%n%-45s %6s %9s %9s %9s %9s %9s%n", "endpoint", "count", "mismatch", "rec p50", "rep p50", "rec p99", "rep p99"));
+        for (Map.Entry<String, EndpointStats> entry : endpointStats.entrySet()) {
+            final EndpointStats stats = entry.getValue();
+            sb.append(String.format(Locale.US, "%-45s %6d %9d %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), stats.recorded.getTotalCount(), stats.getMismatchCount(),
+                millis(stats.recorded.getValueAtPercentile(50)), millis(stats.replayed.getValueAtPercentile(50)),
+                millis(stats.recorded.getValueAtPercentile(99)), millis(stats.replayed.getValueAtPercentile(99))));
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * The recorded and replayed latencies of an endpoint.
+     */
+    public static final class EndpointStats {
+
+        private final LatencyHistogram recorded = new LatencyHistogram();
+
+        private final LatencyHistogram replayed = new LatencyHistogram();
+
+        private long mismatchCount;
+
+        public LatencyHistogram getRecorded() {
+            return recorded;
+        }
+
+        public LatencyHistogram getReplayed() {
+            return replayed;
+        }
+
+        /**
+         * @return the number of requests that failed during the replay but not during the recording, or the other way around
+         */
+        public synchronized long getMismatchCount() {
+            return mismatchCount;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.replay;
+
+import com.shopify.buy.dataprovider.TrafficArchive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * A local HTTP server that answers with the responses of a {@link TrafficArchive}, as recorded by a
+ * {@link com.shopify.buy.dataprovider.TrafficRecorder}.
+ * <p>
+ * Requests are matched to the recorded exchanges by method, path and query, falling back to method and path only. Exchanges with
+ * the same request are served in the order they were recorded, the last one being repeated once they run out, so polls and retries
+ * get the same sequence of responses as during the recording. Each response is delayed by the recorded time to headers and its
+ * body is throttled to the recorded transfer time, and the requests that failed during the recording drop their connection.
+ * <p>
+ * Like {@link com.shopify.buy.benchmark.load.ShopServer}, clients must be built with {@link #interceptor()} which sends all their
+ * requests to this server instead of the recorded hosts.
+ */
+public final class ReplayServer {
+
+    // set by the server for the replayed body, or meaningless once the body has been decoded by the recorder
+    private static final Set<String> SKIPPED_RESPONSE_HEADERS = new HashSet<>(Arrays.asList("content-length", "transfer-encoding", "content-encoding", "connection"));
+
+    private static final long THROTTLE_PERIOD_MS = 10;
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final boolean serverTiming;
+
+    private final Map<String, Responses> responsesByRequest = new HashMap<>();
+
+    private final Map<String, Responses> responsesByPath = new HashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong unmatchedRequestCount = new AtomicLong();
+
+    /**
+     * @param archive      the archive to replay, not null
+     * @param serverTiming {@code true} to reproduce the recorded server timing, {@code false} to answer as fast as possible
+     */
+    public ReplayServer(final TrafficArchive archive, final boolean serverTiming) {
+        if (archive == null) {
+            throw new NullPointerException("archive cannot be null");
+        }
+
+        this.serverTiming = serverTiming;
+        for (TrafficArchive.Exchange exchange : archive.getExchanges()) {
+            final HttpUrl url = HttpUrl.parse(exchange.getUrl());
+            if (url == null) {
+                continue;
+            }
+            responses(responsesByRequest, requestKey(exchange.getMethod(), url)).exchanges.add(exchange);
+            responses(responsesByPath, pathKey(exchange.getMethod(), url)).exchanges.add(exchange);
+        }
+    }
+
+    public void start() throws IOException {
+        server.setDispatcher(new ReplayDispatcher());
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * @return the number of requests received so far
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests received so far that matched no recorded exchange, and were answered with a {@code 404}
+     */
+    public long getUnmatchedRequestCount() {
+        return unmatchedRequestCount.get();
+    }
+
+    /**
+     * @return an application interceptor that sends every request of a client to this server, keeping the path and query
+     */
+    public Interceptor interceptor() {
+        final HttpUrl serverUrl = server.url("/");
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                final Request request = chain.request();
+                final HttpUrl url = request.url().newBuilder()
+                    .scheme(serverUrl.scheme())
+                    .host(serverUrl.host())
+                    .port(serverUrl.port())
+                    .build();
+                return chain.proceed(request.newBuilder().url(url).build());
+            }
+        };
+    }
+
+    private static Responses responses(final Map<String, Responses> responses, final String key) {
+        Responses value = responses.get(key);
+        if (value == null) {
+            value = new Responses();
+            responses.put(key, value);
+        }
+        return value;
+    }
+
+    private static String requestKey(final String method, final HttpUrl url) {
+        final String query = url.encodedQuery();
+        return pathKey(method, url) + (query != null ? "?" + query : "");
+    }
+
+    private static String pathKey(final String method, final HttpUrl url) {
+        return method.toUpperCase(Locale.US) + " " + url.encodedPath();
+    }
+
+    private final class ReplayDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            requestCount.incrementAndGet();
+
+            final HttpUrl url = server.url(request.getPath());
+            Responses responses = responsesByRequest.get(requestKey(request.getMethod(), url));
+            if (responses == null) {
+                responses = responsesByPath.get(pathKey(request.getMethod(), url));
+            }
+            if (responses == null) {
+                unmatchedRequestCount.incrementAndGet();
+                return new MockResponse()
+                    .setResponseCode(404)
+                    .setHeader("Content-Type", "application/json; charset=utf-8")
+                    .setBody("{\"errors\":\"Not Found\"}");
+            }
+
+            final TrafficArchive.Exchange exchange = responses.next();
+            if (serverTiming && exchange.getTimeToHeadersMs() > 0) {
+                Thread.sleep(exchange.getTimeToHeadersMs());
+            }
+
+            if (exchange.getError() != null) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+
+            final MockResponse response = new MockResponse()
+                .setStatus("HTTP/1.1 " + exchange.getCode() + " " + (exchange.getMessage() != null ? exchange.getMessage() : ""));
+            if (exchange.getResponseHeaders() != null) {
+                for (Map.Entry<String, List<String>> header : exchange.getResponseHeaders().entrySet()) {
+                    if (SKIPPED_RESPONSE_HEADERS.contains(header.getKey().toLowerCase(Locale.US))) {
+                        continue;
+                    }
+                    for (String value : header.getValue()) {
+                        response.addHeader(header.getKey(), value);
+                    }
+                }
+            }
+            response.setBody(exchange.getResponseBody() != null ? exchange.getResponseBody() : "");
+
+            final long transferMs = exchange.getDurationMs() - exchange.getTimeToHeadersMs();
+            if (serverTiming && transferMs > THROTTLE_PERIOD_MS && exchange.getResponseBodySize() > 0) {
+                final long periods = transferMs / THROTTLE_PERIOD_MS;
+                response.throttleBody(Math.max(1, exchange.getResponseBodySize() / periods), THROTTLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        }
+    }
+
+    /**
+     * The recorded exchanges of a request, served in order.
+     */
+    private static final class Responses {
+
+        private final List<TrafficArchive.Exchange> exchanges = new ArrayList<>();
+
+        private int next;
+
+        synchronized TrafficArchive.Exchange next() {
+            final TrafficArchive.Exchange exchange = exchanges.get(Math.min(next, exchanges.size() - 1));
+            next++;
+            return exchange;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.benchmark.replay;
+
+import com.shopify.buy.dataprovider.TrafficArchive;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Replays a {@link TrafficArchive} end to end: the recorded requests are sent again with their original inter-arrival timing to a
+ * {@link ReplayServer} that answers them with the recorded responses and server timing.
+ * <p>
+ * Each request is sent at its recorded offset, scaled by the time scale, whether or not the previous ones have completed, so that
+ * the concurrency of the recorded session is reproduced. The {@link ReplayReport} compares the replayed latencies with the recorded
+ * ones, per endpoint and for the whole session.
+ */
+public final class TrafficReplay {
+
+    // set by OkHttp for the replayed request
+    private static final Set<String> SKIPPED_REQUEST_HEADERS = new HashSet<>(Arrays.asList("content-length", "transfer-encoding", "host", "connection", "accept-encoding"));
+
+    private static final Set<String> METHODS_WITH_BODY = new HashSet<>(Arrays.asList("POST", "PUT", "PATCH"));
+
+    private static final int MAX_CONCURRENT_REQUESTS = 16;
+
+    private final TrafficArchive archive;
+
+    private final boolean serverTiming;
+
+    private final double timeScale;
+
+    /**
+     * @param archive      the archive to replay, not null
+     * @param serverTiming {@code true} to reproduce the recorded server timing, {@code false} to answer as fast as possible
+     * @param timeScale    the factor applied to the recorded request offsets, {@code 1} for the original timing, {@code 0} to send all
+     *                     the requests at once
+     */
+    public TrafficReplay(final TrafficArchive archive, final boolean serverTiming, final double timeScale) {
+        if (archive == null) {
+            throw new NullPointerException("archive cannot be null");
+        }
+
+        if (timeScale < 0) {
+            throw new IllegalArgumentException("timeScale cannot be negative");
+        }
+
+        this.archive = archive;
+        this.serverTiming = serverTiming;
+        this.timeScale = timeScale;
+    }
+
+    public ReplayReport run() throws IOException, InterruptedException {
+        final ReplayServer server = new ReplayServer(archive, serverTiming);
+        server.start();
+
+        final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(server.interceptor())
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build();
+
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(MAX_CONCURRENT_REQUESTS, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "replay-" + count.incrementAndGet());
+            }
+        });
+
+        final List<TrafficArchive.Exchange> exchanges = archive.getExchanges();
+        final ReplayReport report = new ReplayReport(exchanges);
+        final CountDownLatch completed = new CountDownLatch(exchanges.size());
+        final AtomicLong lastCompletionNanos = new AtomicLong();
+        final long startNanos = System.nanoTime();
+        try {
+            for (final TrafficArchive.Exchange exchange : exchanges) {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        final long requestStartNanos = System.nanoTime();
+                        IOException error = null;
+                        try {
+                            final Response response = client.newCall(request(exchange)).execute();
+                            response.body().bytes();
+                        } catch (IOException e) {
+                            error = e;
+                        }
+                        final long endNanos = System.nanoTime();
+                        report.recordReplayed(exchange, endNanos - requestStartNanos, error);
+                        long last;
+                        do {
+                            last = lastCompletionNanos.get();
+                        } while (endNanos > last && !lastCompletionNanos.compareAndSet(last, endNanos));
+                        completed.countDown();
+                    }
+                }, (long) (exchange.getStartOffsetMs() * timeScale), TimeUnit.MILLISECONDS);
+            }
+            completed.await();
+        } finally {
+            executor.shutdownNow();
+            server.shutdown();
+        }
+
+        report.setReplayedDurationMs(TimeUnit.NANOSECONDS.toMillis(lastCompletionNanos.get() - startNanos), server.getUnmatchedRequestCount());
+        return report;
+    }
+
+    private static Request request(final TrafficArchive.Exchange exchange) {
+        final Request.Builder builder = new Request.Builder().url(exchange.getUrl());
+        String contentType = null;
+        if (exchange.getRequestHeaders() != null) {
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                final String name = header.getKey().toLowerCase(Locale.US);
+                if ("content-type".equals(name) && !header.getValue().isEmpty()) {
+                    contentType = header.getValue().get(0);
+                }
+                if (SKIPPED_REQUEST_HEADERS.contains(name)) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    builder.addHeader(header.getKey(), value);
+                }
+            }
+        }
+
+        RequestBody body = null;
+        if (exchange.getRequestBodySize() >= 0 || METHODS_WITH_BODY.contains(exchange.getMethod())) {
+            final MediaType mediaType = contentType != null ? MediaType.parse(contentType) : null;
+            if (exchange.getRequestBody() != null) {
+                body = RequestBody.create(mediaType, exchange.getRequestBody());
+            } else {
+                // the body was not recorded, send as many bytes to keep the upload time
+                final byte[] filler = new byte[(int) Math.max(0, exchange.getRequestBodySize())];
+                Arrays.fill(filler, (byte) ' ');
+                body = RequestBody.create(mediaType, filler);
+            }
+        }
+        return builder.method(exchange.getMethod(), body).build();
+    }
+
+    /**
+     * Replays an archive and prints the report. Options are given as {@code key=value} arguments: {@code archive} (the path of the
+     * archive, required), {@code serverTiming} ({@code true}) and {@code timeScale} ({@code 1}).
+     */
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("options must be of the form key=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        final String path = options.get("archive");
+        if (path == null) {
+            throw new IllegalArgumentException("archive=<path> is required");
+        }
+
+        final TrafficArchive archive;
+        try (Reader reader = new InputStreamReader(new FileInputStream(path), "UTF-8")) {
+            archive = TrafficArchive.readFrom(reader);
+        }
+
+        final TrafficReplay replay = new TrafficReplay(archive, Boolean.parseBoolean(option(options, "serverTiming", "true")),
+            Double.parseDouble(option(options, "timeScale", "1")));
+
+        System.out.println(replay.run());
+        System.exit(0);
+    }
+
+    private static String option(Map<String, String> options, String key, String defaultValue) {
+        final String value = options.get(key);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,6 @@
+# Proguard rules applied to the apps that use the library.
+
+# Instantiated by com.shopify.buy.Platform through reflection
+-keep class com.shopify.buy.AndroidPlatform {
+    <init>();
+}
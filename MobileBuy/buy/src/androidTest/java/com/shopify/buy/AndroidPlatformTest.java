@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextUtils;
+import android.util.Base64;
+
+import com.shopify.buy.dataprovider.BuyClientUtils;
+import com.shopify.buy.utils.StringUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import rx.android.schedulers.AndroidSchedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AndroidPlatformTest {
+
+    @Test
+    public void testAndroidPlatformIsFound() {
+        assertTrue(Platform.get() instanceof AndroidPlatform);
+        assertEquals("Android", Platform.get().getName());
+        assertEquals(BuildConfig.VERSION_NAME, Platform.get().getVersionName());
+        assertSame(AndroidSchedulers.mainThread(), Platform.get().getDefaultCallbackScheduler());
+    }
+
+    @Test
+    public void testBasicAuthorizationMatchesAndroidBase64() {
+        final String token = "api_key:été";
+        final String expected = "Basic " + Base64.encodeToString(token.getBytes(Charset.forName("UTF-8")), Base64.NO_WRAP);
+        assertEquals(expected, BuyClientUtils.formatBasicAuthorization(token));
+    }
+
+    @Test
+    public void testStringUtilsMatchesTextUtils() {
+        final String[] values = {null, "", "a", "ab"};
+        for (String a : values) {
+            assertEquals(TextUtils.isEmpty(a), StringUtils.isEmpty(a));
+            for (String b : values) {
+                assertEquals(TextUtils.equals(a, b), StringUtils.equals(a, b));
+            }
+        }
+        assertEquals(TextUtils.join(",", Arrays.asList("a", null, "c")), StringUtils.join(",", Arrays.asList("a", null, "c")));
+        assertEquals(TextUtils.join(",", new Object[]{}), StringUtils.join(",", new Object[]{}));
+    }
+}
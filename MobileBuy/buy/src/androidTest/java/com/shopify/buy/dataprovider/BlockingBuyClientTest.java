@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.CustomerToken;
+import com.shopify.buy.model.Shop;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BlockingBuyClientTest {
+
+    private static final String SHOP_JSON = "{\"name\":\"Blocking Shop\",\"domain\":\"blocking.myshopify.com\"}";
+
+    private static final String CUSTOMER_TOKEN_JSON = "{\"customer_access_token\":{\"access_token\":\"renewed\",\"customer_id\":1}}";
+
+    private final AtomicReference<Thread> requestThread = new AtomicReference<>();
+
+    private final AtomicInteger networkFailures = new AtomicInteger();
+
+    private final CountDownLatch shopRequestStarted = new CountDownLatch(1);
+
+    private volatile CountDownLatch shopRequestReleased = new CountDownLatch(0);
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "buy-executor");
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        shopRequestReleased.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBlockingCallsRunOnTheCallingThread() {
+        final BuyClient blockingClient = createBuyClient(null).blocking();
+        networkFailures.set(1);
+
+        final Shop shop = blockingClient.getShop().toBlocking().single();
+
+        assertEquals("Blocking Shop", shop.getName());
+        assertSame(Thread.currentThread(), requestThread.get());
+    }
+
+    @Test
+    public void testBlockingCallbackIsCalledBeforeReturning() {
+        final AtomicReference<Shop> result = new AtomicReference<>();
+        final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+
+        createBuyClient(null).blocking().getShop(new Callback<Shop>() {
+            @Override
+            public void success(Shop response) {
+                callbackThread.set(Thread.currentThread());
+                result.set(response);
+            }
+
+            @Override
+            public void failure(BuyClientError error) {
+                callbackThread.set(Thread.currentThread());
+            }
+        });
+
+        assertNotNull(result.get());
+        assertSame(Thread.currentThread(), callbackThread.get());
+    }
+
+    @Test
+    public void testBlockingViewSharesTheClientState() {
+        final BuyClient buyClient = createBuyClient(null);
+        final BuyClient blockingClient = buyClient.blocking();
+
+        assertSame(blockingClient, buyClient.blocking());
+        assertSame(blockingClient, blockingClient.blocking());
+        assertEquals(buyClient.getShopDomain(), blockingClient.getShopDomain());
+
+        buyClient.setCustomerToken(null);
+        assertEquals(null, blockingClient.getCustomerToken());
+
+        final CheckoutServiceDefault checkoutService = (CheckoutServiceDefault) ((BuyClientDefault) buyClient).checkoutService;
+        final CheckoutServiceDefault blockingCheckoutService = (CheckoutServiceDefault) ((BuyClientDefault) blockingClient).checkoutService;
+        assertSame(checkoutService.updateQueue, blockingCheckoutService.updateQueue);
+        assertSame(checkoutService.stateTracker, blockingCheckoutService.stateTracker);
+        assertSame(checkoutService.shippingRatesPrefetcher, blockingCheckoutService.shippingRatesPrefetcher);
+        assertSame(((BuyClientDefault) buyClient).customerService.customerTokenRenewalRef, ((BuyClientDefault) blockingClient).customerService.customerTokenRenewalRef);
+    }
+
+    @Test
+    public void testRequestsRunOnTheExecutor() {
+        final BuyClient buyClient = createBuyClient(executor);
+        networkFailures.set(1);
+
+        buyClient.getShop().toBlocking().single();
+
+        assertTrue(requestThread.get() != Thread.currentThread());
+        assertEquals("buy-executor", requestThread.get().getName());
+    }
+
+    @Test
+    public void testCancelQueuedRequests() throws InterruptedException {
+        shopRequestReleased = new CountDownLatch(1);
+        final BuyClient buyClient = createBuyClient(null);
+        final TestSubscriber<Shop> runningSubscriber = new TestSubscriber<>();
+        buyClient.getShop().subscribe(runningSubscriber);
+        assertTrue(shopRequestStarted.await(10, TimeUnit.SECONDS));
+
+        final TestSubscriber<Shop> queuedSubscriber = new TestSubscriber<>();
+        buyClient.getShop().subscribe(queuedSubscriber);
+
+        assertEquals(0, buyClient.cancelQueuedRequests(RequestPriority.PREFETCH));
+        assertEquals(1, buyClient.cancelQueuedRequests(RequestPriority.CATALOG));
+        queuedSubscriber.assertError(BuyClientError.class);
+        assertTrue(queuedSubscriber.getOnErrorEvents().get(0).getCause() instanceof CancellationException);
+
+        shopRequestReleased.countDown();
+        runningSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        runningSubscriber.assertNoErrors();
+        assertEquals(0, createBuyClient(executor).cancelQueuedRequests(RequestPriority.CHECKOUT));
+    }
+
+    @Test
+    public void testCustomerTokenRenewalBypassesTheDispatcher() throws InterruptedException {
+        shopRequestReleased = new CountDownLatch(1);
+        final BuyClient buyClient = createBuyClient(null);
+        buyClient.setCustomerToken(new CustomerToken("stale", 1L, null));
+        buyClient.getShop().subscribe(new TestSubscriber<Shop>());
+        assertTrue(shopRequestStarted.await(10, TimeUnit.SECONDS));
+
+        // the only dispatcher slot is held by the shop request until the renewal completes
+        final CustomerToken customerToken = buyClient.renewCustomer().timeout(10, TimeUnit.SECONDS).toBlocking().single();
+
+        assertEquals("renewed", customerToken.getAccessToken());
+        assertEquals("renewed", buyClient.getCustomerToken().getAccessToken());
+    }
+
+    private BuyClient createBuyClient(final ExecutorService executor) {
+        return new BuyClientBuilder()
+            .shopDomain("blocking.myshopify.com")
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("blocking")
+            .callbackScheduler(Schedulers.immediate())
+            .executor(executor)
+            .maxConcurrentRequests(1)
+            .networkRequestRetryPolicy(1, BuyClientBuilder.MIN_NETWORK_RETRY_DELAY, 1)
+            .interceptors(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    if (chain.request().url().encodedPath().endsWith("/customer_token/renew.json")) {
+                        return createResponse(chain, CUSTOMER_TOKEN_JSON);
+                    }
+
+                    requestThread.set(Thread.currentThread());
+                    if (networkFailures.getAndDecrement() > 0) {
+                        throw new IOException("connection reset");
+                    }
+                    shopRequestStarted.countDown();
+                    try {
+                        shopRequestReleased.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return createResponse(chain, SHOP_JSON);
+                }
+            })
+            .build();
+    }
+
+    private static Response createResponse(final Interceptor.Chain chain, final String json) {
+        return new Response.Builder()
+            .request(chain.request())
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(ResponseBody.create(MediaType.parse("application/json"), json))
+            .build();
+    }
+}
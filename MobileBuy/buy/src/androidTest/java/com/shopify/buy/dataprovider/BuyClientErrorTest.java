@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import retrofit2.Response;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class BuyClientErrorTest {
+
+    private static final String ERROR_BODY = "{\"errors\":{\"checkout\":{\"email\":[{\"code\":\"invalid\",\"message\":\"is invalid\"}],"
+        + "\"line_items\":[null,{\"quantity\":[{\"code\":\"not_enough_in_stock\",\"message\":\"Not enough items available\"}]}]}}}";
+
+    @Test
+    public void testErrorBodyIsReadOnFirstAccessOnly() {
+        final CountingResponseBody body = new CountingResponseBody(ERROR_BODY);
+        final BuyClientError error = new BuyClientError(Response.error(422, body));
+        assertEquals(BuyClientError.ERROR_TYPE_API, error.getType());
+        assertEquals(0, body.readCount.get());
+
+        final Map<String, String> emailErrors = error.getErrors("checkout", "email");
+        assertEquals("is invalid", emailErrors.get("invalid"));
+        assertEquals(1, body.readCount.get());
+
+        final List<Map<String, String>> lineItemErrors = error.getLineItemErrors("quantity");
+        assertEquals(2, lineItemErrors.size());
+        assertEquals("Not enough items available", lineItemErrors.get(1).get("not_enough_in_stock"));
+        assertEquals(ERROR_BODY, error.getRetrofitErrorBody());
+        assertEquals(1, body.readCount.get());
+    }
+
+    @Test
+    public void testAcceptedResponsesSignalPolling() {
+        final Response<Void> accepted = Response.success(null, new okhttp3.Response.Builder()
+            .request(new Request.Builder().url("https://example.com/").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(HttpURLConnection.HTTP_ACCEPTED)
+            .build());
+
+        try {
+            new RetrofitSuccessHttpStatusCodeHandler<Response<Void>>(new int[]{HttpURLConnection.HTTP_OK}).call(accepted);
+            fail("Expected a PollingRequiredException");
+        } catch (PollingRequiredException e) {
+            assertSame(accepted, e.getRetrofitResponse());
+            assertEquals(0, e.getStackTrace().length);
+        }
+
+        // once the polling gives up, the caller gets the response as before
+        final TestSubscriber<Void> subscriber = new TestSubscriber<>();
+        Observable.<Void>error(new PollingRequiredException(accepted))
+            .onErrorResumeNext(new BuyClientExceptionHandler<Void>())
+            .subscribe(subscriber);
+        final BuyClientError error = (BuyClientError) subscriber.getOnErrorEvents().get(0);
+        assertNotNull(error.getRetrofitResponse());
+        assertEquals(HttpURLConnection.HTTP_ACCEPTED, error.getRetrofitResponse().code());
+    }
+
+    private static final class CountingResponseBody extends ResponseBody {
+
+        final AtomicInteger readCount = new AtomicInteger();
+
+        private final String content;
+
+        CountingResponseBody(final String content) {
+            this.content = content;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MediaType.parse("application/json");
+        }
+
+        @Override
+        public long contentLength() {
+            return content.length();
+        }
+
+        @Override
+        public BufferedSource source() {
+            readCount.incrementAndGet();
+            return new Buffer().writeUtf8(content);
+        }
+    }
+}
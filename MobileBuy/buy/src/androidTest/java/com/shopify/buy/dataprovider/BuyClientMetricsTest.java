@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.Shop;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.schedulers.Schedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BuyClientMetricsTest {
+
+    private static final String SHOP_JSON = "{\"name\":\"Metrics Shop\",\"domain\":\"metrics.myshopify.com\"}";
+
+    private final RecordingListener listener = new RecordingListener();
+
+    private final AtomicInteger networkFailures = new AtomicInteger();
+
+    private BuyClient buyClient;
+
+    @Before
+    public void setUp() {
+        buyClient = new BuyClientBuilder()
+            .shopDomain("metrics.myshopify.com")
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("metrics")
+            .callbackScheduler(Schedulers.immediate())
+            .networkRequestRetryPolicy(1, BuyClientBuilder.MIN_NETWORK_RETRY_DELAY, 1)
+            .metricsListener(listener)
+            .interceptors(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    if (networkFailures.getAndDecrement() > 0) {
+                        throw new IOException("connection reset");
+                    }
+                    return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(MediaType.parse("application/json"), SHOP_JSON))
+                        .build();
+                }
+            })
+            .build();
+    }
+
+    @Test
+    public void testCallEventsAreReported() {
+        final Shop shop = buyClient.getShop().toBlocking().first();
+        assertEquals("Metrics Shop", shop.getName());
+
+        assertEquals("start getShop", listener.events.get(0));
+        assertEquals("end getShop null", listener.events.get(listener.events.size() - 1));
+        assertTrue(listener.events.contains("attempt getShop GET /meta.json 200 " + SHOP_JSON.length()));
+        assertTrue(listener.events.contains("deserialization getShop Shop"));
+        assertEquals(1, listener.callIds.size());
+    }
+
+    @Test
+    public void testNetworkRetriesAreAttributedToTheCall() {
+        networkFailures.set(1);
+
+        buyClient.getShop().toBlocking().single();
+
+        assertTrue(listener.events.contains("attempt getShop GET /meta.json -1 -1"));
+        assertTrue(listener.events.contains("retry getShop 1 IOException"));
+        assertTrue(listener.events.contains("attempt getShop GET /meta.json 200 " + SHOP_JSON.length()));
+        assertEquals("end getShop null", listener.events.get(listener.events.size() - 1));
+        assertEquals(1, listener.callIds.size());
+    }
+
+    @Test
+    public void testCallbackCallsAreTracked() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        buyClient.getShop(new Callback<Shop>() {
+            @Override
+            public void success(Shop response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void failure(BuyClientError error) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals("start getShop", listener.events.get(0));
+        assertEquals("end getShop null", listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    public void testFailedCallsReportTheError() {
+        networkFailures.set(2);
+
+        try {
+            buyClient.getShop().toBlocking().single();
+        } catch (BuyClientError e) {
+            // expected
+        }
+
+        assertEquals("end getShop BuyClientError", listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    public void testResubscriptionIsTrackedAsANewCall() {
+        networkFailures.set(2);
+
+        final Shop shop = buyClient.getShop().retry(1).toBlocking().single();
+        assertEquals("Metrics Shop", shop.getName());
+
+        assertEquals(2, listener.callIds.size());
+        assertTrue(listener.events.contains("end getShop BuyClientError"));
+        assertTrue(listener.events.contains("attempt getShop GET /meta.json 200 " + SHOP_JSON.length()));
+        assertEquals("end getShop null", listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    public void testNonTrackedMethodsAreDelegated() {
+        assertEquals("metrics.myshopify.com", buyClient.getShopDomain());
+        assertNull(buyClient.getCustomerToken());
+        assertTrue(listener.events.isEmpty());
+    }
+
+    @Test
+    public void testEndpointsDoNotContainIds() {
+        assertEquals("GET /api/checkouts/{id}.json", BuyClientMetrics.endpointOf(request("https://shop.myshopify.com/api/checkouts/f1e2d3c4b5a6.json")));
+        assertEquals("GET /api/apps/{id}/product_listings.json", BuyClientMetrics.endpointOf(request("https://shop.myshopify.com/api/apps/8/product_listings.json?page=2")));
+        assertEquals("GET /meta.json", BuyClientMetrics.endpointOf(request("https://shop.myshopify.com/meta.json")));
+    }
+
+    @Test
+    public void testAggregatorKeepsStatsPerOperationAndEndpoint() {
+        final BuyClientMetricsAggregator aggregator = new BuyClientMetricsAggregator();
+        aggregator.onCallStart(1, "getShop");
+        aggregator.onHttpAttempt(1, "getShop", new BuyClientHttpAttempt("GET /meta.json", "GET", -1, 0, -1, -1, TimeUnit.MILLISECONDS.toNanos(5), new IOException()));
+        aggregator.onRetry(1, "getShop", 1, new IOException(), 500);
+        aggregator.onHttpAttempt(1, "getShop", new BuyClientHttpAttempt("GET /meta.json", "GET", 200, 0, 120, 1000, TimeUnit.MILLISECONDS.toNanos(20), null));
+        aggregator.onCallEnd(1, "getShop", TimeUnit.MILLISECONDS.toNanos(530), null);
+
+        final BuyClientMetricsAggregator.Stats operationStats = aggregator.getOperationStats().get("getShop");
+        assertEquals(1, operationStats.getCount());
+        assertEquals(1, operationStats.getRetryCount());
+        assertEquals(0, operationStats.getErrorCount());
+        assertEquals(530000, operationStats.getLatency().getMaxValue());
+
+        final BuyClientMetricsAggregator.Stats endpointStats = aggregator.getEndpointStats().get("GET /meta.json");
+        assertEquals(2, endpointStats.getCount());
+        assertEquals(1, endpointStats.getErrorCount());
+        assertEquals(Long.valueOf(1), endpointStats.getErrorTypeCounts().get("IOException"));
+        assertEquals(120, endpointStats.getResponseBytes());
+    }
+
+    private static Request request(String url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    private static class RecordingListener implements BuyClientMetricsListener {
+
+        final List<String> events = new ArrayList<>();
+
+        final List<Long> callIds = new ArrayList<>();
+
+        @Override
+        public synchronized void onCallStart(long callId, String operation) {
+            record(callId, "start " + operation);
+        }
+
+        @Override
+        public synchronized void onHttpAttempt(long callId, String operation, BuyClientHttpAttempt attempt) {
+            record(callId, "attempt " + operation + " " + attempt.getEndpoint() + " " + attempt.getStatusCode() + " " + attempt.getResponseBytes());
+        }
+
+        @Override
+        public synchronized void onRetry(long callId, String operation, int retryCount, Throwable reason, long delayMs) {
+            record(callId, "retry " + operation + " " + retryCount + " " + reason.getClass().getSimpleName());
+        }
+
+        @Override
+        public synchronized void onPoll(long callId, String operation, int pollCount, long delayMs) {
+            record(callId, "poll " + operation + " " + pollCount);
+        }
+
+        @Override
+        public synchronized void onQueueWait(long callId, String operation, RequestPriority priority, long waitNanos) {
+            record(callId, "queue " + operation + " " + priority);
+        }
+
+        @Override
+        public synchronized void onDeserialization(long callId, String operation, String responseType, long durationNanos) {
+            record(callId, "deserialization " + operation + " " + responseType);
+        }
+
+        @Override
+        public synchronized void onCallEnd(long callId, String operation, long durationNanos, Throwable error) {
+            record(callId, "end " + operation + " " + (error != null ? error.getClass().getSimpleName() : null));
+        }
+
+        private void record(long callId, String event) {
+            events.add(event);
+            if (!callIds.contains(callId)) {
+                callIds.add(callId);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.shopify.buy.extensions.ShopifyAndroidTestCase;
+import com.shopify.buy.model.CustomerToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.Observable;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Unit tests and per-request microbenchmark for {@link BuyClientRequestInterceptor}
+ */
+@RunWith(AndroidJUnit4.class)
+public class BuyClientRequestInterceptorTest extends ShopifyAndroidTestCase {
+
+    private static final String TAG = BuyClientRequestInterceptorTest.class.getSimpleName();
+
+    private static final String AUTHORIZATION = BuyClientUtils.formatBasicAuthorization("api_key");
+
+    private static final String USER_AGENT = "Mobile Buy SDK Android/test/app";
+
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    private CustomerServiceDefault customerService;
+
+    private CustomerRetrofitService customerRetrofitService;
+
+    private BuyClientRequestInterceptor interceptor;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerService = ((BuyClientDefault) buyClient).customerService;
+        customerRetrofitService = Mockito.mock(CustomerRetrofitService.class);
+
+        for (String fieldName : new String[]{"retrofitService", "renewalRetrofitService"}) {
+            final Field retrofitServiceField = CustomerServiceDefault.class.getDeclaredField(fieldName);
+            retrofitServiceField.setAccessible(true);
+            retrofitServiceField.set(customerService, customerRetrofitService);
+        }
+
+        interceptor = new BuyClientRequestInterceptor(AUTHORIZATION, USER_AGENT, TimeUnit.SECONDS.toMillis(10));
+        interceptor.setCustomerService(customerService);
+    }
+
+    @Test
+    public void testHeadersAreAdded() throws IOException {
+        customerService.setCustomerToken(new CustomerToken("access_token", 1L, null));
+
+        final FakeChain chain = new FakeChain(createRequest(), 200);
+        interceptor.intercept(chain);
+
+        final Request request = chain.proceededRequests.get(0);
+        assertEquals(AUTHORIZATION, request.header(BuyClientRequestInterceptor.AUTHORIZATION_HEADER));
+        assertEquals(USER_AGENT, request.header(BuyClientRequestInterceptor.USER_AGENT_HEADER));
+        assertEquals("access_token", request.header(BuyClientRequestInterceptor.CUSTOMER_TOKEN_HEADER));
+    }
+
+    @Test
+    public void testRequestWithHeadersIsNotRebuilt() throws IOException {
+        customerService.setCustomerToken(null);
+
+        final Request original = createRequest().newBuilder()
+            .header(BuyClientRequestInterceptor.AUTHORIZATION_HEADER, AUTHORIZATION)
+            .header(BuyClientRequestInterceptor.USER_AGENT_HEADER, USER_AGENT)
+            .build();
+        final FakeChain chain = new FakeChain(original, 200);
+        interceptor.intercept(chain);
+
+        assertSame(original, chain.proceededRequests.get(0));
+        assertNull(chain.proceededRequests.get(0).header(BuyClientRequestInterceptor.CUSTOMER_TOKEN_HEADER));
+    }
+
+    @Test
+    public void testUnauthorizedRequestIsReplayedWithRenewedToken() throws IOException {
+        final CustomerToken staleToken = new CustomerToken("stale", 1L, new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+        final CustomerToken renewedToken = new CustomerToken("renewed", 1L, new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+        customerService.setCustomerToken(staleToken);
+
+        Mockito.when(customerRetrofitService.renewCustomerToken(Mockito.anyString(), Mockito.anyLong())).thenReturn(Observable.just(retrofit2.Response.success(renewedToken)));
+
+        final FakeChain chain = new FakeChain(createRequest("POST", "api/customers/1/addresses"), 401);
+        interceptor.intercept(chain);
+
+        assertEquals(2, chain.proceededRequests.size());
+        assertEquals("stale", chain.proceededRequests.get(0).header(BuyClientRequestInterceptor.CUSTOMER_TOKEN_HEADER));
+        assertEquals("renewed", chain.proceededRequests.get(1).header(BuyClientRequestInterceptor.CUSTOMER_TOKEN_HEADER));
+    }
+
+    @Test
+    public void testUnauthorizedRequestWithoutCustomerAuthenticationIsNotReplayed() throws IOException {
+        customerService.setCustomerToken(new CustomerToken("access_token", 1L, new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1))));
+
+        final FakeChain chain = new FakeChain(createRequest(), 401);
+        interceptor.intercept(chain);
+
+        assertEquals(1, chain.proceededRequests.size());
+        Mockito.verify(customerRetrofitService, Mockito.never()).renewCustomerToken(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public void testOnlyCustomerAuthenticatedRequestsRenewTheToken() {
+        assertTrue(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("GET", "api/customers.json")));
+        assertTrue(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("PUT", "api/customers/1.json")));
+        assertTrue(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("GET", "api/customers/1/addresses/2")));
+        assertTrue(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("GET", "api/customers/1/orders.json")));
+
+        assertFalse(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("POST", "api/customers.json")));
+        assertFalse(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("PUT", "api/customers/1/activate.json")));
+        assertFalse(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("POST", "api/customers/recover.json")));
+        assertFalse(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("POST", "api/customers/customer_token.json")));
+        assertFalse(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest("PUT", "api/customers/1/customer_token/renew.json")));
+        assertFalse(BuyClientRequestInterceptor.isCustomerAuthenticated(createRequest()));
+    }
+
+    @Test
+    public void testInterceptorBenchmark() throws IOException {
+        customerService.setCustomerToken(new CustomerToken("access_token", 1L, null));
+
+        final Interceptor legacyInterceptor = new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                final Request original = chain.request();
+                final Request.Builder builder = original.newBuilder().method(original.method(), original.body());
+                builder.header("Authorization", BuyClientUtils.formatBasicAuthorization("api_key"));
+
+                final CustomerToken customerToken = customerService.getCustomerToken();
+                if (customerToken != null && !android.text.TextUtils.isEmpty(customerToken.getAccessToken())) {
+                    builder.header(BuyClientRequestInterceptor.CUSTOMER_TOKEN_HEADER, customerToken.getAccessToken());
+                }
+
+                builder.header("User-Agent", "Mobile Buy SDK Android/" + "test" + "/" + "app");
+                return chain.proceed(builder.build());
+            }
+        };
+
+        // warm up
+        runInterceptor(legacyInterceptor);
+        runInterceptor(interceptor);
+
+        final long legacyNanos = runInterceptor(legacyInterceptor);
+        final long nanos = runInterceptor(interceptor);
+        Log.i(TAG, String.format("%d requests: per-request headers %d us, precomputed headers %d us", BENCHMARK_ITERATIONS, legacyNanos / 1000, nanos / 1000));
+    }
+
+    private long runInterceptor(Interceptor interceptor) throws IOException {
+        final Request request = createRequest();
+        final FakeChain chain = new FakeChain(request, 200);
+        chain.recordRequests = false;
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            interceptor.intercept(chain);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Request createRequest() {
+        return createRequest("GET", "api/checkouts/token.json");
+    }
+
+    private Request createRequest(final String method, final String path) {
+        final RequestBody body = "GET".equals(method) ? null : RequestBody.create(MediaType.parse("application/json"), "{}");
+        return new Request.Builder().url("https://shop.myshopify.com/" + path).method(method, body).build();
+    }
+
+    private static final class FakeChain implements Interceptor.Chain {
+
+        final Request request;
+
+        final int responseCode;
+
+        final List<Request> proceededRequests = new ArrayList<>();
+
+        boolean recordRequests = true;
+
+        FakeChain(Request request, int responseCode) {
+            this.request = request;
+            this.responseCode = responseCode;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            if (recordRequests) {
+                proceededRequests.add(request);
+            }
+
+            return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(responseCode)
+                .body(ResponseBody.create(null, ""))
+                .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.Checkout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.schedulers.Schedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BuyClientTracingTest {
+
+    private static final String CHECKOUT_TOKEN = "c0ffee42";
+
+    private final InMemorySpanExporter exporter = new InMemorySpanExporter();
+
+    private final AtomicInteger pendingPolls = new AtomicInteger(1);
+
+    private final List<String> traceparentHeaders = new CopyOnWriteArrayList<>();
+
+    private final Map<String, String> traceparentByPath = new ConcurrentHashMap<>();
+
+    private final Interceptor fakeServer = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            final Request request = chain.request();
+            final String path = request.url().encodedPath();
+            final String traceparent = request.header(BuyClientTracer.TRACEPARENT_HEADER);
+            if (traceparent != null) {
+                traceparentHeaders.add(traceparent);
+                traceparentByPath.put(request.method() + " " + path, traceparent);
+            }
+
+            if (path.endsWith("/complete.json")) {
+                return response(request, 202, "");
+            } else if (path.endsWith("/processing.json")) {
+                return response(request, pendingPolls.getAndDecrement() > 0 ? 202 : 200, "");
+            } else if (path.endsWith(CHECKOUT_TOKEN + ".json")) {
+                return response(request, 200, "{\"checkout\":{\"token\":\"" + CHECKOUT_TOKEN + "\"}}");
+            } else {
+                return response(request, 200, "{\"name\":\"Tracing Shop\"}");
+            }
+        }
+    };
+
+    private BuyClient buyClient;
+
+    @Before
+    public void setUp() {
+        buyClient = createBuyClient(exporter);
+    }
+
+    @Test
+    public void testCompleteCheckoutSpansFormATree() {
+        final Checkout checkout = buyClient.completeCheckout(null, CHECKOUT_TOKEN).toBlocking().single();
+        assertEquals(CHECKOUT_TOKEN, checkout.getToken());
+
+        final BuyClientSpan root = exporter.getSpan("completeCheckout");
+        assertNotNull(root);
+        assertNull(root.getParentSpanId());
+        assertNull(root.getError());
+
+        final BuyClientSpan submit = exporter.getSpan("completeCheckout.submit");
+        final BuyClientSpan awaitCompletion = exporter.getSpan("completeCheckout.awaitCompletion");
+        final BuyClientSpan fetchCheckout = exporter.getSpan("completeCheckout.fetchCheckout");
+        assertEquals(root.getSpanId(), submit.getParentSpanId());
+        assertEquals(root.getSpanId(), awaitCompletion.getParentSpanId());
+        assertEquals(awaitCompletion.getSpanId(), fetchCheckout.getParentSpanId());
+
+        assertEquals(submit.getSpanId(), exporter.getSpan("POST /api/checkouts/{id}/complete.json").getParentSpanId());
+        assertEquals(awaitCompletion.getSpanId(), exporter.getSpan("GET /api/checkouts/{id}/processing.json").getParentSpanId());
+        assertEquals(fetchCheckout.getSpanId(), exporter.getSpan("GET /api/checkouts/{id}.json").getParentSpanId());
+
+        // one submit, two polls and the final fetch, plus one span per step
+        final List<BuyClientSpan> traceSpans = exporter.getSpans(root.getTraceId());
+        assertEquals(8, traceSpans.size());
+        assertEquals(exporter.getSpans().size(), traceSpans.size());
+
+        // the root span ends last
+        assertEquals(root, traceSpans.get(traceSpans.size() - 1));
+    }
+
+    @Test
+    public void testEveryRequestCarriesTheTraceparentOfItsSpan() {
+        buyClient.completeCheckout(null, CHECKOUT_TOKEN).toBlocking().single();
+
+        final BuyClientSpan submitRequest = exporter.getSpan("POST /api/checkouts/{id}/complete.json");
+        assertEquals(submitRequest.toTraceparent(), traceparentByPath.get("POST /api/checkouts/" + CHECKOUT_TOKEN + "/complete.json"));
+        assertEquals(4, traceparentHeaders.size());
+        for (String traceparent : traceparentHeaders) {
+            assertTrue(traceparent, traceparent.matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01"));
+            assertTrue(traceparent.contains(submitRequest.getTraceId()));
+        }
+    }
+
+    @Test
+    public void testSimpleRequestsGetTheirOwnTrace() {
+        buyClient.getShop().toBlocking().single();
+
+        final BuyClientSpan span = exporter.getSpan("GET /meta.json");
+        assertNull(span.getParentSpanId());
+        assertEquals("200", span.getAttributes().get("http.status_code"));
+        assertEquals(span.toTraceparent(), traceparentHeaders.get(0));
+    }
+
+    @Test
+    public void testNoHeaderWhenTracingIsDisabled() {
+        createBuyClient(null).completeCheckout(null, CHECKOUT_TOKEN).toBlocking().single();
+
+        assertTrue(traceparentHeaders.isEmpty());
+        assertTrue(exporter.getSpans().isEmpty());
+    }
+
+    private BuyClient createBuyClient(BuyClientSpanExporter spanExporter) {
+        return new BuyClientBuilder()
+            .shopDomain("tracing.myshopify.com")
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("tracing")
+            .callbackScheduler(Schedulers.immediate())
+            .spanExporter(spanExporter)
+            .interceptors(fakeServer)
+            .build();
+    }
+
+    private static Response response(Request request, int code, String body) {
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("OK")
+            .body(ResponseBody.create(MediaType.parse("application/json"), body))
+            .build();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.extensions.ProductVariantPrivateAPIs;
+import com.shopify.buy.model.Cart;
+import com.shopify.buy.model.Checkout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class CheckoutPreloaderTest {
+
+    private BuyClient buyClient;
+
+    private TestScheduler scheduler;
+
+    private CheckoutPreloader preloader;
+
+    private Cart cart;
+
+    private ProductVariantPrivateAPIs variant;
+
+    @Before
+    public void setUp() {
+        buyClient = Mockito.mock(BuyClient.class);
+        when(buyClient.createCheckout(any(Checkout.class))).thenReturn(Observable.just(new Checkout("token")));
+        when(buyClient.updateCheckout(any(Checkout.class))).thenAnswer(new Answer<Observable<Checkout>>() {
+            @Override
+            public Observable<Checkout> answer(InvocationOnMock invocation) throws Throwable {
+                return Observable.just((Checkout) invocation.getArguments()[0]);
+            }
+        });
+        when(buyClient.removeProductReservationsFromCheckout("token")).thenReturn(Observable.just(new Checkout("token")));
+
+        scheduler = new TestScheduler();
+        preloader = new CheckoutPreloader(buyClient, 1000, scheduler);
+
+        cart = new Cart();
+        variant = new ProductVariantPrivateAPIs();
+        variant.setId(1L);
+    }
+
+    @Test
+    public void testCheckoutIsCreatedWhenCartBecomesNonEmpty() {
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+
+        verify(buyClient, times(1)).createCheckout(any(Checkout.class));
+    }
+
+    @Test
+    public void testChangesAreSyncedAfterDelay() {
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        verify(buyClient, never()).updateCheckout(any(Checkout.class));
+
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        final ArgumentCaptor<Checkout> update = ArgumentCaptor.forClass(Checkout.class);
+        verify(buyClient, times(1)).updateCheckout(update.capture());
+        assertEquals("token", update.getValue().getToken());
+        assertEquals(3, update.getValue().getLineItems().get(0).getQuantity());
+    }
+
+    @Test
+    public void testAcquireSyncsPendingChanges() {
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+        cart.addVariant(variant);
+
+        final TestSubscriber<Checkout> subscriber = new TestSubscriber<>();
+        preloader.acquireCheckout(cart).subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        assertEquals(2, subscriber.getOnNextEvents().get(0).getLineItems().get(0).getQuantity());
+        verify(buyClient, times(1)).createCheckout(any(Checkout.class));
+
+        // the checkout has been handed over, it is no longer released
+        preloader.release();
+        verify(buyClient, never()).removeProductReservationsFromCheckout(any(String.class));
+    }
+
+    @Test
+    public void testAcquireWithoutPreloadCreatesCheckout() {
+        cart.addVariant(variant);
+
+        final TestSubscriber<Checkout> subscriber = new TestSubscriber<>();
+        preloader.acquireCheckout(cart).subscribe(subscriber);
+
+        subscriber.assertValueCount(1);
+        verify(buyClient, times(1)).createCheckout(any(Checkout.class));
+    }
+
+    @Test
+    public void testEmptiedCartReleasesCheckout() {
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+        cart.clear();
+        preloader.onCartChanged(cart);
+
+        verify(buyClient, times(1)).removeProductReservationsFromCheckout("token");
+    }
+
+    @Test
+    public void testFailedCreationIsRetriedOnNextChange() {
+        when(buyClient.createCheckout(any(Checkout.class))).thenReturn(Observable.<Checkout>error(new RuntimeException()));
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+
+        cart.addVariant(variant);
+        preloader.onCartChanged(cart);
+        verify(buyClient, times(2)).createCheckout(any(Checkout.class));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.Address;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.LineItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+public class CheckoutStateTrackerTest {
+
+    private static final String ACKNOWLEDGED_CHECKOUT_JSON = "{\"token\":\"checkout_token\",\"email\":\"test@test.com\",\"reservation_time\":300,"
+        + "\"discount\":{\"code\":\"SALE\",\"amount\":\"5.00\"},"
+        + "\"shipping_address\":{\"address1\":\"126 York St.\",\"city\":\"Ottawa\",\"country_code\":\"CA\",\"country\":\"Canada\",\"zip\":\"K1N 5T5\"},"
+        + "\"shipping_rate\":{\"id\":\"shopify-Standard-10.00\",\"price\":\"10.00\"},"
+        + "\"line_items\":[{\"variant_id\":1,\"quantity\":2,\"price\":\"1.00\"},{\"variant_id\":2,\"quantity\":1,\"price\":\"3.00\"}]}";
+
+    private CheckoutStateTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new CheckoutStateTracker();
+        tracker.acknowledge(Checkout.fromJson(ACKNOWLEDGED_CHECKOUT_JSON));
+    }
+
+    @Test
+    public void testUnknownCheckoutIsSentInFull() {
+        final Checkout update = new Checkout("other_token");
+        update.setEmail("test@test.com");
+        assertSame(update, tracker.minimalUpdate(update));
+    }
+
+    @Test
+    public void testUnchangedFieldsAreOmitted() {
+        final Checkout update = createFullUpdate();
+        update.setEmail("new@test.com");
+
+        final Checkout minimal = tracker.minimalUpdate(update);
+        assertEquals("checkout_token", minimal.getToken());
+        assertEquals("new@test.com", minimal.getEmail());
+        assertNull(minimal.getShippingAddress());
+        assertNull(minimal.getLineItems());
+        assertNull(minimal.getDiscount());
+        assertNull(minimal.getReservationTime());
+    }
+
+    @Test
+    public void testChangedLineItemQuantityIsSent() {
+        final Checkout update = createFullUpdate();
+        update.getLineItems().set(1, new LineItem(2L, true, 3));
+
+        final Checkout minimal = tracker.minimalUpdate(update);
+        assertNull(minimal.getEmail());
+        assertNotNull(minimal.getLineItems());
+        assertEquals(2, minimal.getLineItems().size());
+    }
+
+    @Test
+    public void testClearedLineItemPropertiesAreSent() {
+        tracker.acknowledge(Checkout.fromJson(ACKNOWLEDGED_CHECKOUT_JSON.replace("{\"variant_id\":1,", "{\"variant_id\":1,\"properties\":{\"engraving\":\"Hi\"},")));
+        final Checkout update = createFullUpdate();
+        update.setEmail("new@test.com");
+
+        final Checkout minimal = tracker.minimalUpdate(update);
+        assertNotNull(minimal.getLineItems());
+        assertEquals(2, minimal.getLineItems().size());
+    }
+
+    @Test
+    public void testChangedAddressIsSent() {
+        final Checkout update = createFullUpdate();
+        update.getShippingAddress().setZip("K1N 5T6");
+
+        final Checkout minimal = tracker.minimalUpdate(update);
+        assertNotNull(minimal.getShippingAddress());
+        assertNull(minimal.getLineItems());
+    }
+
+    @Test
+    public void testInvalidatedCheckoutIsSentInFull() {
+        final Checkout update = createFullUpdate();
+        tracker.invalidate("checkout_token");
+        assertSame(update, tracker.minimalUpdate(update));
+    }
+
+    @Test
+    public void testUnchangedUpdateIsSentInFull() {
+        final Checkout update = createFullUpdate();
+        assertSame(update, tracker.minimalUpdate(update));
+    }
+
+    @Test
+    public void testAcknowledgedCheckoutMutatedByCallerIsSent() {
+        final Checkout checkout = Checkout.fromJson(ACKNOWLEDGED_CHECKOUT_JSON);
+        tracker.acknowledge(checkout);
+        checkout.setEmail("new@test.com");
+
+        final Checkout minimal = tracker.minimalUpdate(checkout);
+        assertEquals("new@test.com", minimal.getEmail());
+        assertNull(minimal.getLineItems());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStateIsEvicted() {
+        final CheckoutStateTracker tracker = new CheckoutStateTracker(2);
+        tracker.acknowledge(new Checkout("token1"));
+        tracker.acknowledge(new Checkout("token2"));
+        tracker.getAcknowledged("token1");
+        tracker.acknowledge(new Checkout("token3"));
+
+        assertNotNull(tracker.getAcknowledged("token1"));
+        assertNull(tracker.getAcknowledged("token2"));
+        assertNotNull(tracker.getAcknowledged("token3"));
+    }
+
+    private Checkout createFullUpdate() {
+        final Checkout update = new Checkout("checkout_token");
+        update.setEmail("test@test.com");
+        update.setReservationTime(300);
+        update.setDiscountCode("SALE");
+
+        final Address address = new Address();
+        address.setAddress1("126 York St.");
+        address.setCity("Ottawa");
+        address.setCountryCode("CA");
+        address.setZip("K1N 5T5");
+        update.setShippingAddress(address);
+
+        final List<LineItem> lineItems = new ArrayList<>();
+        lineItems.add(new LineItem(2L, true, 1));
+        lineItems.add(new LineItem(1L, true, 2));
+        update.setLineItems(lineItems);
+        return update;
+    }
+}
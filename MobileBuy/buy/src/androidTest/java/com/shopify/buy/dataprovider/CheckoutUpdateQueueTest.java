@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.Checkout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CheckoutUpdateQueueTest {
+
+    private List<Checkout> sentCheckouts;
+
+    private List<PublishSubject<Checkout>> responses;
+
+    private Func1<Checkout, Observable<Checkout>> updateFunction;
+
+    private CheckoutUpdateQueue queue;
+
+    @Before
+    public void setUp() {
+        sentCheckouts = new ArrayList<>();
+        responses = new ArrayList<>();
+        queue = new CheckoutUpdateQueue();
+        updateFunction = new Func1<Checkout, Observable<Checkout>>() {
+            @Override
+            public Observable<Checkout> call(final Checkout checkout) {
+                final PublishSubject<Checkout> response = PublishSubject.create();
+                sentCheckouts.add(checkout);
+                responses.add(response);
+                return response;
+            }
+        };
+    }
+
+    @Test
+    public void testUpdatesWhileInFlightAreCoalesced() {
+        final TestSubscriber<Checkout> first = subscribe(updateWithEmail("token", "first@test.com"));
+        final TestSubscriber<Checkout> second = subscribe(updateWithEmail("token", "second@test.com"));
+
+        final Checkout third = new Checkout("token");
+        third.setDiscountCode("SALE");
+        final TestSubscriber<Checkout> thirdSubscriber = subscribe(third);
+
+        assertEquals(1, sentCheckouts.size());
+
+        complete(0, new Checkout("token"));
+        assertEquals(2, sentCheckouts.size());
+        assertEquals("second@test.com", sentCheckouts.get(1).getEmail());
+        assertEquals("SALE", sentCheckouts.get(1).getDiscount().getCode());
+        first.assertNoTerminalEvent();
+
+        final Checkout finalResponse = new Checkout("token");
+        complete(1, finalResponse);
+        assertEquals(2, sentCheckouts.size());
+
+        for (TestSubscriber<Checkout> subscriber : new TestSubscriber[]{first, second, thirdSubscriber}) {
+            subscriber.assertNoErrors();
+            subscriber.assertValue(finalResponse);
+        }
+    }
+
+    @Test
+    public void testDifferentCheckoutsAreNotSerialized() {
+        subscribe(updateWithEmail("token1", "first@test.com"));
+        subscribe(updateWithEmail("token2", "second@test.com"));
+
+        assertEquals(2, sentCheckouts.size());
+    }
+
+    @Test
+    public void testFailedUpdateIsMergedIntoPendingOne() {
+        final TestSubscriber<Checkout> first = subscribe(updateWithEmail("token", "first@test.com"));
+
+        final Checkout second = new Checkout("token");
+        second.setDiscountCode("SALE");
+        subscribe(second);
+
+        responses.get(0).onError(new BuyClientError(new IOException()));
+        assertEquals(2, sentCheckouts.size());
+        assertEquals("first@test.com", sentCheckouts.get(1).getEmail());
+        assertEquals("SALE", sentCheckouts.get(1).getDiscount().getCode());
+
+        final Checkout response = new Checkout("token");
+        complete(1, response);
+        first.assertNoErrors();
+        first.assertValue(response);
+    }
+
+    @Test
+    public void testRejectedUpdateIsNotMergedIntoPendingOne() {
+        final TestSubscriber<Checkout> first = subscribe(updateWithEmail("token", "invalid"));
+
+        final Checkout second = new Checkout("token");
+        second.setDiscountCode("SALE");
+        final TestSubscriber<Checkout> secondSubscriber = subscribe(second);
+
+        final RuntimeException error = new RuntimeException();
+        responses.get(0).onError(error);
+        first.assertError(error);
+        assertEquals(2, sentCheckouts.size());
+        assertNull(sentCheckouts.get(1).getEmail());
+        assertEquals("SALE", sentCheckouts.get(1).getDiscount().getCode());
+
+        final Checkout response = new Checkout("token");
+        complete(1, response);
+        secondSubscriber.assertValue(response);
+    }
+
+    @Test
+    public void testUnsubscribingCancelsTheRequest() {
+        final TestSubscriber<Checkout> subscriber = subscribe(updateWithEmail("token", "first@test.com"));
+        assertTrue(responses.get(0).hasObservers());
+
+        subscriber.unsubscribe();
+        assertFalse(responses.get(0).hasObservers());
+
+        // queue is released, next update goes out right away
+        subscribe(updateWithEmail("token", "second@test.com"));
+        assertEquals(2, sentCheckouts.size());
+    }
+
+    @Test
+    public void testRequestIsNotCancelledWhileAnUpdateWaitsForIt() {
+        final TestSubscriber<Checkout> first = subscribe(updateWithEmail("token", "first@test.com"));
+        final TestSubscriber<Checkout> second = subscribe(updateWithEmail("token", "second@test.com"));
+
+        first.unsubscribe();
+        assertTrue(responses.get(0).hasObservers());
+
+        complete(0, new Checkout("token"));
+        assertEquals(2, sentCheckouts.size());
+
+        final Checkout response = new Checkout("token");
+        complete(1, response);
+        second.assertValue(response);
+        first.assertNoValues();
+    }
+
+    @Test
+    public void testUnsubscribedPendingUpdateIsDropped() {
+        final TestSubscriber<Checkout> first = subscribe(updateWithEmail("token", "first@test.com"));
+        final TestSubscriber<Checkout> second = subscribe(updateWithEmail("token", "second@test.com"));
+
+        second.unsubscribe();
+
+        final Checkout response = new Checkout("token");
+        complete(0, response);
+        assertEquals(1, sentCheckouts.size());
+        first.assertValue(response);
+    }
+
+    @Test
+    public void testErrorIsDeliveredWhenNothingIsPending() {
+        final TestSubscriber<Checkout> subscriber = subscribe(updateWithEmail("token", "first@test.com"));
+        final RuntimeException error = new RuntimeException();
+        responses.get(0).onError(error);
+        subscriber.assertError(error);
+
+        // queue is released, next update goes out right away
+        subscribe(updateWithEmail("token", "second@test.com"));
+        assertEquals(2, sentCheckouts.size());
+    }
+
+    @Test
+    public void testMergeKeepsOlderFieldsNotSetOnNewer() {
+        final Checkout older = updateWithEmail("token", "older@test.com");
+        older.setReservationTime(300);
+        final Checkout newer = new Checkout("token");
+        newer.setReservationTime(0);
+
+        final Checkout merged = CheckoutUpdateQueue.merge(older, newer);
+        assertEquals("older@test.com", merged.getEmail());
+        assertEquals(Long.valueOf(0), merged.getReservationTime());
+        assertNull(merged.getShippingAddress());
+    }
+
+    private Checkout updateWithEmail(final String token, final String email) {
+        final Checkout checkout = new Checkout(token);
+        checkout.setEmail(email);
+        return checkout;
+    }
+
+    private TestSubscriber<Checkout> subscribe(final Checkout checkout) {
+        final TestSubscriber<Checkout> subscriber = new TestSubscriber<>();
+        queue.enqueue(checkout, updateFunction).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private void complete(final int index, final Checkout response) {
+        responses.get(index).onNext(response);
+        responses.get(index).onCompleted();
+    }
+}
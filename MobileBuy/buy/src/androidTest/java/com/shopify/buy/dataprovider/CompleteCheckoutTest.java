@@ -5,7 +5,6 @@ import android.support.test.runner.AndroidJUnit4;
 import com.shopify.buy.extensions.ShopifyAndroidTestCase;
 import com.shopify.buy.model.Checkout;
 import com.shopify.buy.model.PaymentToken;
-import com.shopify.buy.model.internal.CheckoutWrapper;
 
 import org.apache.http.HttpStatus;
 import org.junit.Test;
@@ -33,7 +32,6 @@ import static junit.framework.Assert.fail;
 public class CompleteCheckoutTest extends ShopifyAndroidTestCase {
 
     Checkout checkout;
-    CheckoutWrapper checkoutWrapper;
 
     CheckoutRetrofitService checkoutRetrofitService;
 
@@ -44,7 +42,6 @@ public class CompleteCheckoutTest extends ShopifyAndroidTestCase {
         super.setUp();
 
         checkout = Checkout.fromJson("{\"id\":100, \"channel\":\"mobile_app\",\"payment_due\":\"payment_due\",\"token\":\"checkout_token\"}");
-        checkoutWrapper = new CheckoutWrapper(checkout);
 
         checkoutRetrofitService = Mockito.mock(CheckoutRetrofitService.class);
 
@@ -106,7 +103,7 @@ public class CompleteCheckoutTest extends ShopifyAndroidTestCase {
         final Observable<Response<Void>> getCheckoutCompletionStatusResponse = Observable.create(pollingResponseOnSubscribe);
         Mockito.when(checkoutRetrofitService.getCheckoutCompletionStatus(Mockito.anyString())).thenReturn(getCheckoutCompletionStatusResponse);
 
-        final Observable<Response<CheckoutWrapper>> getCheckoutResponse = Observable.just(Response.success(checkoutWrapper));
+        final Observable<Response<Checkout>> getCheckoutResponse = Observable.just(Response.success(checkout));
         Mockito.when(checkoutRetrofitService.getCheckout(Mockito.anyString())).thenReturn(getCheckoutResponse);
 
         final CountDownLatch latch = new CountDownLatch(1);
@@ -0,0 +1,215 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Base64;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManagerFactory;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+/**
+ * Unit tests for {@link ConnectionPrewarmer}, measuring the time to first byte of a request against a local TLS server with and
+ * without pre-warming.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConnectionPrewarmerTest {
+
+    private static final String TAG = ConnectionPrewarmerTest.class.getSimpleName();
+
+    // self-signed certificate for localhost, keytool -genkeypair -keyalg RSA -dname CN=localhost -storetype PKCS12 -storepass password
+    private static final String KEYSTORE_BASE64 =
+        "MIIJkQIBAzCCCUoGCSqGSIb3DQEHAaCCCTsEggk3MIIJMzCCBW8GCSqGSIb3DQEHAaCCBWAEggVcMIIFWDCCBVQGCyqGSIb3DQEM" +
+        "CgECoIIE+zCCBPcwKQYKKoZIhvcNAQwBAzAbBBTjkzvF+hbprXbZAs+7tZMy8o2heAIDAMNQBIIEyME/BIEHl/zcq4VTFd3pjm/I" +
+        "pumXbkd4gsRSylc5e20+iCh/yomgAmUPg4EWQnJo/+SHlO3rk1mIK4HjnfMO8B8GO93Jf7lFhd4JyYjcy9waqVnogcm8qKNR9pZH" +
+        "quODTsuVvk2BZ88Zs0qtPC4MLB5xlJ5AZjiVXkpEv17JfgynRkzKZkJZr0A1mMD7E4ZqufW2iQBb4fxRCi6dHjIvixl7gYhxP41S" +
+        "xBsUAIShHrfROhHi9ocONvE0ylgqyf7reK4Ld22isPRQqUlen03XdNse36rZ95klJQYgBR0ibUF2aWWkPLhOwTjeJn9qgw3TM0SA" +
+        "W94q9QYmB1C5CTVwMIdQeU+lK7sem6N61uxQjzCet7pLHm5rpDzurFmUkg+IEblKVC0CSVO093ZGHUkCWbqHmXvQDjfm3XEXYEyh" +
+        "+qwXWOS3pCKlCgwd8iHn665fswOLEPyr6XG17QzBOFc6j1cziTvJQ7d1e5METS0TgUZI+0qNaFT8FXbNAJ7E6DFb8JCx6tv1cPEk" +
+        "7T/w4YvEsTlC9A9OBgSTcdV9ze7XmoBO3zLe/HAn4uySBW2ABBgKEwblt77aevrgwFWiRkImySp+yRWF3yLLTT0p4D4HHxKeCYbO" +
+        "paaGc53qpI7i4jsJxhhsYgyjZMTTVP+9EeRN4jFiD9gNGYVq2+RVgKGGEbMfj622vzr1jT3NBxALqJcTVotHv0LB4v/3+1Jgc7E0" +
+        "jLh2FGa2RVM60mxWEPtwdE61vMBMtAzy5PgNh5ttAgGT8IPMV5aalGgot2Swh+JJT4FUo+j/v3apCtUjEB2VVUo3t1HRNUKXmn1t" +
+        "frGXtOxvC8ppiw50BJjnMFSdv0iHtxo/Gx6EXTPafQEF8TM22BJwGyJx1rQfOi94II4ZESEq4NelqbclsbN/tEJjfg/I/qDVjmxZ" +
+        "BAo28usKm8t4K6+cR+0g6IsGpZqXiB2qHZXY+wD4FLozH7F4Jf7+hbUVFHpR1uBKxE6Dv0ywOAWXWUPHNLTgaS/YTmSX48EQx0cZ" +
+        "LbpYpCpHcpeL8LIl3xVlPLSEk934BvhAs++DiUg3TOq0mdyp0PEaAN8dY3fNB3yvfdGl5kU5KeADlIOSnETYlu5FHuY3l5tVewaV" +
+        "u89l4xHb9Ra+BYofT7PS7kOC4Ria8qK3Enqe173sOA5zU5myShB8rmc1+CL34DTkMnBq6TitnW1gqA1T3qqWYjKXG/7Sgw3riIiW" +
+        "pWCFvwJpyKrpetQ+mY4vgk9t/1A1a74X3xQ0JxTABHPlX0POaN7FLSen6I59J/S2QghMKhIipnhAbrpHThS9IKHupqIpg4i9Ib4Q" +
+        "2/hUY9oXA7vbFF/4LBQnwKnRhuvCFq9Yt+OHWjqCqYw2SZjwyX7ilo0Jicpaaqb7WcOxaEY3xEC9TknSCzyl/yiZLHC8hULgi3Xa" +
+        "e99+7jxgWgTtgQqHE0XjFPSrHoukJbfmyuSxssxrq9/e0BIjWad+6MnjXVQ6HdIt/QMR+vMRELydfeydYnnPvGhUz38CQ8xbZ3NI" +
+        "AAUqLyUKTKqEMWN+Uxvi+ait4UhawKUUCXb8+WjJMEKFlVBQoxJfvM1mp7+7yBv404NrJFLNa+sgz55inl7GZuN/IKrqX4gAEjq/" +
+        "PKtu3FcB1zFGMCEGCSqGSIb3DQEJFDEUHhIAbABvAGMAYQBsAGgAbwBzAHQwIQYJKoZIhvcNAQkVMRQEElRpbWUgMTc5MjQyNDQ3" +
+        "MzQzNDCCA7wGCSqGSIb3DQEHBqCCA60wggOpAgEAMIIDogYJKoZIhvcNAQcBMCkGCiqGSIb3DQEMAQYwGwQU6JPEnG3ee8YxiGEA" +
+        "+6zpCqUKCXYCAwDDUICCA2hFQtsherp3oqysgUKDU74XT+dh69oMZTKbs2gpu3fI0RRdx/0I+jXfOKZMq4RktUdd3w3+S0QLFQ8n" +
+        "G6hciEDKSvc1DpA9MqsE+Fedx5VLYOJirArx52HcLoFbLnL4OearNj2eNa+jS5Ksl3aIt+gRc+mzc4RoFcfRgy4A4rNku3x4tx7F" +
+        "RNXkJZ0TfYZtbVPn9OZvUudzmiGuW+QvuouMIjxDL8fc7m80OfhmuZS5VpB7YqrejaWc21+M0pCx5YdgFle1AbLL/qjBeiWvod9M" +
+        "qdKVtJKEN9tcKpQOxUgQa4e/QD1bJPSXMW2rviEYqtiaSn3sLxBxf1ZVi2nYckV5fkVD20mEbKK667tnneYeVawIOs1YiNYf0x5A" +
+        "xx4O5Szf2FTdwh5ISy5AWEHTTKVNyd/4i6H/1r7w8nEdtzsrvXVP1Ho43JYNZdAiEj/a8C+cuY7fw1iYoCdML2V4G946cBSNisjs" +
+        "a1el6eq2iHTYgqvPDBteLZa8fUfwEQs63eSscVRbTNJnqUbUm2znG66Rkpz2U+J16Qp2j7AjYa9lP2PnTYWCnYPHU05ZH74GqBly" +
+        "IIYKnIEQmApPY8B6ei1enPkTNaNuNEu2zKGCpPr1nEe7EVRpRvsW1nfc+wpCBrknU09TF1LpDjiiEtHDSN2D4KyBDD5s7LBHuCBX" +
+        "6Ho1cOGgKatkN6NrSYMnkzIMcQqMJIjtd8w0O17Y7o/yvvNrwCJ+IiAXhdm0Tu4mEKsdzCL8GgE4mgZ0zVmAHxpspOhxyUPHz18+" +
+        "+I/bK4s/w74sC8C2D9/zQEPEXL6xeDimxwSfDakyHpGJkCBjei068qSImDkhd8MIuPfYv+MiwvqkfryybtJwkjVFncnrAb+xobkI" +
+        "apAqBrA3NCsegIoNU1uTOKXijKyg9DzA7LvbSV8M80rdGHBgw2xLgJm8V2OrqIPYJUe6viDk+iWX035uIyo30EWJEyL76kORhUqK" +
+        "ulnI5Few2HqbAnsjw+jp5p1g3L7h2VtIflGDOQk1nuuhzA1hyB/McVlUQthvJ93If415qBBbyjH4a7mGeg6Mwilz62VWqKwIPict" +
+        "c2Kbzy7RugVyTSmqNs9p0kXa/4im3RoHe1G+gkyrAE8bzjHkBw6/QbKp+Kf46XmtcKiYe52Yr5QOY+xmqVPQozA+MCEwCQYFKw4D" +
+        "AhoFAAQUimZrnhw3QxLoXHnZ5oxl62nPQJ4EFNzXV0uCNv3WeiwnLZCxMVcqZYgMAgMBhqA=";
+    private static final char[] KEYSTORE_PASSWORD = "password".toCharArray();
+
+    private MockWebServer server;
+
+    private SSLContext sslContext;
+
+    @Before
+    public void setUp() throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(new ByteArrayInputStream(Base64.decode(KEYSTORE_BASE64, Base64.DEFAULT)), KEYSTORE_PASSWORD);
+
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+
+        sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+
+        server = new MockWebServer();
+        server.useHttps(sslContext.getSocketFactory(), false);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testTimeToFirstByte() throws Exception {
+        server.enqueue(new MockResponse().setBody("cold"));
+        final OkHttpClient coldClient = createHttpClient();
+        final long coldNanos = timeToFirstByte(coldClient);
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse().setBody("warm"));
+        final OkHttpClient warmClient = createHttpClient();
+        new ConnectionPrewarmer(warmClient, server.url("/")).prewarm();
+        assertEquals("HEAD", server.takeRequest().getMethod());
+        awaitIdleConnection(warmClient);
+
+        final long warmNanos = timeToFirstByte(warmClient);
+
+        // the request reuses the pre-warmed connection
+        final RecordedRequest request = server.takeRequest();
+        assertEquals("GET", request.getMethod());
+        assertEquals(1, request.getSequenceNumber());
+
+        Log.i(TAG, String.format("time to first byte: cold %d us, pre-warmed %d us", coldNanos / 1000, warmNanos / 1000));
+    }
+
+    @Test
+    public void testHostIsNotPrewarmedTwice() throws Exception {
+        server.enqueue(new MockResponse());
+        final OkHttpClient httpClient = createHttpClient();
+        final ConnectionPrewarmer prewarmer = new ConnectionPrewarmer(httpClient, server.url("/"));
+
+        prewarmer.prewarm();
+        prewarmer.prewarm();
+        server.takeRequest();
+        awaitIdleConnection(httpClient);
+
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testInterceptorsAreNotUsed() throws Exception {
+        server.enqueue(new MockResponse());
+        final OkHttpClient httpClient = createHttpClient().newBuilder()
+            .addInterceptor(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    throw new IOException("interceptor should not be called");
+                }
+            })
+            .build();
+
+        new ConnectionPrewarmer(httpClient, server.url("/checkouts/token.json")).prewarm();
+
+        final RecordedRequest request = server.takeRequest();
+        assertEquals("/", request.getPath());
+    }
+
+    private OkHttpClient createHttpClient() {
+        return new OkHttpClient.Builder()
+            .sslSocketFactory(sslContext.getSocketFactory())
+            .hostnameVerifier(new HostnameVerifier() {
+                @Override
+                public boolean verify(String hostname, SSLSession session) {
+                    return true;
+                }
+            })
+            .build();
+    }
+
+    private long timeToFirstByte(OkHttpClient httpClient) throws IOException {
+        final long start = System.nanoTime();
+        final Response response = httpClient.newCall(new Request.Builder().url(server.url("/products.json")).build()).execute();
+        final long elapsed = System.nanoTime() - start;
+        response.body().close();
+        return elapsed;
+    }
+
+    private void awaitIdleConnection(OkHttpClient httpClient) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (httpClient.connectionPool().idleConnectionCount() == 0) {
+            if (System.nanoTime() > deadline) {
+                fail("Pre-warmed connection was not pooled");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.extensions.ShopifyAndroidTestCase;
+import com.shopify.buy.model.CustomerToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Response;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CustomerTokenRenewalTest extends ShopifyAndroidTestCase {
+
+    private static final long RENEWAL_TIMEOUT_MS = 100;
+
+    private CustomerServiceDefault customerService;
+
+    private CustomerRetrofitService customerRetrofitService;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerService = ((BuyClientDefault) buyClient).customerService;
+        customerRetrofitService = Mockito.mock(CustomerRetrofitService.class);
+
+        for (String fieldName : new String[]{"retrofitService", "renewalRetrofitService"}) {
+            final Field retrofitServiceField = CustomerServiceDefault.class.getDeclaredField(fieldName);
+            retrofitServiceField.setAccessible(true);
+            retrofitServiceField.set(customerService, customerRetrofitService);
+        }
+    }
+
+    @Test
+    public void testRenewalIsDueShortlyBeforeExpiry() {
+        assertTrue(customerService.isCustomerTokenRenewalDue(createToken("token", TimeUnit.MINUTES.toMillis(1))));
+        assertFalse(customerService.isCustomerTokenRenewalDue(createToken("token", TimeUnit.HOURS.toMillis(1))));
+        assertFalse(customerService.isCustomerTokenRenewalDue(createToken("token", -TimeUnit.MINUTES.toMillis(1))));
+        assertFalse(customerService.isCustomerTokenRenewalDue(new CustomerToken("token", 1L, null)));
+    }
+
+    @Test
+    public void testConcurrentRenewalsShareOneRequest() {
+        final CustomerToken staleToken = createToken("stale", TimeUnit.MINUTES.toMillis(1));
+        final CustomerToken renewedToken = createToken("renewed", TimeUnit.DAYS.toMillis(1));
+        customerService.setCustomerToken(staleToken);
+
+        final PublishSubject<Response<CustomerToken>> renewResponse = PublishSubject.create();
+        Mockito.when(customerRetrofitService.renewCustomerToken(Mockito.anyString(), Mockito.anyLong())).thenReturn(renewResponse);
+
+        final TestSubscriber<CustomerToken> subscriber1 = new TestSubscriber<>();
+        final TestSubscriber<CustomerToken> subscriber2 = new TestSubscriber<>();
+        customerService.renewCustomerTokenShared().subscribe(subscriber1);
+        customerService.renewCustomerTokenShared().subscribe(subscriber2);
+        Mockito.verify(customerRetrofitService, Mockito.times(1)).renewCustomerToken(Mockito.anyString(), Mockito.anyLong());
+
+        renewResponse.onNext(Response.success(renewedToken));
+        renewResponse.onCompleted();
+
+        subscriber1.assertValue(renewedToken);
+        subscriber2.assertValue(renewedToken);
+        assertSame(renewedToken, customerService.getCustomerToken());
+
+        // once done, the next renewal sends a new request
+        customerService.renewCustomerTokenShared().subscribe(new TestSubscriber<CustomerToken>());
+        Mockito.verify(customerRetrofitService, Mockito.times(2)).renewCustomerToken(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public void testTokenAlreadyReplacedIsNotRenewedAgain() {
+        final CustomerToken staleToken = createToken("stale", TimeUnit.MINUTES.toMillis(1));
+        final CustomerToken renewedToken = createToken("renewed", TimeUnit.DAYS.toMillis(1));
+        customerService.setCustomerToken(renewedToken);
+
+        assertSame(renewedToken, customerService.renewCustomerTokenBlocking(staleToken, RENEWAL_TIMEOUT_MS));
+        Mockito.verify(customerRetrofitService, Mockito.never()).renewCustomerToken(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public void testFailedRenewalReturnsNull() {
+        final CustomerToken staleToken = createToken("stale", TimeUnit.MINUTES.toMillis(1));
+        customerService.setCustomerToken(staleToken);
+
+        Mockito.when(customerRetrofitService.renewCustomerToken(Mockito.anyString(), Mockito.anyLong()))
+            .thenReturn(Observable.<Response<CustomerToken>>error(new IOException()));
+
+        assertEquals(null, customerService.renewCustomerTokenBlocking(staleToken, RENEWAL_TIMEOUT_MS));
+        assertSame(staleToken, customerService.getCustomerToken());
+    }
+
+    @Test
+    public void testRenewalThatDoesNotCompleteTimesOut() {
+        final CustomerToken staleToken = createToken("stale", TimeUnit.MINUTES.toMillis(1));
+        customerService.setCustomerToken(staleToken);
+
+        final PublishSubject<Response<CustomerToken>> renewResponse = PublishSubject.create();
+        Mockito.when(customerRetrofitService.renewCustomerToken(Mockito.anyString(), Mockito.anyLong())).thenReturn(renewResponse);
+
+        assertEquals(null, customerService.renewCustomerTokenBlocking(staleToken, RENEWAL_TIMEOUT_MS));
+        assertSame(staleToken, customerService.getCustomerToken());
+    }
+
+    private CustomerToken createToken(String accessToken, long expiresInMs) {
+        return new CustomerToken(accessToken, 1L, new Date(System.currentTimeMillis() + expiresInMs));
+    }
+}
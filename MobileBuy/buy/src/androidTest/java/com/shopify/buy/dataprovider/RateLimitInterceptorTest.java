@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static junit.framework.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class RateLimitInterceptorTest {
+
+    private static final String SHOP_DOMAIN = "shop.myshopify.com";
+
+    private static final String CATALOG_URL = "https://" + SHOP_DOMAIN + "/api/apps/1/product_listings.json";
+
+    private static final String CHECKOUT_URL = "https://" + SHOP_DOMAIN + "/api/checkouts/token.json";
+
+    @Test
+    public void testRequestsAreNotPacedUntilLimitIsKnown() throws IOException {
+        final FakeTicker ticker = new FakeTicker();
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor(SHOP_DOMAIN, 2, ticker);
+        final FakeChain chain = new FakeChain(CATALOG_URL);
+        for (int i = 0; i < 100; i++) {
+            chain.enqueue(200, null, null);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            interceptor.intercept(chain);
+        }
+        assertEquals(Collections.<Long>emptyList(), ticker.waits);
+        assertEquals(0d, interceptor.getLevel());
+    }
+
+    @Test
+    public void testCatalogLeavesRoomForCheckout() throws IOException {
+        final FakeTicker ticker = new FakeTicker();
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor(SHOP_DOMAIN, 20, ticker);
+        final FakeChain catalogChain = new FakeChain(CATALOG_URL);
+        catalogChain.enqueue(200, "31/40", null);
+        catalogChain.enqueue(200, null, null);
+        interceptor.intercept(catalogChain);
+
+        final FakeChain checkoutChain = new FakeChain(CHECKOUT_URL);
+        checkoutChain.enqueue(200, null, null);
+        interceptor.intercept(checkoutChain);
+        assertEquals(Collections.<Long>emptyList(), ticker.waits);
+
+        // catalog requests stop at 30 calls out of 40, so 3 calls must leak first
+        interceptor.intercept(catalogChain);
+        assertEquals(Collections.singletonList(TimeUnit.MILLISECONDS.toNanos(150)), ticker.waits);
+        assertEquals(30d, interceptor.getLevel(), 1e-6);
+    }
+
+    @Test
+    public void testThrottledRequestIsRetriedAfterRetryAfter() throws IOException {
+        final FakeTicker ticker = new FakeTicker();
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor(SHOP_DOMAIN, 1000, ticker);
+        final FakeChain chain = new FakeChain(CHECKOUT_URL);
+        chain.enqueue(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS, null, "0.2");
+        chain.enqueue(200, "40/40", null);
+
+        final Response response = interceptor.intercept(chain);
+
+        assertEquals(200, response.code());
+        assertEquals(2, chain.proceededRequests.size());
+        assertEquals(Collections.singletonList(TimeUnit.MILLISECONDS.toNanos(200)), ticker.waits);
+    }
+
+    @Test
+    public void testThrottledRetriesAreBounded() throws IOException {
+        final FakeTicker ticker = new FakeTicker();
+        final RateLimitInterceptor interceptor = new RateLimitInterceptor(SHOP_DOMAIN, 1000, ticker);
+        final FakeChain chain = new FakeChain(CHECKOUT_URL);
+        for (int i = 0; i <= RateLimitInterceptor.MAX_THROTTLED_RETRY_COUNT; i++) {
+            chain.enqueue(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS, null, "0");
+        }
+
+        assertEquals(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS, interceptor.intercept(chain).code());
+        assertEquals(RateLimitInterceptor.MAX_THROTTLED_RETRY_COUNT + 1, chain.proceededRequests.size());
+        // every 429 fills the bucket, each retry waits for one call to leak
+        assertEquals(RateLimitInterceptor.MAX_THROTTLED_RETRY_COUNT, ticker.waits.size());
+    }
+
+    @Test
+    public void testRetryAfterParsing() {
+        assertEquals(2000, RateLimitInterceptor.parseRetryAfterMs("2.0"));
+        assertEquals(RateLimitInterceptor.DEFAULT_RETRY_AFTER_MS, RateLimitInterceptor.parseRetryAfterMs("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertEquals(RateLimitInterceptor.DEFAULT_RETRY_AFTER_MS, RateLimitInterceptor.parseRetryAfterMs(null));
+    }
+
+    /**
+     * Time only moves when a request waits, by the whole wait.
+     */
+    private static final class FakeTicker extends Ticker {
+
+        final List<Long> waits = new ArrayList<>();
+
+        long nanos;
+
+        @Override
+        long nanoTime() {
+            return nanos;
+        }
+
+        @Override
+        void timedWait(Object monitor, long timeoutNanos) {
+            waits.add(timeoutNanos);
+            nanos += timeoutNanos;
+        }
+    }
+
+    private static final class FakeChain implements Interceptor.Chain {
+
+        final Request request;
+
+        final LinkedList<Response.Builder> responses = new LinkedList<>();
+
+        final List<Request> proceededRequests = new ArrayList<>();
+
+        FakeChain(String url) {
+            this.request = new Request.Builder().url(url).build();
+        }
+
+        void enqueue(int code, String callLimit, String retryAfter) {
+            final Response.Builder builder = new Response.Builder()
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(null, ""));
+            if (callLimit != null) {
+                builder.header(RateLimitInterceptor.CALL_LIMIT_HEADER, callLimit);
+            }
+            if (retryAfter != null) {
+                builder.header(RateLimitInterceptor.RETRY_AFTER_HEADER, retryAfter);
+            }
+            responses.add(builder);
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            proceededRequests.add(request);
+            return responses.removeFirst().request(request).build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+}
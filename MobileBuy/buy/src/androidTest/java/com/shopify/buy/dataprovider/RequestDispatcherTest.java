@@ -0,0 +1,290 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RequestDispatcherTest {
+
+    private static final String SHOP_DOMAIN = "shop.myshopify.com";
+
+    private final List<String> executionOrder = Collections.synchronizedList(new ArrayList<String>());
+
+    private final CountDownLatch workerReleased = new CountDownLatch(1);
+
+    private RequestDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new RequestDispatcher(1);
+    }
+
+    @Test
+    public void testQueuedRequestsRunByPriority() throws InterruptedException {
+        final TestSubscriber<String> blockingSubscriber = dispatchBlockingRequest();
+
+        final TestSubscriber<String> prefetchSubscriber = subscribe(RequestPriority.PREFETCH, "prefetch");
+        final TestSubscriber<String> catalogSubscriber = subscribe(RequestPriority.CATALOG, "catalog");
+        final TestSubscriber<String> checkoutSubscriber = subscribe(RequestPriority.CHECKOUT, "checkout");
+        final TestSubscriber<String> secondCatalogSubscriber = subscribe(RequestPriority.CATALOG, "catalog 2");
+        assertEquals(4, dispatcher.getQueuedCount());
+
+        workerReleased.countDown();
+        blockingSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        prefetchSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+        checkoutSubscriber.assertValue("checkout");
+        catalogSubscriber.assertValue("catalog");
+        secondCatalogSubscriber.assertValue("catalog 2");
+        prefetchSubscriber.assertValue("prefetch");
+        assertEquals("[blocking, checkout, catalog, catalog 2, prefetch]", executionOrder.toString());
+    }
+
+    @Test
+    public void testCancelQueuedRequests() {
+        final TestSubscriber<String> blockingSubscriber = dispatchBlockingRequest();
+
+        final TestSubscriber<String> prefetchSubscriber = subscribe(RequestPriority.PREFETCH, "prefetch");
+        final TestSubscriber<String> catalogSubscriber = subscribe(RequestPriority.CATALOG, "catalog");
+        final TestSubscriber<String> customerSubscriber = subscribe(RequestPriority.CUSTOMER, "customer");
+
+        assertEquals(2, dispatcher.cancelQueued(RequestPriority.CATALOG));
+        prefetchSubscriber.assertError(CancellationException.class);
+        catalogSubscriber.assertError(CancellationException.class);
+
+        workerReleased.countDown();
+        blockingSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        customerSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        customerSubscriber.assertValue("customer");
+        assertEquals("[blocking, customer]", executionOrder.toString());
+    }
+
+    @Test
+    public void testUnsubscribedRequestsAreDropped() {
+        final TestSubscriber<String> blockingSubscriber = dispatchBlockingRequest();
+
+        subscribe(RequestPriority.CATALOG, "catalog").unsubscribe();
+        final TestSubscriber<String> checkoutSubscriber = subscribe(RequestPriority.CHECKOUT, "checkout");
+        assertEquals(1, dispatcher.getQueuedCount());
+
+        workerReleased.countDown();
+        blockingSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        checkoutSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        assertEquals("[blocking, checkout]", executionOrder.toString());
+    }
+
+    @Test
+    public void testRequestsIssuedFromAWorkerRunOnIt() {
+        final Observable<String> chain = dispatcher
+            .dispatch(request("first"), RequestPriority.CATALOG, null)
+            .flatMap(new Func1<String, Observable<String>>() {
+                @Override
+                public Observable<String> call(String first) {
+                    // the worker is busy with the first request, the second one would never run if it was queued
+                    return dispatcher.dispatch(request("second"), RequestPriority.CATALOG, null);
+                }
+            });
+
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        chain.subscribe(subscriber);
+        subscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        subscriber.assertValue("second");
+        assertEquals("[first, second]", executionOrder.toString());
+    }
+
+    @Test
+    public void testRequestsWaitingForTheCallLimitDoNotHoldAWorker() {
+        final RateLimitInterceptor rateLimiter = new RateLimitInterceptor(SHOP_DOMAIN, 20);
+        rateLimiter.onResponse(createRawResponse(200, "31/40", null));
+        dispatcher = new RequestDispatcher(1, rateLimiter);
+
+        // catalog requests stop at 30 calls out of 40, this one waits for 2 calls to leak
+        final TestSubscriber<String> catalogSubscriber = subscribe(RequestPriority.CATALOG, "catalog");
+        final TestSubscriber<String> checkoutSubscriber = subscribe(RequestPriority.CHECKOUT, "checkout");
+
+        checkoutSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        catalogSubscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        catalogSubscriber.assertValue("catalog");
+        assertEquals("[checkout, catalog]", executionOrder.toString());
+        assertEquals(0, dispatcher.getQueuedCount());
+    }
+
+    @Test
+    public void testThrottledRequestIsRetriedAfterRetryAfter() throws InterruptedException {
+        final TestScheduler scheduler = new TestScheduler();
+        final CountDownLatch delayScheduled = new CountDownLatch(1);
+        final Ticker ticker = new Ticker() {
+            @Override
+            long nanoTime() {
+                return TimeUnit.MILLISECONDS.toNanos(scheduler.now());
+            }
+        };
+        final RateLimitInterceptor rateLimiter = new RateLimitInterceptor(SHOP_DOMAIN, 1000, ticker);
+        dispatcher = new RequestDispatcher(1, rateLimiter, ticker, new Scheduler() {
+            @Override
+            public Worker createWorker() {
+                final Worker worker = scheduler.createWorker();
+                return new Worker() {
+                    @Override
+                    public Subscription schedule(Action0 action) {
+                        return worker.schedule(action);
+                    }
+
+                    @Override
+                    public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+                        final Subscription subscription = worker.schedule(action, delayTime, unit);
+                        delayScheduled.countDown();
+                        return subscription;
+                    }
+
+                    @Override
+                    public void unsubscribe() {
+                        worker.unsubscribe();
+                    }
+
+                    @Override
+                    public boolean isUnsubscribed() {
+                        return worker.isUnsubscribed();
+                    }
+                };
+            }
+        });
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final Observable<Response<String>> request = Observable.defer(new Func0<Observable<Response<String>>>() {
+            @Override
+            public Observable<Response<String>> call() {
+                if (attempts.incrementAndGet() == 1) {
+                    final okhttp3.Response rawResponse = createRawResponse(RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS, null, "0.2");
+                    rateLimiter.onResponse(rawResponse);
+                    return Observable.just(Response.<String>error(ResponseBody.create(null, ""), rawResponse));
+                }
+                return Observable.just(Response.success("checkout"));
+            }
+        });
+
+        final TestSubscriber<Response<String>> subscriber = new TestSubscriber<>();
+        dispatcher.dispatch(request, RequestPriority.CHECKOUT, null).subscribe(subscriber);
+        assertTrue(delayScheduled.await(10, TimeUnit.SECONDS));
+
+        // the task is put back in the queue once the Retry-After delay has elapsed, not before
+        scheduler.advanceTimeBy(199, TimeUnit.MILLISECONDS);
+        assertEquals(1, attempts.get());
+        assertEquals(1, dispatcher.getQueuedCount());
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+        subscriber.assertNoErrors();
+        assertEquals("checkout", subscriber.getOnNextEvents().get(0).body());
+        assertEquals(2, attempts.get());
+    }
+
+    /**
+     * Occupies the only worker until {@link #workerReleased} is counted down.
+     */
+    private TestSubscriber<String> dispatchBlockingRequest() {
+        final CountDownLatch workerBusy = new CountDownLatch(1);
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        dispatcher.dispatch(Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                executionOrder.add("blocking");
+                workerBusy.countDown();
+                try {
+                    workerReleased.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return Observable.error(e);
+                }
+                return Observable.just("blocking");
+            }
+        }), RequestPriority.CHECKOUT, null).subscribe(subscriber);
+
+        try {
+            assertTrue(workerBusy.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return subscriber;
+    }
+
+    private TestSubscriber<String> subscribe(final RequestPriority priority, final String name) {
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        dispatcher.dispatch(request(name), priority, null).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private okhttp3.Response createRawResponse(final int code, final String callLimit, final String retryAfter) {
+        final okhttp3.Response.Builder builder = new okhttp3.Response.Builder()
+            .request(new Request.Builder().url("https://" + SHOP_DOMAIN + "/").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(code);
+        if (callLimit != null) {
+            builder.header(RateLimitInterceptor.CALL_LIMIT_HEADER, callLimit);
+        }
+        if (retryAfter != null) {
+            builder.header(RateLimitInterceptor.RETRY_AFTER_HEADER, retryAfter);
+        }
+        return builder.build();
+    }
+
+    private Observable<String> request(final String name) {
+        return Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                executionOrder.add(name);
+                return Observable.just(name);
+            }
+        });
+    }
+}
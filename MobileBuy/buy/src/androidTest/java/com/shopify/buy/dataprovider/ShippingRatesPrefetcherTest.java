@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.ShippingRate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class ShippingRatesPrefetcherTest {
+
+    private List<PublishSubject<List<ShippingRate>>> requests;
+
+    private ShippingRatesPrefetcher prefetcher;
+
+    @Before
+    public void setUp() {
+        requests = new ArrayList<>();
+        prefetcher = new ShippingRatesPrefetcher(new Func1<String, Observable<List<ShippingRate>>>() {
+            @Override
+            public Observable<List<ShippingRate>> call(final String checkoutToken) {
+                final PublishSubject<List<ShippingRate>> request = PublishSubject.create();
+                requests.add(request);
+                return request;
+            }
+        });
+    }
+
+    @Test
+    public void testCheckoutWithoutShippingAddressIsNotPrefetched() {
+        prefetcher.onCheckoutAcknowledged(createCheckout(null, 1));
+        assertEquals(0, requests.size());
+        assertNull(prefetcher.getShippingRates("checkout_token"));
+    }
+
+    @Test
+    public void testPrefetchedRatesAreServed() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        assertEquals(1, requests.size());
+
+        final List<ShippingRate> shippingRates = new ArrayList<>();
+        requests.get(0).onNext(shippingRates);
+        requests.get(0).onCompleted();
+
+        final TestSubscriber<List<ShippingRate>> subscriber = new TestSubscriber<>();
+        prefetcher.getShippingRates("checkout_token").subscribe(subscriber);
+        subscriber.assertValue(shippingRates);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void testSameFingerprintIsNotFetchedAgain() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void testChangedQuantityOrAddressRefetches() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 2));
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T6", 2));
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void testRemovedShippingAddressInvalidates() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        prefetcher.onCheckoutAcknowledged(createCheckout(null, 1));
+        assertNull(prefetcher.getShippingRates("checkout_token"));
+    }
+
+    @Test
+    public void testEnqueuedUpdateChangingTheFingerprintInvalidates() {
+        final Checkout acknowledged = createCheckout("K1N 5T5", 1);
+        prefetcher.onCheckoutAcknowledged(acknowledged);
+
+        final Checkout emailUpdate = new Checkout("checkout_token");
+        emailUpdate.setEmail("test@test.com");
+        prefetcher.onUpdateEnqueued(acknowledged, emailUpdate);
+        assertNotNull(prefetcher.getShippingRates("checkout_token"));
+
+        prefetcher.onUpdateEnqueued(acknowledged, createCheckout("K1N 5T5", 2));
+        assertNull(prefetcher.getShippingRates("checkout_token"));
+    }
+
+    @Test
+    public void testEnqueuedUpdateWithoutAcknowledgedStateInvalidates() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        prefetcher.onUpdateEnqueued(null, createCheckout("K1N 5T5", 1));
+        assertNull(prefetcher.getShippingRates("checkout_token"));
+    }
+
+    @Test
+    public void testFailedPrefetchIsDropped() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        assertNotNull(prefetcher.getShippingRates("checkout_token"));
+
+        requests.get(0).onError(new RuntimeException());
+        assertNull(prefetcher.getShippingRates("checkout_token"));
+    }
+
+    @Test
+    public void testCompletedCheckoutIsNotPrefetched() {
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1));
+        prefetcher.onCheckoutAcknowledged(createCheckout("K1N 5T5", 1, ",\"order\":{\"id\":1}"));
+        assertEquals(1, requests.size());
+        assertNull(prefetcher.getShippingRates("checkout_token"));
+    }
+
+    private Checkout createCheckout(final String zip, final int quantity) {
+        return createCheckout(zip, quantity, "");
+    }
+
+    private Checkout createCheckout(final String zip, final int quantity, final String extraFields) {
+        final String shippingAddress = zip != null ? ",\"shipping_address\":{\"city\":\"Ottawa\",\"country_code\":\"CA\",\"zip\":\"" + zip + "\"}" : "";
+        return Checkout.fromJson("{\"token\":\"checkout_token\"" + shippingAddress
+            + ",\"line_items\":[{\"variant_id\":1,\"requires_shipping\":true,\"quantity\":" + quantity + "}]" + extraFields + "}");
+    }
+}
@@ -5,8 +5,6 @@ import android.support.test.runner.AndroidJUnit4;
 import com.shopify.buy.extensions.ShopifyAndroidTestCase;
 import com.shopify.buy.model.Checkout;
 import com.shopify.buy.model.ShippingRate;
-import com.shopify.buy.model.internal.CheckoutWrapper;
-import com.shopify.buy.model.internal.ShippingRatesWrapper;
 
 import org.apache.http.HttpStatus;
 import org.junit.Test;
@@ -39,11 +37,10 @@ import static junit.framework.Assert.fail;
 public class ShippingRatesTest extends ShopifyAndroidTestCase {
 
     Checkout checkout;
-    CheckoutWrapper checkoutWrapper;
 
     CheckoutRetrofitService checkoutRetrofitService;
 
-    ShippingRatesWrapper shippingRatesWrapper;
+    List<ShippingRate> shippingRates;
 
     // keep track of any tasks that we want to force a cancel on for testing
     CancellableTask taskToCancel;
@@ -54,7 +51,6 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         super.setUp();
 
         checkout = Checkout.fromJson("{\"id\":100, \"channel\":\"mobile_app\",\"payment_due\":\"payment_due\",\"token\":\"checkout_token\"}");
-        checkoutWrapper = new CheckoutWrapper(checkout);
 
         checkoutRetrofitService = Mockito.mock(CheckoutRetrofitService.class);
 
@@ -62,8 +58,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         retrofitServiceField.setAccessible(true);
         retrofitServiceField.set((((BuyClientDefault) buyClient).checkoutService), checkoutRetrofitService);
 
-        shippingRatesWrapper = Mockito.mock(ShippingRatesWrapper.class);
-        Mockito.when(shippingRatesWrapper.getContent()).thenReturn(new ArrayList<ShippingRate>());
+        shippingRates = new ArrayList<>();
     }
 
     @Test
@@ -85,7 +80,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
 
         // Create an observable that will return one IOException, then a valid response
         final ExceptionOnSubscribe exceptionOnSubscribe = new ExceptionOnSubscribe(retryCount, new IOException());
-        final Observable<Response<ShippingRatesWrapper>> response = Observable.create(exceptionOnSubscribe);
+        final Observable<Response<List<ShippingRate>>> response = Observable.create(exceptionOnSubscribe);
 
         Mockito.when(checkoutRetrofitService.getShippingRates(Mockito.anyString())).thenReturn(response);
 
@@ -115,7 +110,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         final int retryCount = 2;
 
         // Create an observable that will return one IOException, then a valid response
-        final Observable<Response<ShippingRatesWrapper>> response = Observable.create(new ExceptionOnSubscribe(retryCount, new IOException()));
+        final Observable<Response<List<ShippingRate>>> response = Observable.create(new ExceptionOnSubscribe(retryCount, new IOException()));
 
         Mockito.when(checkoutRetrofitService.getShippingRates(Mockito.anyString())).thenReturn(response);
 
@@ -141,7 +136,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
 
     @Test
     public void testFetchingShippingRatesWithNonIOError() throws InterruptedException{
-        final Observable<Response<ShippingRatesWrapper>> response = Observable.error(new BuyClientError(Response.error(HttpStatus.SC_PRECONDITION_FAILED, new ResponseBody() {
+        final Observable<Response<List<ShippingRate>>> response = Observable.error(new BuyClientError(Response.error(HttpStatus.SC_PRECONDITION_FAILED, new ResponseBody() {
             @Override
             public MediaType contentType() {
                 return null;
@@ -184,7 +179,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         final int retryCount = 5;
 
         final ResponseOnSubscribe responseOnSubscribe = new ResponseOnSubscribe(retryCount, HttpStatus.SC_ACCEPTED);
-        final Observable<Response<ShippingRatesWrapper>> response = Observable.create(responseOnSubscribe);
+        final Observable<Response<List<ShippingRate>>> response = Observable.create(responseOnSubscribe);
         Mockito.when(checkoutRetrofitService.getShippingRates(Mockito.anyString())).thenReturn(response);
 
         final CountDownLatch latch = new CountDownLatch(1);
@@ -211,7 +206,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         final int retryCount = 5;
 
         ResponseOnSubscribe responseOnSubscribe  = new ResponseOnSubscribe(retryCount, HttpStatus.SC_ACCEPTED);
-        final Observable<Response<ShippingRatesWrapper>> response = Observable.create(responseOnSubscribe);
+        final Observable<Response<List<ShippingRate>>> response = Observable.create(responseOnSubscribe);
         Mockito.when(checkoutRetrofitService.getShippingRates(Mockito.anyString())).thenReturn(response);
 
         taskCancelLatch = new CountDownLatch(1);
@@ -236,7 +231,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         assertEquals(1, responseOnSubscribe.getCallCount());
     }
 
-    private class ExceptionOnSubscribe implements Observable.OnSubscribe<Response<ShippingRatesWrapper>> {
+    private class ExceptionOnSubscribe implements Observable.OnSubscribe<Response<List<ShippingRate>>> {
 
         final private int retryCount;
         private int callCount;
@@ -249,12 +244,12 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         }
 
         @Override
-        public void call(Subscriber<? super Response<ShippingRatesWrapper>> subscriber) {
+        public void call(Subscriber<? super Response<List<ShippingRate>>> subscriber) {
             if (callCount < retryCount) {
                 callCount++;
                 subscriber.onError(throwable);
             } else {
-                subscriber.onNext(Response.success(shippingRatesWrapper));
+                subscriber.onNext(Response.success(shippingRates));
             }
         }
 
@@ -263,7 +258,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         }
     }
 
-    private class ResponseOnSubscribe implements Observable.OnSubscribe<Response<ShippingRatesWrapper>> {
+    private class ResponseOnSubscribe implements Observable.OnSubscribe<Response<List<ShippingRate>>> {
 
         final private int retryCount;
         private int callCount;
@@ -290,7 +285,7 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
         }
 
         @Override
-        public void call(Subscriber<? super Response<ShippingRatesWrapper>> subscriber) {
+        public void call(Subscriber<? super Response<List<ShippingRate>>> subscriber) {
             if ( callCount < retryCount) {
 
                 if (taskToCancel != null) {
@@ -301,10 +296,10 @@ public class ShippingRatesTest extends ShopifyAndroidTestCase {
 
                 callCount++;
 
-                Response<ShippingRatesWrapper> response = Response.success(null, this.response);
+                Response<List<ShippingRate>> response = Response.success(null, this.response);
                 subscriber.onNext(response);
             } else {
-                subscriber.onNext(Response.success(shippingRatesWrapper));
+                subscriber.onNext(Response.success(shippingRates));
             }
         }
 
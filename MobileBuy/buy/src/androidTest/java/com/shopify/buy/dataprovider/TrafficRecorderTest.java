@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.model.Shop;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.schedulers.Schedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TrafficRecorderTest {
+
+    private static final String SHOP_DOMAIN = "recorder.myshopify.com";
+
+    private static final String SHOP_JSON = "{\"name\":\"Recorder Shop\",\"domain\":\"recorder.myshopify.com\"}";
+
+    private final AtomicInteger networkFailures = new AtomicInteger();
+
+    private final TrafficRecorder recorder = new TrafficRecorder(SHOP_DOMAIN);
+
+    private final Interceptor server = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            if (networkFailures.getAndDecrement() > 0) {
+                throw new IOException("connection reset");
+            }
+            return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .header("X-Request-Id", "abc")
+                .header("Set-Cookie", "session=secret")
+                .body(ResponseBody.create(MediaType.parse("application/json"), SHOP_JSON))
+                .build();
+        }
+    };
+
+    private BuyClient buyClient;
+
+    @Before
+    public void setUp() {
+        buyClient = new BuyClientBuilder()
+            .shopDomain(SHOP_DOMAIN)
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("recorder")
+            .callbackScheduler(Schedulers.immediate())
+            .networkRequestRetryPolicy(1, BuyClientBuilder.MIN_NETWORK_RETRY_DELAY, 1)
+            .interceptors(recorder, server)
+            .build();
+    }
+
+    @Test
+    public void testExchangesAreRecorded() {
+        final Shop shop = buyClient.getShop().toBlocking().first();
+        assertEquals("Recorder Shop", shop.getName());
+
+        final TrafficArchive archive = recorder.getArchive();
+        assertEquals(1, archive.getExchanges().size());
+
+        final TrafficArchive.Exchange exchange = archive.getExchanges().get(0);
+        assertEquals(0, exchange.getStartOffsetMs());
+        assertEquals("GET /meta.json", exchange.getEndpoint());
+        assertEquals("https://recorder.myshopify.com/meta.json", exchange.getUrl());
+        assertEquals(200, exchange.getCode());
+        assertEquals(SHOP_JSON, exchange.getResponseBody());
+        assertEquals(SHOP_JSON.length(), exchange.getResponseBodySize());
+        assertEquals(-1, exchange.getRequestBodySize());
+        assertEquals("abc", exchange.getResponseHeaders().get("X-Request-Id").get(0));
+        assertTrue(exchange.getDurationMs() >= exchange.getTimeToHeadersMs());
+        assertNull(exchange.getError());
+    }
+
+    @Test
+    public void testSensitiveHeadersAreRedacted() {
+        buyClient.getShop().toBlocking().first();
+
+        final TrafficArchive.Exchange exchange = recorder.getArchive().getExchanges().get(0);
+        assertEquals(TrafficRecorder.REDACTED, exchange.getRequestHeaders().get("Authorization").get(0));
+        assertEquals(TrafficRecorder.REDACTED, exchange.getResponseHeaders().get("Set-Cookie").get(0));
+    }
+
+    @Test
+    public void testFailedAttemptsAreRecorded() {
+        networkFailures.set(1);
+
+        buyClient.getShop().toBlocking().first();
+
+        final TrafficArchive archive = recorder.getArchive();
+        assertEquals(2, archive.getExchanges().size());
+        assertEquals(-1, archive.getExchanges().get(0).getCode());
+        assertNotNull(archive.getExchanges().get(0).getError());
+        assertEquals(200, archive.getExchanges().get(1).getCode());
+    }
+
+    @Test
+    public void testBodiesSentToOtherHostsAreNotRecorded() throws IOException {
+        final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(recorder)
+            .addInterceptor(server)
+            .build();
+
+        final String card = "{\"credit_card\":{\"number\":\"4242424242424242\"}}";
+        client.newCall(new Request.Builder()
+            .url("https://elb.deposit.shopifycs.com/sessions")
+            .post(RequestBody.create(MediaType.parse("application/json"), card))
+            .build()).execute().body().close();
+
+        final TrafficArchive.Exchange exchange = recorder.getArchive().getExchanges().get(0);
+        assertNull(exchange.getRequestBody());
+        assertEquals(card.length(), exchange.getRequestBodySize());
+    }
+
+    @Test
+    public void testArchiveRoundTrip() {
+        buyClient.getShop().toBlocking().first();
+        buyClient.getShop().toBlocking().first();
+
+        final StringWriter writer = new StringWriter();
+        recorder.writeTo(writer);
+        final TrafficArchive archive = TrafficArchive.readFrom(new StringReader(writer.toString()));
+
+        assertEquals(2, archive.getExchanges().size());
+        assertEquals(SHOP_JSON, archive.getExchanges().get(1).getResponseBody());
+        assertEquals("GET", archive.getExchanges().get(1).getMethod());
+        assertTrue(archive.getExchanges().get(1).getStartOffsetMs() >= archive.getExchanges().get(0).getStartOffsetMs());
+        assertTrue(archive.getDurationMs() >= archive.getExchanges().get(1).getStartOffsetMs());
+
+        recorder.clear();
+        assertEquals(0, recorder.getArchive().getExchanges().size());
+    }
+}
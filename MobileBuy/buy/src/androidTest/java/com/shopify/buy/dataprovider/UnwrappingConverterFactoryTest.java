@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.shopify.buy.model.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class UnwrappingConverterFactoryTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private UnwrappingConverterFactory factory;
+
+    @Before
+    public void setUp() {
+        final Gson gson = BuyClientUtils.createDefaultGson();
+        factory = new UnwrappingConverterFactory(gson, GsonConverterFactory.create(gson));
+    }
+
+    @Test
+    public void testPayloadIsDecodedAfterSkippedKeys() throws Exception {
+        final List<Collection> collections = convert("getCollectionPage", new TypeToken<List<Collection>>() {}.getType(),
+            "{\"meta\":{\"page\":[1,2,{\"a\":null}]},\"collection_listings\":[{\"collection_id\":1,\"title\":\"first\"},{\"collection_id\":2,\"title\":\"second\"}],\"tail\":true}");
+
+        assertEquals(2, collections.size());
+        assertEquals("first", collections.get(0).getTitle());
+        assertEquals(Long.valueOf(2), collections.get(1).getCollectionId());
+    }
+
+    @Test
+    public void testFirstModeStopsParsingAfterFirstElement() throws Exception {
+        final Collection collection = convert("getCollectionByHandle", Collection.class,
+            "{\"collection_listings\":[{\"collection_id\":1,\"handle\":\"frontpage\"},{\"collection_id\":2, this is never parsed");
+
+        assertEquals("frontpage", collection.getHandle());
+    }
+
+    @Test
+    public void testEmptyOrMissingPayloadIsNull() throws Exception {
+        assertNull(convert("getCollectionByHandle", Collection.class, "{\"collection_listings\":[]}"));
+        assertNull(convert("getCollectionByHandle", Collection.class, "{\"collection_listings\":null}"));
+        assertNull(convert("getCollectionByHandle", Collection.class, "{\"errors\":{}}"));
+    }
+
+    @Test
+    public void testMethodsWithoutUnwrapUseDelegate() {
+        final Converter<ResponseBody, ?> converter = factory.responseBodyConverter(Collection.class, new Annotation[0], null);
+        assertFalse(converter instanceof UnwrappingConverterFactory.UnwrappingConverter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(final String methodName, final Type type, final String json) throws IOException {
+        Annotation[] annotations = null;
+        for (Method method : ProductRetrofitService.class.getDeclaredMethods()) {
+            if (method.getName().equals(methodName)) {
+                annotations = method.getAnnotations();
+            }
+        }
+        final Converter<ResponseBody, ?> converter = factory.responseBodyConverter(type, annotations, null);
+        return (T) converter.convert(ResponseBody.create(JSON, json));
+    }
+}
@@ -10,11 +10,18 @@ import com.shopify.buy.data.MockResponseGenerator;
 import com.shopify.buy.data.TestData;
 import com.shopify.buy.dataprovider.BuyClient;
 import com.shopify.buy.dataprovider.BuyClientBuilder;
+import com.shopify.buy.dataprovider.TrafficRecorder;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.rules.TestName;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.HttpUrl;
@@ -35,6 +42,12 @@ public class ShopifyAndroidTestCase {
      */
     private static final boolean GENERATE_MOCK_RESPONSES = false;
 
+    /**
+     * Records the traffic of each test against the real shop into {@code traffic-<test name>.json}, in the external files directory
+     * of the test app. See {@link TrafficRecorder}.
+     */
+    private static final boolean RECORD_TRAFFIC = false;
+
     protected static final boolean USE_MOCK_RESPONSES = TextUtils.isEmpty(BuildConfig.SHOP_DOMAIN)
         || TextUtils.isEmpty(BuildConfig.API_KEY)
         || TextUtils.isEmpty(BuildConfig.APP_ID);
@@ -46,6 +59,8 @@ public class ShopifyAndroidTestCase {
 
     protected BuyClient buyClient;
 
+    private TrafficRecorder trafficRecorder;
+
     @Before
     public void setUp() throws Exception {
         context = InstrumentationRegistry.getContext();
@@ -68,6 +83,21 @@ public class ShopifyAndroidTestCase {
         System.setProperty("dexmaker.dexcache", context.getCacheDir().getPath());
     }
 
+    @After
+    public void tearDown() throws IOException {
+        if (trafficRecorder == null) {
+            return;
+        }
+
+        final File file = new File(context.getExternalFilesDir(null), "traffic-" + getName() + ".json");
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            trafficRecorder.writeTo(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
     private String getName() {
         return name.getMethodName();
     }
@@ -88,6 +118,9 @@ public class ShopifyAndroidTestCase {
             buyClientBuilder.interceptors(new MockResponder(context), new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY));
         } else if (GENERATE_MOCK_RESPONSES) {
             buyClientBuilder.interceptors(new MockResponseGenerator(context), new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY));
+        } else if (RECORD_TRAFFIC) {
+            trafficRecorder = new TrafficRecorder(shopDomain);
+            buyClientBuilder.interceptors(trafficRecorder, new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY));
         } else {
             buyClientBuilder.interceptors(new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY));
         }
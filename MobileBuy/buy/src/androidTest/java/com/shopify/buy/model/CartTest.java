@@ -8,7 +8,13 @@ import com.shopify.buy.extensions.ShopifyAndroidTestCase;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -148,9 +154,135 @@ public class CartTest extends ShopifyAndroidTestCase {
         assertEquals(cart.getLineItems().get(0).getQuantity(), 4);
     }
 
+    @Test
+    public void testTotalsFollowMutations() {
+        ProductVariantPrivateAPIs variant1 = createVariant(variantId1, "1.10");
+        ProductVariantPrivateAPIs variant2 = createVariant(variantId2, "2.25");
+
+        cart.addVariant(variant1);
+        cart.addVariant(variant1);
+        cart.setVariantQuantity(variant2, 3);
+        assertEquals(5, (int) cart.getTotalQuantity());
+        assertEquals(8.95, cart.getSubtotal(), 0.0001);
+
+        cart.decrementVariant(variant1);
+        cart.setVariantQuantity(variant2, 1);
+        assertEquals(2, (int) cart.getTotalQuantity());
+        assertEquals(3.35, cart.getSubtotal(), 0.0001);
+
+        cart.decrementVariant(variant1);
+        assertEquals(1, (int) cart.getTotalQuantity());
+        assertEquals(2.25, cart.getSubtotal(), 0.0001);
+
+        cart.clear();
+        assertEquals(0, (int) cart.getTotalQuantity());
+        assertEquals(0, cart.getSubtotal(), 0.0001);
+    }
+
+    @Test
+    public void testIndexIsRebuiltAfterDeserialization() {
+        ProductVariantPrivateAPIs variant1 = createVariant(variantId1, "1.10");
+        cart.setVariantQuantity(variant1, 2);
+        cart.setVariantQuantity(createVariant(variantId2, "2.25"), 1);
+
+        Cart deserializedCart = Cart.fromJson(cart.toJsonString());
+        assertEquals(3, (int) deserializedCart.getTotalQuantity());
+        assertEquals(4.45, deserializedCart.getSubtotal(), 0.0001);
+        assertNotNull(deserializedCart.getProductVariant(new LineItem(variantId1, true, 1)));
+
+        deserializedCart.addVariant(variant1);
+        assertEquals(2, deserializedCart.getSize());
+        assertEquals(3, deserializedCart.getLineItems().get(0).getQuantity());
+        assertEquals(5.55, deserializedCart.getSubtotal(), 0.0001);
+    }
+
+    @Test
+    public void testDirectLineItemEditsRebuildTheIndex() {
+        ProductVariantPrivateAPIs variant1 = createVariant(variantId1, "1.10");
+        ProductVariantPrivateAPIs variant2 = createVariant(variantId2, "2.25");
+        cart.setVariantQuantity(variant1, 2);
+        assertEquals(2.2, cart.getSubtotal(), 0.0001);
+
+        // same size edit
+        cart.getLineItems().set(0, new CartLineItem(variant2));
+        assertEquals(1, (int) cart.getTotalQuantity());
+        assertEquals(2.25, cart.getSubtotal(), 0.0001);
+        assertNull(cart.getProductVariant(new LineItem(variantId1, true, 1)));
+
+        cart.addVariant(variant2);
+        assertEquals(1, cart.getSize());
+        assertEquals(2, cart.getLineItems().get(0).getQuantity());
+
+        cart.getLineItems().remove(0);
+        assertTrue(cart.isEmpty());
+        assertEquals(0, cart.getSubtotal(), 0.0001);
+    }
+
+    @Test
+    public void testGetProductVariant() {
+        ProductVariantPrivateAPIs variant1 = createVariant(variantId1, "1.10");
+        cart.addVariant(variant1);
+
+        assertEquals(variant1, cart.getProductVariant(new LineItem(variantId1, true, 1)));
+        assertNull(cart.getProductVariant(new LineItem(variantId2, true, 1)));
+    }
+
+    @Test
+    public void testLookupsAndTotalsFollowMixedMutations() {
+        final List<ProductVariantPrivateAPIs> variants = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            ProductVariantPrivateAPIs variant = createVariant(id, id + ".50");
+            variants.add(variant);
+            cart.addVariant(variant);
+        }
+        assertCartMatchesLineItems();
+
+        for (int i = 0; i < 500; i++) {
+            ProductVariantPrivateAPIs variant = variants.get((i * 31) % variants.size());
+            switch (i % 5) {
+                case 0:
+                case 1:
+                    cart.addVariant(variant);
+                    break;
+                case 2:
+                    cart.decrementVariant(variant);
+                    break;
+                case 3:
+                    cart.setVariantQuantity(variant, 0);
+                    break;
+                default:
+                    cart.getLineItems().add(new CartLineItem(createVariant(1000L + i, "0.25")));
+                    break;
+            }
+            assertCartMatchesLineItems();
+        }
+
+        cart.getLineItems().set(0, new CartLineItem(variants.get(0)));
+        assertCartMatchesLineItems();
+    }
+
     /**
      * Helpers
      */
+    private void assertCartMatchesLineItems() {
+        int totalQuantity = 0;
+        double subtotal = 0;
+        for (CartLineItem lineItem : cart.getLineItems()) {
+            totalQuantity += lineItem.getQuantity();
+            subtotal += lineItem.getQuantity() * Double.parseDouble(lineItem.getPrice());
+            assertEquals(lineItem.getVariantId(), cart.getProductVariant(lineItem).getId());
+        }
+        assertEquals(totalQuantity, (int) cart.getTotalQuantity());
+        assertEquals(subtotal, cart.getSubtotal(), 0.0001);
+    }
+
+    private ProductVariantPrivateAPIs createVariant(Long id, String price) {
+        ProductVariantPrivateAPIs variant = new ProductVariantPrivateAPIs();
+        variant.setId(id);
+        variant.setPrice(price);
+        return variant;
+    }
+
     private void addVariant(Long id) {
         ProductVariantPrivateAPIs variant = new ProductVariantPrivateAPIs();
         variant.setId(id);
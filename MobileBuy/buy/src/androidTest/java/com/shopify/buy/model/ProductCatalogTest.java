@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.model;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Unit tests and scan benchmark for {@link ProductCatalog}
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductCatalogTest {
+
+    private static final String TAG = ProductCatalogTest.class.getSimpleName();
+
+    private static final String PRODUCT_JSON = "{\"product_id\":42,\"title\":\"Shirt\",\"vendor\":\"Acme\",\"product_type\":\"Tops\",\"tags\":\"sale, new\",\"available\":true,"
+        + "\"images\":[{\"id\":1,\"src\":\"https://cdn/shirt.png\",\"variant_ids\":[]},{\"id\":2,\"src\":\"https://cdn/shirt-blue.png\",\"variant_ids\":[421]}],"
+        + "\"options\":[{\"id\":7,\"name\":\"Color\",\"position\":1}],"
+        + "\"variants\":["
+        + "{\"id\":420,\"title\":\"Red\",\"price\":\"12.00\",\"available\":true,\"option_values\":[{\"option_id\":7,\"name\":\"Color\",\"value\":\"Red\"}]},"
+        + "{\"id\":421,\"title\":\"Blue\",\"price\":\"9.50\",\"available\":false,\"option_values\":[{\"option_id\":7,\"name\":\"Color\",\"value\":\"Blue\"}]}]}";
+
+    private static final int BENCHMARK_PRODUCT_COUNT = 25000;
+
+    private static final int BENCHMARK_VARIANTS_PER_PRODUCT = 4;
+
+    @Test
+    public void testViewsExposeProductGetters() {
+        final Product product = Product.fromJson(PRODUCT_JSON);
+        final List<Product> products = new ArrayList<>();
+        products.add(product);
+
+        final ProductCatalog catalog = ProductCatalog.fromProducts(products);
+        assertEquals(1, catalog.getProductCount());
+        assertEquals(2, catalog.getVariantCount());
+
+        final Product view = catalog.getProduct(0);
+        assertEquals(product, view);
+        assertEquals(product.getTitle(), view.getTitle());
+        assertEquals(product.getVendor(), view.getVendor());
+        assertEquals(product.getTags(), view.getTags());
+        assertEquals(product.getMinimumPrice(), view.getMinimumPrice());
+        assertEquals(product.getFirstImageUrl(), view.getFirstImageUrl());
+        assertEquals(product.getOptions().get(0).getName(), view.getOptions().get(0).getName());
+
+        for (int i = 0; i < product.getVariants().size(); i++) {
+            final ProductVariant variant = product.getVariants().get(i);
+            final ProductVariant variantView = view.getVariants().get(i);
+            assertEquals(variant.getId(), variantView.getId());
+            assertEquals(variant.getPrice(), variantView.getPrice());
+            assertEquals(variant.getImageUrl(), variantView.getImageUrl());
+            assertEquals(variant.getProductTitle(), variantView.getProductTitle());
+            assertEquals(variant.isAvailable(), variantView.isAvailable());
+            assertEquals(variant.getOptionValues(), variantView.getOptionValues());
+        }
+
+        assertEquals(Long.valueOf(421), view.getVariant(product.getVariants().get(1).getOptionValues()).getId());
+        assertEquals(product.getVariants().get(1), catalog.toProductVariant(catalog.findVariantIndex(421)));
+        assertEquals(-1, catalog.findVariantIndex(1));
+    }
+
+    @Test
+    public void testGetVariantRequiresMatchingOptionCount() {
+        final Product product = Product.fromJson(PRODUCT_JSON);
+        final List<Product> products = new ArrayList<>();
+        products.add(product);
+        final Product view = ProductCatalog.fromProducts(products).getProduct(0);
+
+        // the second value must not be compared against the option values of the next variant
+        final List<OptionValue> tooMany = new ArrayList<>();
+        tooMany.addAll(product.getVariants().get(0).getOptionValues());
+        tooMany.addAll(product.getVariants().get(1).getOptionValues());
+        assertNull(view.getVariant(tooMany));
+
+        assertNull(view.getVariant(new ArrayList<OptionValue>()));
+        assertNull(view.getVariant(null));
+    }
+
+    @Test
+    public void testFilterAndSortVariants() {
+        final List<Product> products = new ArrayList<>();
+        products.add(Product.fromJson(PRODUCT_JSON));
+
+        final ProductCatalog catalog = ProductCatalog.fromProducts(products);
+        final int[] available = catalog.filterVariants(new ProductCatalog.VariantFilter() {
+            @Override
+            public boolean accept(ProductCatalog catalog, int variantIndex) {
+                return catalog.isVariantAvailable(variantIndex);
+            }
+        });
+        assertEquals(1, available.length);
+        assertEquals(420, catalog.getVariantId(available[0]));
+
+        final int[] all = {0, 1};
+        catalog.sortVariants(all, all.length, ProductCatalog.PRICE_ASCENDING);
+        assertEquals(421, catalog.getVariantId(all[0]));
+        assertEquals(420, catalog.getVariantId(all[1]));
+    }
+
+    @Test
+    public void testEmptyCatalog() {
+        final ProductCatalog catalog = ProductCatalog.fromProducts(new ArrayList<Product>());
+        assertEquals(0, catalog.getProductCount());
+        assertEquals(0, catalog.filterVariants(new ProductCatalog.VariantFilter() {
+            @Override
+            public boolean accept(ProductCatalog catalog, int variantIndex) {
+                return true;
+            }
+        }).length);
+    }
+
+    @Test
+    public void testScanBenchmark() {
+        final List<Product> products = new ArrayList<>(BENCHMARK_PRODUCT_COUNT);
+        for (int p = 0; p < BENCHMARK_PRODUCT_COUNT; p++) {
+            final Product product = new Product();
+            product.productId = (long) p;
+            product.title = "Product " + p;
+            product.available = true;
+            product.variants = new ArrayList<>();
+            for (int v = 0; v < BENCHMARK_VARIANTS_PER_PRODUCT; v++) {
+                final ProductVariant variant = new ProductVariant();
+                variant.id = (long) (p * BENCHMARK_VARIANTS_PER_PRODUCT + v);
+                variant.price = String.valueOf((p * 31 + v * 17) % 500) + ".99";
+                variant.available = (p + v) % 3 != 0;
+                product.variants.add(variant);
+            }
+            products.add(product);
+        }
+
+        final ProductCatalog catalog = ProductCatalog.fromProducts(products);
+        final int[] indices = new int[catalog.getVariantCount()];
+        final ProductCatalog.VariantFilter cheapAndAvailable = new ProductCatalog.VariantFilter() {
+            @Override
+            public boolean accept(ProductCatalog catalog, int variantIndex) {
+                return catalog.isVariantAvailable(variantIndex) && catalog.getVariantPriceValue(variantIndex) < 250;
+            }
+        };
+
+        final long start = System.nanoTime();
+        final int count = catalog.filterVariants(cheapAndAvailable, indices);
+        final long filtered = System.nanoTime();
+        catalog.sortVariants(indices, count, ProductCatalog.PRICE_ASCENDING);
+        final long sorted = System.nanoTime();
+
+        Log.i(TAG, String.format("%d variants: filter %d us, sort of %d matches %d us",
+            catalog.getVariantCount(), (filtered - start) / 1000, count, (sorted - filtered) / 1000));
+
+        for (int i = 1; i < count; i++) {
+            assertTrue(catalog.getVariantPriceValue(indices[i - 1]) <= catalog.getVariantPriceValue(indices[i]));
+        }
+        assertNull(catalog.getProduct(0).getFirstImageUrl());
+    }
+}
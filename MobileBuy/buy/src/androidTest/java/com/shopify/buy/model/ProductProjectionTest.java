@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.model;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.dataprovider.BuyClient;
+import com.shopify.buy.dataprovider.BuyClientBuilder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.schedulers.Schedulers;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class ProductProjectionTest {
+
+    private static final String SUMMARY_PRODUCT = "{\"product_id\":1,\"title\":\"Hat\",\"handle\":\"hat\",\"available\":true,\"published\":true}";
+
+    @Test
+    public void testCustomProjectionsAlwaysContainProductId() {
+        final ProductProjection projection = ProductProjection.of(ProductProjection.TITLE, ProductProjection.IMAGES);
+
+        assertTrue(projection.contains(ProductProjection.PRODUCT_ID));
+        assertFalse(projection.isFull());
+        assertEquals("images,product_id,title", projection.getQueryValue());
+        assertSame(ProductProjection.SUMMARY, ProductProjection.of(ProductProjection.AVAILABLE, ProductProjection.HANDLE, ProductProjection.PUBLISHED, ProductProjection.TITLE));
+    }
+
+    @Test
+    public void testUnknownFieldsAreRejected() {
+        try {
+            ProductProjection.of("price");
+            fail("unknown fields must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testProjectionIsNotInferredFromJson() {
+        final Product product = Product.fromJson(SUMMARY_PRODUCT);
+
+        assertSame(ProductProjection.FULL, product.getProjection());
+        assertNull(product.getBodyHtml());
+        assertTrue(product.getPrices().isEmpty());
+    }
+
+    @Test
+    public void testRequestedProjectionIsReported() {
+        final Product product = Product.fromJson(SUMMARY_PRODUCT);
+        product.setProjection(ProductProjection.SUMMARY);
+
+        assertSame(ProductProjection.SUMMARY, product.getProjection());
+        assertTrue(product.isLoaded(ProductProjection.TITLE));
+        assertFalse(product.isLoaded(ProductProjection.BODY_HTML));
+    }
+
+    @Test
+    public void testListingRequestsReportTheRequestedProjection() {
+        final AtomicReference<String> fields = new AtomicReference<>();
+        final BuyClient buyClient = new BuyClientBuilder()
+            .shopDomain("projection.myshopify.com")
+            .apiKey("apiKey")
+            .appId("appId")
+            .applicationName("projection")
+            .callbackScheduler(Schedulers.immediate())
+            .interceptors(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    fields.set(chain.request().url().queryParameter("fields"));
+                    // the server leaves out the null vendor, the product still reports the requested projection
+                    final String json = "{\"product_listings\":[{\"product_id\":1,\"title\":\"Hat\",\"handle\":\"hat\",\"available\":true,"
+                        + "\"published\":true,\"images\":[],\"variants\":[]}]}";
+                    return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(MediaType.parse("application/json"), json))
+                        .build();
+                }
+            })
+            .build();
+
+        final List<Product> products = buyClient.getProducts(ProductProjection.CARD, 1, null).toBlocking().first();
+
+        assertEquals(ProductProjection.CARD.getQueryValue(), fields.get());
+        assertSame(ProductProjection.CARD, products.get(0).getProjection());
+        assertTrue(products.get(0).isLoaded(ProductProjection.VENDOR));
+        assertNull(products.get(0).getVendor());
+    }
+}
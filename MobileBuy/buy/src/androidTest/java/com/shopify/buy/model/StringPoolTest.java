@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.model;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.shopify.buy.dataprovider.BuyClientUtils;
+import com.shopify.buy.model.internal.ProductListings;
+import com.shopify.buy.utils.StringPool;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * Unit tests for {@link StringPool}
+ */
+@RunWith(AndroidJUnit4.class)
+public class StringPoolTest {
+
+    private static final String[] VENDORS = {"Acme", "Globex", "Initech", "Umbrella", "Hooli"};
+
+    private static final String[] PRODUCT_TYPES = {"Shirt", "Pants", "Shoes", "Hat"};
+
+    private static final String[] SIZES = {"Small", "Medium", "Large"};
+
+    private static final String[] COLORS = {"Red", "Blue", "Black"};
+
+    private static final String[] TAGS = {"sale", "new", "summer", "winter", "organic"};
+
+    @Test
+    public void testInternReturnsCanonicalInstance() {
+        final StringPool pool = new StringPool();
+        final String first = new String("Color");
+        final String second = new String("Color");
+
+        assertNotSame(first, second);
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertEquals(1, pool.size());
+        assertNull(pool.intern(null));
+    }
+
+    @Test
+    public void testProductsShareCatalogStrings() {
+        final Gson gson = BuyClientUtils.createDefaultGson(new StringPool());
+        // products repeat their vendor and product type every VENDORS.length * PRODUCT_TYPES.length products
+        final int period = VENDORS.length * PRODUCT_TYPES.length;
+        final List<Product> products = gson.fromJson(createProductListingsJson(period + 1), ProductListings.class).getProducts();
+
+        final Product first = products.get(0);
+        final Product second = products.get(period);
+
+        assertEquals(first.getVendor(), second.getVendor());
+        assertSame(first.getVendor(), second.getVendor());
+        assertSame(first.getProductType(), second.getProductType());
+        assertSame(first.getOptions().get(0).getName(), second.getOptions().get(0).getName());
+
+        final OptionValue firstValue = first.getVariants().get(0).getOptionValues().get(0);
+        final OptionValue secondValue = second.getVariants().get(0).getOptionValues().get(0);
+        assertSame(firstValue.getName(), secondValue.getName());
+        assertSame(firstValue.getValue(), secondValue.getValue());
+    }
+
+    private String createProductListingsJson(final int productCount) {
+        final JsonArray products = new JsonArray();
+        for (int i = 0; i < productCount; i++) {
+            final long productId = 1000L + i;
+
+            final JsonObject product = new JsonObject();
+            product.addProperty("product_id", productId);
+            product.addProperty("title", "Product " + i);
+            product.addProperty("handle", "product-" + i);
+            product.addProperty("vendor", VENDORS[i % VENDORS.length]);
+            product.addProperty("product_type", PRODUCT_TYPES[i % PRODUCT_TYPES.length]);
+            product.addProperty("tags", TAGS[i % TAGS.length] + ", " + TAGS[(i + 2) % TAGS.length]);
+
+            final JsonArray options = new JsonArray();
+            options.add(createOption(productId * 10, "Size", 1));
+            options.add(createOption(productId * 10 + 1, "Color", 2));
+            product.add("options", options);
+
+            final JsonArray variants = new JsonArray();
+            for (int s = 0; s < SIZES.length; s++) {
+                for (int c = 0; c < COLORS.length; c++) {
+                    final JsonObject variant = new JsonObject();
+                    variant.addProperty("id", productId * 100 + s * COLORS.length + c);
+                    variant.addProperty("title", SIZES[s] + " / " + COLORS[c]);
+                    variant.addProperty("price", (10 + s * 5) + ".00");
+
+                    final JsonArray optionValues = new JsonArray();
+                    optionValues.add(createOptionValue(productId * 10, "Size", SIZES[s]));
+                    optionValues.add(createOptionValue(productId * 10 + 1, "Color", COLORS[c]));
+                    variant.add("option_values", optionValues);
+
+                    variants.add(variant);
+                }
+            }
+            product.add("variants", variants);
+            product.add("images", new JsonArray());
+
+            products.add(product);
+        }
+
+        final JsonObject listings = new JsonObject();
+        listings.add("product_listings", products);
+        return listings.toString();
+    }
+
+    private JsonObject createOption(final long id, final String name, final int position) {
+        final JsonObject option = new JsonObject();
+        option.addProperty("id", id);
+        option.addProperty("name", name);
+        option.addProperty("position", position);
+        return option;
+    }
+
+    private JsonObject createOptionValue(final long optionId, final String name, final String value) {
+        final JsonObject optionValue = new JsonObject();
+        optionValue.addProperty("option_id", optionId);
+        optionValue.addProperty("name", name);
+        optionValue.addProperty("value", value);
+        return optionValue;
+    }
+}
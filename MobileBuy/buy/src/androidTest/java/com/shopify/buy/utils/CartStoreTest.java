@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.utils;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.shopify.buy.extensions.ProductVariantPrivateAPIs;
+import com.shopify.buy.model.Cart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CartStore}
+ */
+@RunWith(AndroidJUnit4.class)
+public class CartStoreTest {
+
+    private File directory;
+
+    private CartStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new File(InstrumentationRegistry.getContext().getCacheDir(), "CartStoreTest");
+        deleteDirectory();
+        store = new CartStore(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        deleteDirectory();
+    }
+
+    @Test
+    public void testEmptyStoreHasEmptyCart() {
+        assertTrue(store.getCart().isEmpty());
+    }
+
+    @Test
+    public void testMutationsAreRecovered() throws IOException {
+        ProductVariantPrivateAPIs variant1 = createVariant(1L, "1.50");
+        ProductVariantPrivateAPIs variant2 = createVariant(2L, "2.00");
+
+        store.addVariant(variant1);
+        store.addVariant(variant1);
+        store.setVariantQuantity(variant2, 3);
+        store.decrementVariant(variant1);
+        store.close();
+
+        Cart cart = new CartStore(directory).getCart();
+        assertEquals(2, cart.getSize());
+        assertEquals(4, (int) cart.getTotalQuantity());
+        assertEquals(7.5, cart.getSubtotal(), 0.0001);
+        assertEquals("1.50", cart.getLineItems().get(0).getVariant().getPrice());
+    }
+
+    @Test
+    public void testClearIsRecovered() throws IOException {
+        store.addVariant(createVariant(1L, "1.50"));
+        store.clear();
+        store.addVariant(createVariant(2L, "2.00"));
+        store.close();
+
+        Cart cart = new CartStore(directory).getCart();
+        assertEquals(1, cart.getSize());
+        assertEquals(2L, (long) cart.getLineItems().get(0).getVariantId());
+    }
+
+    @Test
+    public void testJournalIsCompacted() throws IOException {
+        store.close();
+        store = new CartStore(directory, 10);
+
+        ProductVariantPrivateAPIs variant = createVariant(1L, "1.00");
+        for (int i = 0; i < 25; i++) {
+            store.addVariant(variant);
+        }
+        store.close();
+
+        // 25 records with a threshold of 10 leave 5 records in the journal
+        File journal = new File(directory, CartStore.JOURNAL_FILE_NAME);
+        assertEquals(12 + 5 * 9, journal.length());
+
+        Cart cart = new CartStore(directory).getCart();
+        assertEquals(25, (int) cart.getTotalQuantity());
+    }
+
+    @Test
+    public void testTruncatedRecordIsDropped() throws IOException {
+        ProductVariantPrivateAPIs variant = createVariant(1L, "1.00");
+        store.addVariant(variant);
+        store.addVariant(variant);
+        store.close();
+
+        File journal = new File(directory, CartStore.JOURNAL_FILE_NAME);
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        file.setLength(journal.length() - 3);
+        file.close();
+
+        store = new CartStore(directory);
+        assertEquals(1, (int) store.getCart().getTotalQuantity());
+
+        // recovery starts a clean journal, new records are not appended after the truncated one
+        store.addVariant(variant);
+        store.close();
+        assertEquals(2, (int) new CartStore(directory).getCart().getTotalQuantity());
+    }
+
+    @Test
+    public void testStaleJournalIsIgnored() throws IOException {
+        ProductVariantPrivateAPIs variant = createVariant(1L, "1.00");
+        store.addVariant(variant);
+        store.close();
+
+        File journal = new File(directory, CartStore.JOURNAL_FILE_NAME);
+        byte[] staleJournal = readFile(journal);
+
+        // compacts the journal into the snapshot, then simulates a crash before the journal was reset
+        store = new CartStore(directory);
+        store.close();
+        FileOutputStream output = new FileOutputStream(journal);
+        output.write(staleJournal);
+        output.close();
+
+        assertEquals(1, (int) new CartStore(directory).getCart().getTotalQuantity());
+    }
+
+    private ProductVariantPrivateAPIs createVariant(Long id, String price) {
+        ProductVariantPrivateAPIs variant = new ProductVariantPrivateAPIs();
+        variant.setId(id);
+        variant.setPrice(price);
+        return variant;
+    }
+
+    private byte[] readFile(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        byte[] bytes = new byte[(int) input.length()];
+        input.readFully(bytes);
+        input.close();
+        return bytes;
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.customTabs;
+
+import android.app.Activity;
+import android.content.Context;
+import android.net.Uri;
+import android.support.customtabs.CustomTabsClient;
+import android.support.customtabs.CustomTabsIntent;
+import android.support.customtabs.CustomTabsServiceConnection;
+import android.support.customtabs.CustomTabsSession;
+import android.text.TextUtils;
+
+import com.shopify.buy.model.Checkout;
+
+/**
+ * Keeps a connection to the Custom Tabs Service so that handing off to the web checkout is near-instant.
+ * <p>
+ * Call {@link #bind()} early (for example when the cart screen is shown) so the browser process is started and warmed up,
+ * then {@link #mayLaunchCheckout(Checkout)} as soon as the checkout has been created so the browser can start loading the
+ * web checkout before the user taps through. Tabs built with {@link #newIntentBuilder()} open the checkout with the same
+ * session, which is kept alive across checkouts until {@link #unbind()} is called.
+ * <p>
+ * The Custom Tabs connection only holds a weak reference to this object, so keep a reference to it for as long as it is needed.
+ */
+public final class WebCheckoutAccelerator implements ServiceConnectionCallback {
+
+    private final Context mContext;
+    private CustomTabsServiceConnection mConnection;
+    private CustomTabsClient mClient;
+    private CustomTabsSession mCustomTabsSession;
+    private Uri mPendingUri;
+
+    /**
+     * @param context any context, only the application context is retained, not null
+     */
+    public WebCheckoutAccelerator(Context context) {
+        if (context == null) {
+            throw new NullPointerException("context cannot be null");
+        }
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Binds to the Custom Tabs Service, if not already bound. The browser is warmed up as soon as the service is connected.
+     *
+     * @return true if a browser supporting Custom Tabs is installed and the service is bound or being bound
+     */
+    public synchronized boolean bind() {
+        if (mConnection != null) return true;
+
+        String packageName = CustomTabsHelper.getPackageNameToUse(mContext);
+        if (packageName == null) return false;
+
+        mConnection = new ServiceConnection(this);
+        if (!CustomTabsClient.bindCustomTabsService(mContext, packageName, mConnection)) {
+            mConnection = null;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unbinds from the Custom Tabs Service and drops the session.
+     */
+    public synchronized void unbind() {
+        if (mConnection == null) return;
+        mContext.unbindService(mConnection);
+        mConnection = null;
+        mClient = null;
+        mCustomTabsSession = null;
+        mPendingUri = null;
+    }
+
+    /**
+     * Tells the browser that the web checkout of {@code checkout} is likely to be opened next, so it can pre-connect and
+     * start loading it. If the service is not connected yet, the hint is sent as soon as it is.
+     *
+     * @param checkout the newly created {@link Checkout}, not null
+     * @return true if the hint was accepted by the browser, false if it is deferred or was rejected
+     */
+    public synchronized boolean mayLaunchCheckout(Checkout checkout) {
+        if (checkout == null) {
+            throw new NullPointerException("checkout cannot be null");
+        }
+
+        String webUrl = checkout.getWebUrl();
+        if (TextUtils.isEmpty(webUrl)) return false;
+
+        Uri uri = Uri.parse(webUrl);
+        CustomTabsSession session = getSession();
+        if (session == null) {
+            mPendingUri = uri;
+            bind();
+            return false;
+        }
+
+        mPendingUri = null;
+        return session.mayLaunchUrl(uri, null, null);
+    }
+
+    /**
+     * Creates a builder for the Custom Tab that is bound to the warmed-up session. Style the tab with it and pass the result
+     * to {@link #launchCheckout(Activity, Checkout, CustomTabsIntent, CustomTabActivityHelper.CustomTabFallback)}.
+     *
+     * @return a new {@link CustomTabsIntent.Builder}
+     */
+    public CustomTabsIntent.Builder newIntentBuilder() {
+        return new CustomTabsIntent.Builder(getSession());
+    }
+
+    /**
+     * Opens the web checkout of {@code checkout} in a Custom Tab, or with {@code fallback} if no browser supporting
+     * Custom Tabs is installed.
+     *
+     * @param activity         the host activity, not null
+     * @param checkout         the {@link Checkout} to open, not null
+     * @param customTabsIntent the intent built with {@link #newIntentBuilder()}, not null
+     * @param fallback         used to open the checkout when Custom Tabs is not available, can be null
+     */
+    public void launchCheckout(Activity activity, Checkout checkout, CustomTabsIntent customTabsIntent, CustomTabActivityHelper.CustomTabFallback fallback) {
+        if (activity == null) {
+            throw new NullPointerException("activity cannot be null");
+        }
+
+        if (checkout == null) {
+            throw new NullPointerException("checkout cannot be null");
+        }
+
+        if (customTabsIntent == null) {
+            throw new NullPointerException("customTabsIntent cannot be null");
+        }
+
+        CustomTabActivityHelper.openCustomTab(activity, customTabsIntent, Uri.parse(checkout.getWebUrl()), fallback);
+    }
+
+    /**
+     * @return the session shared by all checkouts, or null if the service is not connected
+     */
+    public synchronized CustomTabsSession getSession() {
+        if (mClient == null) {
+            mCustomTabsSession = null;
+        } else if (mCustomTabsSession == null) {
+            mCustomTabsSession = mClient.newSession(null);
+        }
+        return mCustomTabsSession;
+    }
+
+    @Override
+    public synchronized void onServiceConnected(CustomTabsClient client) {
+        mClient = client;
+        mClient.warmup(0L);
+
+        if (mPendingUri != null) {
+            CustomTabsSession session = getSession();
+            if (session != null) {
+                session.mayLaunchUrl(mPendingUri, null, null);
+            }
+            mPendingUri = null;
+        }
+    }
+
+    @Override
+    public synchronized void onServiceDisconnected() {
+        mClient = null;
+        mCustomTabsSession = null;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * The few platform specifics of the SDK: the default scheduler of the callbacks, logging and the SDK version reported to Shopify.
+ * <p>
+ * The Android library provides its own platform, which is picked up automatically when it is on the classpath. Otherwise the SDK
+ * runs on a plain JVM, where callbacks are delivered on the thread that completed the request and errors are logged with
+ * {@link java.util.logging}.
+ */
+public abstract class Platform {
+
+    private static final String ANDROID_PLATFORM_CLASS = "com.shopify.buy.AndroidPlatform";
+
+    private static final Platform PLATFORM = findPlatform();
+
+    /**
+     * @return the platform the SDK is running on
+     */
+    public static Platform get() {
+        return PLATFORM;
+    }
+
+    private static Platform findPlatform() {
+        final Class<?> platformClass;
+        try {
+            platformClass = Class.forName(ANDROID_PLATFORM_CLASS);
+        } catch (ClassNotFoundException e) {
+            return new Jvm();
+        }
+
+        try {
+            return (Platform) platformClass.getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("cannot instantiate " + ANDROID_PLATFORM_CLASS, e.getCause());
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            // the no-arg constructor is kept by the consumer proguard rules of the Android library
+            throw new IllegalStateException("cannot instantiate " + ANDROID_PLATFORM_CLASS, e);
+        }
+    }
+
+    /**
+     * @return the name of the platform, reported in the {@code User-Agent} header
+     */
+    public abstract String getName();
+
+    /**
+     * @return the version of the SDK
+     */
+    public abstract String getVersionName();
+
+    /**
+     * @return {@code true} for debug builds of the SDK, which accept any shop domain
+     */
+    public abstract boolean isDebug();
+
+    /**
+     * @return the scheduler on which callbacks are delivered when none is given to the
+     * {@link com.shopify.buy.dataprovider.BuyClientBuilder}
+     */
+    public abstract Scheduler getDefaultCallbackScheduler();
+
+    /**
+     * Logs an error.
+     *
+     * @param tag     the tag of the message, usually the simple name of the calling class
+     * @param message the message to log
+     */
+    public abstract void logError(String tag, String message);
+
+    /**
+     * Platform of the SDK on a plain JVM.
+     */
+    private static final class Jvm extends Platform {
+
+        @Override
+        public String getName() {
+            return "Java";
+        }
+
+        @Override
+        public String getVersionName() {
+            final String version = Platform.class.getPackage() != null ? Platform.class.getPackage().getImplementationVersion() : null;
+            return version != null ? version : "unknown";
+        }
+
+        @Override
+        public boolean isDebug() {
+            return false;
+        }
+
+        @Override
+        public Scheduler getDefaultCallbackScheduler() {
+            return Schedulers.immediate();
+        }
+
+        @Override
+        public void logError(final String tag, final String message) {
+            Logger.getLogger(tag).log(Level.SEVERE, message);
+        }
+    }
+}
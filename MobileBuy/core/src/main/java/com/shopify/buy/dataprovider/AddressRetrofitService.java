@@ -23,8 +23,10 @@
  */
 package com.shopify.buy.dataprovider;
 
+import com.shopify.buy.model.Address;
 import com.shopify.buy.model.internal.AddressWrapper;
-import com.shopify.buy.model.internal.AddressesWrapper;
+
+import java.util.List;
 
 import retrofit2.Response;
 import retrofit2.http.Body;
@@ -38,18 +40,22 @@ import rx.Observable;
 interface AddressRetrofitService {
 
     @GET("api/customers/{customerId}/addresses")
-    Observable<Response<AddressesWrapper>> getAddresses(@Path("customerId") Long customerId);
+    @Unwrap("addresses")
+    Observable<Response<List<Address>>> getAddresses(@Path("customerId") Long customerId);
 
     @POST("api/customers/{customerId}/addresses")
-    Observable<Response<AddressWrapper>> createAddress(@Path("customerId") Long customerId, @Body AddressWrapper address);
+    @Unwrap("address")
+    Observable<Response<Address>> createAddress(@Path("customerId") Long customerId, @Body AddressWrapper address);
 
     @DELETE("api/customers/{customerId}/addresses/{addressId}")
     Observable<Response<Void>> deleteAddress(@Path("customerId") Long customerId, @Path("addressId") Long addressId);
 
     @GET("api/customers/{customerId}/addresses/{addressId}")
-    Observable<Response<AddressWrapper>> getAddress(@Path("customerId") Long customerId, @Path("addressId") Long addressId);
+    @Unwrap("address")
+    Observable<Response<Address>> getAddress(@Path("customerId") Long customerId, @Path("addressId") Long addressId);
 
     @PATCH("api/customers/{customerId}/addresses/{addressId}")
-    Observable<Response<AddressWrapper>> updateAddress(@Path("customerId") Long customerId, @Body AddressWrapper address, @Path("addressId") Long addressId);
+    @Unwrap("address")
+    Observable<Response<Address>> updateAddress(@Path("customerId") Long customerId, @Body AddressWrapper address, @Path("addressId") Long addressId);
 
 }
@@ -26,7 +26,6 @@ package com.shopify.buy.dataprovider;
 import com.shopify.buy.model.Address;
 import com.shopify.buy.model.CustomerToken;
 import com.shopify.buy.model.internal.AddressWrapper;
-import com.shopify.buy.model.internal.AddressesWrapper;
 
 import java.util.List;
 
@@ -83,7 +82,7 @@ final class AddressServiceDefault implements AddressService {
         return retrofitService
             .createAddress(customerToken.getCustomerId(), new AddressWrapper(address))
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<AddressWrapper, Address>())
+            .compose(new UnwrapRetrofitBodyTransformer<Address>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Address>())
             .observeOn(callbackScheduler);
     }
@@ -132,7 +131,7 @@ final class AddressServiceDefault implements AddressService {
             .getAddresses(customerService.getCustomerToken().getCustomerId())
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<AddressesWrapper, List<Address>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<Address>>())
             .onErrorResumeNext(new BuyClientExceptionHandler<List<Address>>())
             .observeOn(callbackScheduler);
     }
@@ -158,7 +157,7 @@ final class AddressServiceDefault implements AddressService {
             .getAddress(customerToken.getCustomerId(), addressId)
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<AddressWrapper, Address>())
+            .compose(new UnwrapRetrofitBodyTransformer<Address>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Address>())
             .observeOn(callbackScheduler);
     }
@@ -183,7 +182,7 @@ final class AddressServiceDefault implements AddressService {
         return retrofitService
             .updateAddress(customerToken.getCustomerId(), new AddressWrapper(address), address.getId())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<AddressWrapper, Address>())
+            .compose(new UnwrapRetrofitBodyTransformer<Address>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Address>())
             .observeOn(callbackScheduler);
     }
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.dataprovider;
+
+public interface BuyClient extends StoreService, ProductService, CheckoutService, CustomerService, OrderService, AddressService {
+
+    String getApiKey();
+
+    String getAppId();
+
+    String getApplicationName();
+
+    String getShopDomain();
+
+    /**
+     * Opens connections to the shop, and to the card vault of the last created checkout, ahead of time. Call this early
+     * (e.g. when the app starts or the cart screen is shown) so that the following requests don't pay for DNS lookup, TCP and TLS
+     * handshakes. The connection to the card vault is also pre-warmed automatically when a checkout is created.
+     */
+    void prewarm();
+
+    /**
+     * Returns a view of this client that runs every call synchronously on the calling thread, for background workers and batch jobs
+     * that would otherwise hop to the request workers and the callback scheduler and back for each request. Observables execute their
+     * request, the retry and polling delays and the response unwrapping while they are subscribed to, and the methods taking a
+     * {@link Callback} have called it by the time they return, e.g. {@code buyClient.blocking().getShop().toBlocking().single()}.
+     * <p>
+     * The view shares the connections, the settings, the customer token and the checkout state of this client, updates of the same
+     * checkout through both views are sent one after the other. Never call it from the main thread.
+     *
+     * @return the blocking view of this client, this client if it is already blocking
+     */
+    BuyClient blocking();
+
+    /**
+     * Cancels the requests of priority {@code priority} or lower that are still waiting for a worker. The client doesn't follow the
+     * app lifecycle, call it when the queued requests are no longer needed, for instance with {@link RequestPriority#CATALOG} from
+     * {@code onStop()} when the app goes to background. They fail with a {@link BuyClientError} caused by a
+     * {@link java.util.concurrent.CancellationException}. Requests already sent are not affected. Does nothing if the client has
+     * an {@link BuyClientBuilder#executor(java.util.concurrent.Executor) executor}.
+     *
+     * @param priority the highest priority to cancel, not null
+     * @return the number of cancelled requests
+     */
+    int cancelQueuedRequests(RequestPriority priority);
+
+}
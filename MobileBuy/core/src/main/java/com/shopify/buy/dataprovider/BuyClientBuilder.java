@@ -23,18 +23,17 @@
  */
 package com.shopify.buy.dataprovider;
 
-import android.text.TextUtils;
-
-import com.shopify.buy.BuildConfig;
+import com.shopify.buy.Platform;
 import com.shopify.buy.model.Customer;
 import com.shopify.buy.model.CustomerToken;
 import com.shopify.buy.model.Product;
+import com.shopify.buy.utils.StringUtils;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Interceptor;
 import rx.Scheduler;
-import rx.android.schedulers.AndroidSchedulers;
 
 /**
  * Builds default implementation of {@link BuyClient}
@@ -51,6 +50,8 @@ public final class BuyClientBuilder {
 
     public static final long DEFAULT_HTTP_READ_WRITE_TIME_OUT_MS =  TimeUnit.SECONDS.toMillis(60);
 
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
     public static final long MIN_NETWORK_RETRY_DELAY = TimeUnit.MILLISECONDS.toMillis(500);
 
     private String shopDomain;
@@ -63,7 +64,11 @@ public final class BuyClientBuilder {
 
     private CustomerToken customerToken;
 
-    private Scheduler callbackScheduler = AndroidSchedulers.mainThread();
+    private Scheduler callbackScheduler = Platform.get().getDefaultCallbackScheduler();
+
+    private Executor executor;
+
+    private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
 
     private Interceptor[] interceptors;
 
@@ -79,6 +84,16 @@ public final class BuyClientBuilder {
 
     private long httpReadWriteTimeoutMs = DEFAULT_HTTP_READ_WRITE_TIME_OUT_MS;
 
+    private boolean catalogStringPoolEnabled;
+
+    private boolean shippingRatesPrefetchEnabled;
+
+    private boolean rateLimitingEnabled = true;
+
+    private BuyClientMetricsListener metricsListener;
+
+    private BuyClientSpanExporter spanExporter;
+
     /**
      * Sets store domain url (usually {store name}.myshopify.com
      *
@@ -137,7 +152,7 @@ public final class BuyClientBuilder {
 
     /**
      * Sets the Rx scheduler that will be used for all API callbacks, by default callback will be notified
-     * in main thread.
+     * in main thread on Android, and on the thread that completed the request on a plain JVM (see {@link Platform}).
      *
      * @param callbackScheduler The {@link Scheduler} to use for API callbacks.
      *
@@ -148,6 +163,36 @@ public final class BuyClientBuilder {
         return this;
     }
 
+    /**
+     * Sets the executor that runs the requests and the delays between retries and polls, instead of the request workers of the
+     * client and the Rx computation scheduler. Useful to run the client on the thread pool the app already has, requests are then
+     * not prioritized.
+     * See {@link BuyClient#blocking()} to run the calls on the calling thread instead.
+     *
+     * @param executor the executor to run the requests on, {@code null} to use the Rx schedulers
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder executor(final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time, the default value is {@link #DEFAULT_MAX_CONCURRENT_REQUESTS}.
+     * Requests are sent by as many worker threads, the others wait in a queue ordered by {@link RequestPriority}, so checkout
+     * requests are not held up by a burst of catalog requests. Ignored if an {@link #executor(Executor) executor} is set.
+     *
+     * @param maxConcurrentRequests the maximum number of concurrent requests, positive
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder maxConcurrentRequests(final int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
     /**
      * Sets custom OkHttp interceptors
      *
@@ -205,48 +250,126 @@ public final class BuyClientBuilder {
         return this;
     }
 
+    /**
+     * Enables de-duplication of the strings repeated across catalog models (vendor, product type, option names and values, tags, etc).
+     * When enabled, all the products deserialized by the {@link BuyClient} share a single instance of each such string, which
+     * considerably reduces the memory used by large catalogs. The pool is owned by the {@link BuyClient} and only weakly references
+     * its strings. Disabled by default.
+     *
+     * @param catalogStringPoolEnabled {@code true} to de-duplicate catalog strings
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder catalogStringPool(final boolean catalogStringPoolEnabled) {
+        this.catalogStringPoolEnabled = catalogStringPoolEnabled;
+        return this;
+    }
+
+    /**
+     * Enables speculative shipping rates calculation. As soon as a checkout with a shipping address and line items that require
+     * shipping is created, updated or fetched, its shipping rates are requested in background so that
+     * {@link BuyClient#getShippingRates(String)} can return them without polling. Prefetched rates are dropped whenever the
+     * shipping address, line items or discount of the checkout change. Disabled by default.
+     *
+     * @param shippingRatesPrefetchEnabled {@code true} to prefetch shipping rates
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder shippingRatesPrefetch(final boolean shippingRatesPrefetchEnabled) {
+        this.shippingRatesPrefetchEnabled = shippingRatesPrefetchEnabled;
+        return this;
+    }
+
+    /**
+     * Enables pacing of the requests to the shop by its API call limit. Once the shop has reported its limit in a response header,
+     * requests wait for room in the call bucket instead of being rejected with a 429, and catalog requests leave part of the bucket
+     * to checkout requests. Requests rejected with a 429 are retried after the {@code Retry-After} delay. Enabled by default.
+     *
+     * @param rateLimitingEnabled {@code true} to pace the requests by the API call limit
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder rateLimiting(final boolean rateLimitingEnabled) {
+        this.rateLimitingEnabled = rateLimitingEnabled;
+        return this;
+    }
+
+    /**
+     * Sets the listener that receives latency, retry, polling, payload size and error events for every {@link BuyClient} call.
+     * Use {@link BuyClientMetricsAggregator} to get per operation and per endpoint histograms. No metrics are collected by default,
+     * and none of the instrumentation is installed when no listener is set.
+     *
+     * @param metricsListener the {@link BuyClientMetricsListener} to notify, or {@code null} to disable metrics
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder metricsListener(final BuyClientMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * Enables tracing. Composite calls such as {@link BuyClient#completeCheckout(com.shopify.buy.model.PaymentToken, String)} or
+     * {@link BuyClient#createCustomer(com.shopify.buy.model.AccountCredentials)} are recorded as a tree of {@link BuyClientSpan}, one
+     * per step and per HTTP request, and every request carries the trace id in a W3C {@code traceparent} header. Disabled by default.
+     *
+     * @param spanExporter the {@link BuyClientSpanExporter} that receives the ended spans, or {@code null} to disable tracing
+     * @return a {@link BuyClientBuilder}
+     */
+    public BuyClientBuilder spanExporter(final BuyClientSpanExporter spanExporter) {
+        this.spanExporter = spanExporter;
+        return this;
+    }
+
     /**
      * Builds default implementation of {@link BuyClient}
      *
      * @return A {@link BuyClient}.
      */
     public BuyClient build() {
-        if (BuildConfig.DEBUG) {
-            if (TextUtils.isEmpty(shopDomain) || shopDomain.contains(":") || shopDomain.contains("/")) {
+        if (Platform.get().isDebug()) {
+            if (StringUtils.isEmpty(shopDomain) || shopDomain.contains(":") || shopDomain.contains("/")) {
                 throw new IllegalArgumentException("shopDomain is not set or invalid. shopDomain must be a valid URL and cannot start with 'http://'");
             }
         } else {
-            if (TextUtils.isEmpty(shopDomain) || shopDomain.contains(":") || shopDomain.contains("/") || !shopDomain.contains(".myshopify.com")) {
+            if (StringUtils.isEmpty(shopDomain) || shopDomain.contains(":") || shopDomain.contains("/") || !shopDomain.contains(".myshopify.com")) {
                 throw new IllegalArgumentException("shopDomain is not set or invalid. shopDomain must be of the form 'shopname.myshopify.com' and cannot start with 'http://'");
             }
         }
 
-        if (TextUtils.isEmpty(apiKey)) {
+        if (StringUtils.isEmpty(apiKey)) {
             throw new IllegalArgumentException("apiKey is not set or invalid. apiKey must be provided, and cannot be empty");
         }
 
-        if (TextUtils.isEmpty(appId)) {
+        if (StringUtils.isEmpty(appId)) {
             throw new IllegalArgumentException("appId is not set or invalid. appId must be provided, and cannot be empty");
         }
 
-        if (TextUtils.isEmpty(applicationName)) {
+        if (StringUtils.isEmpty(applicationName)) {
             throw new IllegalArgumentException("applicationName is not set or invalid. applicationName must be provided, and cannot be empty");
         }
 
-        return new BuyClientDefault(
+        final BuyClientMetrics metrics = metricsListener != null ? new BuyClientMetrics(metricsListener) : null;
+
+        final BuyClient buyClient = new BuyClientDefault(
             apiKey,
             appId,
             applicationName,
             shopDomain,
             customerToken,
             callbackScheduler,
+            executor,
+            maxConcurrentRequests,
             productPageSize,
             networkRequestRetryMaxCount,
             networkRequestRetryDelayMs,
             networkRequestRetryBackoffMultiplier,
             httpConnectionTimeoutMs,
             httpReadWriteTimeoutMs,
+            catalogStringPoolEnabled,
+            shippingRatesPrefetchEnabled,
+            rateLimitingEnabled,
+            metrics,
+            new BuyClientTracer(spanExporter),
             interceptors
         );
+
+        return metrics != null ? metrics.instrument(buyClient) : buyClient;
     }
 }
@@ -24,8 +24,8 @@
 
 package com.shopify.buy.dataprovider;
 
-import android.text.TextUtils;
-
+import com.google.gson.Gson;
+import com.shopify.buy.Platform;
 import com.shopify.buy.model.AccountCredentials;
 import com.shopify.buy.model.Address;
 import com.shopify.buy.model.Checkout;
@@ -37,17 +37,22 @@ import com.shopify.buy.model.CustomerToken;
 import com.shopify.buy.model.Order;
 import com.shopify.buy.model.PaymentToken;
 import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductProjection;
 import com.shopify.buy.model.ShippingRate;
 import com.shopify.buy.model.Shop;
+import com.shopify.buy.utils.StringPool;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
+import retrofit2.CallAdapter;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
@@ -60,19 +65,24 @@ import rx.schedulers.Schedulers;
  */
 final class BuyClientDefault implements BuyClient {
 
-    private static final String CUSTOMER_TOKEN_HEADER = "X-Shopify-Customer-Access-Token";
-
     private final String shopDomain;
     private final String apiKey;
     private final String appId;
     private final String applicationName;
 
+    private final Transport transport;
+
     final StoreService storeService;
     final AddressService addressService;
     final CheckoutService checkoutService;
-    final CustomerService customerService;
+    final CustomerServiceDefault customerService;
     final OrderService orderService;
     final ProductService productService;
+    final ConnectionPrewarmer connectionPrewarmer;
+
+    private final boolean blocking;
+
+    private volatile BuyClientDefault blockingClient;
 
     BuyClientDefault(
         final String apiKey,
@@ -81,67 +91,96 @@ final class BuyClientDefault implements BuyClient {
         final String shopDomain,
         final CustomerToken customerToken,
         final Scheduler callbackScheduler,
+        final Executor executor,
+        final int maxConcurrentRequests,
         final int productPageSize,
         final int networkRequestRetryMaxCount,
         final long networkRequestRetryDelayMs,
         final float networkRequestRetryBackoffMultiplier,
         final long httpConnectionTimeoutMs,
         final long httpReadWriteTimeoutMs,
+        final boolean catalogStringPoolEnabled,
+        final boolean shippingRatesPrefetchEnabled,
+        final boolean rateLimitingEnabled,
+        final BuyClientMetrics metrics,
+        final BuyClientTracer tracer,
         final Interceptor... interceptors
     ) {
-        this.apiKey = apiKey;
-        this.appId = appId;
-        this.applicationName = applicationName;
-        this.shopDomain = shopDomain;
-
-        final Interceptor requestInterceptor = new Interceptor() {
-            @Override
-            public okhttp3.Response intercept(final Chain chain) throws IOException {
-                final Request original = chain.request();
-                final Request.Builder builder = original.newBuilder().method(original.method(), original.body());
-                builder.header("Authorization", BuyClientUtils.formatBasicAuthorization(apiKey));
-
-                final CustomerToken customerToken = customerService.getCustomerToken();
-                if (customerToken != null && !TextUtils.isEmpty(customerToken.getAccessToken())) {
-                    builder.header(CUSTOMER_TOKEN_HEADER, customerToken.getAccessToken());
-                }
-
-                // Using the full package name for BuildConfig here as a work around for Javadoc.  The source paths need to be adjusted
-                builder.header("User-Agent", "Mobile Buy SDK Android/" + com.shopify.buy.BuildConfig.VERSION_NAME + "/" + applicationName);
-
-                return chain.proceed(builder.build());
+        this(
+            new Transport(apiKey, appId, applicationName, shopDomain, customerToken, executor, maxConcurrentRequests, productPageSize, networkRequestRetryMaxCount,
+                networkRequestRetryDelayMs, networkRequestRetryBackoffMultiplier, httpConnectionTimeoutMs, httpReadWriteTimeoutMs, catalogStringPoolEnabled,
+                shippingRatesPrefetchEnabled, rateLimitingEnabled, metrics, tracer, interceptors),
+            callbackScheduler,
+            false
+        );
+    }
+
+    /**
+     * @param blocking {@code true} to run the requests, the retry and polling delays and the callbacks on the subscribing thread
+     */
+    private BuyClientDefault(final Transport transport, final Scheduler callbackScheduler, final boolean blocking) {
+        this.transport = transport;
+        this.apiKey = transport.apiKey;
+        this.appId = transport.appId;
+        this.applicationName = transport.applicationName;
+        this.shopDomain = transport.shopDomain;
+        this.blocking = blocking;
+
+        final Scheduler timerScheduler = blocking ? Schedulers.immediate() : transport.timerScheduler;
+
+        connectionPrewarmer = transport.connectionPrewarmer;
+
+        final NetworkRetryPolicyProvider networkRetryPolicyProvider = new NetworkRetryPolicyProvider(transport.networkRequestRetryMaxCount,
+            transport.networkRequestRetryDelayMs, transport.networkRequestRetryBackoffMultiplier, timerScheduler);
+
+        final Retrofit checkoutRetrofit = createRetrofit(transport, blocking, RequestPriority.CHECKOUT);
+        final Retrofit customerRetrofit = createRetrofit(transport, blocking, RequestPriority.CUSTOMER);
+        final Retrofit catalogRetrofit = createRetrofit(transport, blocking, RequestPriority.CATALOG);
+
+        storeService = new StoreServiceDefault(catalogRetrofit, networkRetryPolicyProvider, callbackScheduler);
+        final CheckoutServiceDefault checkoutService = new CheckoutServiceDefault(checkoutRetrofit, transport.authorizationHeader, applicationName,
+            networkRetryPolicyProvider, callbackScheduler, timerScheduler, transport.checkoutUpdateQueue, transport.checkoutStateTracker,
+            transport.shippingRatesPrefetcher, connectionPrewarmer, transport.tracer);
+        this.checkoutService = checkoutService;
+
+        // the requests waiting for a customer token renewal may hold all the dispatcher slots and executor threads, so the renewal
+        // bypasses them: it is executed synchronously, on the io scheduler for this view and on the thread of the intercepted request
+        final Retrofit renewalRetrofit = blocking ? customerRetrofit : createRetrofit(transport, true, RequestPriority.CUSTOMER);
+        customerService = new CustomerServiceDefault(customerRetrofit, renewalRetrofit, blocking ? null : Schedulers.io(), transport.customerTokenRef,
+            transport.customerTokenRenewalRef, networkRetryPolicyProvider, callbackScheduler, transport.tracer);
+        if (!blocking) {
+            transport.requestInterceptor.setCustomerService(new CustomerServiceDefault(renewalRetrofit, renewalRetrofit, null, transport.customerTokenRef,
+                transport.customerTokenRenewalRef, networkRetryPolicyProvider, Schedulers.immediate(), transport.tracer));
+            // prefetches go through the asynchronous view, they must not run on the caller's thread
+            if (transport.shippingRatesPrefetcher != null) {
+                transport.shippingRatesPrefetcher.setFetchFunction(checkoutService.createShippingRatesPrefetchFunction());
             }
-        };
+        }
+        addressService = new AddressServiceDefault(customerRetrofit, networkRetryPolicyProvider, callbackScheduler, customerService);
+        orderService = new OrderServiceDefault(customerRetrofit, networkRetryPolicyProvider, callbackScheduler, customerService);
+        productService = new ProductServiceDefault(catalogRetrofit, appId, transport.productPageSize, networkRetryPolicyProvider, callbackScheduler);
+    }
 
-        final OkHttpClient.Builder builder = new OkHttpClient.Builder()
-            .connectTimeout(httpConnectionTimeoutMs, TimeUnit.MILLISECONDS)
-            .readTimeout(httpReadWriteTimeoutMs, TimeUnit.MILLISECONDS)
-            .writeTimeout(httpReadWriteTimeoutMs, TimeUnit.MILLISECONDS)
-            .addInterceptor(requestInterceptor);
+    /**
+     * @param priority the priority of the requests of the services created with the returned Retrofit instance
+     */
+    private static Retrofit createRetrofit(final Transport transport, final boolean blocking, final RequestPriority priority) {
+        final Scheduler requestScheduler = blocking ? null : transport.requestScheduler;
 
-        if (interceptors != null) {
-            for (Interceptor interceptor : interceptors) {
-                builder.addInterceptor(interceptor);
-            }
+        CallAdapter.Factory callAdapterFactory = requestScheduler != null ? RxJavaCallAdapterFactory.createWithScheduler(requestScheduler) : RxJavaCallAdapterFactory.create();
+        if (transport.metrics != null || transport.tracer.isEnabled()) {
+            callAdapterFactory = new ContextCallAdapterFactory(requestScheduler);
+        }
+        if (!blocking && transport.requestDispatcher != null) {
+            callAdapterFactory = transport.requestDispatcher.callAdapterFactory(callAdapterFactory, priority);
         }
 
-        final OkHttpClient httpClient = builder.build();
-
-        final Retrofit retrofit = new Retrofit.Builder()
-            .baseUrl("https://" + shopDomain + "/")
-            .addConverterFactory(GsonConverterFactory.create(BuyClientUtils.createDefaultGson()))
-            .addCallAdapterFactory(RxJavaCallAdapterFactory.createWithScheduler(Schedulers.io()))
-            .client(httpClient)
+        return new Retrofit.Builder()
+            .baseUrl("https://" + transport.shopDomain + "/")
+            .addConverterFactory(transport.converterFactory)
+            .addCallAdapterFactory(callAdapterFactory)
+            .client(transport.httpClient)
             .build();
-
-        final NetworkRetryPolicyProvider networkRetryPolicyProvider = new NetworkRetryPolicyProvider(networkRequestRetryMaxCount, networkRequestRetryDelayMs, networkRequestRetryBackoffMultiplier);
-
-        storeService = new StoreServiceDefault(retrofit, networkRetryPolicyProvider, callbackScheduler);
-        checkoutService = new CheckoutServiceDefault(retrofit, apiKey, applicationName, networkRetryPolicyProvider, callbackScheduler);
-        customerService = new CustomerServiceDefault(retrofit, customerToken, networkRetryPolicyProvider, callbackScheduler);
-        addressService = new AddressServiceDefault(retrofit, networkRetryPolicyProvider, callbackScheduler, customerService);
-        orderService = new OrderServiceDefault(retrofit, networkRetryPolicyProvider, callbackScheduler, customerService);
-        productService = new ProductServiceDefault(retrofit, appId, productPageSize, networkRetryPolicyProvider, callbackScheduler);
     }
 
     @Override
@@ -164,6 +203,38 @@ final class BuyClientDefault implements BuyClient {
         return shopDomain;
     }
 
+    @Override
+    public void prewarm() {
+        connectionPrewarmer.prewarm();
+    }
+
+    @Override
+    public BuyClient blocking() {
+        if (blocking) {
+            return this;
+        }
+
+        BuyClientDefault client = blockingClient;
+        if (client == null) {
+            synchronized (this) {
+                client = blockingClient;
+                if (client == null) {
+                    client = new BuyClientDefault(transport, Schedulers.immediate(), true);
+                    blockingClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    @Override
+    public int cancelQueuedRequests(final RequestPriority priority) {
+        if (priority == null) {
+            throw new NullPointerException("priority cannot be null");
+        }
+        return transport.requestDispatcher != null ? transport.requestDispatcher.cancelQueued(priority) : 0;
+    }
+
     // ----------- StoreService API ---------------
 
     @Override
@@ -501,6 +572,16 @@ final class BuyClientDefault implements BuyClient {
         return productService.getProducts(productIds);
     }
 
+    @Override
+    public CancellableTask getProducts(ProductProjection projection, List<Long> productIds, Callback<List<Product>> callback) {
+        return productService.getProducts(projection, productIds, callback);
+    }
+
+    @Override
+    public Observable<List<Product>> getProducts(ProductProjection projection, List<Long> productIds) {
+        return productService.getProducts(projection, productIds);
+    }
+
     @Override
     public CancellableTask getCollections(int page, Callback<List<Collection>> callback) {
         return productService.getCollections(page, callback);
@@ -541,6 +622,16 @@ final class BuyClientDefault implements BuyClient {
         return productService.getProducts(page, tags);
     }
 
+    @Override
+    public CancellableTask getProducts(ProductProjection projection, int page, Set<String> tags, Callback<List<Product>> callback) {
+        return productService.getProducts(projection, page, tags, callback);
+    }
+
+    @Override
+    public Observable<List<Product>> getProducts(ProductProjection projection, int page, Set<String> tags) {
+        return productService.getProducts(projection, page, tags);
+    }
+
     @Override
     public CancellableTask getProducts(int page, Long collectionId, Set<String> tags, SortOrder sortOrder, Callback<List<Product>> callback) {
         return productService.getProducts(page, collectionId, tags, sortOrder, callback);
@@ -550,4 +641,138 @@ final class BuyClientDefault implements BuyClient {
     public Observable<List<Product>> getProducts(int page, Long collectionId, Set<String> tags, SortOrder sortOrder) {
         return productService.getProducts(page, collectionId, tags, sortOrder);
     }
+
+    @Override
+    public CancellableTask getProducts(ProductProjection projection, int page, Long collectionId, Set<String> tags, SortOrder sortOrder, Callback<List<Product>> callback) {
+        return productService.getProducts(projection, page, collectionId, tags, sortOrder, callback);
+    }
+
+    @Override
+    public Observable<List<Product>> getProducts(ProductProjection projection, int page, Long collectionId, Set<String> tags, SortOrder sortOrder) {
+        return productService.getProducts(projection, page, collectionId, tags, sortOrder);
+    }
+
+    /**
+     * The HTTP client, the request workers and the settings shared by a client and its {@link #blocking()} view.
+     */
+    private static final class Transport {
+
+        final String apiKey;
+        final String appId;
+        final String applicationName;
+        final String shopDomain;
+        final String authorizationHeader;
+        final AtomicReference<CustomerToken> customerTokenRef;
+        final AtomicReference<Observable<CustomerToken>> customerTokenRenewalRef = new AtomicReference<>();
+        final CheckoutUpdateQueue checkoutUpdateQueue = new CheckoutUpdateQueue();
+        final CheckoutStateTracker checkoutStateTracker = new CheckoutStateTracker();
+        final ShippingRatesPrefetcher shippingRatesPrefetcher;
+        final Scheduler requestScheduler;
+        final RequestDispatcher requestDispatcher;
+        final Scheduler timerScheduler;
+        final int productPageSize;
+        final int networkRequestRetryMaxCount;
+        final long networkRequestRetryDelayMs;
+        final float networkRequestRetryBackoffMultiplier;
+        final BuyClientMetrics metrics;
+        final BuyClientTracer tracer;
+        final BuyClientRequestInterceptor requestInterceptor;
+        final OkHttpClient httpClient;
+        final Converter.Factory converterFactory;
+        final ConnectionPrewarmer connectionPrewarmer;
+
+        Transport(
+            final String apiKey,
+            final String appId,
+            final String applicationName,
+            final String shopDomain,
+            final CustomerToken customerToken,
+            final Executor executor,
+            final int maxConcurrentRequests,
+            final int productPageSize,
+            final int networkRequestRetryMaxCount,
+            final long networkRequestRetryDelayMs,
+            final float networkRequestRetryBackoffMultiplier,
+            final long httpConnectionTimeoutMs,
+            final long httpReadWriteTimeoutMs,
+            final boolean catalogStringPoolEnabled,
+            final boolean shippingRatesPrefetchEnabled,
+            final boolean rateLimitingEnabled,
+            final BuyClientMetrics metrics,
+            final BuyClientTracer tracer,
+            final Interceptor... interceptors
+        ) {
+            this.apiKey = apiKey;
+            this.appId = appId;
+            this.applicationName = applicationName;
+            this.shopDomain = shopDomain;
+            this.customerTokenRef = new AtomicReference<>(customerToken);
+            final RateLimitInterceptor rateLimitInterceptor = rateLimitingEnabled
+                ? new RateLimitInterceptor(shopDomain, RateLimitInterceptor.DEFAULT_LEAK_RATE_PER_SECOND) : null;
+            if (executor != null) {
+                this.requestScheduler = Schedulers.from(executor);
+                this.requestDispatcher = null;
+                this.timerScheduler = requestScheduler;
+            } else {
+                this.requestScheduler = null;
+                this.requestDispatcher = new RequestDispatcher(maxConcurrentRequests, rateLimitInterceptor);
+                this.timerScheduler = Schedulers.computation();
+            }
+            this.productPageSize = productPageSize;
+            this.networkRequestRetryMaxCount = networkRequestRetryMaxCount;
+            this.networkRequestRetryDelayMs = networkRequestRetryDelayMs;
+            this.networkRequestRetryBackoffMultiplier = networkRequestRetryBackoffMultiplier;
+            this.shippingRatesPrefetcher = shippingRatesPrefetchEnabled ? new ShippingRatesPrefetcher() : null;
+            this.metrics = metrics;
+            this.tracer = tracer;
+
+            authorizationHeader = BuyClientUtils.formatBasicAuthorization(apiKey);
+
+            final Platform platform = Platform.get();
+            final String userAgentHeader = "Mobile Buy SDK " + platform.getName() + "/" + platform.getVersionName() + "/" + applicationName;
+
+            // connecting, sending the request and reading the response are each bounded by the http timeouts
+            final long customerTokenRenewalTimeoutMs = httpConnectionTimeoutMs + 2 * httpReadWriteTimeoutMs;
+            requestInterceptor = new BuyClientRequestInterceptor(authorizationHeader, userAgentHeader, customerTokenRenewalTimeoutMs);
+
+            final OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectTimeout(httpConnectionTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(httpReadWriteTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(httpReadWriteTimeoutMs, TimeUnit.MILLISECONDS);
+
+            // ahead of the request interceptor, the admission of a dispatched request must not go to a customer token renewal it triggers
+            if (rateLimitInterceptor != null) {
+                builder.addInterceptor(rateLimitInterceptor);
+            }
+
+            builder.addInterceptor(requestInterceptor);
+
+            if (metrics != null) {
+                builder.addInterceptor(metrics.interceptor());
+            }
+
+            if (tracer.isEnabled()) {
+                builder.addInterceptor(tracer.interceptor());
+            }
+
+            if (interceptors != null) {
+                for (Interceptor interceptor : interceptors) {
+                    builder.addInterceptor(interceptor);
+                }
+            }
+
+            httpClient = builder.build();
+
+            final StringPool stringPool = catalogStringPoolEnabled ? new StringPool() : null;
+
+            final Gson gson = BuyClientUtils.createDefaultGson(stringPool);
+            Converter.Factory converterFactory = new UnwrappingConverterFactory(gson, GsonConverterFactory.create(gson));
+            if (metrics != null) {
+                converterFactory = metrics.converterFactory(converterFactory);
+            }
+            this.converterFactory = converterFactory;
+
+            connectionPrewarmer = new ConnectionPrewarmer(httpClient, HttpUrl.parse("https://" + shopDomain + "/"));
+        }
+    }
 }
@@ -23,11 +23,12 @@
  */
 package com.shopify.buy.dataprovider;
 
-import android.text.TextUtils;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.shopify.buy.utils.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -41,6 +42,9 @@ import retrofit2.Response;
 
 /**
  * Exception thrown when API call failed, and be returned in {@link Callback#failure(BuyClientError)}
+ * <p>
+ * The error body of the response is only read and parsed the first time it is asked for, errors that are retried or swallowed
+ * never pay for it.
  */
 public final class BuyClientError extends RuntimeException {
 
@@ -63,9 +67,10 @@ public final class BuyClientError extends RuntimeException {
 
     private final Response retrofitResponse;
 
-    private final String retrofitErrorBody;
+    // read from the response and parsed on first access, guarded by this
+    private String retrofitErrorBody;
 
-    private final JSONObject errorsRootJsonObject;
+    private JsonObject errorsRootJsonObject;
 
     public BuyClientError(final Throwable throwable) {
         super(throwable);
@@ -75,10 +80,8 @@ public final class BuyClientError extends RuntimeException {
 
         if (throwable instanceof IOException) {
             type = ERROR_TYPE_NETWORK;
-            errorsRootJsonObject = null;
         } else {
             type = ERROR_TYPE_UNKNOWN;
-            errorsRootJsonObject = null;
         }
     }
 
@@ -87,11 +90,8 @@ public final class BuyClientError extends RuntimeException {
 
         if (retrofitResponse != null) {
             type = ERROR_TYPE_API;
-            retrofitErrorBody = extractRetrofitErrorBody(retrofitResponse);
-            errorsRootJsonObject = parseRetrofitErrorResponse(retrofitErrorBody);
         } else {
             type = ERROR_TYPE_UNKNOWN;
-            errorsRootJsonObject = null;
             retrofitErrorBody = "";
         }
     }
@@ -119,7 +119,11 @@ public final class BuyClientError extends RuntimeException {
      *
      * @return retrofit response error body
      */
-    public String getRetrofitErrorBody() {
+    public synchronized String getRetrofitErrorBody() {
+        if (retrofitErrorBody == null) {
+            retrofitErrorBody = extractRetrofitErrorBody(retrofitResponse);
+            errorsRootJsonObject = parseRetrofitErrorResponse(retrofitErrorBody);
+        }
         return retrofitErrorBody;
     }
 
@@ -132,6 +136,7 @@ public final class BuyClientError extends RuntimeException {
      * @return map of error codes and messages if found, {@code null} otherwise
      */
     public Map<String, String> getErrors(final String... path) {
+        final JsonObject errorsRootJsonObject = getErrorsRootJsonObject();
         if (errorsRootJsonObject == null) {
             return null;
         }
@@ -141,15 +146,15 @@ public final class BuyClientError extends RuntimeException {
         }
 
         final Iterator<String> pathIterator = Arrays.asList(path).iterator();
-        JSONObject rootJsonObject = errorsRootJsonObject;
+        JsonObject rootJsonObject = errorsRootJsonObject;
         try {
             while (pathIterator.hasNext()) {
                 final String pathElement = pathIterator.next();
                 if (rootJsonObject.has(pathElement)) {
                     if (pathIterator.hasNext()) {
-                        rootJsonObject = rootJsonObject.getJSONObject(pathElement);
+                        rootJsonObject = rootJsonObject.getAsJsonObject(pathElement);
                     } else {
-                        return parseErrorMessages(rootJsonObject.getJSONArray(pathElement));
+                        return parseErrorMessages(rootJsonObject.getAsJsonArray(pathElement));
                     }
                 } else {
                     break;
@@ -170,25 +175,26 @@ public final class BuyClientError extends RuntimeException {
      * @return ordered list of line items errors
      */
     public List<Map<String, String>> getLineItemErrors(final String property) {
+        final JsonObject errorsRootJsonObject = getErrorsRootJsonObject();
         if (errorsRootJsonObject == null) {
             return null;
         }
 
-        if (TextUtils.isEmpty(property)) {
+        if (StringUtils.isEmpty(property)) {
             return null;
         }
 
         final Iterator<String> pathIterator = Arrays.asList("checkout", "line_items").iterator();
-        JSONObject rootJsonObject = errorsRootJsonObject;
+        JsonObject rootJsonObject = errorsRootJsonObject;
         try {
-            JSONArray lineItemJsonErrors = null;
+            JsonArray lineItemJsonErrors = null;
             while (pathIterator.hasNext()) {
                 final String pathElement = pathIterator.next();
                 if (rootJsonObject.has(pathElement)) {
                     if (pathIterator.hasNext()) {
-                        rootJsonObject = rootJsonObject.getJSONObject(pathElement);
+                        rootJsonObject = rootJsonObject.getAsJsonObject(pathElement);
                     } else {
-                        lineItemJsonErrors = rootJsonObject.getJSONArray(pathElement);
+                        lineItemJsonErrors = rootJsonObject.getAsJsonArray(pathElement);
                     }
                 } else {
                     return null;
@@ -200,13 +206,13 @@ public final class BuyClientError extends RuntimeException {
             }
 
             final List<Map<String, String>> lineItemErrors = new ArrayList<>();
-            for (int i = 0; i < lineItemJsonErrors.length(); i++) {
+            for (int i = 0; i < lineItemJsonErrors.size(); i++) {
                 lineItemErrors.add(null);
-                if (!lineItemJsonErrors.isNull(i)) {
-                    final JSONObject lineItemError = lineItemJsonErrors.getJSONObject(i);
+                if (!lineItemJsonErrors.get(i).isJsonNull()) {
+                    final JsonObject lineItemError = lineItemJsonErrors.get(i).getAsJsonObject();
                     if (lineItemError.has(property)) {
                         try {
-                            lineItemErrors.set(i, parseErrorMessages(lineItemError.getJSONArray(property)));
+                            lineItemErrors.set(i, parseErrorMessages(lineItemError.getAsJsonArray(property)));
                         } catch (Exception e) {
                             // ignore
                         }
@@ -219,6 +225,11 @@ public final class BuyClientError extends RuntimeException {
         }
     }
 
+    private synchronized JsonObject getErrorsRootJsonObject() {
+        getRetrofitErrorBody();
+        return errorsRootJsonObject;
+    }
+
     private String extractRetrofitErrorBody(final Response retrofitResponse) {
         try {
             return retrofitResponse.errorBody().string();
@@ -227,28 +238,31 @@ public final class BuyClientError extends RuntimeException {
         }
     }
 
-    private JSONObject parseRetrofitErrorResponse(final String retrofitErrorBody) {
-        if (TextUtils.isEmpty(retrofitErrorBody)) {
+    private JsonObject parseRetrofitErrorResponse(final String retrofitErrorBody) {
+        if (StringUtils.isEmpty(retrofitErrorBody)) {
             return null;
         }
 
         try {
-            final JSONObject jsonObject = new JSONObject(retrofitErrorBody);
-            if (jsonObject.has("errors")) {
-                return jsonObject.getJSONObject("errors");
+            final JsonElement json = new JsonParser().parse(retrofitErrorBody);
+            if (json.isJsonObject()) {
+                final JsonElement errors = json.getAsJsonObject().get("errors");
+                if (errors != null && errors.isJsonObject()) {
+                    return errors.getAsJsonObject();
+                }
             }
-        } catch (JSONException e) {
+        } catch (JsonParseException e) {
             //ignore
         }
 
         return null;
     }
 
-    private Map<String, String> parseErrorMessages(final JSONArray errors) throws JSONException {
+    private Map<String, String> parseErrorMessages(final JsonArray errors) {
         final Map<String, String> result = new LinkedHashMap<>();
-        for (int i = 0; i < errors.length(); i++) {
-            final JSONObject error = errors.getJSONObject(i);
-            result.put(error.getString("code"), error.getString("message"));
+        for (int i = 0; i < errors.size(); i++) {
+            final JsonObject error = errors.get(i).getAsJsonObject();
+            result.put(error.get("code").getAsString(), error.get("message").getAsString());
         }
         return result;
     }
@@ -27,7 +27,8 @@ import rx.Observable;
 import rx.functions.Func1;
 
 /**
- * Handler that wraps all exception into {@link BuyClientError}
+ * Handler that wraps all exception into {@link BuyClientError}. A {@link PollingRequiredException} that outlived the polling
+ * policy is reported as the {@code 202 Accepted} response it carries.
  */
 final class BuyClientExceptionHandler<R> implements Func1<Throwable, Observable<R>> {
 
@@ -35,6 +36,8 @@ final class BuyClientExceptionHandler<R> implements Func1<Throwable, Observable<
     public Observable<R> call(final Throwable t) {
         if (t instanceof BuyClientError) {
             return Observable.error(t);
+        } else if (t instanceof PollingRequiredException && ((PollingRequiredException) t).getRetrofitResponse() != null) {
+            return Observable.error(new BuyClientError(((PollingRequiredException) t).getRetrofitResponse()));
         } else {
             return Observable.error(new BuyClientError(t));
         }
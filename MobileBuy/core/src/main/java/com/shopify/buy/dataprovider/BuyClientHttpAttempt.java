@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.io.IOException;
+
+/**
+ * Timings and sizes of a single HTTP request issued by the {@link BuyClient}, reported to {@link BuyClientMetricsListener#onHttpAttempt(long, String, BuyClientHttpAttempt)}.
+ */
+public final class BuyClientHttpAttempt {
+
+    private final String endpoint;
+
+    private final String method;
+
+    private final int statusCode;
+
+    private final long requestBytes;
+
+    private final long responseBytes;
+
+    private final long timeToHeadersNanos;
+
+    private final long durationNanos;
+
+    private final IOException error;
+
+    BuyClientHttpAttempt(final String endpoint, final String method, final int statusCode, final long requestBytes, final long responseBytes,
+                         final long timeToHeadersNanos, final long durationNanos, final IOException error) {
+        this.endpoint = endpoint;
+        this.method = method;
+        this.statusCode = statusCode;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.timeToHeadersNanos = timeToHeadersNanos;
+        this.durationNanos = durationNanos;
+        this.error = error;
+    }
+
+    /**
+     * @return the HTTP method followed by the request path, with the path segments containing ids or tokens replaced by {@code {id}},
+     * for example {@code "PATCH /api/checkouts/{id}.json"}
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the HTTP method of the request
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the HTTP status code of the response, or -1 if no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the size of the request body in bytes, or -1 if unknown
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return the number of bytes of the response body that have been read, or -1 if no response was received
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return the time until the response headers were received in nanoseconds, or -1 if no response was received
+     */
+    public long getTimeToHeadersNanos() {
+        return timeToHeadersNanos;
+    }
+
+    /**
+     * @return the total duration of the request, including reading the response body, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the network error the request failed with, or {@code null} if a response was received
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + " status=" + statusCode + " requestBytes=" + requestBytes + " responseBytes=" + responseBytes
+            + " durationNanos=" + durationNanos + (error != null ? " error=" + error : "");
+    }
+}
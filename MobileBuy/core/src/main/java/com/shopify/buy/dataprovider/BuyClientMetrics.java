@@ -0,0 +1,474 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Collects the events reported to a {@link BuyClientMetricsListener}.
+ * <p>
+ * Every logical call made through the {@link BuyClient} returned by {@link #instrument(BuyClient)}, and every subscription to an
+ * {@link Observable} it returns, gets a {@link Tracker}. The tracker is made current on the calling thread while the call assembles its
+ * Retrofit requests, and {@link ContextCallAdapterFactory} makes it current again on the io thread whenever one of these requests is
+ * executed. This is how the HTTP interceptor, the response converters and the retry and polling policies, which all run on that
+ * thread, attribute their events to the logical call even across Rx retries and polling.
+ * None of this is installed when no listener is set, in which case {@link #currentTracker()} is always {@code null}.
+ */
+final class BuyClientMetrics {
+
+    private static final ThreadLocal<Tracker> CURRENT_TRACKER = new ThreadLocal<>();
+
+    private final BuyClientMetricsListener listener;
+
+    private final AtomicLong lastCallId = new AtomicLong();
+
+    BuyClientMetrics(final BuyClientMetricsListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener cannot be null");
+        }
+        this.listener = listener;
+    }
+
+    /**
+     * @return the tracker of the logical call running on the current thread, or {@code null} if none
+     */
+    static Tracker currentTracker() {
+        return CURRENT_TRACKER.get();
+    }
+
+    /**
+     * Makes {@code tracker} current on the calling thread.
+     *
+     * @param tracker the tracker to make current, can be {@code null}
+     * @return the previously current tracker, to be restored once done
+     */
+    static Tracker setCurrentTracker(final Tracker tracker) {
+        final Tracker previousTracker = CURRENT_TRACKER.get();
+        if (tracker == null) {
+            CURRENT_TRACKER.remove();
+        } else {
+            CURRENT_TRACKER.set(tracker);
+        }
+        return previousTracker;
+    }
+
+    Tracker newTracker(final String operation) {
+        return new Tracker(lastCallId.incrementAndGet(), operation);
+    }
+
+    /**
+     * Wraps {@code buyClient} so that every call returning an {@link Observable} or a {@link CancellableTask} is tracked.
+     *
+     * @param buyClient the client to wrap, not null
+     * @return the tracking client
+     */
+    BuyClient instrument(final BuyClient buyClient) {
+        if (buyClient == null) {
+            throw new NullPointerException("buyClient cannot be null");
+        }
+
+        return (BuyClient) Proxy.newProxyInstance(BuyClient.class.getClassLoader(), new Class<?>[]{BuyClient.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                final Class<?> returnType = method.getReturnType();
+                if (method.getDeclaringClass() == Object.class) {
+                    return "equals".equals(method.getName()) ? proxy == args[0] : invokeDelegate(buyClient, method, args);
+                } else if (returnType == BuyClient.class) {
+                    final BuyClient view = (BuyClient) invokeDelegate(buyClient, method, args);
+                    return view == buyClient ? proxy : instrument(view);
+                } else if (returnType != Observable.class && returnType != CancellableTask.class) {
+                    return invokeDelegate(buyClient, method, args);
+                }
+
+                final Tracker tracker = newTracker(method.getName());
+                if (returnType == Observable.class) {
+                    return trackSubscriptions(tracker, buyClient, method, args);
+                }
+
+                for (int i = 0; args != null && i < args.length; i++) {
+                    if (args[i] instanceof Callback) {
+                        args[i] = tracker.track((Callback<?>) args[i]);
+                    }
+                }
+                tracker.start();
+                return tracker.track((CancellableTask) invokeTracked(tracker, buyClient, method, args));
+            }
+        });
+    }
+
+    /**
+     * Every subscription to the returned observable is a logical call of its own with its own tracker, so re-subscribing (e.g. with
+     * {@code retry()}) reports a new call. The first subscription uses the observable created right away, which keeps the argument
+     * checks of the call synchronous, the following ones call the delegate again to create requests that capture their new tracker.
+     */
+    @SuppressWarnings("unchecked")
+    private Observable<Object> trackSubscriptions(final Tracker firstTracker, final BuyClient buyClient, final Method method, final Object[] args)
+        throws Throwable {
+        final AtomicReference<Observable<Object>> firstObservable = new AtomicReference<>(
+            (Observable<Object>) invokeTracked(firstTracker, buyClient, method, args));
+
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            public Observable<Object> call() {
+                final Observable<Object> observable = firstObservable.getAndSet(null);
+                if (observable != null) {
+                    return firstTracker.track(observable);
+                }
+
+                final Tracker tracker = newTracker(method.getName());
+                try {
+                    return tracker.track((Observable<Object>) invokeTracked(tracker, buyClient, method, args));
+                } catch (Throwable t) {
+                    return Observable.error(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Calls the delegate with {@code tracker} current, so the requests it creates capture it.
+     */
+    private static Object invokeTracked(final Tracker tracker, final BuyClient buyClient, final Method method, final Object[] args) throws Throwable {
+        final Tracker previousTracker = setCurrentTracker(tracker);
+        try {
+            return invokeDelegate(buyClient, method, args);
+        } catch (Throwable t) {
+            tracker.end(t);
+            throw t;
+        } finally {
+            setCurrentTracker(previousTracker);
+        }
+    }
+
+    /**
+     * Wraps a converter factory so that the time spent deserializing responses is reported.
+     *
+     * @param converterFactory the converter factory to wrap
+     * @return the timing converter factory
+     */
+    Converter.Factory converterFactory(final Converter.Factory converterFactory) {
+        return new TimingConverterFactory(converterFactory);
+    }
+
+    /**
+     * @return the interceptor that reports the timings and sizes of each HTTP request
+     */
+    Interceptor interceptor() {
+        return new HttpAttemptInterceptor();
+    }
+
+    static String endpointOf(final Request request) {
+        final StringBuilder endpoint = new StringBuilder(request.method()).append(' ');
+        for (String segment : request.url().pathSegments()) {
+            endpoint.append('/');
+            if (containsDigit(segment)) {
+                // ids and tokens vary from one request to the other, keep only the extension
+                final int extensionIndex = segment.lastIndexOf('.');
+                endpoint.append("{id}").append(extensionIndex >= 0 ? segment.substring(extensionIndex) : "");
+            } else {
+                endpoint.append(segment);
+            }
+        }
+        return endpoint.toString();
+    }
+
+    private static boolean containsDigit(final String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (Character.isDigit(segment.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object invokeDelegate(final Object delegate, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void reportHttpAttempt(final Tracker tracker, final BuyClientHttpAttempt attempt) {
+        if (tracker != null) {
+            listener.onHttpAttempt(tracker.callId, tracker.operation, attempt);
+        } else {
+            listener.onHttpAttempt(0, null, attempt);
+        }
+    }
+
+    private void reportDeserialization(final Tracker tracker, final Type type, final long durationNanos) {
+        final String responseType = type instanceof Class ? ((Class<?>) type).getSimpleName() : type.toString();
+        if (tracker != null) {
+            listener.onDeserialization(tracker.callId, tracker.operation, responseType, durationNanos);
+        } else {
+            listener.onDeserialization(0, null, responseType, durationNanos);
+        }
+    }
+
+    /**
+     * State of a single logical call.
+     */
+    final class Tracker {
+
+        final long callId;
+
+        final String operation;
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private final AtomicBoolean resultEmitted = new AtomicBoolean();
+
+        private final AtomicInteger retryCount = new AtomicInteger();
+
+        private final AtomicInteger pollCount = new AtomicInteger();
+
+        private volatile long startNanos;
+
+        Tracker(final long callId, final String operation) {
+            this.callId = callId;
+            this.operation = operation;
+        }
+
+        void start() {
+            if (started.compareAndSet(false, true)) {
+                startNanos = System.nanoTime();
+                listener.onCallStart(callId, operation);
+            }
+        }
+
+        void end(final Throwable error) {
+            if (ended.compareAndSet(false, true)) {
+                start();
+                listener.onCallEnd(callId, operation, System.nanoTime() - startNanos, error);
+            }
+        }
+
+        void onRetry(final Throwable reason, final long delayMs) {
+            listener.onRetry(callId, operation, retryCount.incrementAndGet(), reason, delayMs);
+        }
+
+        void onPoll(final long delayMs) {
+            listener.onPoll(callId, operation, pollCount.incrementAndGet(), delayMs);
+        }
+
+        void onQueueWait(final RequestPriority priority, final long waitNanos) {
+            listener.onQueueWait(callId, operation, priority, waitNanos);
+        }
+
+        <T> Observable<T> track(final Observable<T> observable) {
+            return observable
+                .doOnSubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        start();
+                    }
+                })
+                .doOnNext(new Action1<T>() {
+                    @Override
+                    public void call(T result) {
+                        // calls emit a single result, the call ends when it is delivered rather than when first() unsubscribes
+                        resultEmitted.set(true);
+                        end(null);
+                    }
+                })
+                .doOnCompleted(new Action0() {
+                    @Override
+                    public void call() {
+                        end(null);
+                    }
+                })
+                .doOnError(new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable t) {
+                        end(t);
+                    }
+                })
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        // operators like first() unsubscribe as soon as they get a result, that is not a cancellation
+                        end(resultEmitted.get() ? null : new CancellationException());
+                    }
+                });
+        }
+
+        <T> Callback<T> track(final Callback<T> callback) {
+            return new Callback<T>() {
+                @Override
+                public void success(T response) {
+                    end(null);
+                    callback.success(response);
+                }
+
+                @Override
+                public void failure(BuyClientError error) {
+                    end(error);
+                    callback.failure(error);
+                }
+            };
+        }
+
+        CancellableTask track(final CancellableTask task) {
+            return new CancellableTask() {
+                @Override
+                public void cancel() {
+                    end(new CancellationException());
+                    task.cancel();
+                }
+            };
+        }
+    }
+
+    private final class TimingConverterFactory extends Converter.Factory {
+
+        private final Converter.Factory delegate;
+
+        TimingConverterFactory(final Converter.Factory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Converter<ResponseBody, ?> responseBodyConverter(final Type type, final Annotation[] annotations, final Retrofit retrofit) {
+            final Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+            if (converter == null) {
+                return null;
+            }
+
+            return new Converter<ResponseBody, Object>() {
+                @Override
+                public Object convert(ResponseBody value) throws IOException {
+                    final long startNanos = System.nanoTime();
+                    try {
+                        return converter.convert(value);
+                    } finally {
+                        reportDeserialization(currentTracker(), type, System.nanoTime() - startNanos);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Converter<?, RequestBody> requestBodyConverter(final Type type, final Annotation[] parameterAnnotations, final Annotation[] methodAnnotations, final Retrofit retrofit) {
+            return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+        }
+
+        @Override
+        public Converter<?, String> stringConverter(final Type type, final Annotation[] annotations, final Retrofit retrofit) {
+            return delegate.stringConverter(type, annotations, retrofit);
+        }
+    }
+
+    private final class HttpAttemptInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(final Chain chain) throws IOException {
+            final Tracker tracker = currentTracker();
+            final Request request = chain.request();
+            final String endpoint = endpointOf(request);
+            final long requestBytes = request.body() != null ? request.body().contentLength() : 0;
+            final long startNanos = System.nanoTime();
+
+            final Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                reportHttpAttempt(tracker, new BuyClientHttpAttempt(endpoint, request.method(), -1, requestBytes, -1, -1, System.nanoTime() - startNanos, e));
+                throw e;
+            }
+
+            final long timeToHeadersNanos = System.nanoTime() - startNanos;
+            final ResponseBody body = response.body();
+            if (body == null) {
+                reportHttpAttempt(tracker, new BuyClientHttpAttempt(endpoint, request.method(), response.code(), requestBytes, 0, timeToHeadersNanos, timeToHeadersNanos, null));
+                return response;
+            }
+
+            // the attempt is reported once the body has been fully read or closed, so that its size and the transfer time are known
+            final BufferedSource countingSource = Okio.buffer(new ForwardingSource(body.source()) {
+
+                private long responseBytes;
+
+                private boolean reported;
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    final long read = super.read(sink, byteCount);
+                    if (read == -1) {
+                        report();
+                    } else {
+                        responseBytes += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    report();
+                }
+
+                private void report() {
+                    if (!reported) {
+                        reported = true;
+                        reportHttpAttempt(tracker, new BuyClientHttpAttempt(endpoint, request.method(), response.code(), requestBytes, responseBytes, timeToHeadersNanos, System.nanoTime() - startNanos, null));
+                    }
+                }
+            });
+
+            return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), countingSource))
+                .build();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.shopify.buy.utils.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link BuyClientMetricsListener} that aggregates the events into latency histograms and counters, per operation and per endpoint.
+ * <p>
+ * Operation stats are keyed by the name of the {@link BuyClient} method (for example {@code "createCheckout"}) and cover the whole
+ * logical call. Endpoint stats are keyed by {@link BuyClientHttpAttempt#getEndpoint()} and cover each HTTP request. All latencies
+ * are recorded in microseconds. The time requests spend waiting for a worker is recorded per {@link RequestPriority}.
+ */
+public final class BuyClientMetricsAggregator implements BuyClientMetricsListener {
+
+    private final ConcurrentMap<String, Stats> operationStats = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Stats> endpointStats = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<RequestPriority, LatencyHistogram> queueWaitLatencies = new ConcurrentHashMap<>();
+
+    /**
+     * @return the stats of each operation, keyed by operation name
+     */
+    public Map<String, Stats> getOperationStats() {
+        return Collections.unmodifiableMap(operationStats);
+    }
+
+    /**
+     * @return the stats of each endpoint, keyed by endpoint
+     */
+    public Map<String, Stats> getEndpointStats() {
+        return Collections.unmodifiableMap(endpointStats);
+    }
+
+    /**
+     * @return the time the requests spent waiting for a worker, in microseconds, keyed by priority
+     */
+    public Map<RequestPriority, LatencyHistogram> getQueueWaitLatencies() {
+        return Collections.unmodifiableMap(queueWaitLatencies);
+    }
+
+    /**
+     * Drops all the aggregated stats.
+     */
+    public void reset() {
+        operationStats.clear();
+        endpointStats.clear();
+        queueWaitLatencies.clear();
+    }
+
+    @Override
+    public void onCallStart(final long callId, final String operation) {
+    }
+
+    @Override
+    public void onHttpAttempt(final long callId, final String operation, final BuyClientHttpAttempt attempt) {
+        final Stats stats = getStats(endpointStats, attempt.getEndpoint());
+        stats.record(attempt.getDurationNanos(), attempt.getError());
+        if (attempt.getError() == null && attempt.getStatusCode() >= 400) {
+            stats.recordErrorType("HTTP " + attempt.getStatusCode());
+        }
+        if (attempt.getRequestBytes() > 0) {
+            stats.requestBytes.addAndGet(attempt.getRequestBytes());
+        }
+        if (attempt.getResponseBytes() > 0) {
+            stats.responseBytes.addAndGet(attempt.getResponseBytes());
+        }
+    }
+
+    @Override
+    public void onRetry(final long callId, final String operation, final int retryCount, final Throwable reason, final long delayMs) {
+        getStats(operationStats, operation).retryCount.incrementAndGet();
+    }
+
+    @Override
+    public void onPoll(final long callId, final String operation, final int pollCount, final long delayMs) {
+        getStats(operationStats, operation).pollCount.incrementAndGet();
+    }
+
+    @Override
+    public void onQueueWait(final long callId, final String operation, final RequestPriority priority, final long waitNanos) {
+        LatencyHistogram latency = queueWaitLatencies.get(priority);
+        if (latency == null) {
+            final LatencyHistogram newLatency = new LatencyHistogram();
+            latency = queueWaitLatencies.putIfAbsent(priority, newLatency);
+            if (latency == null) {
+                latency = newLatency;
+            }
+        }
+        latency.recordValue(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+
+    @Override
+    public void onDeserialization(final long callId, final String operation, final String responseType, final long durationNanos) {
+        if (operation != null) {
+            getStats(operationStats, operation).deserializationLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        }
+    }
+
+    @Override
+    public void onCallEnd(final long callId, final String operation, final long durationNanos, final Throwable error) {
+        getStats(operationStats, operation).record(durationNanos, error);
+    }
+
+    private static Stats getStats(final ConcurrentMap<String, Stats> statsMap, final String key) {
+        Stats stats = statsMap.get(key);
+        if (stats == null) {
+            final Stats newStats = new Stats();
+            stats = statsMap.putIfAbsent(key, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Latencies and counters of an operation or an endpoint.
+     */
+    public static final class Stats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LatencyHistogram deserializationLatency = new LatencyHistogram();
+
+        private final AtomicLong errorCount = new AtomicLong();
+
+        private final ConcurrentMap<String, AtomicLong> errorTypeCounts = new ConcurrentHashMap<>();
+
+        private final AtomicLong retryCount = new AtomicLong();
+
+        private final AtomicLong pollCount = new AtomicLong();
+
+        private final AtomicLong requestBytes = new AtomicLong();
+
+        private final AtomicLong responseBytes = new AtomicLong();
+
+        Stats() {
+        }
+
+        /**
+         * @return the latency of the calls or requests, in microseconds
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the time spent deserializing responses, in microseconds, only recorded for operations
+         */
+        public LatencyHistogram getDeserializationLatency() {
+            return deserializationLatency;
+        }
+
+        /**
+         * @return the number of completed calls or requests, including the failed ones
+         */
+        public long getCount() {
+            return latency.getTotalCount();
+        }
+
+        /**
+         * @return the number of failed calls or requests
+         */
+        public long getErrorCount() {
+            return errorCount.get();
+        }
+
+        /**
+         * @return the number of errors by type: the HTTP status code for API errors (for example {@code "HTTP 422"}), the simple
+         * class name of the exception otherwise
+         */
+        public Map<String, Long> getErrorTypeCounts() {
+            final Map<String, Long> counts = new HashMap<>();
+            for (Map.Entry<String, AtomicLong> entry : errorTypeCounts.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().get());
+            }
+            return counts;
+        }
+
+        /**
+         * @return the number of network retries, only recorded for operations
+         */
+        public long getRetryCount() {
+            return retryCount.get();
+        }
+
+        /**
+         * @return the number of polls, only recorded for operations
+         */
+        public long getPollCount() {
+            return pollCount.get();
+        }
+
+        /**
+         * @return the number of request body bytes sent, only recorded for endpoints
+         */
+        public long getRequestBytes() {
+            return requestBytes.get();
+        }
+
+        /**
+         * @return the number of response body bytes received, only recorded for endpoints
+         */
+        public long getResponseBytes() {
+            return responseBytes.get();
+        }
+
+        @Override
+        public String toString() {
+            return "latency[" + latency + "] errors=" + errorCount.get() + " retries=" + retryCount.get() + " polls=" + pollCount.get()
+                + " requestBytes=" + requestBytes.get() + " responseBytes=" + responseBytes.get();
+        }
+
+        void record(final long durationNanos, final Throwable error) {
+            latency.recordValue(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+            if (error != null) {
+                recordErrorType(errorTypeOf(error));
+            }
+        }
+
+        void recordErrorType(final String errorType) {
+            errorCount.incrementAndGet();
+            AtomicLong count = errorTypeCounts.get(errorType);
+            if (count == null) {
+                final AtomicLong newCount = new AtomicLong();
+                count = errorTypeCounts.putIfAbsent(errorType, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        private static String errorTypeOf(final Throwable error) {
+            if (error instanceof BuyClientError) {
+                final BuyClientError buyClientError = (BuyClientError) error;
+                if (buyClientError.getRetrofitResponse() != null) {
+                    return "HTTP " + buyClientError.getRetrofitResponse().code();
+                } else if (buyClientError.getCause() != null) {
+                    return buyClientError.getCause().getClass().getSimpleName();
+                }
+            }
+            return error.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+/**
+ * Receives structured events for each logical {@link BuyClient} call, from the moment the call is started until it completes,
+ * including all the HTTP requests, network retries and polling it performs under the hood.
+ * <p>
+ * Set it with {@link BuyClientBuilder#metricsListener(BuyClientMetricsListener)}. A logical call is one invocation of a
+ * {@link BuyClient} method returning an {@code Observable} or a {@link CancellableTask}, {@code callId} identifies it across all
+ * its events. Events are delivered synchronously on the threads doing the work, so implementations must be thread-safe, fast and
+ * must never throw. {@link BuyClientMetricsAggregator} is a ready to use implementation.
+ */
+public interface BuyClientMetricsListener {
+
+    /**
+     * Called when a logical call starts, i.e. when the {@code Observable} is subscribed to or when the {@link Callback} variant is invoked.
+     *
+     * @param callId    the identifier of the call
+     * @param operation the name of the {@link BuyClient} method, for example {@code "createCheckout"}
+     */
+    void onCallStart(long callId, String operation);
+
+    /**
+     * Called once an HTTP request completes, either when its response body has been consumed or when it failed.
+     *
+     * @param callId    the identifier of the call that issued the request, or 0 if it was not issued as part of a call
+     * @param operation the name of the operation, or {@code null} if the request was not issued as part of a call
+     * @param attempt   the timings and sizes of the request
+     */
+    void onHttpAttempt(long callId, String operation, BuyClientHttpAttempt attempt);
+
+    /**
+     * Called when a request that failed with a network error is about to be retried.
+     *
+     * @param callId     the identifier of the call
+     * @param operation  the name of the operation
+     * @param retryCount the number of retries of this call so far, including this one
+     * @param reason     the error that caused the retry
+     * @param delayMs    the delay before the retry, in milliseconds
+     */
+    void onRetry(long callId, String operation, int retryCount, Throwable reason, long delayMs);
+
+    /**
+     * Called when a request is about to be polled again because its result is not ready yet (HTTP 202).
+     *
+     * @param callId    the identifier of the call
+     * @param operation the name of the operation
+     * @param pollCount the number of polls of this call so far, including this one
+     * @param delayMs   the delay before the next poll, in milliseconds
+     */
+    void onPoll(long callId, String operation, int pollCount, long delayMs);
+
+    /**
+     * Called when a request is picked up by a worker, see {@link BuyClientBuilder#maxConcurrentRequests(int)}. Not called for the
+     * requests of a blocking client or of a client with an executor, nor for the requests that run right away on the worker that
+     * issued them.
+     *
+     * @param callId    the identifier of the call
+     * @param operation the name of the operation
+     * @param priority  the priority the request was queued with
+     * @param waitNanos the time spent waiting for a worker, in nanoseconds
+     */
+    void onQueueWait(long callId, String operation, RequestPriority priority, long waitNanos);
+
+    /**
+     * Called once a response body has been deserialized. As the body is streamed, the duration includes reading the body from the network.
+     *
+     * @param callId         the identifier of the call, or 0 if the response was not received as part of a call
+     * @param operation      the name of the operation, or {@code null} if the response was not received as part of a call
+     * @param responseType   the name of the deserialized type
+     * @param durationNanos  the time spent deserializing, in nanoseconds
+     */
+    void onDeserialization(long callId, String operation, String responseType, long durationNanos);
+
+    /**
+     * Called when a logical call delivers its result, fails or is cancelled. Called exactly once per call.
+     *
+     * @param callId        the identifier of the call
+     * @param operation     the name of the operation
+     * @param durationNanos the duration of the call, in nanoseconds
+     * @param error         {@code null} if the call succeeded, the error otherwise, a {@link java.util.concurrent.CancellationException} if it was cancelled
+     */
+    void onCallEnd(long callId, String operation, long durationNanos, Throwable error);
+}
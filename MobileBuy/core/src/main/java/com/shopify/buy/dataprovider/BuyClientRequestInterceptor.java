@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.shopify.buy.model.CustomerToken;
+import com.shopify.buy.utils.StringUtils;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
+
+/**
+ * Adds the authorization, user agent and customer token headers to every request. The constant headers are computed once, the
+ * customer token header is cached for the token instance it was computed from, and requests that already carry the expected headers
+ * are passed through as they are.
+ * <p>
+ * Also renews the customer token shortly before it expires, and replays a request rejected with a 401 once with a renewed token. Only
+ * requests authenticated by the customer token do so.
+ */
+final class BuyClientRequestInterceptor implements Interceptor {
+
+    static final String AUTHORIZATION_HEADER = "Authorization";
+
+    static final String USER_AGENT_HEADER = "User-Agent";
+
+    static final String CUSTOMER_TOKEN_HEADER = "X-Shopify-Customer-Access-Token";
+
+    private static final String CUSTOMERS_PATH = "/api/customers.json";
+
+    private static final Pattern CUSTOMER_AUTHENTICATED_PATH = Pattern.compile(".*/api/customers/\\d+(\\.json|/addresses.*|/orders.*)");
+
+    private final String authorizationHeader;
+
+    private final String userAgentHeader;
+
+    private final long customerTokenRenewalTimeoutMs;
+
+    private volatile CustomerServiceDefault customerService;
+
+    private volatile CustomerTokenHeader customerTokenHeader;
+
+    /**
+     * @param customerTokenRenewalTimeoutMs how long a request waits for the renewal of the customer token before it is sent with the
+     *                                      current token
+     */
+    BuyClientRequestInterceptor(final String authorizationHeader, final String userAgentHeader, final long customerTokenRenewalTimeoutMs) {
+        this.authorizationHeader = authorizationHeader;
+        this.userAgentHeader = userAgentHeader;
+        this.customerTokenRenewalTimeoutMs = customerTokenRenewalTimeoutMs;
+    }
+
+    /**
+     * The customer service is created with the http client, so it is provided once both exist.
+     */
+    void setCustomerService(final CustomerServiceDefault customerService) {
+        this.customerService = customerService;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request original = chain.request();
+        final CustomerServiceDefault customerService = this.customerService;
+        if (customerService == null) {
+            return chain.proceed(buildRequest(original, null));
+        }
+
+        // only requests authenticated by the customer token renew it, the token endpoints never do
+        final boolean renewable = isCustomerAuthenticated(original);
+
+        CustomerToken customerToken = customerService.getCustomerToken();
+        if (renewable && customerService.isCustomerTokenRenewalDue(customerToken)) {
+            final CustomerToken renewedToken = customerService.renewCustomerTokenBlocking(customerToken, customerTokenRenewalTimeoutMs);
+            if (renewedToken != null) {
+                customerToken = renewedToken;
+            }
+        }
+
+        final String accessToken = getAccessToken(customerToken);
+        final Response response = chain.proceed(buildRequest(original, accessToken));
+        if (!renewable || response.code() != HTTP_UNAUTHORIZED || accessToken == null) {
+            return response;
+        }
+
+        // the token may have expired or been revoked, replay the request once with a renewed token
+        final CustomerToken renewedToken = customerService.renewCustomerTokenBlocking(customerToken, customerTokenRenewalTimeoutMs);
+        if (renewedToken == null || renewedToken.equals(customerToken)) {
+            return response;
+        }
+
+        response.body().close();
+        return chain.proceed(buildRequest(original, getAccessToken(renewedToken)));
+    }
+
+    /**
+     * @return {@code true} if the request is authenticated by the customer token: the customer, its addresses and its orders. Creating,
+     * activating and recovering an account, resetting its password and the customer token endpoints are not.
+     */
+    static boolean isCustomerAuthenticated(final Request request) {
+        final String path = request.url().encodedPath();
+        if (path.endsWith(CUSTOMERS_PATH)) {
+            return "GET".equals(request.method());
+        }
+        return CUSTOMER_AUTHENTICATED_PATH.matcher(path).matches();
+    }
+
+    private Request buildRequest(final Request original, final String accessToken) {
+        if (authorizationHeader.equals(original.header(AUTHORIZATION_HEADER))
+            && userAgentHeader.equals(original.header(USER_AGENT_HEADER))
+            && StringUtils.equals(accessToken, original.header(CUSTOMER_TOKEN_HEADER))) {
+            return original;
+        }
+
+        final Request.Builder builder = original.newBuilder()
+            .header(AUTHORIZATION_HEADER, authorizationHeader)
+            .header(USER_AGENT_HEADER, userAgentHeader);
+        if (accessToken != null) {
+            builder.header(CUSTOMER_TOKEN_HEADER, accessToken);
+        }
+        return builder.build();
+    }
+
+    private String getAccessToken(final CustomerToken customerToken) {
+        if (customerToken == null) {
+            return null;
+        }
+
+        final CustomerTokenHeader cached = customerTokenHeader;
+        if (cached != null && cached.customerToken == customerToken) {
+            return cached.value;
+        }
+
+        final String value = StringUtils.isEmpty(customerToken.getAccessToken()) ? null : customerToken.getAccessToken();
+        customerTokenHeader = new CustomerTokenHeader(customerToken, value);
+        return value;
+    }
+
+    private static final class CustomerTokenHeader {
+
+        final CustomerToken customerToken;
+
+        final String value;
+
+        CustomerTokenHeader(final CustomerToken customerToken, final String value) {
+            this.customerToken = customerToken;
+            this.value = value;
+        }
+    }
+}
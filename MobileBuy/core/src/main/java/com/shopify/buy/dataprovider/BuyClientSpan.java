@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A timed step of a {@link BuyClient} call, in the style of a distributed-trace span. Composite calls such as
+ * {@link BuyClient#completeCheckout(com.shopify.buy.model.PaymentToken, String)} or {@link BuyClient#createCustomer(com.shopify.buy.model.AccountCredentials)}
+ * get a root span with a child span for each of their steps, and every HTTP request gets a span that is a child of the step that
+ * issued it. All the spans of a call share the same trace id, which is also sent to the server with each request.
+ * <p>
+ * Spans are handed to the {@link BuyClientSpanExporter} once they have ended.
+ */
+public final class BuyClientSpan {
+
+    private final String traceId;
+
+    private final String spanId;
+
+    private final String parentSpanId;
+
+    private final String name;
+
+    private final long startTimeMillis;
+
+    private final long startNanos;
+
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+
+    private final AtomicBoolean ended = new AtomicBoolean();
+
+    private volatile long durationNanos = -1;
+
+    private volatile Throwable error;
+
+    BuyClientSpan(final String traceId, final String spanId, final String parentSpanId, final String name) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the id shared by all the spans of a trace, 32 lowercase hex characters
+     */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @return the id of this span, 16 lowercase hex characters
+     */
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return the id of the parent span, or {@code null} if this is the root span of the trace
+     */
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * @return the name of the step, for example {@code "completeCheckout.awaitCompletion"} or {@code "GET /api/checkouts/{id}.json"}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the wall clock time the span started at, in milliseconds since the epoch
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return the duration of the span in nanoseconds, or -1 if it has not ended yet
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the error the step failed with, {@code null} if it succeeded or has not ended yet
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return the attributes of the span, for example the HTTP status code of a request
+     */
+    public synchronized Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    /**
+     * @return the value of the W3C {@code traceparent} header identifying this span
+     */
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    @Override
+    public String toString() {
+        return name + " trace=" + traceId + " span=" + spanId + " parent=" + parentSpanId + " durationNanos=" + durationNanos
+            + (error != null ? " error=" + error : "");
+    }
+
+    synchronized void putAttribute(final String key, final String value) {
+        attributes.put(key, value);
+    }
+
+    /**
+     * Ends the span, only the first call has an effect.
+     *
+     * @return true if the span was ended by this call
+     */
+    boolean end(final Throwable error) {
+        if (!ended.compareAndSet(false, true)) {
+            return false;
+        }
+        this.error = error;
+        this.durationNanos = System.nanoTime() - startNanos;
+        return true;
+    }
+}
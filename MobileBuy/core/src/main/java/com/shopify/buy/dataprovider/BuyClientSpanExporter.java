@@ -21,17 +21,21 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-
 package com.shopify.buy.dataprovider;
 
-public interface BuyClient extends StoreService, ProductService, CheckoutService, CustomerService, OrderService, AddressService {
-
-    String getApiKey();
-
-    String getAppId();
-
-    String getApplicationName();
-
-    String getShopDomain();
+/**
+ * Receives the {@link BuyClientSpan} of the {@link BuyClient} calls once they have ended. Set it with
+ * {@link BuyClientBuilder#spanExporter(BuyClientSpanExporter)}.
+ * <p>
+ * Spans are exported on the threads doing the work, children before their parent, so implementations must be thread-safe and fast,
+ * and should hand the spans off to their own thread before doing any I/O.
+ */
+public interface BuyClientSpanExporter {
 
+    /**
+     * Called once a span has ended.
+     *
+     * @param span the ended span
+     */
+    void export(BuyClientSpan span);
 }
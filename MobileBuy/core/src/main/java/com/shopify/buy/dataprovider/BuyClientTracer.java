@@ -0,0 +1,224 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import rx.Observable;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Creates the {@link BuyClientSpan} of composite calls and of each HTTP request, and hands them to the {@link BuyClientSpanExporter}.
+ * <p>
+ * The span of the step being assembled is current on the calling thread while {@link #trace(String, BuyClientSpan, Func0)} builds and
+ * subscribes to the step. {@link ContextCallAdapterFactory} captures it in each Retrofit request created meanwhile, so that the
+ * {@link #interceptor()} can create the HTTP span as a child of that step and send its trace id. When no exporter is set, tracing is
+ * disabled and {@link #trace(String, BuyClientSpan, Func0)} simply returns the observable of the step.
+ */
+final class BuyClientTracer {
+
+    /**
+     * W3C Trace Context header sent with every request, it carries the trace id and the id of the request span
+     */
+    static final String TRACEPARENT_HEADER = "traceparent";
+
+    private static final ThreadLocal<BuyClientSpan> CURRENT_SPAN = new ThreadLocal<>();
+
+    private static final Random ID_GENERATOR = new Random();
+
+    private final BuyClientSpanExporter exporter;
+
+    /**
+     * @param exporter the exporter to hand the ended spans to, {@code null} to disable tracing
+     */
+    BuyClientTracer(final BuyClientSpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    boolean isEnabled() {
+        return exporter != null;
+    }
+
+    /**
+     * @return the span current on the calling thread, or {@code null} if none
+     */
+    static BuyClientSpan currentSpan() {
+        return CURRENT_SPAN.get();
+    }
+
+    /**
+     * Makes {@code span} current on the calling thread.
+     *
+     * @param span the span to make current, can be {@code null}
+     * @return the previously current span, to be restored once done
+     */
+    static BuyClientSpan setCurrentSpan(final BuyClientSpan span) {
+        final BuyClientSpan previousSpan = CURRENT_SPAN.get();
+        if (span == null) {
+            CURRENT_SPAN.remove();
+        } else {
+            CURRENT_SPAN.set(span);
+        }
+        return previousSpan;
+    }
+
+    BuyClientSpan startSpan(final String name, final BuyClientSpan parent) {
+        if (parent == null) {
+            return new BuyClientSpan(newId(2), newId(1), null, name);
+        }
+        return new BuyClientSpan(parent.getTraceId(), newId(1), parent.getSpanId(), name);
+    }
+
+    void endSpan(final BuyClientSpan span, final Throwable error) {
+        if (span.end(error)) {
+            exporter.export(span);
+        }
+    }
+
+    /**
+     * Traces a step as a child of the span current when the returned observable is subscribed to.
+     *
+     * @see #trace(String, BuyClientSpan, Func0)
+     */
+    <T> Observable<T> trace(final String name, final Func0<Observable<T>> observableFactory) {
+        return trace(name, null, observableFactory);
+    }
+
+    /**
+     * Traces a step. Each subscription starts a new span, which is current while {@code observableFactory} creates the observable of
+     * the step and while it is subscribed to, and ends when the step completes, fails or is unsubscribed from.
+     *
+     * @param name              the name of the span
+     * @param parent            the parent span, {@code null} to use the span current when subscribed to
+     * @param observableFactory creates the observable of the step
+     * @return the traced observable, or the observable of the step if tracing is disabled
+     */
+    <T> Observable<T> trace(final String name, final BuyClientSpan parent, final Func0<Observable<T>> observableFactory) {
+        if (!isEnabled()) {
+            return observableFactory.call();
+        }
+
+        return Observable.create(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(final Subscriber<? super T> subscriber) {
+                final BuyClientSpan span = startSpan(name, parent != null ? parent : currentSpan());
+                final AtomicBoolean resultEmitted = new AtomicBoolean();
+                final BuyClientSpan previousSpan = setCurrentSpan(span);
+                try {
+                    final Observable<T> observable;
+                    try {
+                        observable = observableFactory.call();
+                    } catch (Throwable t) {
+                        Exceptions.throwIfFatal(t);
+                        endSpan(span, t);
+                        subscriber.onError(t);
+                        return;
+                    }
+
+                    observable
+                        .doOnNext(new Action1<T>() {
+                            @Override
+                            public void call(T result) {
+                                resultEmitted.set(true);
+                            }
+                        })
+                        .doOnCompleted(new Action0() {
+                            @Override
+                            public void call() {
+                                endSpan(span, null);
+                            }
+                        })
+                        .doOnError(new Action1<Throwable>() {
+                            @Override
+                            public void call(Throwable t) {
+                                endSpan(span, t);
+                            }
+                        })
+                        .doOnUnsubscribe(new Action0() {
+                            @Override
+                            public void call() {
+                                endSpan(span, resultEmitted.get() ? null : new CancellationException());
+                            }
+                        })
+                        .unsafeSubscribe(subscriber);
+                } finally {
+                    setCurrentSpan(previousSpan);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the interceptor that creates a span for each HTTP request and sends its {@link #TRACEPARENT_HEADER}
+     */
+    Interceptor interceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(final Chain chain) throws IOException {
+                final Request request = chain.request();
+                final BuyClientSpan span = startSpan(BuyClientMetrics.endpointOf(request), currentSpan());
+                span.putAttribute("http.method", request.method());
+
+                final Response response;
+                try {
+                    response = chain.proceed(request.newBuilder().header(TRACEPARENT_HEADER, span.toTraceparent()).build());
+                } catch (IOException e) {
+                    endSpan(span, e);
+                    throw e;
+                }
+
+                span.putAttribute("http.status_code", String.valueOf(response.code()));
+                endSpan(span, null);
+                return response;
+            }
+        };
+    }
+
+    private static String newId(final int longCount) {
+        final StringBuilder id = new StringBuilder(longCount * 16);
+        for (int i = 0; i < longCount; i++) {
+            long value;
+            do {
+                // all zero ids are invalid
+                value = ID_GENERATOR.nextLong();
+            } while (value == 0);
+            final String hex = Long.toHexString(value);
+            for (int padding = hex.length(); padding < 16; padding++) {
+                id.append('0');
+            }
+            id.append(hex);
+        }
+        return id.toString();
+    }
+}
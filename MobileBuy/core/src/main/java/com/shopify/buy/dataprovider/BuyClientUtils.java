@@ -23,32 +23,46 @@
  */
 package com.shopify.buy.dataprovider;
 
-import android.util.Base64;
-
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.shopify.buy.model.Checkout;
 import com.shopify.buy.model.Customer;
 import com.shopify.buy.model.Product;
 import com.shopify.buy.utils.DateUtility;
+import com.shopify.buy.utils.StringPool;
 
-import java.nio.charset.Charset;
 import java.util.Date;
 
+import okio.ByteString;
+
 public final class BuyClientUtils {
 
     public static Gson createDefaultGson() {
-        return createDefaultGson(null);
+        return createDefaultGson(null, null);
     }
 
     public static Gson createDefaultGson(Class forClass) {
+        return createDefaultGson(forClass, null);
+    }
+
+    /**
+     * Creates the default {@link Gson} that de-duplicates the catalog strings of deserialized products using the given pool.
+     *
+     * @param stringPool the pool used to de-duplicate catalog strings, can be {@code null}
+     * @return the {@link Gson} instance
+     */
+    public static Gson createDefaultGson(StringPool stringPool) {
+        return createDefaultGson(null, stringPool);
+    }
+
+    public static Gson createDefaultGson(Class forClass, StringPool stringPool) {
 
         GsonBuilder builder = new GsonBuilder()
                 .setDateFormat(DateUtility.DEFAULT_DATE_PATTERN)
                 .registerTypeAdapter(Date.class, new DateUtility.DateDeserializer());
 
         if (!Product.class.equals(forClass)) {
-            builder.registerTypeAdapter(Product.class, new Product.ProductDeserializer());
+            builder.registerTypeAdapter(Product.class, new Product.ProductDeserializer(stringPool));
         }
 
         if (!Customer.class.equals(forClass)) {
@@ -64,7 +78,7 @@ public final class BuyClientUtils {
     }
 
     public static String formatBasicAuthorization(final String token) {
-        return String.format("Basic %s", Base64.encodeToString(token.getBytes(Charset.forName("UTF-8")), Base64.NO_WRAP));
+        return String.format("Basic %s", ByteString.encodeUtf8(token).base64());
     }
 
     private BuyClientUtils() {
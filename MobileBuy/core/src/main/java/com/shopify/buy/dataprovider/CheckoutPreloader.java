@@ -0,0 +1,312 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.shopify.buy.model.Cart;
+import com.shopify.buy.model.CartLineItem;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.LineItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Creates the checkout of a cart in background as soon as the cart becomes non-empty, so that it is ready by the time the user
+ * taps the buy button. Subsequent cart changes are synced to the checkout with {@link BuyClient#updateCheckout(Checkout)} once the
+ * cart has stopped changing for a moment, and the up to date checkout is handed over with {@link #acquireCheckout(Cart)}.
+ * A pre-created checkout that is not handed over is released with {@link BuyClient#removeProductReservationsFromCheckout(String)}
+ * when the cart becomes empty or {@link #release()} is called.
+ */
+public final class CheckoutPreloader {
+
+    public static final long DEFAULT_SYNC_DELAY_MS = 1000;
+
+    private final BuyClient buyClient;
+
+    private final long syncDelayMs;
+
+    private final Scheduler syncScheduler;
+
+    private final Object lock = new Object();
+
+    // cached server checkout, the result of the creation followed by the updates issued so far
+    private Observable<Checkout> checkout;
+
+    // line items the checkout has been or is being synced to
+    private List<LineItem> syncedLineItems;
+
+    // line items waiting for the delayed sync
+    private List<LineItem> pendingLineItems;
+
+    private Subscription delayedSync;
+
+    /**
+     * @param buyClient the {@link BuyClient} used to create and update the checkout, not null
+     */
+    public CheckoutPreloader(final BuyClient buyClient) {
+        this(buyClient, DEFAULT_SYNC_DELAY_MS, Schedulers.computation());
+    }
+
+    /**
+     * @param buyClient   the {@link BuyClient} used to create and update the checkout, not null
+     * @param syncDelayMs how long the cart must stay unchanged before its changes are synced to the checkout, in milliseconds
+     */
+    public CheckoutPreloader(final BuyClient buyClient, final long syncDelayMs) {
+        this(buyClient, syncDelayMs, Schedulers.computation());
+    }
+
+    CheckoutPreloader(final BuyClient buyClient, final long syncDelayMs, final Scheduler syncScheduler) {
+        if (buyClient == null) {
+            throw new NullPointerException("buyClient cannot be null");
+        }
+
+        if (syncDelayMs < 0) {
+            throw new IllegalArgumentException("syncDelayMs cannot be negative");
+        }
+
+        this.buyClient = buyClient;
+        this.syncDelayMs = syncDelayMs;
+        this.syncScheduler = syncScheduler;
+    }
+
+    /**
+     * Notifies the preloader that the cart has changed. Creates the checkout if the cart has just become non-empty, schedules the
+     * sync of the changes otherwise. Releases the checkout if the cart is now empty.
+     *
+     * @param cart the changed cart, not null
+     */
+    public void onCartChanged(final Cart cart) {
+        if (cart == null) {
+            throw new NullPointerException("cart cannot be null");
+        }
+
+        if (cart.isEmpty()) {
+            release();
+            return;
+        }
+
+        final List<LineItem> lineItems = snapshotLineItems(cart);
+        synchronized (lock) {
+            if (checkout == null) {
+                createCheckout(lineItems);
+                return;
+            }
+
+            pendingLineItems = lineItemsEqual(lineItems, syncedLineItems) ? null : lineItems;
+            cancelDelayedSync();
+            if (pendingLineItems != null) {
+                delayedSync = Observable.timer(syncDelayMs, TimeUnit.MILLISECONDS, syncScheduler).subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(Long aLong) {
+                        synchronized (lock) {
+                            delayedSync = null;
+                            syncPendingLineItems();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Hands the checkout of the cart over to the caller. The pre-created checkout is returned as soon as it has been synced with
+     * the cart, a new checkout is created if there is none. Once handed over, the checkout is no longer managed by the preloader.
+     *
+     * @param cart     the cart to check out, not null or empty
+     * @param callback the {@link Callback} that will be used to indicate the response from the asynchronous network operation, not null
+     * @return cancelable task
+     */
+    public CancellableTask acquireCheckout(final Cart cart, final Callback<Checkout> callback) {
+        return new CancellableTaskSubscriptionWrapper(acquireCheckout(cart).subscribe(new InternalCallbackSubscriber<>(callback)));
+    }
+
+    /**
+     * Hands the checkout of the cart over to the caller. The pre-created checkout is returned as soon as it has been synced with
+     * the cart, a new checkout is created if there is none. Once handed over, the checkout is no longer managed by the preloader.
+     * A checkout that is already synced is emitted right away on the subscribing thread.
+     *
+     * @param cart the cart to check out, not null or empty
+     * @return observable that emits the checkout of the cart
+     */
+    public Observable<Checkout> acquireCheckout(final Cart cart) {
+        if (cart == null) {
+            throw new NullPointerException("cart cannot be null");
+        }
+
+        if (cart.isEmpty()) {
+            throw new IllegalArgumentException("cart cannot be empty");
+        }
+
+        final List<LineItem> lineItems = snapshotLineItems(cart);
+        synchronized (lock) {
+            cancelDelayedSync();
+            pendingLineItems = null;
+
+            if (checkout == null) {
+                createCheckout(lineItems);
+            } else if (!lineItemsEqual(lineItems, syncedLineItems)) {
+                updateCheckout(lineItems);
+            }
+
+            final Observable<Checkout> acquiredCheckout = checkout;
+            checkout = null;
+            syncedLineItems = null;
+            return acquiredCheckout;
+        }
+    }
+
+    /**
+     * Releases the product reservations of the pre-created checkout, if any.
+     */
+    public void release() {
+        final Observable<Checkout> releasedCheckout;
+        synchronized (lock) {
+            cancelDelayedSync();
+            releasedCheckout = checkout;
+            checkout = null;
+            syncedLineItems = null;
+            pendingLineItems = null;
+        }
+
+        if (releasedCheckout == null) {
+            return;
+        }
+
+        releasedCheckout
+            .flatMap(new Func1<Checkout, Observable<Checkout>>() {
+                @Override
+                public Observable<Checkout> call(Checkout checkout) {
+                    return buyClient.removeProductReservationsFromCheckout(checkout.getToken());
+                }
+            })
+            .subscribe(new IgnoringSubscriber<Checkout>());
+    }
+
+    private void createCheckout(final List<LineItem> lineItems) {
+        final Checkout newCheckout = new Checkout();
+        newCheckout.setLineItems(lineItems);
+        start(buyClient.createCheckout(newCheckout), lineItems);
+    }
+
+    private void updateCheckout(final List<LineItem> lineItems) {
+        start(checkout.flatMap(new Func1<Checkout, Observable<Checkout>>() {
+            @Override
+            public Observable<Checkout> call(Checkout checkout) {
+                final Checkout update = new Checkout(checkout.getToken());
+                update.setLineItems(lineItems);
+                return buyClient.updateCheckout(update);
+            }
+        }), lineItems);
+    }
+
+    private void syncPendingLineItems() {
+        if (checkout != null && pendingLineItems != null) {
+            updateCheckout(pendingLineItems);
+        }
+        pendingLineItems = null;
+    }
+
+    private void start(final Observable<Checkout> request, final List<LineItem> lineItems) {
+        final Observable<Checkout> cachedCheckout = request.cache();
+        checkout = cachedCheckout;
+        syncedLineItems = lineItems;
+
+        cachedCheckout.subscribe(new IgnoringSubscriber<Checkout>() {
+            @Override
+            public void onError(Throwable e) {
+                // start over on the next cart change
+                synchronized (lock) {
+                    if (checkout == cachedCheckout) {
+                        checkout = null;
+                        syncedLineItems = null;
+                    }
+                }
+            }
+        });
+    }
+
+    private void cancelDelayedSync() {
+        if (delayedSync != null) {
+            delayedSync.unsubscribe();
+            delayedSync = null;
+        }
+    }
+
+    /**
+     * Copies the line items of the cart, cart line items are updated in place as the cart changes.
+     */
+    private static List<LineItem> snapshotLineItems(final Cart cart) {
+        final List<LineItem> lineItems = new ArrayList<>(cart.getSize());
+        for (CartLineItem cartLineItem : cart.getLineItems()) {
+            final LineItem lineItem = new LineItem(cartLineItem.getVariantId(), cartLineItem.isRequiresShipping(), cartLineItem.getQuantity());
+            final Map<String, Object> properties = cartLineItem.getProperties();
+            if (!properties.isEmpty()) {
+                lineItem.getProperties().putAll(properties);
+            }
+            lineItems.add(lineItem);
+        }
+        return lineItems;
+    }
+
+    private static boolean lineItemsEqual(final List<LineItem> lineItems, final List<LineItem> otherLineItems) {
+        if (otherLineItems == null || lineItems.size() != otherLineItems.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < lineItems.size(); i++) {
+            final LineItem lineItem = lineItems.get(i);
+            final LineItem otherLineItem = otherLineItems.get(i);
+            if (!lineItem.equals(otherLineItem) || lineItem.getQuantity() != otherLineItem.getQuantity()
+                || !lineItem.getProperties().equals(otherLineItem.getProperties())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class IgnoringSubscriber<T> extends Subscriber<T> {
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public void onNext(T t) {
+        }
+    }
+}
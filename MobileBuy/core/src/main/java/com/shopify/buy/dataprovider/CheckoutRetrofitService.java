@@ -23,12 +23,15 @@
  */
 package com.shopify.buy.dataprovider;
 
-import com.shopify.buy.model.PaymentSession;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.GiftCard;
 import com.shopify.buy.model.PaymentToken;
+import com.shopify.buy.model.ShippingRate;
 import com.shopify.buy.model.internal.CheckoutWrapper;
 import com.shopify.buy.model.internal.GiftCardWrapper;
 import com.shopify.buy.model.internal.PaymentSessionCheckoutWrapper;
-import com.shopify.buy.model.internal.ShippingRatesWrapper;
+
+import java.util.List;
 
 import retrofit2.Response;
 import retrofit2.http.Body;
@@ -45,13 +48,16 @@ import rx.Observable;
 interface CheckoutRetrofitService {
 
     @POST("api/checkouts.json")
-    Observable<Response<CheckoutWrapper>> createCheckout(@Body CheckoutWrapper checkoutWrapper);
+    @Unwrap("checkout")
+    Observable<Response<Checkout>> createCheckout(@Body CheckoutWrapper checkoutWrapper);
 
     @PATCH("api/checkouts/{token}.json")
-    Observable<Response<CheckoutWrapper>> updateCheckout(@Body CheckoutWrapper checkoutWrapper, @Path("token") String token);
+    @Unwrap("checkout")
+    Observable<Response<Checkout>> updateCheckout(@Body CheckoutWrapper checkoutWrapper, @Path("token") String token);
 
     @GET("api/checkouts/{token}/shipping_rates.json")
-    Observable<Response<ShippingRatesWrapper>> getShippingRates(@Path("token") String token);
+    @Unwrap("shipping_rates")
+    Observable<Response<List<ShippingRate>>> getShippingRates(@Path("token") String token);
 
     @POST("api/checkouts/{token}/complete.json")
     Observable<Response<Void>> completeCheckout(@Body PaymentToken paymentToken, @Path("token") String token);
@@ -60,16 +66,20 @@ interface CheckoutRetrofitService {
     Observable<Response<Void>> getCheckoutCompletionStatus(@Path("token") String token);
 
     @GET("api/checkouts/{token}.json")
-    Observable<Response<CheckoutWrapper>> getCheckout(@Path("token") String token);
+    @Unwrap("checkout")
+    Observable<Response<Checkout>> getCheckout(@Path("token") String token);
 
     @POST("api/checkouts/{token}/gift_cards.json")
-    Observable<Response<GiftCardWrapper>> applyGiftCard(@Body GiftCardWrapper giftCardWrapper, @Path("token") String token);
+    @Unwrap("gift_card")
+    Observable<Response<GiftCard>> applyGiftCard(@Body GiftCardWrapper giftCardWrapper, @Path("token") String token);
 
     @DELETE("api/checkouts/{token}/gift_cards/{identifier}.json")
-    Observable<Response<GiftCardWrapper>> removeGiftCard(@Path("identifier") Long giftCardIdentifier, @Path("token") String token);
+    @Unwrap("gift_card")
+    Observable<Response<GiftCard>> removeGiftCard(@Path("identifier") Long giftCardIdentifier, @Path("token") String token);
 
     @POST
     @Headers("Accept: application/json")
-    Observable<Response<PaymentSession>> storeCreditCard(@Url String url, @Body PaymentSessionCheckoutWrapper body, @Header("Authorization") String authorizationHeader);
+    @Unwrap("id")
+    Observable<Response<String>> storeCreditCard(@Url String url, @Body PaymentSessionCheckoutWrapper body, @Header("Authorization") String authorizationHeader);
 
 }
@@ -69,6 +69,9 @@ public interface CheckoutService {
      * <li>{@link Checkout#reservationTime}</li>
      * </ul>
      *
+     * Updates of the same checkout are sent one at a time, in order. Updates issued while another one is in flight are merged
+     * into a single update, and all of them are notified with the server response of that merged update.
+     *
      * @param checkout the {@link Checkout} attributes to be updated, not null
      * @param callback the {@link Callback} that will be used to indicate the response from the asynchronous network operation, not null
      * @return cancelable task
@@ -89,6 +92,9 @@ public interface CheckoutService {
      * <li>{@link Checkout#reservationTime}</li>
      * </ul>
      *
+     * Updates of the same checkout are sent one at a time, in order. Updates issued while another one is in flight are merged
+     * into a single update, and all of them are notified with the server response of that merged update.
+     *
      * @param checkout the {@link Checkout} to update, not null
      * @return cold observable that emits updated checkout object
      */
@@ -23,12 +23,9 @@
  */
 package com.shopify.buy.dataprovider;
 
-import android.text.TextUtils;
-
 import com.shopify.buy.model.Checkout;
 import com.shopify.buy.model.CreditCard;
 import com.shopify.buy.model.GiftCard;
-import com.shopify.buy.model.PaymentSession;
 import com.shopify.buy.model.PaymentToken;
 import com.shopify.buy.model.ShippingRate;
 import com.shopify.buy.model.internal.CheckoutWrapper;
@@ -36,7 +33,7 @@ import com.shopify.buy.model.internal.GiftCardWrapper;
 import com.shopify.buy.model.internal.MarketingAttribution;
 import com.shopify.buy.model.internal.PaymentSessionCheckout;
 import com.shopify.buy.model.internal.PaymentSessionCheckoutWrapper;
-import com.shopify.buy.model.internal.ShippingRatesWrapper;
+import com.shopify.buy.utils.StringUtils;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +42,9 @@ import retrofit2.Response;
 import retrofit2.Retrofit;
 import rx.Observable;
 import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 import static java.net.HttpURLConnection.HTTP_OK;
@@ -60,7 +60,7 @@ final class CheckoutServiceDefault implements CheckoutService {
 
     final CheckoutRetrofitService retrofitService;
 
-    final String apiKey;
+    final String authorizationHeader;
 
     final String applicationName;
 
@@ -70,20 +70,86 @@ final class CheckoutServiceDefault implements CheckoutService {
 
     final Scheduler callbackScheduler;
 
+    final CheckoutUpdateQueue updateQueue;
+
+    final CheckoutStateTracker stateTracker;
+
+    final ShippingRatesPrefetcher shippingRatesPrefetcher;
+
+    final ConnectionPrewarmer connectionPrewarmer;
+
+    final BuyClientTracer tracer;
+
+    private final Action1<Checkout> acknowledgeCheckoutAction;
+
+    private final Func1<Checkout, Observable<Checkout>> sendCheckoutUpdateFunction;
+
+    /**
+     * @param updateQueue             the checkout update queue, shared with the services of the other views of the same client
+     * @param stateTracker            the acknowledged checkout states, shared with the services of the other views of the same client
+     * @param shippingRatesPrefetcher the prefetched shipping rates, shared with the services of the other views of the same client, or
+     *                                {@code null} if prefetching is disabled
+     */
     CheckoutServiceDefault(
         final Retrofit retrofit,
-        final String apiKey,
+        final String authorizationHeader,
         final String applicationName,
         final NetworkRetryPolicyProvider networkRetryPolicyProvider,
-        final Scheduler callbackScheduler
+        final Scheduler callbackScheduler,
+        final Scheduler pollingScheduler,
+        final CheckoutUpdateQueue updateQueue,
+        final CheckoutStateTracker stateTracker,
+        final ShippingRatesPrefetcher shippingRatesPrefetcher,
+        final ConnectionPrewarmer connectionPrewarmer,
+        final BuyClientTracer tracer
     ) {
         this.retrofitService = retrofit.create(CheckoutRetrofitService.class);
-        this.apiKey = apiKey;
+        this.authorizationHeader = authorizationHeader;
         this.applicationName = applicationName;
         this.networkRetryPolicyProvider = networkRetryPolicyProvider;
         this.callbackScheduler = callbackScheduler;
+        this.connectionPrewarmer = connectionPrewarmer;
+        this.tracer = tracer;
+
+        pollingRetryPolicyProvider = new PollingPolicyProvider(POLLING_INTERVAL, POLLING_TIMEOUT, pollingScheduler);
 
-        pollingRetryPolicyProvider = new PollingPolicyProvider(POLLING_INTERVAL, POLLING_TIMEOUT);
+        this.updateQueue = updateQueue;
+        this.stateTracker = stateTracker;
+        this.shippingRatesPrefetcher = shippingRatesPrefetcher;
+
+        acknowledgeCheckoutAction = new Action1<Checkout>() {
+            @Override
+            public void call(Checkout checkout) {
+                stateTracker.acknowledge(checkout);
+                if (shippingRatesPrefetcher != null) {
+                    shippingRatesPrefetcher.onCheckoutAcknowledged(checkout);
+                }
+            }
+        };
+
+        sendCheckoutUpdateFunction = new Func1<Checkout, Observable<Checkout>>() {
+            @Override
+            public Observable<Checkout> call(final Checkout checkout) {
+                return sendCheckoutUpdate(checkout);
+            }
+        };
+    }
+
+    /**
+     * @return function fetching the shipping rates of a checkout in the background, with the lowest request priority
+     */
+    Func1<String, Observable<List<ShippingRate>>> createShippingRatesPrefetchFunction() {
+        return new Func1<String, Observable<List<ShippingRate>>>() {
+            @Override
+            public Observable<List<ShippingRate>> call(final String checkoutToken) {
+                final RequestPriority previousPriority = RequestDispatcher.setCurrentPriority(RequestPriority.PREFETCH);
+                try {
+                    return fetchShippingRates(checkoutToken);
+                } finally {
+                    RequestDispatcher.setCurrentPriority(previousPriority);
+                }
+            }
+        };
     }
 
     @Override
@@ -103,7 +169,17 @@ final class CheckoutServiceDefault implements CheckoutService {
         return retrofitService
             .createCheckout(new CheckoutWrapper(safeCheckout))
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CheckoutWrapper, Checkout>())
+            .compose(new UnwrapRetrofitBodyTransformer<Checkout>())
+            .doOnNext(acknowledgeCheckoutAction)
+            .doOnNext(new Action1<Checkout>() {
+                @Override
+                public void call(Checkout checkout) {
+                    // the card vault is a separate host, connect to it before the card is stored
+                    if (connectionPrewarmer != null && checkout != null) {
+                        connectionPrewarmer.prewarmPaymentUrl(checkout.getPaymentUrl());
+                    }
+                }
+            })
             .onErrorResumeNext(new BuyClientExceptionHandler<Checkout>())
             .observeOn(callbackScheduler);
     }
@@ -120,7 +196,7 @@ final class CheckoutServiceDefault implements CheckoutService {
         }
 
         final Checkout safeCheckout = new Checkout(checkout.getToken());
-        if (!TextUtils.isEmpty(checkout.getEmail())) {
+        if (!StringUtils.isEmpty(checkout.getEmail())) {
             safeCheckout.setEmail(checkout.getEmail());
         }
         safeCheckout.setShippingAddress(checkout.getShippingAddress());
@@ -136,12 +212,37 @@ final class CheckoutServiceDefault implements CheckoutService {
             safeCheckout.setReservationTime(checkout.getReservationTime());
         }
 
+        return updateQueue
+            .enqueue(safeCheckout, sendCheckoutUpdateFunction)
+            .doOnSubscribe(new Action0() {
+                @Override
+                public void call() {
+                    if (shippingRatesPrefetcher != null) {
+                        shippingRatesPrefetcher.onUpdateEnqueued(stateTracker.getAcknowledged(safeCheckout.getToken()), safeCheckout);
+                    }
+                }
+            })
+            .observeOn(callbackScheduler);
+    }
+
+    private Observable<Checkout> sendCheckoutUpdate(final Checkout safeCheckout) {
+        final Checkout minimalCheckout = stateTracker.minimalUpdate(safeCheckout);
         return retrofitService
-            .updateCheckout(new CheckoutWrapper(safeCheckout), checkout.getToken())
+            .updateCheckout(new CheckoutWrapper(minimalCheckout), safeCheckout.getToken())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CheckoutWrapper, Checkout>())
-            .onErrorResumeNext(new BuyClientExceptionHandler<Checkout>())
-            .observeOn(callbackScheduler);
+            .compose(new UnwrapRetrofitBodyTransformer<Checkout>())
+            .doOnNext(acknowledgeCheckoutAction)
+            .doOnError(new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    // the server state is unknown after a failed update
+                    stateTracker.invalidate(safeCheckout.getToken());
+                    if (shippingRatesPrefetcher != null) {
+                        shippingRatesPrefetcher.invalidate(safeCheckout.getToken());
+                    }
+                }
+            })
+            .onErrorResumeNext(new BuyClientExceptionHandler<Checkout>());
     }
 
     @Override
@@ -154,10 +255,22 @@ final class CheckoutServiceDefault implements CheckoutService {
         if (checkoutToken == null) {
             throw new NullPointerException("checkoutToken cannot be null");
         }
-        if (TextUtils.isEmpty(checkoutToken)) {
+        if (StringUtils.isEmpty(checkoutToken)) {
             throw new IllegalArgumentException("checkoutToken cannot be empty");
         }
 
+        Observable<List<ShippingRate>> shippingRates = fetchShippingRates(checkoutToken);
+
+        final Observable<List<ShippingRate>> prefetchedShippingRates = shippingRatesPrefetcher != null ? shippingRatesPrefetcher.getShippingRates(checkoutToken) : null;
+        if (prefetchedShippingRates != null) {
+            // fall back to a regular request if the prefetch failed
+            shippingRates = prefetchedShippingRates.onErrorResumeNext(shippingRates);
+        }
+
+        return shippingRates.observeOn(callbackScheduler);
+    }
+
+    private Observable<List<ShippingRate>> fetchShippingRates(final String checkoutToken) {
         int[] successCodes = {HTTP_OK};
 
         return retrofitService
@@ -165,9 +278,8 @@ final class CheckoutServiceDefault implements CheckoutService {
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>(successCodes))
             .retryWhen(pollingRetryPolicyProvider.provide())
-            .compose(new UnwrapRetrofitBodyTransformer<ShippingRatesWrapper, List<ShippingRate>>())
-            .onErrorResumeNext(new BuyClientExceptionHandler<List<ShippingRate>>())
-            .observeOn(callbackScheduler);
+            .compose(new UnwrapRetrofitBodyTransformer<List<ShippingRate>>())
+            .onErrorResumeNext(new BuyClientExceptionHandler<List<ShippingRate>>());
     }
 
     @Override
@@ -185,7 +297,7 @@ final class CheckoutServiceDefault implements CheckoutService {
             throw new NullPointerException("checkout cannot be null");
         }
 
-        if (TextUtils.isEmpty(checkout.getToken())) {
+        if (StringUtils.isEmpty(checkout.getToken())) {
             throw new IllegalArgumentException("checkout token cannot be empty");
         }
 
@@ -194,9 +306,9 @@ final class CheckoutServiceDefault implements CheckoutService {
         final int[] successCodes = {HTTP_OK};
 
         return retrofitService
-            .storeCreditCard(checkout.getPaymentUrl(), new PaymentSessionCheckoutWrapper(paymentSessionCheckout), BuyClientUtils.formatBasicAuthorization(apiKey))
+            .storeCreditCard(checkout.getPaymentUrl(), new PaymentSessionCheckoutWrapper(paymentSessionCheckout), authorizationHeader)
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>(successCodes))
-            .compose(new UnwrapRetrofitBodyTransformer<PaymentSession, String>())
+            .compose(new UnwrapRetrofitBodyTransformer<String>())
             .map(new Func1<String, PaymentToken>() {
                 @Override
                 public PaymentToken call(String sessionId) {
@@ -217,39 +329,64 @@ final class CheckoutServiceDefault implements CheckoutService {
         if (checkoutToken == null) {
             throw new NullPointerException("checkoutToken cannot be null");
         }
-        if (TextUtils.isEmpty(checkoutToken)) {
+        if (StringUtils.isEmpty(checkoutToken)) {
             throw new IllegalArgumentException("checkout token cannot be empty");
         }
 
         final PaymentToken paymentTokenToSend = paymentToken != null ? paymentToken : PaymentToken.createEmptyPaymentToken();
 
-        return retrofitService
-            .completeCheckout(paymentTokenToSend, checkoutToken)
-            .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<Response<Void>>())
-            .flatMap(new Func1<Response<Void>, Observable<Checkout>>() {
+        return tracer
+            .trace("completeCheckout", new Func0<Observable<Checkout>>() {
                 @Override
-                public Observable<Checkout> call(Response<Void> voidResponse) {
-                    return getCompletedCheckout(checkoutToken);
+                public Observable<Checkout> call() {
+                    final BuyClientSpan completeCheckoutSpan = BuyClientTracer.currentSpan();
+                    return tracer
+                        .trace("completeCheckout.submit", new Func0<Observable<Response<Void>>>() {
+                            @Override
+                            public Observable<Response<Void>> call() {
+                                return retrofitService
+                                    .completeCheckout(paymentTokenToSend, checkoutToken)
+                                    .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<Response<Void>>());
+                            }
+                        })
+                        .flatMap(new Func1<Response<Void>, Observable<Checkout>>() {
+                            @Override
+                            public Observable<Checkout> call(Response<Void> voidResponse) {
+                                return getCompletedCheckout(checkoutToken, completeCheckoutSpan);
+                            }
+                        });
                 }
             })
             .onErrorResumeNext(new BuyClientExceptionHandler<Checkout>())
             .observeOn(callbackScheduler);
     }
 
-    private Observable<Checkout> getCompletedCheckout(final String checkoutToken) {
-        return getCheckoutCompletionStatus(checkoutToken)
-            .flatMap(new Func1<Boolean, Observable<Checkout>>() {
-                @Override
-                public Observable<Checkout> call(Boolean aBoolean) {
-                    if (aBoolean) {
-                        return getCheckout(checkoutToken);
-                    }
-
-                    // Poll while aBoolean == false
-                    return Observable.error(new PollingRequiredException());
-                }
-            })
-            .retryWhen(pollingRetryPolicyProvider.provide());
+    private Observable<Checkout> getCompletedCheckout(final String checkoutToken, final BuyClientSpan parentSpan) {
+        return tracer.trace("completeCheckout.awaitCompletion", parentSpan, new Func0<Observable<Checkout>>() {
+            @Override
+            public Observable<Checkout> call() {
+                // the status is observed on the callback scheduler, so the span has to be handed explicitly to the next step
+                final BuyClientSpan awaitCompletionSpan = BuyClientTracer.currentSpan();
+                return getCheckoutCompletionStatus(checkoutToken)
+                    .flatMap(new Func1<Boolean, Observable<Checkout>>() {
+                        @Override
+                        public Observable<Checkout> call(Boolean aBoolean) {
+                            if (aBoolean) {
+                                return tracer.trace("completeCheckout.fetchCheckout", awaitCompletionSpan, new Func0<Observable<Checkout>>() {
+                                    @Override
+                                    public Observable<Checkout> call() {
+                                        return getCheckout(checkoutToken);
+                                    }
+                                });
+                            }
+
+                            // Poll while aBoolean == false
+                            return Observable.error(PollingRequiredException.INSTANCE);
+                        }
+                    })
+                    .retryWhen(pollingRetryPolicyProvider.provide());
+            }
+        });
     }
 
     @Override
@@ -262,7 +399,7 @@ final class CheckoutServiceDefault implements CheckoutService {
         if (checkoutToken == null) {
             throw new NullPointerException("checkoutToken cannot be null");
         }
-        if (TextUtils.isEmpty(checkoutToken)) {
+        if (StringUtils.isEmpty(checkoutToken)) {
             throw new IllegalArgumentException("checkoutToken cannot be empty");
         }
 
@@ -290,7 +427,7 @@ final class CheckoutServiceDefault implements CheckoutService {
         if (checkoutToken == null) {
             throw new NullPointerException("checkoutToken cannot be null");
         }
-        if (TextUtils.isEmpty(checkoutToken)) {
+        if (StringUtils.isEmpty(checkoutToken)) {
             throw new IllegalArgumentException("checkoutToken cannot be empty");
         }
 
@@ -298,7 +435,8 @@ final class CheckoutServiceDefault implements CheckoutService {
             .getCheckout(checkoutToken)
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CheckoutWrapper, Checkout>())
+            .compose(new UnwrapRetrofitBodyTransformer<Checkout>())
+            .doOnNext(acknowledgeCheckoutAction)
             .onErrorResumeNext(new BuyClientExceptionHandler<Checkout>())
             .observeOn(callbackScheduler);
     }
@@ -313,13 +451,13 @@ final class CheckoutServiceDefault implements CheckoutService {
         if (giftCardCode == null) {
             throw new NullPointerException("giftCardCode cannot be null");
         }
-        if (TextUtils.isEmpty(giftCardCode)) {
+        if (StringUtils.isEmpty(giftCardCode)) {
             throw new IllegalArgumentException("giftCardCode cannot be empty");
         }
         if (checkout == null) {
             throw new NullPointerException("checkout cannot be null");
         }
-        if (TextUtils.isEmpty(checkout.getToken())) {
+        if (StringUtils.isEmpty(checkout.getToken())) {
             throw new IllegalArgumentException("checkout token cannot be empty");
         }
 
@@ -328,7 +466,8 @@ final class CheckoutServiceDefault implements CheckoutService {
         return retrofitService
             .applyGiftCard(new GiftCardWrapper(giftCard), checkout.getToken())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<GiftCardWrapper, GiftCard>())
+            .compose(new UnwrapRetrofitBodyTransformer<GiftCard>())
+            .doOnTerminate(createInvalidateCheckoutStateAction(checkout.getToken()))
             .map(new Func1<GiftCard, Checkout>() {
                 @Override
                 public Checkout call(GiftCard giftCard) {
@@ -354,7 +493,7 @@ final class CheckoutServiceDefault implements CheckoutService {
             throw new NullPointerException("checkout cannot be null");
         }
 
-        if (TextUtils.isEmpty(checkout.getToken())) {
+        if (StringUtils.isEmpty(checkout.getToken())) {
             throw new IllegalArgumentException("checkout token cannot be empty");
         }
 
@@ -367,7 +506,8 @@ final class CheckoutServiceDefault implements CheckoutService {
         return retrofitService
             .removeGiftCard(giftCardId, safeCheckout.getToken())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<GiftCardWrapper, GiftCard>())
+            .compose(new UnwrapRetrofitBodyTransformer<GiftCard>())
+            .doOnTerminate(createInvalidateCheckoutStateAction(safeCheckout.getToken()))
             .map(new Func1<GiftCard, Checkout>() {
                 @Override
                 public Checkout call(GiftCard giftCard) {
@@ -382,6 +522,18 @@ final class CheckoutServiceDefault implements CheckoutService {
             .observeOn(callbackScheduler);
     }
 
+    /**
+     * Gift cards change the checkout outside of the acknowledged state, the next update has to be sent in full.
+     */
+    private Action0 createInvalidateCheckoutStateAction(final String checkoutToken) {
+        return new Action0() {
+            @Override
+            public void call() {
+                stateTracker.invalidate(checkoutToken);
+            }
+        };
+    }
+
     @Override
     public CancellableTask removeProductReservationsFromCheckout(final String checkoutToken, final Callback<Checkout> callback) {
         return new CancellableTaskSubscriptionWrapper(removeProductReservationsFromCheckout(checkoutToken).subscribe(new InternalCallbackSubscriber<>(callback)));
@@ -392,7 +544,7 @@ final class CheckoutServiceDefault implements CheckoutService {
         if (checkoutToken == null) {
             throw new NullPointerException("checkoutToken cannot be null");
         }
-        if (TextUtils.isEmpty(checkoutToken)) {
+        if (StringUtils.isEmpty(checkoutToken)) {
             throw new IllegalArgumentException("checkoutToken cannot be empty");
         }
 
@@ -0,0 +1,197 @@
+/*
+ *   The MIT License (MIT)
+ *  
+ *   Copyright (c) 2015 Shopify Inc.
+ *  
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ *  
+ *   The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ *  
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *   THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.shopify.buy.model.Address;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.LineItem;
+import com.shopify.buy.model.ShippingRate;
+import com.shopify.buy.utils.StringUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the last checkout state acknowledged by the server for each checkout token, and reduces checkout updates to
+ * the fields that actually differ from that state. Line item changes trigger repricing on the server, so leaving out unchanged
+ * line items saves both the request body and the server side recomputation.
+ */
+final class CheckoutStateTracker {
+
+    static final int DEFAULT_MAX_SIZE = 8;
+
+    private final Gson gson = BuyClientUtils.createDefaultGson();
+
+    private final Map<String, Checkout> acknowledgedCheckouts;
+
+    CheckoutStateTracker() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    CheckoutStateTracker(final int maxSize) {
+        acknowledgedCheckouts = new LinkedHashMap<String, Checkout>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Checkout> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Records the checkout as the state known by the server. A copy is kept, callers are free to keep mutating the given checkout.
+     *
+     * @param checkout checkout returned by the server
+     */
+    void acknowledge(final Checkout checkout) {
+        if (checkout == null || StringUtils.isEmpty(checkout.getToken())) {
+            return;
+        }
+
+        synchronized (acknowledgedCheckouts) {
+            acknowledgedCheckouts.put(checkout.getToken(), checkout.copy());
+        }
+    }
+
+    /**
+     * Forgets the acknowledged state of the checkout, the next update will be sent in full.
+     *
+     * @param checkoutToken token of the checkout
+     */
+    void invalidate(final String checkoutToken) {
+        synchronized (acknowledgedCheckouts) {
+            acknowledgedCheckouts.remove(checkoutToken);
+        }
+    }
+
+    Checkout getAcknowledged(final String checkoutToken) {
+        synchronized (acknowledgedCheckouts) {
+            return acknowledgedCheckouts.get(checkoutToken);
+        }
+    }
+
+    /**
+     * Builds the minimal update for the checkout.
+     *
+     * @param update checkout with the fields to update
+     * @return checkout that only has the fields that differ from the acknowledged state set, or {@code update} itself if there is no known state
+     * or nothing differs from it
+     */
+    Checkout minimalUpdate(final Checkout update) {
+        final Checkout acknowledged = getAcknowledged(update.getToken());
+        if (acknowledged == null) {
+            return update;
+        }
+
+        final Checkout minimal = new Checkout(update.getToken());
+        boolean changed = false;
+        if (update.getEmail() != null && !StringUtils.equals(update.getEmail(), acknowledged.getEmail())) {
+            changed = true;
+            minimal.setEmail(update.getEmail());
+        }
+        if (update.getShippingAddress() != null && !addressesEqual(update.getShippingAddress(), acknowledged.getShippingAddress())) {
+            changed = true;
+            minimal.setShippingAddress(update.getShippingAddress());
+        }
+        if (update.getBillingAddress() != null && !addressesEqual(update.getBillingAddress(), acknowledged.getBillingAddress())) {
+            changed = true;
+            minimal.setBillingAddress(update.getBillingAddress());
+        }
+        if (update.getLineItems() != null && !lineItemsEqual(update.getLineItems(), acknowledged.getLineItems())) {
+            changed = true;
+            minimal.setLineItems(update.getLineItems());
+        }
+        if (update.getDiscount() != null && (acknowledged.getDiscount() == null || !StringUtils.equals(update.getDiscount().getCode(), acknowledged.getDiscount().getCode()))) {
+            changed = true;
+            minimal.setDiscountCode(update.getDiscount().getCode());
+        }
+        if (update.getShippingRate() != null && !shippingRatesEqual(update.getShippingRate(), acknowledged.getShippingRate())) {
+            changed = true;
+            minimal.setShippingRate(update.getShippingRate());
+        }
+        if (update.getReservationTime() != null && !update.getReservationTime().equals(acknowledged.getReservationTime())) {
+            changed = true;
+            minimal.setReservationTime(update.getReservationTime());
+        }
+        // an empty update would not refresh the checkout, send it in full and let the server recompute it
+        return changed ? minimal : update;
+    }
+
+    /**
+     * Only the attributes set on the updated address are compared, the server fills in some attributes of its own (e.g. country name).
+     */
+    private boolean addressesEqual(final Address update, final Address acknowledged) {
+        if (acknowledged == null) {
+            return false;
+        }
+
+        final JsonObject updateJson = gson.toJsonTree(update).getAsJsonObject();
+        final JsonObject acknowledgedJson = gson.toJsonTree(acknowledged).getAsJsonObject();
+        for (Map.Entry<String, JsonElement> entry : updateJson.entrySet()) {
+            if (!entry.getValue().equals(acknowledgedJson.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean lineItemsEqual(final List<LineItem> update, final List<LineItem> acknowledged) {
+        if (acknowledged == null || update.size() != acknowledged.size()) {
+            return false;
+        }
+
+        final Map<Long, LineItem> acknowledgedByVariant = new HashMap<>(acknowledged.size() * 2);
+        for (LineItem lineItem : acknowledged) {
+            acknowledgedByVariant.put(lineItem.getVariantId(), lineItem);
+        }
+
+        for (LineItem lineItem : update) {
+            final LineItem acknowledgedLineItem = acknowledgedByVariant.remove(lineItem.getVariantId());
+            if (lineItem.getVariantId() == null || acknowledgedLineItem == null || acknowledgedLineItem.getQuantity() != lineItem.getQuantity()) {
+                return false;
+            }
+
+            if (!normalizeProperties(lineItem.getProperties()).equals(normalizeProperties(acknowledgedLineItem.getProperties()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Missing properties are sent and acknowledged the same way as empty ones.
+     */
+    private static Map<String, Object> normalizeProperties(final Map<String, Object> properties) {
+        return properties != null ? properties : Collections.<String, Object>emptyMap();
+    }
+
+    private static boolean shippingRatesEqual(final ShippingRate update, final ShippingRate acknowledged) {
+        return acknowledged != null && update.getId() != null && update.getId().equals(acknowledged.getId());
+    }
+}
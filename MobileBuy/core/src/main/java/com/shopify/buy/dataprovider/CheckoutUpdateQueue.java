@@ -0,0 +1,312 @@
+/*
+ *   The MIT License (MIT)
+ *  
+ *   Copyright (c) 2015 Shopify Inc.
+ *  
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ *  
+ *   The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ *  
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *   THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.shopify.buy.model.Checkout;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Func1;
+import rx.subjects.AsyncSubject;
+
+/**
+ * Serializes checkout updates per checkout token. While an update is in flight, subsequent updates of the same checkout are
+ * merged into a single pending update that is sent as soon as the in flight one completes. Subscribers of an update that was
+ * superseded by a later one are notified with the server response of the last update of the chain.
+ * <p>
+ * An update whose subscribers all unsubscribed is dropped if it is still pending, and its request is cancelled if it is in flight
+ * and no pending update waits for it.
+ */
+final class CheckoutUpdateQueue {
+
+    private final Map<String, TokenQueue> queues = new HashMap<>();
+
+    /**
+     * Enqueues update of the checkout, the update is sent on subscription. The queue is shared by the views of a client, an update
+     * merged into a pending one is sent with the update function of the latest enqueued update.
+     *
+     * @param checkout       checkout with the fields to update
+     * @param updateFunction sends the update to the server
+     * @return the server response to the update, or to the last update it was merged into
+     */
+    Observable<Checkout> enqueue(final Checkout checkout, final Func1<Checkout, Observable<Checkout>> updateFunction) {
+        return Observable.create(new Observable.OnSubscribe<Checkout>() {
+            @Override
+            public void call(final Subscriber<? super Checkout> subscriber) {
+                enqueueNow(checkout, updateFunction, subscriber);
+            }
+        });
+    }
+
+    private void enqueueNow(final Checkout checkout, final Func1<Checkout, Observable<Checkout>> updateFunction, final Subscriber<? super Checkout> subscriber) {
+        final TokenQueue queue;
+        final Update update;
+        final boolean sendNow;
+        synchronized (queues) {
+            final TokenQueue existingQueue = queues.get(checkout.getToken());
+            if (existingQueue != null) {
+                queue = existingQueue;
+                if (queue.pending == null) {
+                    queue.pending = new Update(checkout, updateFunction);
+                } else {
+                    queue.pending.checkout = merge(queue.pending.checkout, checkout);
+                    queue.pending.updateFunction = updateFunction;
+                }
+                update = queue.pending;
+                sendNow = false;
+            } else {
+                queue = new TokenQueue(checkout.getToken());
+                queues.put(queue.token, queue);
+                update = new Update(checkout, updateFunction);
+                queue.inFlight = update;
+                sendNow = true;
+            }
+            update.subscriberCount++;
+        }
+
+        subscriber.add(new Subscription() {
+
+            private volatile boolean unsubscribed;
+
+            @Override
+            public void unsubscribe() {
+                if (!unsubscribed) {
+                    unsubscribed = true;
+                    release(queue, update);
+                }
+            }
+
+            @Override
+            public boolean isUnsubscribed() {
+                return unsubscribed;
+            }
+        });
+        update.subject.unsafeSubscribe(subscriber);
+
+        if (sendNow) {
+            send(queue, update);
+        }
+    }
+
+    private void send(final TokenQueue queue, final Update update) {
+        final Func1<Checkout, Observable<Checkout>> updateFunction;
+        synchronized (queues) {
+            if (update.cancelled) {
+                return;
+            }
+            updateFunction = update.updateFunction;
+        }
+
+        final Subscription subscription = updateFunction.call(update.checkout).subscribe(new Subscriber<Checkout>() {
+
+            private Checkout response;
+
+            @Override
+            public void onNext(final Checkout checkout) {
+                response = checkout;
+            }
+
+            @Override
+            public void onCompleted() {
+                onUpdateFinished(queue, update, response, null);
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                onUpdateFinished(queue, update, null, t);
+            }
+        });
+
+        final boolean cancelled;
+        synchronized (queues) {
+            update.subscription = subscription;
+            cancelled = update.cancelled;
+        }
+        if (cancelled) {
+            subscription.unsubscribe();
+        }
+    }
+
+    /**
+     * Called when a subscriber of the update unsubscribes, either because it received the result or because it is not interested
+     * anymore.
+     */
+    private void release(final TokenQueue queue, final Update subscribedUpdate) {
+        Subscription cancelledSubscription = null;
+        synchronized (queues) {
+            // the subscribers of a superseded update wait for the update that superseded it
+            Update update = subscribedUpdate;
+            while (update.supersededBy != null) {
+                update = update.supersededBy;
+            }
+
+            if (--update.subscriberCount > 0 || update.finished) {
+                return;
+            }
+
+            if (update == queue.pending) {
+                // never sent, drop it
+                queue.pending = null;
+                update.finished = true;
+            }
+
+            final Update inFlight = queue.inFlight;
+            if (queue.pending == null && inFlight != null && inFlight.subscriberCount == 0 && !inFlight.finished) {
+                // nobody waits for the response anymore, a later update of the checkout can go out right away
+                queues.remove(queue.token);
+                inFlight.finished = true;
+                inFlight.cancelled = true;
+                cancelledSubscription = inFlight.subscription;
+            }
+        }
+
+        if (cancelledSubscription != null) {
+            cancelledSubscription.unsubscribe();
+        }
+    }
+
+    private void onUpdateFinished(final TokenQueue queue, final Update update, final Checkout response, final Throwable error) {
+        final Update nextUpdate;
+        final boolean superseded;
+        synchronized (queues) {
+            if (update.finished) {
+                return;
+            }
+            update.finished = true;
+
+            nextUpdate = queue.pending;
+            queue.pending = null;
+            queue.inFlight = nextUpdate;
+
+            superseded = nextUpdate != null && (error == null || isNetworkError(error));
+            if (nextUpdate == null) {
+                queues.remove(queue.token);
+            } else if (superseded) {
+                // the pending update supersedes this one, its subscribers get the final result instead
+                update.supersededBy = nextUpdate;
+                nextUpdate.subscriberCount += update.subscriberCount;
+
+                if (error != null) {
+                    // the failed update didn't reach the server, carry its changes over
+                    nextUpdate.checkout = merge(update.checkout, nextUpdate.checkout);
+                }
+            }
+        }
+
+        if (superseded) {
+            nextUpdate.subject.subscribe(update.subject);
+        } else if (error != null) {
+            // the server rejected the update, its changes are not sent again with the next one
+            update.subject.onError(error);
+        } else {
+            update.subject.onNext(response);
+            update.subject.onCompleted();
+        }
+
+        if (nextUpdate != null) {
+            send(queue, nextUpdate);
+        }
+    }
+
+    private static boolean isNetworkError(final Throwable error) {
+        return error instanceof IOException
+            || (error instanceof BuyClientError && ((BuyClientError) error).getType() == BuyClientError.ERROR_TYPE_NETWORK);
+    }
+
+    /**
+     * Merges two checkout updates, fields set on the newer update take precedence over the ones of the older update.
+     */
+    static Checkout merge(final Checkout older, final Checkout newer) {
+        final Checkout merged = new Checkout(newer.getToken());
+        merged.setEmail(newer.getEmail() != null ? newer.getEmail() : older.getEmail());
+        merged.setShippingAddress(newer.getShippingAddress() != null ? newer.getShippingAddress() : older.getShippingAddress());
+        merged.setBillingAddress(newer.getBillingAddress() != null ? newer.getBillingAddress() : older.getBillingAddress());
+        merged.setShippingRate(newer.getShippingRate() != null ? newer.getShippingRate() : older.getShippingRate());
+
+        if (newer.getLineItems() != null) {
+            merged.setLineItems(newer.getLineItems());
+        } else if (older.getLineItems() != null) {
+            merged.setLineItems(older.getLineItems());
+        }
+
+        if (newer.getDiscount() != null) {
+            merged.setDiscountCode(newer.getDiscount().getCode());
+        } else if (older.getDiscount() != null) {
+            merged.setDiscountCode(older.getDiscount().getCode());
+        }
+
+        if (newer.getReservationTime() != null) {
+            merged.setReservationTime(newer.getReservationTime());
+        } else if (older.getReservationTime() != null) {
+            merged.setReservationTime(older.getReservationTime());
+        }
+
+        return merged;
+    }
+
+    private static final class TokenQueue {
+
+        final String token;
+
+        Update inFlight;
+
+        Update pending;
+
+        TokenQueue(final String token) {
+            this.token = token;
+        }
+    }
+
+    /**
+     * An update sent, or to be sent, in a single request. Guarded by the queues lock, except for the subject.
+     */
+    private static final class Update {
+
+        final AsyncSubject<Checkout> subject = AsyncSubject.create();
+
+        Checkout checkout;
+
+        Func1<Checkout, Observable<Checkout>> updateFunction;
+
+        int subscriberCount;
+
+        Subscription subscription;
+
+        Update supersededBy;
+
+        boolean finished;
+
+        boolean cancelled;
+
+        Update(final Checkout checkout, final Func1<Checkout, Observable<Checkout>> updateFunction) {
+            this.checkout = checkout;
+            this.updateFunction = updateFunction;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Opens connections to the hosts the {@link BuyClient} talks to ahead of time, so that DNS lookup, TCP and TLS handshakes are done
+ * by the time the first real request is made. A {@code HEAD} request is sent to the root of each host, its response is discarded and
+ * the connection is left in the connection pool shared with the {@link BuyClient}.
+ */
+final class ConnectionPrewarmer {
+
+    /**
+     * A host is not pre-warmed again within this interval, well below the keep alive duration of the default connection pool
+     */
+    static final long PREWARM_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final OkHttpClient httpClient;
+
+    private final HttpUrl shopUrl;
+
+    private final Map<String, Long> prewarmTimes = new HashMap<>();
+
+    private HttpUrl paymentUrl;
+
+    /**
+     * @param httpClient the http client of the {@link BuyClient}, its connection pool is shared but its interceptors are not used
+     * @param shopUrl    the base url of the shop
+     */
+    ConnectionPrewarmer(final OkHttpClient httpClient, final HttpUrl shopUrl) {
+        final OkHttpClient.Builder builder = httpClient.newBuilder().followRedirects(false);
+        builder.interceptors().clear();
+        builder.networkInterceptors().clear();
+        this.httpClient = builder.build();
+        this.shopUrl = shopUrl;
+    }
+
+    /**
+     * Pre-warms the connection to the shop, and to the card vault if a checkout with a payment url was seen before.
+     */
+    void prewarm() {
+        final HttpUrl paymentUrl;
+        synchronized (prewarmTimes) {
+            paymentUrl = this.paymentUrl;
+        }
+
+        prewarm(shopUrl);
+        if (paymentUrl != null) {
+            prewarm(paymentUrl);
+        }
+    }
+
+    /**
+     * Pre-warms the connection to the card vault the payment url points to.
+     *
+     * @param paymentUrl the payment url of a checkout, ignored if null or invalid
+     */
+    void prewarmPaymentUrl(final String paymentUrl) {
+        final HttpUrl url = paymentUrl != null ? HttpUrl.parse(paymentUrl) : null;
+        if (url == null) {
+            return;
+        }
+
+        synchronized (prewarmTimes) {
+            this.paymentUrl = url;
+        }
+        prewarm(url);
+    }
+
+    void prewarm(final HttpUrl url) {
+        final String origin = url.scheme() + "://" + url.host() + ":" + url.port();
+        final long now = System.currentTimeMillis();
+        synchronized (prewarmTimes) {
+            final Long lastPrewarmTime = prewarmTimes.get(origin);
+            if (lastPrewarmTime != null && now - lastPrewarmTime < PREWARM_INTERVAL_MS) {
+                return;
+            }
+            prewarmTimes.put(origin, now);
+        }
+
+        final Request request = new Request.Builder()
+            .url(url.newBuilder().encodedPath("/").query(null).fragment(null).build())
+            .head()
+            .build();
+
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(final Call call, final IOException e) {
+                // pre-warming is best effort, the actual request will connect again
+                synchronized (prewarmTimes) {
+                    prewarmTimes.remove(origin);
+                }
+            }
+
+            @Override
+            public void onResponse(final Call call, final Response response) throws IOException {
+                response.body().close();
+            }
+        });
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+
+/**
+ * Creates Retrofit {@link Observable} requests that remember the {@link BuyClientMetrics.Tracker} and the {@link BuyClientSpan} that
+ * are current on the thread creating them, and make them current again on the thread executing them.
+ * <p>
+ * Retrofit observables execute their request and emit the response synchronously while they are being subscribed to, so the
+ * interceptors, the response converters and everything chained to the request (retry and polling policies, {@code flatMap} to the
+ * next request, etc.) run with the context of the call that created the request, even when retried or polled from another thread.
+ * Only installed when metrics or tracing are enabled; otherwise requests are simply subscribed on the request scheduler.
+ */
+final class ContextCallAdapterFactory extends CallAdapter.Factory {
+
+    private final CallAdapter.Factory delegate = RxJavaCallAdapterFactory.create();
+
+    private final CallAdapter.Factory scheduledDelegate;
+
+    private final Scheduler scheduler;
+
+    /**
+     * @param scheduler the scheduler requests are subscribed on, {@code null} to execute them on the subscribing thread
+     */
+    ContextCallAdapterFactory(final Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.scheduledDelegate = scheduler != null ? RxJavaCallAdapterFactory.createWithScheduler(scheduler) : delegate;
+    }
+
+    @Override
+    public CallAdapter<?> get(final Type returnType, final Annotation[] annotations, final Retrofit retrofit) {
+        final Type rawType = returnType instanceof ParameterizedType ? ((ParameterizedType) returnType).getRawType() : returnType;
+        if (rawType != Observable.class) {
+            return scheduledDelegate.get(returnType, annotations, retrofit);
+        }
+
+        final CallAdapter<?> adapter = delegate.get(returnType, annotations, retrofit);
+        if (adapter == null) {
+            return null;
+        }
+
+        return new CallAdapter<Observable<?>>() {
+            @Override
+            public Type responseType() {
+                return adapter.responseType();
+            }
+
+            @Override
+            public <R> Observable<?> adapt(final Call<R> call) {
+                final Observable<?> observable = (Observable<?>) adapter.adapt(call);
+                final BuyClientMetrics.Tracker tracker = BuyClientMetrics.currentTracker();
+                final BuyClientSpan span = BuyClientTracer.currentSpan();
+                final Observable<?> result = tracker == null && span == null ? observable : withContext(observable, tracker, span);
+                return scheduler != null ? result.subscribeOn(scheduler) : result;
+            }
+        };
+    }
+
+    private static <T> Observable<T> withContext(final Observable<T> observable, final BuyClientMetrics.Tracker tracker, final BuyClientSpan span) {
+        return Observable.create(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(Subscriber<? super T> subscriber) {
+                final BuyClientMetrics.Tracker previousTracker = BuyClientMetrics.setCurrentTracker(tracker);
+                final BuyClientSpan previousSpan = BuyClientTracer.setCurrentSpan(span);
+                try {
+                    observable.unsafeSubscribe(subscriber);
+                } finally {
+                    BuyClientMetrics.setCurrentTracker(previousTracker);
+                    BuyClientTracer.setCurrentSpan(previousSpan);
+                }
+            }
+        });
+    }
+}
@@ -23,8 +23,9 @@
  */
 package com.shopify.buy.dataprovider;
 
+import com.shopify.buy.model.Customer;
+import com.shopify.buy.model.CustomerToken;
 import com.shopify.buy.model.internal.AccountCredentialsWrapper;
-import com.shopify.buy.model.internal.CustomerTokenWrapper;
 import com.shopify.buy.model.internal.CustomerWrapper;
 import com.shopify.buy.model.internal.EmailWrapper;
 
@@ -41,33 +42,41 @@ import rx.Observable;
 interface CustomerRetrofitService {
 
     @POST("api/customers.json")
-    Observable<Response<CustomerWrapper>> createCustomer(@Body AccountCredentialsWrapper accountCredentialsWrapper);
+    @Unwrap("customer")
+    Observable<Response<Customer>> createCustomer(@Body AccountCredentialsWrapper accountCredentialsWrapper);
 
     @PUT("api/customers/{customerId}/activate.json")
-    Observable<Response<CustomerWrapper>> activateCustomer(@Path("customerId") Long customerId, @Query("token") String activationToken, @Body AccountCredentialsWrapper accountCredentialsWrapper);
+    @Unwrap("customer")
+    Observable<Response<Customer>> activateCustomer(@Path("customerId") Long customerId, @Query("token") String activationToken, @Body AccountCredentialsWrapper accountCredentialsWrapper);
 
     @PUT("api/customers/{customerId}/reset.json")
-    Observable<Response<CustomerWrapper>> resetPassword(@Path("customerId") Long customerId, @Query("token") String resetToken, @Body AccountCredentialsWrapper accountCredentialsWrapper);
+    @Unwrap("customer")
+    Observable<Response<Customer>> resetPassword(@Path("customerId") Long customerId, @Query("token") String resetToken, @Body AccountCredentialsWrapper accountCredentialsWrapper);
 
     @POST("api/customers/recover.json")
     Observable<Response<Void>> recoverCustomer(@Body EmailWrapper emailWrapper);
 
     @GET("api/customers.json")
-    Observable<Response<CustomerWrapper>> getCustomer();
+    @Unwrap("customer")
+    Observable<Response<Customer>> getCustomer();
 
     @GET("api/customers/{customerId}.json")
-    Observable<Response<CustomerWrapper>> getCustomer(@Path("customerId") Long customerId);
+    @Unwrap("customer")
+    Observable<Response<Customer>> getCustomer(@Path("customerId") Long customerId);
 
     @PUT("api/customers/{customerId}.json")
-    Observable<Response<CustomerWrapper>> updateCustomer(@Path("customerId") Long customerId, @Body CustomerWrapper customer);
+    @Unwrap("customer")
+    Observable<Response<Customer>> updateCustomer(@Path("customerId") Long customerId, @Body CustomerWrapper customer);
 
     @POST("api/customers/customer_token.json")
-    Observable<Response<CustomerTokenWrapper>> getCustomerToken(@Body AccountCredentialsWrapper accountCredentialsWrapper);
+    @Unwrap("customer_access_token")
+    Observable<Response<CustomerToken>> getCustomerToken(@Body AccountCredentialsWrapper accountCredentialsWrapper);
 
     @DELETE("api/customers/{customerId}/customer_token.json")
     Observable<Response<Void>> removeCustomerToken(@Path("customerId") Long customerId);
 
     @PUT("api/customers/{customerId}/customer_token/renew.json")
-    Observable<Response<CustomerTokenWrapper>> renewCustomerToken(@Body String empty, @Path("customerId") Long customerId);
+    @Unwrap("customer_access_token")
+    Observable<Response<CustomerToken>> renewCustomerToken(@Body String empty, @Path("customerId") Long customerId);
 
 }
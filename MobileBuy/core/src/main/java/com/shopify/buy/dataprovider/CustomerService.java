@@ -171,7 +171,7 @@ public interface CustomerService {
     Observable<Customer> getCustomer();
 
     /**
-     * Renew the Customer login.  This should be called periodically to keep the token up to date.
+     * Renew the Customer login. The token is also renewed automatically when a request is made shortly before it expires, or when the server rejects it.
      *
      * @param callback the {@link Callback} that will be used to indicate the response from the asynchronous network operation, not null
      * @return cancelable task
@@ -179,7 +179,7 @@ public interface CustomerService {
     CancellableTask renewCustomer(Callback<CustomerToken> callback);
 
     /**
-     * Renew the Customer login.  This should be called periodically to keep the token up to date.
+     * Renew the Customer login. The token is also renewed automatically when a request is made shortly before it expires, or when the server rejects it.
      *
      * @return cold observable that emits renewed customer token
      */
@@ -23,23 +23,24 @@
  */
 package com.shopify.buy.dataprovider;
 
-import android.text.TextUtils;
-
 import com.shopify.buy.model.AccountCredentials;
 import com.shopify.buy.model.Customer;
 import com.shopify.buy.model.CustomerToken;
 import com.shopify.buy.model.internal.AccountCredentialsWrapper;
-import com.shopify.buy.model.internal.CustomerTokenWrapper;
 import com.shopify.buy.model.internal.CustomerWrapper;
 import com.shopify.buy.model.internal.EmailWrapper;
+import com.shopify.buy.utils.StringUtils;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import retrofit2.Response;
 import retrofit2.Retrofit;
 import rx.Observable;
 import rx.Scheduler;
+import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 /**
@@ -49,24 +50,51 @@ final class CustomerServiceDefault implements CustomerService {
 
     private static final String EMPTY_BODY = "";
 
+    /**
+     * Customer tokens expiring sooner than this are renewed before they are used
+     */
+    static final long CUSTOMER_TOKEN_RENEWAL_MARGIN_MS = TimeUnit.MINUTES.toMillis(5);
+
     final CustomerRetrofitService retrofitService;
 
+    final CustomerRetrofitService renewalRetrofitService;
+
+    final Scheduler renewalScheduler;
+
     final NetworkRetryPolicyProvider networkRetryPolicyProvider;
 
     final Scheduler callbackScheduler;
 
-    final AtomicReference<CustomerToken> customerTokenRef = new AtomicReference<>();
+    final BuyClientTracer tracer;
+
+    final AtomicReference<CustomerToken> customerTokenRef;
 
+    final AtomicReference<Observable<CustomerToken>> customerTokenRenewalRef;
+
+    /**
+     * @param renewalRetrofit         renews the customer token, it must not share the request executor with the requests waiting for the renewal
+     * @param renewalScheduler        the scheduler the renewal is subscribed on, {@code null} to renew on the subscribing thread
+     * @param customerTokenRef        holds the current customer token, shared with the services of the other views of the same client
+     * @param customerTokenRenewalRef holds the customer token renewal in flight, shared with the services of the other views of the same client
+     */
     CustomerServiceDefault(
         final Retrofit retrofit,
-        final CustomerToken customerToken,
+        final Retrofit renewalRetrofit,
+        final Scheduler renewalScheduler,
+        final AtomicReference<CustomerToken> customerTokenRef,
+        final AtomicReference<Observable<CustomerToken>> customerTokenRenewalRef,
         final NetworkRetryPolicyProvider networkRetryPolicyProvider,
-        final Scheduler callbackScheduler
+        final Scheduler callbackScheduler,
+        final BuyClientTracer tracer
     ) {
         this.retrofitService = retrofit.create(CustomerRetrofitService.class);
-        this.customerTokenRef.set(customerToken);
+        this.renewalRetrofitService = renewalRetrofit.create(CustomerRetrofitService.class);
+        this.renewalScheduler = renewalScheduler;
+        this.customerTokenRef = customerTokenRef;
+        this.customerTokenRenewalRef = customerTokenRenewalRef;
         this.networkRetryPolicyProvider = networkRetryPolicyProvider;
         this.callbackScheduler = callbackScheduler;
+        this.tracer = tracer;
     }
 
     @Override
@@ -91,15 +119,33 @@ final class CustomerServiceDefault implements CustomerService {
         }
 
         final AccountCredentialsWrapper accountCredentialsWrapper = new AccountCredentialsWrapper(accountCredentials);
-        return retrofitService
-            .createCustomer(accountCredentialsWrapper)
-            .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerWrapper, Customer>())
-            .onErrorResumeNext(new BuyClientExceptionHandler<Customer>())
-            .flatMap(new Func1<Customer, Observable<Customer>>() {
+        return tracer
+            .trace("createCustomer", new Func0<Observable<Customer>>() {
                 @Override
-                public Observable<Customer> call(final Customer customer) {
-                    return loginCustomer(accountCredentials);
+                public Observable<Customer> call() {
+                    final BuyClientSpan createCustomerSpan = BuyClientTracer.currentSpan();
+                    return tracer
+                        .trace("createCustomer.create", new Func0<Observable<Customer>>() {
+                            @Override
+                            public Observable<Customer> call() {
+                                return retrofitService
+                                    .createCustomer(accountCredentialsWrapper)
+                                    .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
+                                    .compose(new UnwrapRetrofitBodyTransformer<Customer>())
+                                    .onErrorResumeNext(new BuyClientExceptionHandler<Customer>());
+                            }
+                        })
+                        .flatMap(new Func1<Customer, Observable<Customer>>() {
+                            @Override
+                            public Observable<Customer> call(final Customer customer) {
+                                return tracer.trace("createCustomer.login", createCustomerSpan, new Func0<Observable<Customer>>() {
+                                    @Override
+                                    public Observable<Customer> call() {
+                                        return loginCustomer(accountCredentials);
+                                    }
+                                });
+                            }
+                        });
                 }
             })
             .observeOn(callbackScheduler);
@@ -119,7 +165,7 @@ final class CustomerServiceDefault implements CustomerService {
         if (activationToken == null) {
             throw new NullPointerException("activationToken cannot be null");
         }
-        if (TextUtils.isEmpty(activationToken)) {
+        if (StringUtils.isEmpty(activationToken)) {
             throw new IllegalArgumentException("activation token cannot be empty");
         }
         if (accountCredentials == null) {
@@ -130,7 +176,7 @@ final class CustomerServiceDefault implements CustomerService {
         return retrofitService
             .activateCustomer(customerId, activationToken, accountCredentialsWrapper)
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerWrapper, Customer>())
+            .compose(new UnwrapRetrofitBodyTransformer<Customer>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Customer>())
             .observeOn(callbackScheduler);
     }
@@ -148,7 +194,7 @@ final class CustomerServiceDefault implements CustomerService {
         if (resetToken == null) {
             throw new NullPointerException("resetToken cannot be null");
         }
-        if (TextUtils.isEmpty(resetToken)) {
+        if (StringUtils.isEmpty(resetToken)) {
             throw new IllegalArgumentException("reset token cannot be empty");
         }
         if (accountCredentials == null) {
@@ -159,7 +205,7 @@ final class CustomerServiceDefault implements CustomerService {
         return retrofitService
             .resetPassword(customerId, resetToken, accountCredentialsWrapper)
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerWrapper, Customer>())
+            .compose(new UnwrapRetrofitBodyTransformer<Customer>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Customer>())
             .observeOn(callbackScheduler);
     }
@@ -176,22 +222,40 @@ final class CustomerServiceDefault implements CustomerService {
         }
 
         final AccountCredentialsWrapper accountCredentialsWrapper = new AccountCredentialsWrapper(accountCredentials);
-        return retrofitService
-            .getCustomerToken(accountCredentialsWrapper)
-            .retryWhen(networkRetryPolicyProvider.provide())
-            .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerTokenWrapper, CustomerToken>())
-            .onErrorResumeNext(new BuyClientExceptionHandler<CustomerToken>())
-            .doOnNext(new Action1<CustomerToken>() {
+        return tracer
+            .trace("loginCustomer", new Func0<Observable<Customer>>() {
                 @Override
-                public void call(CustomerToken token) {
-                    customerTokenRef.set(token);
-                }
-            })
-            .flatMap(new Func1<CustomerToken, Observable<Customer>>() {
-                @Override
-                public Observable<Customer> call(CustomerToken customerToken) {
-                    return getCustomer();
+                public Observable<Customer> call() {
+                    final BuyClientSpan loginCustomerSpan = BuyClientTracer.currentSpan();
+                    return tracer
+                        .trace("loginCustomer.token", new Func0<Observable<CustomerToken>>() {
+                            @Override
+                            public Observable<CustomerToken> call() {
+                                return retrofitService
+                                    .getCustomerToken(accountCredentialsWrapper)
+                                    .retryWhen(networkRetryPolicyProvider.provide())
+                                    .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
+                                    .compose(new UnwrapRetrofitBodyTransformer<CustomerToken>())
+                                    .onErrorResumeNext(new BuyClientExceptionHandler<CustomerToken>());
+                            }
+                        })
+                        .doOnNext(new Action1<CustomerToken>() {
+                            @Override
+                            public void call(CustomerToken token) {
+                                customerTokenRef.set(token);
+                            }
+                        })
+                        .flatMap(new Func1<CustomerToken, Observable<Customer>>() {
+                            @Override
+                            public Observable<Customer> call(CustomerToken customerToken) {
+                                return tracer.trace("loginCustomer.getCustomer", loginCustomerSpan, new Func0<Observable<Customer>>() {
+                                    @Override
+                                    public Observable<Customer> call() {
+                                        return getCustomer();
+                                    }
+                                });
+                            }
+                        });
                 }
             })
             .observeOn(callbackScheduler);
@@ -250,7 +314,7 @@ final class CustomerServiceDefault implements CustomerService {
         return retrofitService
             .updateCustomer(customerToken.getCustomerId(), new CustomerWrapper(customer))
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerWrapper, Customer>())
+            .compose(new UnwrapRetrofitBodyTransformer<Customer>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Customer>())
             .observeOn(callbackScheduler);
     }
@@ -272,7 +336,7 @@ final class CustomerServiceDefault implements CustomerService {
             .getCustomer(customerToken.getCustomerId())
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerWrapper, Customer>())
+            .compose(new UnwrapRetrofitBodyTransformer<Customer>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Customer>())
             .observeOn(callbackScheduler);
     }
@@ -290,18 +354,100 @@ final class CustomerServiceDefault implements CustomerService {
             return Observable.error(new BuyClientError(new IllegalStateException("customer must be logged in")));
         }
 
-        return retrofitService
-            .renewCustomerToken(EMPTY_BODY, customerToken.getCustomerId())
-            .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CustomerTokenWrapper, CustomerToken>())
-            .onErrorResumeNext(new BuyClientExceptionHandler<CustomerToken>())
-            .observeOn(callbackScheduler)
-            .doOnNext(new Action1<CustomerToken>() {
-                @Override
-                public void call(CustomerToken token) {
-                    customerTokenRef.set(token);
+        return renewCustomerTokenShared()
+            .observeOn(callbackScheduler);
+    }
+
+    /**
+     * Renews the customer token, concurrent renewals share a single request, also across the views of the same client.
+     *
+     * @return cold observable that emits the renewed customer token
+     */
+    Observable<CustomerToken> renewCustomerTokenShared() {
+        return Observable.defer(new Func0<Observable<CustomerToken>>() {
+            @Override
+            public Observable<CustomerToken> call() {
+                synchronized (customerTokenRenewalRef) {
+                    Observable<CustomerToken> customerTokenRenewal = customerTokenRenewalRef.get();
+                    if (customerTokenRenewal == null) {
+                        final CustomerToken customerToken = getCustomerToken();
+                        if (customerToken == null) {
+                            return Observable.error(new BuyClientError(new IllegalStateException("customer must be logged in")));
+                        }
+
+                        Observable<Response<CustomerToken>> renewalResponse = renewalRetrofitService
+                            .renewCustomerToken(EMPTY_BODY, customerToken.getCustomerId());
+                        if (renewalScheduler != null) {
+                            renewalResponse = renewalResponse.subscribeOn(renewalScheduler);
+                        }
+
+                        customerTokenRenewal = renewalResponse
+                            .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
+                            .compose(new UnwrapRetrofitBodyTransformer<CustomerToken>())
+                            .onErrorResumeNext(new BuyClientExceptionHandler<CustomerToken>())
+                            .doOnNext(new Action1<CustomerToken>() {
+                                @Override
+                                public void call(CustomerToken token) {
+                                    customerTokenRef.compareAndSet(customerToken, token);
+                                }
+                            })
+                            .doOnTerminate(new Action0() {
+                                @Override
+                                public void call() {
+                                    synchronized (customerTokenRenewalRef) {
+                                        customerTokenRenewalRef.set(null);
+                                    }
+                                }
+                            })
+                            .cache();
+                        customerTokenRenewalRef.set(customerTokenRenewal);
+                    }
+                    return customerTokenRenewal;
                 }
-            });
+            }
+        });
+    }
+
+    /**
+     * @param customerToken the token to check
+     * @return {@code true} if the token hasn't expired yet but will shortly
+     */
+    boolean isCustomerTokenRenewalDue(final CustomerToken customerToken) {
+        if (customerToken == null || customerToken.getExpiresAt() == null) {
+            return false;
+        }
+
+        final long timeLeft = customerToken.getExpiresAt().getTime() - System.currentTimeMillis();
+        return timeLeft > 0 && timeLeft < CUSTOMER_TOKEN_RENEWAL_MARGIN_MS;
+    }
+
+    /**
+     * Blocks until the customer token that replaces {@code staleToken} is available. If another request already replaced it,
+     * the current token is returned right away, otherwise the token is renewed (sharing the renewal with concurrent callers).
+     *
+     * @param staleToken the token that is about to expire or was rejected by the server
+     * @param timeoutMs  how long to wait for the renewal
+     * @return the renewed customer token, or {@code null} if the renewal failed or timed out
+     */
+    CustomerToken renewCustomerTokenBlocking(final CustomerToken staleToken, final long timeoutMs) {
+        final CustomerToken customerToken = getCustomerToken();
+        if (customerToken == null) {
+            return null;
+        }
+
+        if (!customerToken.equals(staleToken) && !isCustomerTokenRenewalDue(customerToken)) {
+            return customerToken;
+        }
+
+        try {
+            // the renewal may have been started by another request, don't wait for it forever
+            return renewCustomerTokenShared()
+                .timeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .toBlocking()
+                .first();
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 
     @Override
@@ -314,7 +460,7 @@ final class CustomerServiceDefault implements CustomerService {
         if (email == null) {
             throw new NullPointerException("email cannot be null");
         }
-        if (TextUtils.isEmpty(email)) {
+        if (StringUtils.isEmpty(email)) {
             throw new IllegalArgumentException("email cannot be empty");
         }
 
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link BuyClientSpanExporter} that keeps the exported spans in memory, meant for tests and debugging.
+ */
+public final class InMemorySpanExporter implements BuyClientSpanExporter {
+
+    private final List<BuyClientSpan> spans = new ArrayList<>();
+
+    @Override
+    public synchronized void export(final BuyClientSpan span) {
+        spans.add(span);
+    }
+
+    /**
+     * @return the exported spans, in the order they ended
+     */
+    public synchronized List<BuyClientSpan> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * @param traceId the id of the trace
+     * @return the exported spans of the given trace, in the order they ended
+     */
+    public synchronized List<BuyClientSpan> getSpans(final String traceId) {
+        final List<BuyClientSpan> traceSpans = new ArrayList<>();
+        for (BuyClientSpan span : spans) {
+            if (span.getTraceId().equals(traceId)) {
+                traceSpans.add(span);
+            }
+        }
+        return traceSpans;
+    }
+
+    /**
+     * @param name the name of the span
+     * @return the first exported span with the given name, or {@code null} if none
+     */
+    public synchronized BuyClientSpan getSpan(final String name) {
+        for (BuyClientSpan span : spans) {
+            if (span.getName().equals(name)) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops all the exported spans.
+     */
+    public synchronized void reset() {
+        spans.clear();
+    }
+}
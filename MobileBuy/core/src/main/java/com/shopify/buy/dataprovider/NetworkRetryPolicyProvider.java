@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Scheduler;
 import rx.functions.Func1;
 
 /**
@@ -40,14 +41,20 @@ final class NetworkRetryPolicyProvider {
 
     final float retryBackoffMultiplier;
 
-    NetworkRetryPolicyProvider(final int retryMaxCount, final long retryDelayMs, final float retryBackoffMultiplier) {
+    final Scheduler timerScheduler;
+
+    /**
+     * @param timerScheduler the scheduler the delay before each retry is scheduled on, the retried request is resubscribed from it
+     */
+    NetworkRetryPolicyProvider(final int retryMaxCount, final long retryDelayMs, final float retryBackoffMultiplier, final Scheduler timerScheduler) {
         this.retryMaxCount = retryMaxCount;
         this.retryDelayMs = retryDelayMs;
         this.retryBackoffMultiplier = retryBackoffMultiplier;
+        this.timerScheduler = timerScheduler;
     }
 
     Func1<Observable<? extends Throwable>, Observable<?>> provide() {
-        return new NetworkErrorRetryPolicy(retryMaxCount, retryDelayMs, retryBackoffMultiplier);
+        return new NetworkErrorRetryPolicy(retryMaxCount, retryDelayMs, retryBackoffMultiplier, timerScheduler);
     }
 
     private static class NetworkErrorRetryPolicy implements Func1<Observable<? extends Throwable>, Observable<?>> {
@@ -56,14 +63,17 @@ final class NetworkRetryPolicyProvider {
 
         private final float backoffMultiplier;
 
+        private final Scheduler timerScheduler;
+
         private volatile int retryAttempt;
 
         private volatile long nextAttemptDelay;
 
-        NetworkErrorRetryPolicy(final int maxRetryCount, final long delayMs, final float backoffMultiplier) {
+        NetworkErrorRetryPolicy(final int maxRetryCount, final long delayMs, final float backoffMultiplier, final Scheduler timerScheduler) {
             this.retryAttempt = maxRetryCount;
             this.delayBeforeRetryMs = delayMs;
             this.backoffMultiplier = backoffMultiplier;
+            this.timerScheduler = timerScheduler;
         }
 
         @Override
@@ -76,7 +86,12 @@ final class NetworkRetryPolicyProvider {
                             if (t instanceof IOException) {
                                 if (--retryAttempt >= 0) {
                                     nextAttemptDelay = Math.max((long) (backoffMultiplier * nextAttemptDelay), delayBeforeRetryMs);
-                                    resultObservable = Observable.timer(nextAttemptDelay, TimeUnit.MILLISECONDS);
+                                    resultObservable = Observable.timer(nextAttemptDelay, TimeUnit.MILLISECONDS, timerScheduler);
+
+                                    final BuyClientMetrics.Tracker tracker = BuyClientMetrics.currentTracker();
+                                    if (tracker != null) {
+                                        tracker.onRetry(t, nextAttemptDelay);
+                                    }
                                 }
                             }
                             return resultObservable;
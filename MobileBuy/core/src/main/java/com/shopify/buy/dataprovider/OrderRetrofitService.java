@@ -23,8 +23,9 @@
  */
 package com.shopify.buy.dataprovider;
 
-import com.shopify.buy.model.internal.OrderWrapper;
-import com.shopify.buy.model.internal.OrdersWrapper;
+import com.shopify.buy.model.Order;
+
+import java.util.List;
 
 import retrofit2.Response;
 import retrofit2.http.GET;
@@ -34,9 +35,11 @@ import rx.Observable;
 interface OrderRetrofitService {
 
     @GET("api/customers/{customerId}/orders.json")
-    Observable<Response<OrdersWrapper>> getOrders(@Path("customerId") Long customerId);
+    @Unwrap("orders")
+    Observable<Response<List<Order>>> getOrders(@Path("customerId") Long customerId);
 
     @GET("api/customers/{customerId}/orders/{orderId}")
-    Observable<Response<OrderWrapper>> getOrder(@Path("orderId") Long orderId, @Path("customerId") Long customerId);
+    @Unwrap("order")
+    Observable<Response<Order>> getOrder(@Path("orderId") Long orderId, @Path("customerId") Long customerId);
 
 }
@@ -25,8 +25,6 @@ package com.shopify.buy.dataprovider;
 
 import com.shopify.buy.model.CustomerToken;
 import com.shopify.buy.model.Order;
-import com.shopify.buy.model.internal.OrderWrapper;
-import com.shopify.buy.model.internal.OrdersWrapper;
 
 import java.util.List;
 
@@ -76,7 +74,7 @@ final class OrderServiceDefault implements OrderService {
             .getOrders(customerToken.getCustomerId())
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<OrdersWrapper, List<Order>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<Order>>())
             .onErrorResumeNext(new BuyClientExceptionHandler<List<Order>>())
             .observeOn(callbackScheduler);
     }
@@ -102,7 +100,7 @@ final class OrderServiceDefault implements OrderService {
             .getOrder(orderId, customerToken.getCustomerId())
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<OrderWrapper, Order>())
+            .compose(new UnwrapRetrofitBodyTransformer<Order>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Order>())
             .observeOn(callbackScheduler);
     }
@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.dataprovider;
+
+import retrofit2.Response;
+
+/**
+ * Signals that the result of a request is not ready yet and the request has to be polled. It is thrown on every poll of long
+ * polling sessions, so it doesn't capture a stack trace.
+ */
+public class PollingRequiredException extends RuntimeException {
+
+    /**
+     * Shared instance for the polls that don't have a response to report.
+     */
+    static final PollingRequiredException INSTANCE = new PollingRequiredException();
+
+    private final Response<?> retrofitResponse;
+
+    public PollingRequiredException() {
+        this(null);
+    }
+
+    /**
+     * @param retrofitResponse the {@code 202 Accepted} response asking to poll, reported as a {@link BuyClientError} if the polling
+     *                         gives up, can be {@code null}
+     */
+    public PollingRequiredException(final Response<?> retrofitResponse) {
+        this.retrofitResponse = retrofitResponse;
+    }
+
+    /**
+     * @return the response asking to poll, can be {@code null}
+     */
+    public Response<?> getRetrofitResponse() {
+        return retrofitResponse;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
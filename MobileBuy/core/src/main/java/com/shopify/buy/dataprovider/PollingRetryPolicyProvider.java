@@ -27,6 +27,7 @@ import java.net.HttpURLConnection;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Scheduler;
 import rx.functions.Func1;
 
 /**
@@ -38,13 +39,16 @@ final class PollingPolicyProvider {
 
     final long timeoutMs;
 
-    PollingPolicyProvider(final long retryDelayMs, final long timeoutMs) {
+    final Scheduler timerScheduler;
+
+    PollingPolicyProvider(final long retryDelayMs, final long timeoutMs, final Scheduler timerScheduler) {
         this.retryDelayMs = retryDelayMs;
         this.timeoutMs = timeoutMs;
+        this.timerScheduler = timerScheduler;
     }
 
     Func1<Observable<? extends Throwable>, Observable<?>> provide() {
-        return new PollingPolicy(retryDelayMs, timeoutMs);
+        return new PollingPolicy(retryDelayMs, timeoutMs, timerScheduler);
     }
 
     private static final class PollingPolicy implements Func1<Observable<? extends Throwable>, Observable<?>> {
@@ -53,11 +57,14 @@ final class PollingPolicyProvider {
 
         private final long timeoutMs;
 
+        private final Scheduler timerScheduler;
+
         private volatile long pollingStartTime = -1;
 
-        PollingPolicy(final long retryDelayMs, final long timeoutMs) {
+        PollingPolicy(final long retryDelayMs, final long timeoutMs, final Scheduler timerScheduler) {
             this.retryDelayMs = retryDelayMs;
             this.timeoutMs = timeoutMs;
+            this.timerScheduler = timerScheduler;
         }
 
         @Override
@@ -88,7 +95,11 @@ final class PollingPolicyProvider {
                         }
 
                         if (pollingRequired) {
-                            return Observable.timer(retryDelayMs, TimeUnit.MILLISECONDS);
+                            final BuyClientMetrics.Tracker tracker = BuyClientMetrics.currentTracker();
+                            if (tracker != null) {
+                                tracker.onPoll(retryDelayMs);
+                            }
+                            return Observable.timer(retryDelayMs, TimeUnit.MILLISECONDS, timerScheduler);
                         } else {
                             return Observable.error(t);
                         }
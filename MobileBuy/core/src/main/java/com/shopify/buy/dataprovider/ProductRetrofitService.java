@@ -23,9 +23,11 @@
  */
 package com.shopify.buy.dataprovider;
 
-import com.shopify.buy.model.internal.CollectionListings;
-import com.shopify.buy.model.internal.ProductListings;
-import com.shopify.buy.model.internal.ProductTagsWrapper;
+import com.shopify.buy.model.Collection;
+import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductTag;
+
+import java.util.List;
 
 import retrofit2.Response;
 import retrofit2.http.GET;
@@ -36,20 +38,30 @@ import rx.Observable;
 interface ProductRetrofitService {
 
     @GET("api/apps/{appId}/product_listings.json")
-    Observable<Response<ProductListings>> getProducts(@Path("appId") String appId, @Query("product_ids") String productId);
+    @Unwrap(value = "product_listings", first = true)
+    Observable<Response<Product>> getProduct(@Path("appId") String appId, @Query("product_ids") String productId);
+
+    @GET("api/apps/{appId}/product_listings.json")
+    @Unwrap("product_listings")
+    Observable<Response<List<Product>>> getProducts(@Path("appId") String appId, @Query("product_ids") String productIds, @Query("fields") String fields);
 
     @GET("api/apps/{appId}/product_listings.json")
-    Observable<Response<ProductListings>> getProductByHandle(@Path("appId") String appId, @Query("handle") String handle);
+    @Unwrap(value = "product_listings", first = true)
+    Observable<Response<Product>> getProductByHandle(@Path("appId") String appId, @Query("handle") String handle);
 
     @GET("api/apps/{appId}/collection_listings.json")
-    Observable<Response<CollectionListings>> getCollectionPage(@Path("appId") String appId, @Query("page") int page, @Query("limit") int pageSize);
+    @Unwrap("collection_listings")
+    Observable<Response<List<Collection>>> getCollectionPage(@Path("appId") String appId, @Query("page") int page, @Query("limit") int pageSize);
 
     @GET("api/apps/{appId}/collection_listings.json")
-    Observable<Response<CollectionListings>> getCollectionByHandle(@Path("appId") String appId, @Query("handle") String handle);
+    @Unwrap(value = "collection_listings", first = true)
+    Observable<Response<Collection>> getCollectionByHandle(@Path("appId") String appId, @Query("handle") String handle);
 
     @GET("api/apps/{appId}/product_listings/tags.json")
-    Observable<Response<ProductTagsWrapper>> getProductTagPage(@Path("appId") String appId, @Query("page") int page, @Query("limit") int pageSize);
+    @Unwrap("tags")
+    Observable<Response<List<ProductTag>>> getProductTagPage(@Path("appId") String appId, @Query("page") int page, @Query("limit") int pageSize);
 
     @GET("api/apps/{appId}/product_listings.json")
-    Observable<Response<ProductListings>> getProducts(@Path("appId") String appId, @Query("collection_id") Long collectionId, @Query("tag") String tags, @Query("sort_by") String sortOrder, @Query("page") int page, @Query("limit") int pageSize);
+    @Unwrap("product_listings")
+    Observable<Response<List<Product>>> getProducts(@Path("appId") String appId, @Query("collection_id") Long collectionId, @Query("tag") String tags, @Query("sort_by") String sortOrder, @Query("page") int page, @Query("limit") int pageSize, @Query("fields") String fields);
 }
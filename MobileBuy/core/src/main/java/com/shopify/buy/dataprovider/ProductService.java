@@ -25,6 +25,7 @@ package com.shopify.buy.dataprovider;
 
 import com.shopify.buy.model.Collection;
 import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductProjection;
 
 import java.util.List;
 import java.util.Set;
@@ -111,6 +112,25 @@ public interface ProductService {
      */
     Observable<List<Product>> getProducts(List<Long> productIds);
 
+    /**
+     * Fetch a list of Products, with only the fields of a projection
+     *
+     * @param projection the fields to fetch, e.g. {@link ProductProjection#CARD}, not null
+     * @param productIds a List of the productIds to fetch, not null or empty
+     * @param callback   the {@link Callback} that will be used to indicate the response from the asynchronous network operation, not null
+     * @return cancelable task
+     */
+    CancellableTask getProducts(ProductProjection projection, List<Long> productIds, Callback<List<Product>> callback);
+
+    /**
+     * Fetch a list of Products, with only the fields of a projection
+     *
+     * @param projection the fields to fetch, e.g. {@link ProductProjection#CARD}, not null
+     * @param productIds a List of the productIds to fetch, not null or empty
+     * @return cold observable that emits requested list of products
+     */
+    Observable<List<Product>> getProducts(ProductProjection projection, List<Long> productIds);
+
     /**
      * Fetch the collection with the specified handle
      *
@@ -182,6 +202,27 @@ public interface ProductService {
      */
     Observable<List<Product>> getProducts(int page, Set<String> tags);
 
+    /**
+     * Fetch the products filtered by specified tags, with only the fields of a projection
+     *
+     * @param projection the fields to fetch, e.g. {@link ProductProjection#CARD}, not null
+     * @param page       the 1-based page index. The page size is set by {@link BuyClientBuilder#productPageSize} configuration.
+     * @param tags       set of tags which each product must contain, can be null
+     * @param callback   the {@link Callback} that will be used to indicate the response from the asynchronous network operation, not null
+     * @return cancelable task
+     */
+    CancellableTask getProducts(ProductProjection projection, int page, Set<String> tags, Callback<List<Product>> callback);
+
+    /**
+     * Fetch the products filtered by specified tags, with only the fields of a projection
+     *
+     * @param projection the fields to fetch, e.g. {@link ProductProjection#CARD}, not null
+     * @param page       the 1-based page index. The page size is set by {@link BuyClientBuilder#productPageSize} configuration.
+     * @param tags       set of tags which each product must contain, can be null
+     * @return cold observable that emits requested list of product
+     */
+    Observable<List<Product>> getProducts(ProductProjection projection, int page, Set<String> tags);
+
     /**
      * Fetch the products filtered by specified collection and optional tags
      *
@@ -208,4 +249,31 @@ public interface ProductService {
      * @return cold observable that emits requested list of product
      */
     Observable<List<Product>> getProducts(int page, Long collectionId, Set<String> tags, Collection.SortOrder sortOrder);
+
+    /**
+     * Fetch the products filtered by specified collection and optional tags, with only the fields of a projection
+     *
+     * @param projection   the fields to fetch, e.g. {@link ProductProjection#CARD}, not null
+     * @param page         the 1-based page index. The page size is set by {@link BuyClientBuilder#productPageSize} configuration.
+     * @param collectionId the collectionId that we want to fetch products for, can't be null
+     * @param tags         set of tags which each product must contain, can be null
+     * @param sortOrder    the sort order of products for the specified collection,
+     *                     in case of {@code null} value {@link Collection.SortOrder#COLLECTION_DEFAULT} will be used as default
+     * @param callback     the {@link Callback} that will be used to indicate the response from the asynchronous network operation, not null
+     * @return cancelable task
+     */
+    CancellableTask getProducts(ProductProjection projection, int page, Long collectionId, Set<String> tags, Collection.SortOrder sortOrder, Callback<List<Product>> callback);
+
+    /**
+     * Fetch the products filtered by specified collection and optional tags, with only the fields of a projection
+     *
+     * @param projection   the fields to fetch, e.g. {@link ProductProjection#CARD}, not null
+     * @param page         the 1-based page index. The page size is set by {@link BuyClientBuilder#productPageSize} configuration.
+     * @param collectionId the collectionId that we want to fetch products for, can't be null
+     * @param tags         set of tags which each product must contain, can be null
+     * @param sortOrder    the sort order of products for the specified collection,
+     *                     in case of {@code null} value {@link Collection.SortOrder#COLLECTION_DEFAULT} will be used as default
+     * @return cold observable that emits requested list of product
+     */
+    Observable<List<Product>> getProducts(ProductProjection projection, int page, Long collectionId, Set<String> tags, Collection.SortOrder sortOrder);
 }
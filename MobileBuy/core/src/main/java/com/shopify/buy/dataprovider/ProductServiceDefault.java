@@ -23,14 +23,11 @@
  */
 package com.shopify.buy.dataprovider;
 
-import android.text.TextUtils;
-
 import com.shopify.buy.model.Collection;
 import com.shopify.buy.model.Product;
+import com.shopify.buy.model.ProductProjection;
 import com.shopify.buy.model.ProductTag;
-import com.shopify.buy.model.internal.CollectionListings;
-import com.shopify.buy.model.internal.ProductListings;
-import com.shopify.buy.model.internal.ProductTagsWrapper;
+import com.shopify.buy.utils.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +36,7 @@ import java.util.Set;
 import retrofit2.Retrofit;
 import rx.Observable;
 import rx.Scheduler;
+import rx.functions.Action1;
 import rx.functions.Func1;
 
 /**
@@ -96,7 +94,7 @@ final class ProductServiceDefault implements ProductService {
             throw new NullPointerException("handle cannot be null");
         }
 
-        if (TextUtils.isEmpty(handle)) {
+        if (StringUtils.isEmpty(handle)) {
             throw new IllegalArgumentException("handle cannot be empty");
         }
 
@@ -104,8 +102,7 @@ final class ProductServiceDefault implements ProductService {
             .getProductByHandle(appId, handle)
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<ProductListings, List<Product>>())
-            .compose(new FirstListItemOrDefaultTransformer<Product>())
+            .compose(new UnwrapRetrofitBodyTransformer<Product>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Product>())
             .observeOn(callbackScheduler);
     }
@@ -122,11 +119,10 @@ final class ProductServiceDefault implements ProductService {
         }
 
         return retrofitService
-            .getProducts(appId, String.valueOf(productId))
+            .getProduct(appId, String.valueOf(productId))
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<ProductListings, List<Product>>())
-            .compose(new FirstListItemOrDefaultTransformer<Product>())
+            .compose(new UnwrapRetrofitBodyTransformer<Product>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Product>())
             .observeOn(callbackScheduler);
     }
@@ -138,24 +134,38 @@ final class ProductServiceDefault implements ProductService {
 
     @Override
     public Observable<List<Product>> getProducts(final List<Long> productIds) {
+        return getProducts(ProductProjection.FULL, productIds);
+    }
+
+    @Override
+    public CancellableTask getProducts(final ProductProjection projection, final List<Long> productIds, final Callback<List<Product>> callback) {
+        return new CancellableTaskSubscriptionWrapper(getProducts(projection, productIds).subscribe(new InternalCallbackSubscriber<>(callback)));
+    }
+
+    @Override
+    public Observable<List<Product>> getProducts(final ProductProjection projection, final List<Long> productIds) {
         if (productIds == null) {
             throw new NullPointerException("productIds List cannot be null");
         }
         if (productIds.size() < 1) {
             throw new IllegalArgumentException("productIds List cannot be empty");
         }
+        if (projection == null) {
+            throw new NullPointerException("projection cannot be null");
+        }
 
-        // All product responses from the server are wrapped in a ProductListings object
+        // All product responses from the server are wrapped in a product_listings object
         // The same endpoint is used for single and multiple product queries.
         // For this call we will query with multiple ids.
         // The returned product array will contain products for each id found.
         // If no ids were found, the array will be empty
         final String queryString = formatQueryString(productIds);
         return retrofitService
-            .getProducts(appId, queryString)
+            .getProducts(appId, queryString, formatFieldsQueryString(projection))
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<ProductListings, List<Product>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<Product>>())
+            .doOnNext(recordProjection(projection))
             .onErrorResumeNext(new BuyClientExceptionHandler<List<Product>>())
             .observeOn(callbackScheduler);
     }
@@ -171,7 +181,7 @@ final class ProductServiceDefault implements ProductService {
             throw new NullPointerException("handle cannot be null");
         }
 
-        if (TextUtils.isEmpty(handle)) {
+        if (StringUtils.isEmpty(handle)) {
             throw new IllegalArgumentException("handle cannot be empty");
         }
 
@@ -179,8 +189,7 @@ final class ProductServiceDefault implements ProductService {
             .getCollectionByHandle(appId, handle)
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CollectionListings, List<Collection>>())
-            .compose(new FirstListItemOrDefaultTransformer<Collection>())
+            .compose(new UnwrapRetrofitBodyTransformer<Collection>())
             .onErrorResumeNext(new BuyClientExceptionHandler<Collection>())
             .observeOn(callbackScheduler);
     }
@@ -196,13 +205,13 @@ final class ProductServiceDefault implements ProductService {
             throw new IllegalArgumentException("page is a 1-based index, value cannot be less than 1");
         }
 
-        // All collection responses from the server are wrapped in a CollectionListings object which contains and array of collections
+        // All collection responses from the server are wrapped in a collection_listings object which contains and array of collections
         // For this call, we will clamp the size of the collection array returned to the page size
         return retrofitService
             .getCollectionPage(appId, page, pageSize)
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<CollectionListings, List<Collection>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<Collection>>())
             .onErrorResumeNext(new BuyClientExceptionHandler<List<Collection>>())
             .observeOn(callbackScheduler);
     }
@@ -222,7 +231,7 @@ final class ProductServiceDefault implements ProductService {
             .getProductTagPage(appId, page, pageSize)
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<ProductTagsWrapper, List<ProductTag>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<ProductTag>>())
             .map(unwrapProductTags())
             .onErrorResumeNext(new BuyClientExceptionHandler<List<String>>())
             .observeOn(callbackScheduler);
@@ -235,16 +244,31 @@ final class ProductServiceDefault implements ProductService {
 
     @Override
     public Observable<List<Product>> getProducts(final int page, final Set<String> tags) {
+        return getProducts(ProductProjection.FULL, page, tags);
+    }
+
+    @Override
+    public CancellableTask getProducts(final ProductProjection projection, final int page, final Set<String> tags, final Callback<List<Product>> callback) {
+        return new CancellableTaskSubscriptionWrapper(getProducts(projection, page, tags).subscribe(new InternalCallbackSubscriber<>(callback)));
+    }
+
+    @Override
+    public Observable<List<Product>> getProducts(final ProductProjection projection, final int page, final Set<String> tags) {
         if (page < 1) {
             throw new IllegalArgumentException("page is a 1-based index, value cannot be less than 1");
         }
 
+        if (projection == null) {
+            throw new NullPointerException("projection cannot be null");
+        }
+
         final String tagsQueryStr = formatQueryString(tags);
         return retrofitService
-            .getProducts(appId, null, tagsQueryStr, null, page, pageSize)
+            .getProducts(appId, null, tagsQueryStr, null, page, pageSize, formatFieldsQueryString(projection))
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<ProductListings, List<Product>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<Product>>())
+            .doOnNext(recordProjection(projection))
             .onErrorResumeNext(new BuyClientExceptionHandler<List<Product>>())
             .observeOn(callbackScheduler);
     }
@@ -256,6 +280,16 @@ final class ProductServiceDefault implements ProductService {
 
     @Override
     public Observable<List<Product>> getProducts(final int page, final Long collectionId, final Set<String> tags, final Collection.SortOrder sortOrder) {
+        return getProducts(ProductProjection.FULL, page, collectionId, tags, sortOrder);
+    }
+
+    @Override
+    public CancellableTask getProducts(final ProductProjection projection, final int page, final Long collectionId, final Set<String> tags, final Collection.SortOrder sortOrder, final Callback<List<Product>> callback) {
+        return new CancellableTaskSubscriptionWrapper(getProducts(projection, page, collectionId, tags, sortOrder).subscribe(new InternalCallbackSubscriber<>(callback)));
+    }
+
+    @Override
+    public Observable<List<Product>> getProducts(final ProductProjection projection, final int page, final Long collectionId, final Set<String> tags, final Collection.SortOrder sortOrder) {
         if (page < 1) {
             throw new IllegalArgumentException("page is a 1-based index, value cannot be less than 1");
         }
@@ -264,13 +298,18 @@ final class ProductServiceDefault implements ProductService {
             throw new NullPointerException("collectionId cannot be null");
         }
 
+        if (projection == null) {
+            throw new NullPointerException("projection cannot be null");
+        }
+
         final String sortOrderStr = sortOrder != null ? sortOrder.toString() : Collection.SortOrder.COLLECTION_DEFAULT.toString();
         final String tagsQueryStr = formatQueryString(tags);
         return retrofitService
-            .getProducts(appId, collectionId, tagsQueryStr, sortOrderStr, page, pageSize)
+            .getProducts(appId, collectionId, tagsQueryStr, sortOrderStr, page, pageSize, formatFieldsQueryString(projection))
             .retryWhen(networkRetryPolicyProvider.provide())
             .doOnNext(new RetrofitSuccessHttpStatusCodeHandler<>())
-            .compose(new UnwrapRetrofitBodyTransformer<ProductListings, List<Product>>())
+            .compose(new UnwrapRetrofitBodyTransformer<List<Product>>())
+            .doOnNext(recordProjection(projection))
             .onErrorResumeNext(new BuyClientExceptionHandler<List<Product>>())
             .observeOn(callbackScheduler);
     }
@@ -282,7 +321,7 @@ final class ProductServiceDefault implements ProductService {
                 final List<String> tags = new ArrayList<>();
                 if (productTags != null) {
                     for (ProductTag productTag : productTags) {
-                        if (!TextUtils.isEmpty(productTag.getTitle())) {
+                        if (!StringUtils.isEmpty(productTag.getTitle())) {
                             tags.add(productTag.getTitle());
                         }
                     }
@@ -292,9 +331,27 @@ final class ProductServiceDefault implements ProductService {
         };
     }
 
+    private Action1<List<Product>> recordProjection(final ProductProjection projection) {
+        return new Action1<List<Product>>() {
+            @Override
+            public void call(List<Product> products) {
+                if (products != null) {
+                    for (Product product : products) {
+                        product.setProjection(projection);
+                    }
+                }
+            }
+        };
+    }
+
+    private String formatFieldsQueryString(final ProductProjection projection) {
+        // the fields parameter is left out for full products, so that their requests stay the same as before projections
+        return projection.isFull() ? null : projection.getQueryValue();
+    }
+
     private String formatQueryString(final java.util.Collection items) {
         if (items != null && !items.isEmpty()) {
-            return TextUtils.join(",", items.toArray());
+            return StringUtils.join(",", items.toArray());
         } else {
             return null;
         }
@@ -0,0 +1,267 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Paces the requests sent to the shop so that they stay under its API call limit, instead of being rejected with a 429.
+ * <p>
+ * The shop limits the API calls with a leaky bucket: every request adds a call to the bucket, the bucket leaks at a constant rate,
+ * and requests are rejected while it is full. The size and the fill level of the bucket are taken from the call limit header of
+ * the responses, and the level is estimated in between from the requests sent and the leak rate. Nothing is paced until the shop
+ * has reported its limit or throttled a request.
+ * <p>
+ * Part of the bucket is kept for the requests of higher {@link RequestPriority}: checkout requests can fill it up, catalog requests
+ * wait once it is three quarters full. A request rejected with a 429 is retried after its {@code Retry-After} delay, during which no
+ * other request is sent. Requests to other hosts, such as the card vault, are not paced.
+ * <p>
+ * Requests run by a {@link RequestDispatcher} are admitted by the dispatcher before they get a worker, and are delayed instead of
+ * waiting on it. Their 429s are returned as they are, the dispatcher retries them without holding a worker either.
+ */
+final class RateLimitInterceptor implements Interceptor {
+
+    static final String CALL_LIMIT_HEADER = "X-Shopify-Shop-Api-Call-Limit";
+
+    static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    static final int DEFAULT_CAPACITY = 40;
+
+    static final double DEFAULT_LEAK_RATE_PER_SECOND = 2;
+
+    static final long DEFAULT_RETRY_AFTER_MS = 1000;
+
+    static final int MAX_THROTTLED_RETRY_COUNT = 3;
+
+    /**
+     * The part of the bucket that requests of each priority leave to the higher priorities, indexed by ordinal.
+     */
+    private static final double[] RESERVED_FRACTIONS = {0, 0.125, 0.25, 0.5};
+
+    private final String host;
+
+    private final double leakRatePerNano;
+
+    private final Ticker ticker;
+
+    // guarded by this, capacity is 0 until learned
+    private int capacity;
+
+    private double level;
+
+    private long levelNanos;
+
+    private long blockedUntilNanos;
+
+    /**
+     * @param host              the host of the shop, the only one paced
+     * @param leakRatePerSecond the number of calls leaking from the bucket every second
+     */
+    RateLimitInterceptor(final String host, final double leakRatePerSecond) {
+        this(host, leakRatePerSecond, Ticker.SYSTEM);
+    }
+
+    /**
+     * @param host              the host of the shop, the only one paced
+     * @param leakRatePerSecond the number of calls leaking from the bucket every second
+     * @param ticker            the clock the bucket leaks with and the requests wait on
+     */
+    RateLimitInterceptor(final String host, final double leakRatePerSecond, final Ticker ticker) {
+        if (host == null) {
+            throw new NullPointerException("host cannot be null");
+        }
+        if (leakRatePerSecond <= 0) {
+            throw new IllegalArgumentException("leakRatePerSecond must be positive");
+        }
+        this.host = host;
+        this.leakRatePerNano = leakRatePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.ticker = ticker;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (!host.equals(request.url().host())) {
+            return chain.proceed(request);
+        }
+
+        if (RequestDispatcher.consumeAdmission()) {
+            final Response response = chain.proceed(request);
+            onResponse(response);
+            return response;
+        }
+
+        final RequestPriority priority = priorityOf(request);
+        int retryCount = 0;
+        while (true) {
+            acquire(priority);
+            final Response response = chain.proceed(request);
+            onResponse(response);
+            if (response.code() != HTTP_TOO_MANY_REQUESTS || retryCount++ >= MAX_THROTTLED_RETRY_COUNT) {
+                return response;
+            }
+            response.body().close();
+        }
+    }
+
+    /**
+     * Waits until the bucket has room for a request of priority {@code priority}, and counts the request in.
+     */
+    synchronized void acquire(final RequestPriority priority) throws InterruptedIOException {
+        try {
+            long waitNanos;
+            while ((waitNanos = tryAcquire(priority)) > 0) {
+                ticker.timedWait(this, waitNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the API call limit");
+        }
+    }
+
+    /**
+     * Counts a request of priority {@code priority} in if the bucket has room for it.
+     *
+     * @return 0 if the request was counted in, otherwise the time to wait before trying again in nanoseconds
+     */
+    synchronized long tryAcquire(final RequestPriority priority) {
+        if (capacity == 0) {
+            return 0;
+        }
+
+        final long now = ticker.nanoTime();
+        leak(now);
+
+        final long blockedNanos = blockedUntilNanos - now;
+        if (blockedNanos > 0) {
+            return blockedNanos;
+        }
+
+        final double limit = Math.max(1, capacity * (1 - RESERVED_FRACTIONS[priority.ordinal()]));
+        if (level + 1 <= limit) {
+            level += 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((level + 1 - limit) / leakRatePerNano));
+    }
+
+    /**
+     * Takes back a request counted in by {@link #tryAcquire(RequestPriority)} that was not sent to the shop.
+     */
+    synchronized void release() {
+        level = Math.max(0, level - 1);
+        notifyAll();
+    }
+
+    /**
+     * Updates the bucket from the call limit of a response, the count of the shop replaces the estimated one, and from the
+     * {@code Retry-After} delay of a 429.
+     */
+    synchronized void onResponse(final Response response) {
+        final long now = ticker.nanoTime();
+        final String callLimit = response.header(CALL_LIMIT_HEADER);
+        if (callLimit != null) {
+            final int separator = callLimit.indexOf('/');
+            try {
+                final int used = Integer.parseInt(callLimit.substring(0, separator).trim());
+                final int max = Integer.parseInt(callLimit.substring(separator + 1).trim());
+                if (max > 0) {
+                    capacity = max;
+                    level = Math.max(0, Math.min(used, max));
+                    levelNanos = now;
+                }
+            } catch (RuntimeException e) {
+                // malformed header, keep the estimate
+            }
+        }
+
+        if (response.code() == HTTP_TOO_MANY_REQUESTS) {
+            if (capacity == 0) {
+                capacity = DEFAULT_CAPACITY;
+            }
+            level = capacity;
+            levelNanos = now;
+
+            final long blockedUntil = now + TimeUnit.MILLISECONDS.toNanos(parseRetryAfterMs(response.header(RETRY_AFTER_HEADER)));
+            if (blockedUntil - blockedUntilNanos > 0) {
+                blockedUntilNanos = blockedUntil;
+            }
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * @return the estimated number of calls in the bucket, 0 while the limit of the shop is unknown
+     */
+    synchronized double getLevel() {
+        leak(ticker.nanoTime());
+        return level;
+    }
+
+    private void leak(final long now) {
+        level = Math.max(0, level - (now - levelNanos) * leakRatePerNano);
+        levelNanos = now;
+    }
+
+    /**
+     * @return the priority of the request, the one it was dispatched with or else the one of the service its path belongs to
+     */
+    static RequestPriority priorityOf(final Request request) {
+        final RequestPriority priority = RequestDispatcher.executingPriority();
+        if (priority != null) {
+            return priority;
+        }
+
+        final String path = request.url().encodedPath();
+        if (path.startsWith("/api/checkouts")) {
+            return RequestPriority.CHECKOUT;
+        } else if (path.startsWith("/api/customers")) {
+            return RequestPriority.CUSTOMER;
+        }
+        return RequestPriority.CATALOG;
+    }
+
+    static long parseRetryAfterMs(final String retryAfter) {
+        if (retryAfter != null) {
+            try {
+                final double seconds = Double.parseDouble(retryAfter.trim());
+                if (seconds >= 0) {
+                    return (long) (seconds * 1000);
+                }
+            } catch (NumberFormatException e) {
+                // an HTTP date, or malformed
+            }
+        }
+        return DEFAULT_RETRY_AFTER_MS;
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Runs the requests of a {@link BuyClient} on a bounded number of worker threads, instead of the unbounded io scheduler. Requests
+ * waiting for a worker are queued by {@link RequestPriority}, then by submission order.
+ * <p>
+ * A request subscribed from a worker, such as the next request of a chain, runs right away on that worker, so a worker never
+ * waits for a queued request. Prefetches are the exception, they are always queued.
+ * <p>
+ * With a {@link RateLimitInterceptor}, a request is only given a worker once the API call limit has room for it. A request that
+ * has to wait, or that is throttled with a 429, is put back in the queue after the delay, so no worker is held while waiting.
+ */
+final class RequestDispatcher {
+
+    static final long KEEP_ALIVE_MS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final ThreadLocal<RequestPriority> CURRENT_PRIORITY = new ThreadLocal<>();
+
+    private static final ThreadLocal<RequestDispatcher> CURRENT_DISPATCHER = new ThreadLocal<>();
+
+    private static final ThreadLocal<RequestPriority> EXECUTING_PRIORITY = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> ADMITTED = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final RateLimitInterceptor rateLimiter;
+
+    private final Ticker ticker;
+
+    private final Scheduler.Worker delayWorker;
+
+    private final Set<Task<?>> delayedTasks = Collections.newSetFromMap(new ConcurrentHashMap<Task<?>, Boolean>());
+
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    /**
+     * @param maxWorkers the maximum number of requests running at the same time, positive
+     */
+    RequestDispatcher(final int maxWorkers) {
+        this(maxWorkers, null);
+    }
+
+    /**
+     * @param maxWorkers  the maximum number of requests running at the same time, positive
+     * @param rateLimiter the API call limit the requests are admitted by before they get a worker, can be {@code null}
+     */
+    RequestDispatcher(final int maxWorkers, final RateLimitInterceptor rateLimiter) {
+        this(maxWorkers, rateLimiter, Ticker.SYSTEM, Schedulers.computation());
+    }
+
+    /**
+     * @param maxWorkers     the maximum number of requests running at the same time, positive
+     * @param rateLimiter    the API call limit the requests are admitted by before they get a worker, can be {@code null}
+     * @param ticker         the clock the time spent in the queue is measured with
+     * @param delayScheduler the scheduler the delayed requests are put back in the queue on
+     */
+    RequestDispatcher(final int maxWorkers, final RateLimitInterceptor rateLimiter, final Ticker ticker, final Scheduler delayScheduler) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("maxWorkers must be positive");
+        }
+        this.rateLimiter = rateLimiter;
+        this.ticker = ticker;
+        this.delayWorker = delayScheduler.createWorker();
+
+        final AtomicInteger workerCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            CURRENT_DISPATCHER.set(RequestDispatcher.this);
+                            runnable.run();
+                        }
+                    }, "BuyClient-" + workerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the priority set with {@link RequestPriority#apply(rx.functions.Func0)} on the current thread, or {@code null} if none
+     */
+    static RequestPriority currentPriority() {
+        return CURRENT_PRIORITY.get();
+    }
+
+    /**
+     * Makes {@code priority} current on the calling thread.
+     *
+     * @param priority the priority to make current, can be {@code null}
+     * @return the previously current priority, to be restored once done
+     */
+    static RequestPriority setCurrentPriority(final RequestPriority priority) {
+        final RequestPriority previousPriority = CURRENT_PRIORITY.get();
+        if (priority == null) {
+            CURRENT_PRIORITY.remove();
+        } else {
+            CURRENT_PRIORITY.set(priority);
+        }
+        return previousPriority;
+    }
+
+    /**
+     * @return the priority of the request being executed by the current thread, or {@code null} if it was not dispatched
+     */
+    static RequestPriority executingPriority() {
+        return EXECUTING_PRIORITY.get();
+    }
+
+    /**
+     * Called by the {@link RateLimitInterceptor} when the request reaches it, only the first request sent by the current thread
+     * gets the admission.
+     *
+     * @return {@code true} if the request being executed by the current thread was already counted in the API call limit
+     */
+    static boolean consumeAdmission() {
+        if (ADMITTED.get() == null) {
+            return false;
+        }
+        ADMITTED.remove();
+        return true;
+    }
+
+    /**
+     * Subscribes to {@code request}, which executes it synchronously, with {@code priority} as the executing priority of the thread.
+     *
+     * @param admitted {@code true} if the request was counted in the API call limit
+     */
+    private <T> void execute(final Observable<T> request, final Subscriber<? super T> subscriber, final RequestPriority priority, final boolean admitted) {
+        final RequestPriority previousPriority = EXECUTING_PRIORITY.get();
+        EXECUTING_PRIORITY.set(priority);
+        final boolean previouslyAdmitted = consumeAdmission();
+        if (admitted) {
+            ADMITTED.set(Boolean.TRUE);
+        }
+        try {
+            request.unsafeSubscribe(subscriber);
+        } finally {
+            if (previousPriority == null) {
+                EXECUTING_PRIORITY.remove();
+            } else {
+                EXECUTING_PRIORITY.set(previousPriority);
+            }
+            if (admitted && consumeAdmission()) {
+                // the request didn't go to the shop, e.g. it failed before being sent or went to the card vault
+                rateLimiter.release();
+            }
+            if (previouslyAdmitted) {
+                ADMITTED.set(Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Puts the task back in the queue once {@code delayNanos} have elapsed.
+     */
+    private void delay(final Task<?> task, final long delayNanos) {
+        delayedTasks.add(task);
+        delayWorker.schedule(new Action0() {
+            @Override
+            public void call() {
+                if (!delayedTasks.remove(task)) {
+                    return;
+                }
+
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.subscriber.onError(e);
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wraps a call adapter factory so that the {@link Observable} requests it creates are run by this dispatcher. The wrapped factory
+     * must not subscribe the requests on a scheduler.
+     *
+     * @param delegate        the call adapter factory to wrap
+     * @param defaultPriority the priority of the requests created while no priority is current
+     * @return the dispatching call adapter factory
+     */
+    CallAdapter.Factory callAdapterFactory(final CallAdapter.Factory delegate, final RequestPriority defaultPriority) {
+        return new CallAdapter.Factory() {
+            @Override
+            public CallAdapter<?> get(final Type returnType, final Annotation[] annotations, final Retrofit retrofit) {
+                final CallAdapter<?> adapter = delegate.get(returnType, annotations, retrofit);
+                final Type rawType = returnType instanceof ParameterizedType ? ((ParameterizedType) returnType).getRawType() : returnType;
+                if (adapter == null || rawType != Observable.class) {
+                    return adapter;
+                }
+
+                return new CallAdapter<Observable<?>>() {
+                    @Override
+                    public Type responseType() {
+                        return adapter.responseType();
+                    }
+
+                    @Override
+                    public <R> Observable<?> adapt(final Call<R> call) {
+                        final RequestPriority priority = currentPriority();
+                        return dispatch((Observable<?>) adapter.adapt(call), priority != null ? priority : defaultPriority,
+                            BuyClientMetrics.currentTracker());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @param request  the request to run
+     * @param priority the priority of the request
+     * @param tracker  the tracker to report the time spent in the queue to, can be {@code null}
+     * @return an {@link Observable} that runs {@code request} on a worker when subscribed to
+     */
+    <T> Observable<T> dispatch(final Observable<T> request, final RequestPriority priority, final BuyClientMetrics.Tracker tracker) {
+        return Observable.create(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(final Subscriber<? super T> subscriber) {
+                final Task<T> task = new Task<>(request, subscriber, priority, tracker, lastSequence.incrementAndGet());
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        if (!task.started.get()) {
+                            executor.remove(task);
+                            delayedTasks.remove(task);
+                        }
+                    }
+                }));
+
+                if (CURRENT_DISPATCHER.get() == RequestDispatcher.this && priority != RequestPriority.PREFETCH) {
+                    task.run(false);
+                    return;
+                }
+
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    subscriber.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the requests of priority {@code priority} or lower that are waiting for a worker, they fail with a
+     * {@link CancellationException}. Requests already running are not affected.
+     *
+     * @param priority the highest priority to cancel
+     * @return the number of cancelled requests
+     */
+    int cancelQueued(final RequestPriority priority) {
+        int cancelledCount = 0;
+        for (Runnable runnable : executor.getQueue().toArray(new Runnable[0])) {
+            final Task<?> task = (Task<?>) runnable;
+            if (task.priority.compareTo(priority) >= 0 && executor.remove(task)) {
+                task.cancel();
+                cancelledCount++;
+            }
+        }
+        for (Task<?> task : delayedTasks.toArray(new Task<?>[0])) {
+            if (task.priority.compareTo(priority) >= 0 && delayedTasks.remove(task)) {
+                task.cancel();
+                cancelledCount++;
+            }
+        }
+        return cancelledCount;
+    }
+
+    /**
+     * @return the number of requests waiting for a worker, or for the API call limit
+     */
+    int getQueuedCount() {
+        return executor.getQueue().size() + delayedTasks.size();
+    }
+
+    private final class Task<T> implements Runnable, Comparable<Task<?>> {
+
+        final Observable<T> request;
+
+        final Subscriber<? super T> subscriber;
+
+        final RequestPriority priority;
+
+        final BuyClientMetrics.Tracker tracker;
+
+        final long sequence;
+
+        final long queuedNanos = ticker.nanoTime();
+
+        final AtomicBoolean started = new AtomicBoolean();
+
+        // only accessed by the thread running the task
+        int throttledCount;
+
+        Task(final Observable<T> request, final Subscriber<? super T> subscriber, final RequestPriority priority,
+            final BuyClientMetrics.Tracker tracker, final long sequence) {
+            this.request = request;
+            this.subscriber = subscriber;
+            this.priority = priority;
+            this.tracker = tracker;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            run(true);
+        }
+
+        /**
+         * @param queued {@code true} if the task was run by a worker from the queue, {@code false} if it runs right away
+         */
+        void run(final boolean queued) {
+            if (!started.compareAndSet(false, true) || subscriber.isUnsubscribed()) {
+                return;
+            }
+
+            final long waitNanos = rateLimiter != null ? rateLimiter.tryAcquire(priority) : 0;
+            if (waitNanos > 0) {
+                started.set(false);
+                delay(this, waitNanos);
+                return;
+            }
+
+            if (queued && tracker != null && throttledCount == 0) {
+                tracker.onQueueWait(priority, ticker.nanoTime() - queuedNanos);
+            }
+            if (rateLimiter != null) {
+                execute(request, new ThrottleSubscriber(), priority, true);
+            } else {
+                execute(request, subscriber, priority, false);
+            }
+        }
+
+        void cancel() {
+            if (started.compareAndSet(false, true)) {
+                subscriber.onError(new CancellationException("request cancelled before it was sent"));
+            }
+        }
+
+        /**
+         * Forwards everything to the subscriber of the task but a 429 response, the task is retried instead once the API call limit
+         * has room for it again.
+         */
+        private final class ThrottleSubscriber extends Subscriber<T> {
+
+            private boolean throttled;
+
+            ThrottleSubscriber() {
+                super(subscriber);
+            }
+
+            @Override
+            public void onNext(final T value) {
+                if (value instanceof Response && ((Response<?>) value).code() == RateLimitInterceptor.HTTP_TOO_MANY_REQUESTS
+                    && throttledCount < RateLimitInterceptor.MAX_THROTTLED_RETRY_COUNT) {
+                    throttled = true;
+                    return;
+                }
+                subscriber.onNext(value);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!throttled) {
+                    subscriber.onCompleted();
+                    return;
+                }
+
+                throttledCount++;
+                started.set(false);
+                // the 429 blocked the bucket for its Retry-After delay, the task waits for it in the queue
+                run(true);
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public int compareTo(final Task<?> another) {
+            final int result = priority.compareTo(another.priority);
+            if (result != 0) {
+                return result;
+            }
+            return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import rx.functions.Func0;
+
+/**
+ * Priority classes of the requests sent by a {@link BuyClient}, from the highest to the lowest. When all the request workers are
+ * busy (see {@link BuyClientBuilder#maxConcurrentRequests(int)}), queued requests are sent in priority order, and in submission
+ * order within a priority.
+ * <p>
+ * Requests get the priority of the service they belong to, prefetches started by the SDK itself (e.g. shipping rates) are
+ * {@link #PREFETCH}. Use {@link #apply(Func0)} to give another priority to the calls made by the app.
+ */
+public enum RequestPriority {
+
+    /**
+     * Checkout and payment requests.
+     */
+    CHECKOUT,
+
+    /**
+     * Customer, address and order requests.
+     */
+    CUSTOMER,
+
+    /**
+     * Shop and product catalog requests made for the screen the user is looking at.
+     */
+    CATALOG,
+
+    /**
+     * Requests made ahead of time, that nobody is waiting for yet.
+     */
+    PREFETCH;
+
+    /**
+     * Makes the calls to the {@link BuyClient} done by {@code calls} on the current thread use this priority, for instance to
+     * prefetch the next page of products:
+     * <pre>{@code
+     * RequestPriority.PREFETCH.apply(new Func0<Observable<List<Product>>>() {
+     *     public Observable<List<Product>> call() {
+     *         return buyClient.getProducts(page + 1, collectionId);
+     *     }
+     * }).subscribe(...);
+     * }</pre>
+     *
+     * @param calls the function making the calls, not null
+     * @param <T>   the type of the result of the function
+     * @return the result of {@code calls}
+     */
+    public <T> T apply(final Func0<T> calls) {
+        if (calls == null) {
+            throw new NullPointerException("calls cannot be null");
+        }
+
+        final RequestPriority previousPriority = RequestDispatcher.setCurrentPriority(this);
+        try {
+            return calls.call();
+        } finally {
+            RequestDispatcher.setCurrentPriority(previousPriority);
+        }
+    }
+}
@@ -23,11 +23,14 @@
  */
 package com.shopify.buy.dataprovider;
 
+import java.net.HttpURLConnection;
+
 import retrofit2.Response;
 import rx.functions.Action1;
 
 /**
- * Handler that checks if http response is successful and if not throws {@link RetrofitError}.
+ * Handler that checks if http response is successful and if not throws {@link BuyClientError}, or a
+ * {@link PollingRequiredException} for a {@code 202 Accepted} that isn't one of the success codes.
  * By default Retrofit doesn't propagate {@code .onError()} even if http response is not
  * from 200 series. In order to change such behavior we must explicitly throw exception in case
  * if http response isn't successful. To use this handler chain it right to observable returned
@@ -54,6 +57,9 @@ final class RetrofitSuccessHttpStatusCodeHandler<T extends Response<?>> implemen
                     return;
                 }
             }
+            if (response.code() == HttpURLConnection.HTTP_ACCEPTED) {
+                throw new PollingRequiredException(response);
+            }
             throw new BuyClientError(response);
         } else if (!response.isSuccessful()) {
             throw new BuyClientError(response);
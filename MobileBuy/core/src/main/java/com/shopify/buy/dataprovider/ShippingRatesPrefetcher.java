@@ -0,0 +1,230 @@
+/*
+ *   The MIT License (MIT)
+ *  
+ *   Copyright (c) 2015 Shopify Inc.
+ *  
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ *  
+ *   The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ *  
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *   THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.shopify.buy.model.Address;
+import com.shopify.buy.model.Checkout;
+import com.shopify.buy.model.LineItem;
+import com.shopify.buy.model.ShippingRate;
+import com.shopify.buy.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Starts shipping rates calculation in background as soon as the server acknowledges a checkout that has a shipping address and
+ * line items requiring shipping. The rates are cached under a fingerprint of the checkout fields that affect them (shipping address,
+ * line items and their quantities, discount code). Enqueuing an update that changes these fields drops the cached rates, and the
+ * acknowledged change starts a new calculation.
+ */
+final class ShippingRatesPrefetcher {
+
+    static final int MAX_SIZE = 8;
+
+    static final long MAX_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private volatile Func1<String, Observable<List<ShippingRate>>> fetchFunction;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, ShippingRatesPrefetcher.Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    ShippingRatesPrefetcher() {
+    }
+
+    ShippingRatesPrefetcher(final Func1<String, Observable<List<ShippingRate>>> fetchFunction) {
+        this.fetchFunction = fetchFunction;
+    }
+
+    /**
+     * The prefetcher is shared by the views of a client and created before them, so the function fetching the shipping rates is
+     * provided once the asynchronous view exists. Checkouts acknowledged before that are not prefetched.
+     */
+    void setFetchFunction(final Func1<String, Observable<List<ShippingRate>>> fetchFunction) {
+        this.fetchFunction = fetchFunction;
+    }
+
+    /**
+     * Starts shipping rates calculation for the checkout, unless rates for the same fingerprint are already cached or the checkout
+     * has already been completed.
+     *
+     * @param checkout checkout acknowledged by the server
+     */
+    void onCheckoutAcknowledged(final Checkout checkout) {
+        final Func1<String, Observable<List<ShippingRate>>> fetchFunction = this.fetchFunction;
+        if (fetchFunction == null || checkout == null || StringUtils.isEmpty(checkout.getToken())) {
+            return;
+        }
+
+        final String fingerprint = checkout.getOrder() == null ? fingerprint(checkout) : null;
+        if (fingerprint == null) {
+            invalidate(checkout.getToken());
+            return;
+        }
+
+        final Entry entry;
+        synchronized (entries) {
+            final Entry existingEntry = entries.get(checkout.getToken());
+            if (existingEntry != null && existingEntry.fingerprint.equals(fingerprint) && !existingEntry.isExpired()) {
+                return;
+            }
+
+            entry = new Entry(fingerprint, fetchFunction.call(checkout.getToken()).cache());
+            entries.put(checkout.getToken(), entry);
+        }
+
+        entry.shippingRates.subscribe(new Subscriber<List<ShippingRate>>() {
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                synchronized (entries) {
+                    if (entries.get(checkout.getToken()) == entry) {
+                        entries.remove(checkout.getToken());
+                    }
+                }
+            }
+
+            @Override
+            public void onNext(final List<ShippingRate> shippingRates) {
+            }
+        });
+    }
+
+    /**
+     * Drops the cached shipping rates of the checkout if the update changes the fields they depend on. Called as soon as the update is
+     * enqueued, so the rates of the previous state are not served while the update waits or is in flight.
+     *
+     * @param acknowledged last checkout acknowledged by the server, or {@code null} if it is unknown
+     * @param update       checkout with the fields to update
+     */
+    void onUpdateEnqueued(final Checkout acknowledged, final Checkout update) {
+        if (acknowledged == null) {
+            invalidate(update.getToken());
+            return;
+        }
+
+        final String fingerprint = fingerprint(CheckoutUpdateQueue.merge(acknowledged, update));
+        synchronized (entries) {
+            final Entry entry = entries.get(update.getToken());
+            if (entry != null && !entry.fingerprint.equals(fingerprint)) {
+                entries.remove(update.getToken());
+            }
+        }
+    }
+
+    /**
+     * Drops the cached shipping rates of the checkout.
+     *
+     * @param checkoutToken token of the checkout
+     */
+    void invalidate(final String checkoutToken) {
+        synchronized (entries) {
+            entries.remove(checkoutToken);
+        }
+    }
+
+    /**
+     * @param checkoutToken token of the checkout
+     * @return the prefetched shipping rates, or {@code null} if there are none
+     */
+    Observable<List<ShippingRate>> getShippingRates(final String checkoutToken) {
+        synchronized (entries) {
+            final Entry entry = entries.get(checkoutToken);
+            if (entry == null || entry.isExpired()) {
+                entries.remove(checkoutToken);
+                return null;
+            }
+            return entry.shippingRates;
+        }
+    }
+
+    /**
+     * @return fingerprint of the checkout fields shipping rates depend on, or {@code null} if shipping rates can't be calculated yet
+     */
+    static String fingerprint(final Checkout checkout) {
+        final Address address = checkout.getShippingAddress();
+        if (address == null || StringUtils.isEmpty(address.getCountryCode()) || checkout.getLineItems() == null || checkout.getLineItems().isEmpty()) {
+            return null;
+        }
+
+        final List<LineItem> lineItems = new ArrayList<>(checkout.getLineItems());
+        Collections.sort(lineItems, new Comparator<LineItem>() {
+            @Override
+            public int compare(final LineItem lhs, final LineItem rhs) {
+                final long lhsVariantId = lhs.getVariantId() != null ? lhs.getVariantId() : 0;
+                final long rhsVariantId = rhs.getVariantId() != null ? rhs.getVariantId() : 0;
+                return lhsVariantId < rhsVariantId ? -1 : (lhsVariantId == rhsVariantId ? 0 : 1);
+            }
+        });
+
+        boolean requiresShipping = false;
+        final StringBuilder builder = new StringBuilder()
+            .append(address.getAddress1()).append('\n')
+            .append(address.getAddress2()).append('\n')
+            .append(address.getCity()).append('\n')
+            .append(address.getProvinceCode()).append('\n')
+            .append(address.getCountryCode()).append('\n')
+            .append(address.getZip()).append('\n')
+            .append(checkout.getDiscount() != null ? checkout.getDiscount().getCode() : null);
+        for (LineItem lineItem : lineItems) {
+            requiresShipping |= lineItem.isRequiresShipping();
+            builder.append('\n').append(lineItem.getVariantId()).append('x').append(lineItem.getQuantity());
+        }
+
+        return requiresShipping ? builder.toString() : null;
+    }
+
+    private static final class Entry {
+
+        final String fingerprint;
+
+        final Observable<List<ShippingRate>> shippingRates;
+
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(final String fingerprint, final Observable<List<ShippingRate>> shippingRates) {
+            this.fingerprint = fingerprint;
+            this.shippingRates = shippingRates;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - createdAt > MAX_AGE_MS;
+        }
+    }
+}
@@ -21,7 +21,31 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-
 package com.shopify.buy.dataprovider;
 
-public class PollingRequiredException extends RuntimeException {}
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The monotonic clock the requests are paced and measured with, replaced in tests so that delays are checked without waiting.
+ */
+abstract class Ticker {
+
+    static final Ticker SYSTEM = new Ticker() {
+        @Override
+        long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return the current time in nanoseconds, only meaningful compared to another value of the same ticker
+     */
+    abstract long nanoTime();
+
+    /**
+     * Waits on {@code monitor}, whose lock the caller holds, until it is notified or {@code timeoutNanos} have elapsed.
+     */
+    void timedWait(final Object monitor, final long timeoutNanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.timedWait(monitor, timeoutNanos);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A replayable archive of the HTTP exchanges captured by a {@link TrafficRecorder}, in the order the requests were sent.
+ * <p>
+ * The archive is plain JSON, so it can be written on a device, pulled and replayed on any JVM. Every exchange keeps its request and
+ * response headers and bodies, their sizes, the offset at which the request was sent and the time the server took to answer.
+ */
+public final class TrafficArchive {
+
+    /**
+     * The version of the archive format written by this SDK.
+     */
+    public static final int VERSION = 1;
+
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().setPrettyPrinting().create();
+
+    private int version = VERSION;
+
+    private List<Exchange> exchanges;
+
+    private TrafficArchive() {
+    }
+
+    TrafficArchive(final List<Exchange> exchanges) {
+        this.exchanges = exchanges;
+    }
+
+    /**
+     * Reads an archive previously written with {@link #writeTo(Writer)}.
+     *
+     * @param reader the reader of the archive, not null
+     * @return the archive
+     * @throws IllegalArgumentException if the archive was written with an unsupported format version
+     */
+    public static TrafficArchive readFrom(final Reader reader) {
+        if (reader == null) {
+            throw new NullPointerException("reader cannot be null");
+        }
+
+        final TrafficArchive archive = GSON.fromJson(reader, TrafficArchive.class);
+        if (archive == null) {
+            throw new IllegalArgumentException("archive is empty");
+        }
+        if (archive.version != VERSION) {
+            throw new IllegalArgumentException("unsupported archive version " + archive.version);
+        }
+        if (archive.exchanges == null) {
+            archive.exchanges = new ArrayList<>();
+        }
+        return archive;
+    }
+
+    /**
+     * Writes this archive as JSON. The writer is not closed.
+     *
+     * @param writer the writer of the archive, not null
+     */
+    public void writeTo(final Writer writer) {
+        if (writer == null) {
+            throw new NullPointerException("writer cannot be null");
+        }
+        GSON.toJson(this, writer);
+    }
+
+    /**
+     * @return the recorded exchanges, ordered by {@link Exchange#getStartOffsetMs()}
+     */
+    public List<Exchange> getExchanges() {
+        return Collections.unmodifiableList(exchanges);
+    }
+
+    /**
+     * @return the time between the first request being sent and the last response being fully received, in milliseconds
+     */
+    public long getDurationMs() {
+        long endMs = 0;
+        for (Exchange exchange : exchanges) {
+            endMs = Math.max(endMs, exchange.startOffsetMs + exchange.durationMs);
+        }
+        return endMs;
+    }
+
+    /**
+     * A single recorded HTTP request and its response. Requests that failed without a response have a {@link #getCode()} of
+     * {@code -1} and a non null {@link #getError()}.
+     */
+    public static final class Exchange {
+
+        @SerializedName("start_offset_ms")
+        private long startOffsetMs;
+
+        private String endpoint;
+
+        private String method;
+
+        private String url;
+
+        @SerializedName("request_headers")
+        private Map<String, List<String>> requestHeaders;
+
+        @SerializedName("request_body")
+        private String requestBody;
+
+        @SerializedName("request_body_size")
+        private long requestBodySize;
+
+        private int code;
+
+        private String message;
+
+        @SerializedName("response_headers")
+        private Map<String, List<String>> responseHeaders;
+
+        @SerializedName("response_body")
+        private String responseBody;
+
+        @SerializedName("response_body_size")
+        private long responseBodySize;
+
+        @SerializedName("time_to_headers_ms")
+        private long timeToHeadersMs;
+
+        @SerializedName("duration_ms")
+        private long durationMs;
+
+        private String error;
+
+        Exchange() {
+        }
+
+        Exchange(final long startOffsetMs, final String endpoint, final String method, final String url, final Map<String, List<String>> requestHeaders,
+                 final String requestBody, final long requestBodySize) {
+            this.startOffsetMs = startOffsetMs;
+            this.endpoint = endpoint;
+            this.method = method;
+            this.url = url;
+            this.requestHeaders = requestHeaders;
+            this.requestBody = requestBody;
+            this.requestBodySize = requestBodySize;
+            this.code = -1;
+            this.responseBodySize = -1;
+        }
+
+        void setResponse(final int code, final String message, final Map<String, List<String>> responseHeaders, final String responseBody,
+                         final long responseBodySize, final long timeToHeadersMs, final long durationMs) {
+            this.code = code;
+            this.message = message;
+            this.responseHeaders = responseHeaders;
+            this.responseBody = responseBody;
+            this.responseBodySize = responseBodySize;
+            this.timeToHeadersMs = timeToHeadersMs;
+            this.durationMs = durationMs;
+        }
+
+        void setError(final String error, final long durationMs) {
+            this.error = error;
+            this.timeToHeadersMs = durationMs;
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * @return the time between the first request of the archive and this request being sent, in milliseconds
+         */
+        public long getStartOffsetMs() {
+            return startOffsetMs;
+        }
+
+        /**
+         * @return the HTTP method followed by the request path with its ids replaced by {@code {id}}, as reported by
+         * {@link BuyClientHttpAttempt#getEndpoint()}
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * @return the HTTP method of the request
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return the full URL of the request
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return the request headers, with the redacted values replaced
+         */
+        public Map<String, List<String>> getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        /**
+         * @return the request body, {@code null} if the request had none or if it was not recorded
+         */
+        public String getRequestBody() {
+            return requestBody;
+        }
+
+        /**
+         * @return the size of the request body in bytes, {@code -1} if the request had none
+         */
+        public long getRequestBodySize() {
+            return requestBodySize;
+        }
+
+        /**
+         * @return the HTTP status code of the response, {@code -1} if the request failed
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @return the HTTP status message of the response
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return the response headers
+         */
+        public Map<String, List<String>> getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        /**
+         * @return the response body, decoded as received by the SDK
+         */
+        public String getResponseBody() {
+            return responseBody;
+        }
+
+        /**
+         * @return the size of the response body in bytes, {@code -1} if the request failed
+         */
+        public long getResponseBodySize() {
+            return responseBodySize;
+        }
+
+        /**
+         * @return the time between the request being sent and the response headers being received, in milliseconds. This is the
+         * server time as seen by the device, network round trip included.
+         */
+        public long getTimeToHeadersMs() {
+            return timeToHeadersMs;
+        }
+
+        /**
+         * @return the time between the request being sent and the response body being fully received, in milliseconds
+         */
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * @return the description of the I/O error that failed the request, {@code null} if a response was received
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
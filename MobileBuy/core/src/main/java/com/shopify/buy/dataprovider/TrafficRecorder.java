@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * Application {@link Interceptor} that records every HTTP exchange of a {@link BuyClient} into a {@link TrafficArchive}, to be
+ * replayed later against another build of the SDK. Register it with {@link BuyClientBuilder#interceptors(Interceptor...)}.
+ * <p>
+ * The recorder keeps the full request and response, headers and bodies included, along with the time at which each request was
+ * sent and the time the server took to answer it. Response bodies are read entirely before being handed back to the SDK, so that
+ * their transfer time is part of the recording. The values of the {@code Authorization}, {@code Cookie} and {@code Set-Cookie} headers, and of any
+ * other header given to {@link #TrafficRecorder(String, String...)}, are replaced by {@value #REDACTED}. The bodies of the
+ * requests sent to any other host than the shop, like the credit cards posted to the card vault, are never recorded.
+ * <p>
+ * The recorder holds every exchange in memory until {@link #clear()} is called, it is meant for capturing sessions, not for
+ * running in production.
+ */
+public final class TrafficRecorder implements Interceptor {
+
+    /**
+     * The value recorded in place of the redacted headers.
+     */
+    public static final String REDACTED = "<redacted>";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final List<String> DEFAULT_REDACTED_HEADERS = Arrays.asList("Authorization", "Cookie", "Set-Cookie");
+
+    private final String shopDomain;
+
+    private final Set<String> redactedHeaders = new HashSet<>();
+
+    private final List<TrafficArchive.Exchange> exchanges = new ArrayList<>();
+
+    private long originNanos = -1;
+
+    /**
+     * @param shopDomain      the domain of the shop, the bodies of the requests sent to other hosts are not recorded, not null or empty
+     * @param redactedHeaders the names of the headers whose values must not be recorded, in addition to the default ones
+     */
+    public TrafficRecorder(final String shopDomain, final String... redactedHeaders) {
+        if (shopDomain == null || shopDomain.isEmpty()) {
+            throw new IllegalArgumentException("shopDomain cannot be empty");
+        }
+
+        this.shopDomain = shopDomain;
+        for (String header : DEFAULT_REDACTED_HEADERS) {
+            this.redactedHeaders.add(header.toLowerCase(Locale.US));
+        }
+        for (String header : redactedHeaders) {
+            if (header == null) {
+                throw new NullPointerException("redactedHeaders cannot contain null");
+            }
+            this.redactedHeaders.add(header.toLowerCase(Locale.US));
+        }
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final long startNanos = System.nanoTime();
+        final TrafficArchive.Exchange exchange = newExchange(request, startNanos);
+
+        final Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            exchange.setError(e.toString(), elapsedMs(startNanos));
+            add(exchange);
+            throw e;
+        }
+
+        final long timeToHeadersMs = elapsedMs(startNanos);
+        final ResponseBody body = response.body();
+        final byte[] bodyBytes;
+        try {
+            bodyBytes = body != null ? body.bytes() : new byte[0];
+        } catch (IOException e) {
+            exchange.setError(e.toString(), elapsedMs(startNanos));
+            add(exchange);
+            throw e;
+        }
+
+        final MediaType contentType = body != null ? body.contentType() : null;
+        exchange.setResponse(response.code(), response.message(), headers(response.headers()), new String(bodyBytes, charset(contentType)),
+            bodyBytes.length, timeToHeadersMs, elapsedMs(startNanos));
+        add(exchange);
+
+        return response.newBuilder()
+            .body(ResponseBody.create(contentType, bodyBytes))
+            .build();
+    }
+
+    /**
+     * @return an archive of the exchanges recorded so far, ordered by the time their requests were sent
+     */
+    public TrafficArchive getArchive() {
+        final List<TrafficArchive.Exchange> snapshot;
+        synchronized (exchanges) {
+            snapshot = new ArrayList<>(exchanges);
+        }
+        Collections.sort(snapshot, new Comparator<TrafficArchive.Exchange>() {
+            @Override
+            public int compare(TrafficArchive.Exchange lhs, TrafficArchive.Exchange rhs) {
+                return lhs.getStartOffsetMs() < rhs.getStartOffsetMs() ? -1 : (lhs.getStartOffsetMs() == rhs.getStartOffsetMs() ? 0 : 1);
+            }
+        });
+        return new TrafficArchive(snapshot);
+    }
+
+    /**
+     * Writes the archive of the exchanges recorded so far. Same as {@code getArchive().writeTo(writer)}.
+     *
+     * @param writer the writer of the archive, not null
+     */
+    public void writeTo(final Writer writer) {
+        getArchive().writeTo(writer);
+    }
+
+    /**
+     * Drops the exchanges recorded so far. The offsets of the next exchanges are relative to the first request sent after this call.
+     */
+    public void clear() {
+        synchronized (exchanges) {
+            exchanges.clear();
+            originNanos = -1;
+        }
+    }
+
+    private TrafficArchive.Exchange newExchange(final Request request, final long startNanos) throws IOException {
+        final long startOffsetMs;
+        synchronized (exchanges) {
+            if (originNanos == -1) {
+                originNanos = startNanos;
+            }
+            startOffsetMs = TimeUnit.NANOSECONDS.toMillis(startNanos - originNanos);
+        }
+
+        String requestBody = null;
+        long requestBodySize = -1;
+        final RequestBody body = request.body();
+        if (body != null) {
+            final Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            requestBodySize = buffer.size();
+            if (shopDomain.equalsIgnoreCase(request.url().host())) {
+                requestBody = buffer.readString(charset(body.contentType()));
+            }
+        }
+
+        return new TrafficArchive.Exchange(startOffsetMs, BuyClientMetrics.endpointOf(request), request.method(), request.url().toString(),
+            headers(request.headers()), requestBody, requestBodySize);
+    }
+
+    private void add(final TrafficArchive.Exchange exchange) {
+        synchronized (exchanges) {
+            exchanges.add(exchange);
+        }
+    }
+
+    private Map<String, List<String>> headers(final Headers headers) {
+        final Map<String, List<String>> recorded = new LinkedHashMap<>();
+        for (int i = 0, size = headers.size(); i < size; i++) {
+            final String name = headers.name(i);
+            List<String> values = recorded.get(name);
+            if (values == null) {
+                values = new ArrayList<>();
+                recorded.put(name, values);
+            }
+            values.add(redactedHeaders.contains(name.toLowerCase(Locale.US)) ? REDACTED : headers.value(i));
+        }
+        return recorded;
+    }
+
+    private static Charset charset(final MediaType contentType) {
+        return contentType != null ? contentType.charset(UTF8) : UTF8;
+    }
+
+    private static long elapsedMs(final long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
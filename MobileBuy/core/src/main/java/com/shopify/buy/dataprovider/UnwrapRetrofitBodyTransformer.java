@@ -23,29 +23,24 @@
  */
 package com.shopify.buy.dataprovider;
 
-import com.shopify.buy.model.internal.ResponseWrapper;
-
 import retrofit2.Response;
 import rx.Observable;
 import rx.functions.Func1;
 
 /**
- * Transformer that returns unwrapped retrofit response body
+ * Transformer that returns the retrofit response body. The body is already unwrapped from its envelope object by the
+ * {@link UnwrappingConverterFactory}.
  *
- * @param <B> type of retrofit body wrapper that is extended from {@link ResponseWrapper}
- * @param <R> class of unwrapped response from body
+ * @param <R> class of unwrapped response body
  */
-final class UnwrapRetrofitBodyTransformer<B extends ResponseWrapper<R>, R> implements Observable.Transformer<Response<B>, R> {
+final class UnwrapRetrofitBodyTransformer<R> implements Observable.Transformer<Response<R>, R> {
 
     @Override
-    public Observable<R> call(Observable<Response<B>> responseObservable) {
-        return responseObservable.map(new Func1<Response<B>, R>() {
+    public Observable<R> call(Observable<Response<R>> responseObservable) {
+        return responseObservable.map(new Func1<Response<R>, R>() {
             @Override
-            public R call(Response<B> response) {
-                if (response.body() != null) {
-                    return response.body().getContent();
-                }
-                return null;
+            public R call(Response<R> response) {
+                return response.body();
             }
         });
     }
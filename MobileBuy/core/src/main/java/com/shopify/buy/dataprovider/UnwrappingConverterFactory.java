@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.dataprovider;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Decodes the response bodies of the service methods annotated with {@link Unwrap}: the envelope object is streamed until its
+ * payload key, the payload is decoded straight into the response type with the Gson type adapters, and the rest of the body is
+ * skipped. Everything else, including all request bodies, is handled by the delegate factory.
+ */
+final class UnwrappingConverterFactory extends Converter.Factory {
+
+    private final Gson gson;
+
+    private final Converter.Factory delegate;
+
+    /**
+     * @param gson     the Gson instance providing the type adapters of the payloads
+     * @param delegate the factory handling the bodies that are not unwrapped
+     */
+    UnwrappingConverterFactory(final Gson gson, final Converter.Factory delegate) {
+        if (gson == null) {
+            throw new NullPointerException("gson cannot be null");
+        }
+        if (delegate == null) {
+            throw new NullPointerException("delegate cannot be null");
+        }
+        this.gson = gson;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(final Type type, final Annotation[] annotations, final Retrofit retrofit) {
+        final Unwrap unwrap = findUnwrap(annotations);
+        if (unwrap == null) {
+            return delegate.responseBodyConverter(type, annotations, retrofit);
+        }
+        return new UnwrappingConverter<>(gson.getAdapter(TypeToken.get(type)), unwrap.value(), unwrap.first());
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(final Type type, final Annotation[] parameterAnnotations, final Annotation[] methodAnnotations, final Retrofit retrofit) {
+        return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, String> stringConverter(final Type type, final Annotation[] annotations, final Retrofit retrofit) {
+        return delegate.stringConverter(type, annotations, retrofit);
+    }
+
+    private static Unwrap findUnwrap(final Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Unwrap) {
+                return (Unwrap) annotation;
+            }
+        }
+        return null;
+    }
+
+    static final class UnwrappingConverter<T> implements Converter<ResponseBody, T> {
+
+        private final TypeAdapter<T> adapter;
+
+        private final String key;
+
+        private final boolean first;
+
+        UnwrappingConverter(final TypeAdapter<T> adapter, final String key, final boolean first) {
+            this.adapter = adapter;
+            this.key = key;
+            this.first = first;
+        }
+
+        @Override
+        public T convert(final ResponseBody value) throws IOException {
+            final JsonReader reader = new JsonReader(value.charStream());
+            try {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (key.equals(reader.nextName())) {
+                        return readPayload(reader);
+                    }
+                    reader.skipValue();
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
+        }
+
+        private T readPayload(final JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+
+            if (!first) {
+                return adapter.read(reader);
+            }
+
+            reader.beginArray();
+            return reader.hasNext() ? adapter.read(reader) : null;
+        }
+    }
+}
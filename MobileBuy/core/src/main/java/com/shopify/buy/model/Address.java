@@ -24,9 +24,8 @@
 
 package com.shopify.buy.model;
 
-import android.text.TextUtils;
-
 import com.google.gson.annotations.SerializedName;
+import com.shopify.buy.utils.StringUtils;
 
 /**
  * Represents a shipping or billing address on an order. This will be associated with the customer upon completion.
@@ -232,27 +231,27 @@ public class Address extends ShopifyObject {
             return true;
         }
 
-        if (!TextUtils.equals(address1, otherAddress.address1)) {
+        if (!StringUtils.equals(address1, otherAddress.address1)) {
             return false;
         }
 
-        if (!TextUtils.equals(address2, otherAddress.address2)) {
+        if (!StringUtils.equals(address2, otherAddress.address2)) {
             return false;
         }
 
-        if (!TextUtils.equals(city, otherAddress.city)) {
+        if (!StringUtils.equals(city, otherAddress.city)) {
             return false;
         }
 
-        if (!TextUtils.equals(countryCode, otherAddress.countryCode)) {
+        if (!StringUtils.equals(countryCode, otherAddress.countryCode)) {
             return false;
         }
 
-        if (!TextUtils.equals(provinceCode, otherAddress.provinceCode)) {
+        if (!StringUtils.equals(provinceCode, otherAddress.provinceCode)) {
             return false;
         }
 
-        if (!TextUtils.equals(zip, otherAddress.zip)) {
+        if (!StringUtils.equals(zip, otherAddress.zip)) {
             return false;
         }
 
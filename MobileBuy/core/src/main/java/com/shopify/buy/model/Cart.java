@@ -0,0 +1,283 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.model;
+
+import com.shopify.buy.dataprovider.BuyClientUtils;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Cart is the starting point for the Checkout API. You are responsible for building a cart, then transforming it into a {@link Checkout} using the {@link com.shopify.buy.dataprovider.BuyClient}.
+ */
+public class Cart {
+
+    protected final List<CartLineItem> lineItems;
+    protected final Set<ProductVariant> productVariants;
+
+    // index of the line items by variant id and running totals, rebuilt lazily as they are not serialized
+    private transient Map<Long, CartLineItem> lineItemIndex;
+    private transient BigDecimal subtotal;
+    private transient long totalQuantity;
+
+    // the line items returned to callers, edits through it invalidate the index
+    private final transient List<CartLineItem> lineItemsView = new LineItemsView();
+
+    public Cart() {
+        lineItems = new ArrayList<>();
+        productVariants = new HashSet<>();
+    }
+
+    /**
+     * Adds a ProductVariant to the cart. If a LineItem with this ProductVariant already exists in the Cart, that LineItems's quantity is increased by one.
+     *
+     * @param variant the {@link ProductVariant} to add to the {@code cart}
+     */
+    public void addVariant(ProductVariant variant) {
+        productVariants.add(variant);
+
+        final CartLineItem lineItem = getIndex().get(variant.getId());
+        if (lineItem != null) {
+            updateQuantity(lineItem, lineItem.getQuantity() + 1);
+            return;
+        }
+
+        addLineItem(new CartLineItem(variant));
+    }
+
+    /**
+     * If the cart contains a LineItem matching the ProductVariant, its quantity is decremented by 1.
+     * If the LineItem's quantity is decremented to 0, it is removed from the cart.
+     *
+     * @param variant the {@link ProductVariant} to decrement
+     */
+    public void decrementVariant(ProductVariant variant) {
+        final CartLineItem lineItem = getIndex().get(variant.getId());
+        if (lineItem != null && lineItem.getQuantity() > 0) {
+            if (lineItem.getQuantity() == 1) {
+                removeLineItem(lineItem);
+                lineItem.setQuantity(0);
+                productVariants.remove(variant);
+            } else {
+                updateQuantity(lineItem, lineItem.getQuantity() - 1);
+            }
+        }
+    }
+
+    /**
+     * Sets the quantity of a ProductVariant in the cart.
+     * If a LineItem with this ProductVariant already exists in the Cart, that LineItems's quantity will be set to the new value.
+     * If no LineItem with this ProductVariant exists in the Cart, a new LineItem will be created with the specified ProductVariant and quantity.
+     *
+     * @param variant  the {@link ProductVariant} to update
+     * @param quantity the new quantity
+     */
+    public void setVariantQuantity(ProductVariant variant, int quantity) {
+        if (quantity <= 0) {
+            productVariants.remove(variant);
+        } else {
+            productVariants.add(variant);
+        }
+
+        final CartLineItem lineItem = getIndex().get(variant.getId());
+        if (lineItem != null) {
+            if (quantity <= 0) {
+                removeLineItem(lineItem);
+            } else {
+                updateQuantity(lineItem, quantity);
+            }
+            return;
+        }
+
+        if (quantity > 0) {
+            CartLineItem newLineItem = new CartLineItem(variant);
+            newLineItem.setQuantity(quantity);
+            addLineItem(newLineItem);
+        }
+    }
+
+    /**
+     * @return The list of {@link CartLineItem} objects in the cart. Note that these are different from {@link LineItem} objects in that they include the {@link ProductVariant}.
+     */
+    public List<CartLineItem> getLineItems() {
+        return lineItemsView;
+    }
+
+    /**
+     * @param lineItem The {@link LineItem} containing the {@link ProductVariant} that you would like.
+     * @return The ProductVariant within the specified LineItem, or {@code null} if no associated variant was found.
+     */
+    public ProductVariant getProductVariant(LineItem lineItem) {
+        final CartLineItem cartLineItem = getIndex().get(lineItem.getVariantId());
+        return cartLineItem != null ? cartLineItem.getVariant() : null;
+    }
+
+    /**
+     * @return the number of LineItems contained in this Cart
+     */
+    public int getSize() {
+        return lineItems.size();
+    }
+
+    /**
+     * @return {@code true} if the Cart has zero line items, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return lineItems.isEmpty();
+    }
+
+    /**
+     * Removes all line items from the cart.
+     */
+    public void clear() {
+        lineItems.clear();
+        productVariants.clear();
+        invalidateIndex();
+    }
+
+    public String toJsonString() {
+        return BuyClientUtils.createDefaultGson().toJson(this);
+    }
+
+    public static Cart fromJson(String json) {
+        return BuyClientUtils.createDefaultGson().fromJson(json, Cart.class);
+    }
+
+    /**
+     * Convenience function to return the subtotal price for this cart, before taxes and shipping.
+     *
+     * @return The subtotal price for this cart.
+     */
+    public double getSubtotal() {
+        getIndex();
+        return subtotal.doubleValue();
+    }
+
+    /**
+     * @return The total number of product variants in the cart (the sum of quantities across all line items).
+     */
+    public Integer getTotalQuantity() {
+        getIndex();
+        return (int) totalQuantity;
+    }
+
+    private void addLineItem(final CartLineItem lineItem) {
+        final Map<Long, CartLineItem> index = getIndex();
+        lineItems.add(lineItem);
+        index.put(lineItem.getVariantId(), lineItem);
+        subtotal = subtotal.add(linePrice(lineItem, lineItem.getQuantity()));
+        totalQuantity += lineItem.getQuantity();
+    }
+
+    private void removeLineItem(final CartLineItem lineItem) {
+        final Map<Long, CartLineItem> index = getIndex();
+        lineItems.remove(lineItem);
+        index.remove(lineItem.getVariantId());
+        subtotal = subtotal.subtract(linePrice(lineItem, lineItem.getQuantity()));
+        totalQuantity -= lineItem.getQuantity();
+    }
+
+    private void updateQuantity(final CartLineItem lineItem, final long quantity) {
+        final long delta = quantity - lineItem.getQuantity();
+        lineItem.setQuantity(quantity);
+        subtotal = subtotal.add(linePrice(lineItem, delta));
+        totalQuantity += delta;
+    }
+
+    /**
+     * Returns the line item index, rebuilding it together with the running totals if it has been invalidated. This happens after
+     * deserialization, since these fields are transient, or after the list returned by {@link #getLineItems()} was modified.
+     */
+    private Map<Long, CartLineItem> getIndex() {
+        if (lineItemIndex == null) {
+            final Map<Long, CartLineItem> index = new HashMap<>(Math.max(16, lineItems.size() * 2));
+            BigDecimal total = BigDecimal.ZERO;
+            long quantity = 0;
+            for (CartLineItem lineItem : lineItems) {
+                index.put(lineItem.getVariantId(), lineItem);
+                total = total.add(linePrice(lineItem, lineItem.getQuantity()));
+                quantity += lineItem.getQuantity();
+            }
+            lineItemIndex = index;
+            subtotal = total;
+            totalQuantity = quantity;
+        }
+        return lineItemIndex;
+    }
+
+    private void invalidateIndex() {
+        lineItemIndex = null;
+    }
+
+    private static BigDecimal linePrice(final CartLineItem lineItem, final long quantity) {
+        if (lineItem.getPrice() == null || quantity == 0) {
+            return BigDecimal.ZERO;
+        }
+        return new BigDecimal(lineItem.getPrice()).multiply(BigDecimal.valueOf(quantity));
+    }
+
+    /**
+     * View of {@link #lineItems} that invalidates the line item index when it is modified.
+     */
+    private final class LineItemsView extends AbstractList<CartLineItem> {
+
+        @Override
+        public CartLineItem get(int location) {
+            return lineItems.get(location);
+        }
+
+        @Override
+        public int size() {
+            return lineItems.size();
+        }
+
+        @Override
+        public CartLineItem set(int location, CartLineItem lineItem) {
+            invalidateIndex();
+            return lineItems.set(location, lineItem);
+        }
+
+        @Override
+        public void add(int location, CartLineItem lineItem) {
+            invalidateIndex();
+            lineItems.add(location, lineItem);
+            modCount++;
+        }
+
+        @Override
+        public CartLineItem remove(int location) {
+            invalidateIndex();
+            final CartLineItem lineItem = lineItems.remove(location);
+            modCount++;
+            return lineItem;
+        }
+    }
+}
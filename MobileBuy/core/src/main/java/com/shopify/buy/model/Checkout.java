@@ -24,8 +24,6 @@
 
 package com.shopify.buy.model;
 
-import android.text.TextUtils;
-
 import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
@@ -40,6 +38,7 @@ import com.shopify.buy.dataprovider.BuyClientUtils;
 import com.shopify.buy.dataprovider.Callback;
 import com.shopify.buy.model.internal.MarketingAttribution;
 import com.shopify.buy.utils.CollectionUtils;
+import com.shopify.buy.utils.StringUtils;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -617,7 +616,7 @@ public class Checkout extends ShopifyObject {
      *
      */
     public static Checkout fromJson(String json) {
-        if (TextUtils.isEmpty(json)) {
+        if (StringUtils.isEmpty(json)) {
             return null;
         }
 
@@ -24,8 +24,6 @@
 
 package com.shopify.buy.model;
 
-import android.text.TextUtils;
-
 import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
@@ -33,6 +31,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
 import com.shopify.buy.dataprovider.BuyClientUtils;
+import com.shopify.buy.utils.StringUtils;
 
 import java.lang.reflect.Type;
 import java.util.Date;
@@ -257,7 +256,7 @@ public class Customer extends ShopifyObject {
 
     public void setTags(Set<String> tags) {
         tagSet = tags;
-        this.tags = TextUtils.join(",", tags);
+        this.tags = StringUtils.join(",", tags);
     }
 
     public static class CustomerDeserializer implements JsonDeserializer<Customer> {
@@ -281,7 +280,7 @@ public class Customer extends ShopifyObject {
         customer.tagSet = new HashSet<>();
 
         // Populate the tagSet from the comma separated list.
-        if (!TextUtils.isEmpty(customer.tags)) {
+        if (!StringUtils.isEmpty(customer.tags)) {
             for (String tag : customer.tags.split(",")) {
                 String myTag = tag.trim();
                 customer.tagSet.add(myTag);
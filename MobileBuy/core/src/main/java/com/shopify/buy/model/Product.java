@@ -24,17 +24,18 @@
 
 package com.shopify.buy.model;
 
-import android.text.TextUtils;
-
 import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.SerializedName;
 import com.shopify.buy.dataprovider.BuyClientUtils;
 import com.shopify.buy.utils.CollectionUtils;
 import com.shopify.buy.utils.DateUtility;
+import com.shopify.buy.utils.StringPool;
+import com.shopify.buy.utils.StringUtils;
 
 import java.lang.reflect.Type;
 import java.util.Date;
@@ -89,6 +90,8 @@ public class Product extends ShopifyObject {
 
     private String minimumPrice;
 
+    private transient ProductProjection projection;
+
     /**
      * @return {@code true} if this product has been published on the store, {@code false} otherwise.
      */
@@ -244,6 +247,31 @@ public class Product extends ShopifyObject {
         return available != null && available;
     }
 
+    /**
+     * @return The projection this product was requested with, {@link ProductProjection#FULL} unless it was fetched with a projection.
+     * It is not derived from the JSON, a product created with {@link #fromJson(String)} reports {@link ProductProjection#FULL}.
+     */
+    public ProductProjection getProjection() {
+        return projection != null ? projection : ProductProjection.FULL;
+    }
+
+    /**
+     * @param field The name of the field, as the constants of {@link ProductProjection}.
+     * @return {@code true} if the field was loaded, {@code false} if the field was left out of the projection and its getter returns {@code null} or its default.
+     */
+    public boolean isLoaded(String field) {
+        return getProjection().contains(field);
+    }
+
+    /**
+     * For internal use only.
+     *
+     * @param projection The projection this product was requested with.
+     */
+    public void setProjection(ProductProjection projection) {
+        this.projection = projection;
+    }
+
     /**
      * For internal use only.
      *
@@ -369,11 +397,55 @@ public class Product extends ShopifyObject {
         return productId.hashCode();
     }
 
+    /**
+     * Replaces the strings repeated across the catalog with their canonical instance from the pool.
+     *
+     * @param stringPool the pool to intern strings with
+     */
+    void internStrings(final StringPool stringPool) {
+        vendor = stringPool.intern(vendor);
+        productType = stringPool.intern(productType);
+
+        if (options != null) {
+            for (Option option : options) {
+                option.name = stringPool.intern(option.name);
+            }
+        }
+
+        if (variants != null) {
+            for (ProductVariant variant : variants) {
+                variant.title = stringPool.intern(variant.title);
+                variant.price = stringPool.intern(variant.price);
+                variant.compareAtPrice = stringPool.intern(variant.compareAtPrice);
+
+                if (variant.optionValues != null) {
+                    for (OptionValue optionValue : variant.optionValues) {
+                        optionValue.name = stringPool.intern(optionValue.name);
+                        optionValue.value = stringPool.intern(optionValue.value);
+                    }
+                }
+            }
+        }
+    }
+
     public static class ProductDeserializer implements JsonDeserializer<Product> {
 
+        private final StringPool stringPool;
+
+        public ProductDeserializer() {
+            this(null);
+        }
+
+        /**
+         * @param stringPool the pool used to de-duplicate the catalog strings of the deserialized products, can be {@code null}
+         */
+        public ProductDeserializer(final StringPool stringPool) {
+            this.stringPool = stringPool;
+        }
+
         @Override
         public Product deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            return fromJson(json.toString());
+            return fromJson(json, stringPool);
         }
 
     }
@@ -385,6 +457,22 @@ public class Product extends ShopifyObject {
      * @return A {@link Product}
      */
     public static Product fromJson(String json) {
+        return fromJson(json, null);
+    }
+
+    /**
+     * A product object created using the values in the JSON string, with the strings repeated across the catalog
+     * (vendor, product type, option names and values, etc) taken from the given pool.
+     *
+     * @param json       The json representation of this product.
+     * @param stringPool The pool used to de-duplicate catalog strings, can be {@code null}.
+     * @return A {@link Product}
+     */
+    public static Product fromJson(String json, StringPool stringPool) {
+        return fromJson(new JsonParser().parse(json), stringPool);
+    }
+
+    private static Product fromJson(JsonElement json, StringPool stringPool) {
         Gson gson = BuyClientUtils.createDefaultGson(Product.class);
 
         Product product = gson.fromJson(json, Product.class);
@@ -407,13 +495,17 @@ public class Product extends ShopifyObject {
         product.tagSet = new HashSet<>();
 
         // Populate the tagSet from the comma separated list.
-        if (!TextUtils.isEmpty(product.tags)) {
+        if (!StringUtils.isEmpty(product.tags)) {
             for (String tag : product.tags.split(",")) {
                 String myTag = tag.trim();
-                product.tagSet.add(myTag);
+                product.tagSet.add(stringPool != null ? stringPool.intern(myTag) : myTag);
             }
         }
 
+        if (stringPool != null) {
+            product.internStrings(stringPool);
+        }
+
         return product;
     }
 
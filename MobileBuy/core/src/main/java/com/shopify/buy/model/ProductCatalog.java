@@ -0,0 +1,1039 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.model;
+
+import com.shopify.buy.utils.DateUtility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read-only, memory compact representation of a list of {@link Product}.
+ * <p>
+ * Instead of holding a graph of {@link Product}, {@link ProductVariant}, {@link Image}, {@link Option} and {@link OptionValue} objects,
+ * the catalog stores every attribute in parallel arrays (one array per attribute, one slot per product or variant). Variants, images,
+ * options, option values and tags of a product are stored in shared tables and referenced by offsets.
+ * <p>
+ * Scanning, filtering and sorting is done on indices (see {@link #filterVariants(VariantFilter, int[])} and
+ * {@link #sortVariants(int[], int, VariantComparator)}) and doesn't allocate. {@link #getProduct(int)} and {@link #getVariant(int)}
+ * return lightweight views that expose the regular {@link Product} and {@link ProductVariant} getters on top of the catalog arrays.
+ * Views are not meant to be serialized, use {@link #toProduct(int)} to get a regular {@link Product} instead.
+ */
+public final class ProductCatalog {
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int NO_IMAGE = -1;
+
+    private static final String DEFAULT_VARIANT_TITLE = "Default Title";
+
+    private static final String DEFAULT_OPTION_VALUE = "Default";
+
+    /**
+     * Filter applied to the variants of the catalog
+     */
+    public interface VariantFilter {
+
+        /**
+         * @param catalog      the catalog being filtered
+         * @param variantIndex index of the variant in the catalog
+         * @return {@code true} if the variant should be kept, {@code false} otherwise
+         */
+        boolean accept(ProductCatalog catalog, int variantIndex);
+    }
+
+    /**
+     * Comparator of the variants of the catalog
+     */
+    public interface VariantComparator {
+
+        /**
+         * @param catalog the catalog being sorted
+         * @param left    index of the first variant to compare
+         * @param right   index of the second variant to compare
+         * @return a negative integer, zero, or a positive integer as the first variant is less than, equal to, or greater than the second
+         */
+        int compare(ProductCatalog catalog, int left, int right);
+    }
+
+    /**
+     * Orders variants by ascending price
+     */
+    public static final VariantComparator PRICE_ASCENDING = new VariantComparator() {
+        @Override
+        public int compare(final ProductCatalog catalog, final int left, final int right) {
+            return Double.compare(catalog.variantPriceValues[left], catalog.variantPriceValues[right]);
+        }
+    };
+
+    /**
+     * Orders variants by descending price
+     */
+    public static final VariantComparator PRICE_DESCENDING = new VariantComparator() {
+        @Override
+        public int compare(final ProductCatalog catalog, final int left, final int right) {
+            return Double.compare(catalog.variantPriceValues[right], catalog.variantPriceValues[left]);
+        }
+    };
+
+    // ----------- Product columns ---------------
+
+    private final long[] productIds;
+    private final String[] productTitles;
+    private final String[] productHandles;
+    private final String[] productBodyHtmls;
+    private final String[] productVendors;
+    private final String[] productTypes;
+    private final long[] productPublishedAt;
+    private final long[] productCreatedAt;
+    private final long[] productUpdatedAt;
+    private final boolean[] productAvailable;
+    private final boolean[] productPublished;
+    private final int[] productVariantOffsets;
+    private final int[] productImageOffsets;
+    private final int[] productOptionOffsets;
+    private final int[] productTagOffsets;
+
+    // ----------- Variant columns ---------------
+
+    private final long[] variantIds;
+    private final int[] variantProductIndices;
+    private final String[] variantTitles;
+    private final String[] variantPrices;
+    private final double[] variantPriceValues;
+    private final String[] variantCompareAtPrices;
+    private final String[] variantSkus;
+    private final long[] variantGrams;
+    private final int[] variantPositions;
+    private final boolean[] variantRequiresShipping;
+    private final boolean[] variantTaxable;
+    private final boolean[] variantAvailable;
+    private final long[] variantCreatedAt;
+    private final long[] variantUpdatedAt;
+    private final int[] variantImageIndices;
+    private final int[] variantOptionValueOffsets;
+    private final long[] variantIdsSorted;
+    private final int[] variantIdsSortedIndices;
+
+    // ----------- Shared tables ---------------
+
+    private final long[] imageIds;
+    private final String[] imageSrcs;
+    private final int[] imagePositions;
+    private final String[] imageCreatedAt;
+    private final String[] imageUpdatedAt;
+    private final int[] imageVariantIdOffsets;
+    private final long[] imageVariantIds;
+
+    private final long[] optionIds;
+    private final String[] optionNames;
+    private final int[] optionPositions;
+
+    private final long[] optionValueOptionIds;
+    private final String[] optionValueNames;
+    private final String[] optionValueValues;
+
+    private final String[] tags;
+
+    /**
+     * Builds a catalog from the given products. The catalog doesn't keep any reference to the products, so they can be garbage collected
+     * once the catalog is built.
+     *
+     * @param products the products to store in the catalog, not null
+     * @return the catalog
+     */
+    public static ProductCatalog fromProducts(final List<Product> products) {
+        if (products == null) {
+            throw new NullPointerException("products cannot be null");
+        }
+        return new ProductCatalog(products);
+    }
+
+    private ProductCatalog(final List<Product> products) {
+        final int productCount = products.size();
+
+        int variantCount = 0;
+        int imageCount = 0;
+        int imageVariantIdCount = 0;
+        int optionCount = 0;
+        int optionValueCount = 0;
+        int tagCount = 0;
+        for (Product product : products) {
+            if (product.variants != null) {
+                variantCount += product.variants.size();
+                for (ProductVariant variant : product.variants) {
+                    optionValueCount += variant.optionValues != null ? variant.optionValues.size() : 0;
+                }
+            }
+            if (product.images != null) {
+                imageCount += product.images.size();
+                for (Image image : product.images) {
+                    imageVariantIdCount += image.variantIds != null ? image.variantIds.size() : 0;
+                }
+            }
+            optionCount += product.options != null ? product.options.size() : 0;
+            tagCount += product.tagSet != null ? product.tagSet.size() : 0;
+        }
+
+        productIds = new long[productCount];
+        productTitles = new String[productCount];
+        productHandles = new String[productCount];
+        productBodyHtmls = new String[productCount];
+        productVendors = new String[productCount];
+        productTypes = new String[productCount];
+        productPublishedAt = new long[productCount];
+        productCreatedAt = new long[productCount];
+        productUpdatedAt = new long[productCount];
+        productAvailable = new boolean[productCount];
+        productPublished = new boolean[productCount];
+        productVariantOffsets = new int[productCount + 1];
+        productImageOffsets = new int[productCount + 1];
+        productOptionOffsets = new int[productCount + 1];
+        productTagOffsets = new int[productCount + 1];
+
+        variantIds = new long[variantCount];
+        variantProductIndices = new int[variantCount];
+        variantTitles = new String[variantCount];
+        variantPrices = new String[variantCount];
+        variantPriceValues = new double[variantCount];
+        variantCompareAtPrices = new String[variantCount];
+        variantSkus = new String[variantCount];
+        variantGrams = new long[variantCount];
+        variantPositions = new int[variantCount];
+        variantRequiresShipping = new boolean[variantCount];
+        variantTaxable = new boolean[variantCount];
+        variantAvailable = new boolean[variantCount];
+        variantCreatedAt = new long[variantCount];
+        variantUpdatedAt = new long[variantCount];
+        variantImageIndices = new int[variantCount];
+        variantOptionValueOffsets = new int[variantCount + 1];
+
+        imageIds = new long[imageCount];
+        imageSrcs = new String[imageCount];
+        imagePositions = new int[imageCount];
+        imageCreatedAt = new String[imageCount];
+        imageUpdatedAt = new String[imageCount];
+        imageVariantIdOffsets = new int[imageCount + 1];
+        imageVariantIds = new long[imageVariantIdCount];
+
+        optionIds = new long[optionCount];
+        optionNames = new String[optionCount];
+        optionPositions = new int[optionCount];
+
+        optionValueOptionIds = new long[optionValueCount];
+        optionValueNames = new String[optionValueCount];
+        optionValueValues = new String[optionValueCount];
+
+        tags = new String[tagCount];
+
+        int variant = 0;
+        int image = 0;
+        int imageVariantId = 0;
+        int option = 0;
+        int optionValue = 0;
+        int tag = 0;
+        for (int p = 0; p < productCount; p++) {
+            final Product product = products.get(p);
+            productIds[p] = toLong(product.productId);
+            productTitles[p] = product.title;
+            productHandles[p] = product.handle;
+            productBodyHtmls[p] = product.bodyHtml;
+            productVendors[p] = product.vendor;
+            productTypes[p] = product.productType;
+            productPublishedAt[p] = toMillis(product.publishedAtDate);
+            productCreatedAt[p] = toMillis(product.createdAtDate);
+            productUpdatedAt[p] = toMillis(product.updatedAtDate);
+            productAvailable[p] = product.isAvailable();
+            productPublished[p] = product.isPublished();
+
+            productImageOffsets[p] = image;
+            final int firstImage = image;
+            if (product.images != null) {
+                for (Image productImage : product.images) {
+                    imageIds[image] = toLong(productImage.id);
+                    imageSrcs[image] = productImage.src;
+                    imagePositions[image] = productImage.position;
+                    imageCreatedAt[image] = productImage.createdAt;
+                    imageUpdatedAt[image] = productImage.updatedAt;
+                    imageVariantIdOffsets[image] = imageVariantId;
+                    if (productImage.variantIds != null) {
+                        for (Long id : productImage.variantIds) {
+                            imageVariantIds[imageVariantId++] = toLong(id);
+                        }
+                    }
+                    image++;
+                }
+            }
+
+            productVariantOffsets[p] = variant;
+            if (product.variants != null) {
+                for (ProductVariant productVariant : product.variants) {
+                    variantIds[variant] = toLong(productVariant.id);
+                    variantProductIndices[variant] = p;
+                    variantTitles[variant] = productVariant.title;
+                    variantPrices[variant] = productVariant.price;
+                    variantPriceValues[variant] = parsePrice(productVariant.price);
+                    variantCompareAtPrices[variant] = productVariant.compareAtPrice;
+                    variantSkus[variant] = productVariant.sku;
+                    variantGrams[variant] = productVariant.grams;
+                    variantPositions[variant] = productVariant.position;
+                    variantRequiresShipping[variant] = productVariant.isRequiresShipping();
+                    variantTaxable[variant] = productVariant.isTaxable();
+                    variantAvailable[variant] = productVariant.isAvailable();
+                    variantCreatedAt[variant] = toMillis(productVariant.createdAtDate);
+                    variantUpdatedAt[variant] = toMillis(productVariant.updatedAtDate);
+                    variantImageIndices[variant] = findImage(firstImage, image, variantIds[variant], imageVariantId);
+
+                    variantOptionValueOffsets[variant] = optionValue;
+                    if (productVariant.optionValues != null) {
+                        for (OptionValue value : productVariant.optionValues) {
+                            optionValueOptionIds[optionValue] = toLong(value.optionId);
+                            optionValueNames[optionValue] = value.name;
+                            optionValueValues[optionValue] = value.value;
+                            optionValue++;
+                        }
+                    }
+                    variant++;
+                }
+            }
+
+            productOptionOffsets[p] = option;
+            if (product.options != null) {
+                for (Option productOption : product.options) {
+                    optionIds[option] = toLong(productOption.id);
+                    optionNames[option] = productOption.name;
+                    optionPositions[option] = productOption.position;
+                    option++;
+                }
+            }
+
+            productTagOffsets[p] = tag;
+            if (product.tagSet != null) {
+                for (String productTag : product.tagSet) {
+                    tags[tag++] = productTag;
+                }
+            }
+        }
+        productVariantOffsets[productCount] = variant;
+        productImageOffsets[productCount] = image;
+        productOptionOffsets[productCount] = option;
+        productTagOffsets[productCount] = tag;
+        variantOptionValueOffsets[variantCount] = optionValue;
+        imageVariantIdOffsets[imageCount] = imageVariantId;
+
+        variantIdsSortedIndices = new int[variantCount];
+        for (int i = 0; i < variantCount; i++) {
+            variantIdsSortedIndices[i] = i;
+        }
+        sortVariants(variantIdsSortedIndices, variantCount, new VariantComparator() {
+            @Override
+            public int compare(final ProductCatalog catalog, final int left, final int right) {
+                return compareLongs(catalog.variantIds[left], catalog.variantIds[right]);
+            }
+        });
+        variantIdsSorted = new long[variantCount];
+        for (int i = 0; i < variantCount; i++) {
+            variantIdsSorted[i] = variantIds[variantIdsSortedIndices[i]];
+        }
+    }
+
+    // ----------- Product columns ---------------
+
+    /**
+     * @return The number of products in the catalog.
+     */
+    public int getProductCount() {
+        return productIds.length;
+    }
+
+    public long getProductId(final int productIndex) {
+        return productIds[productIndex];
+    }
+
+    public String getProductTitle(final int productIndex) {
+        return productTitles[productIndex];
+    }
+
+    public String getProductVendor(final int productIndex) {
+        return productVendors[productIndex];
+    }
+
+    public String getProductType(final int productIndex) {
+        return productTypes[productIndex];
+    }
+
+    public boolean isProductAvailable(final int productIndex) {
+        return productAvailable[productIndex];
+    }
+
+    /**
+     * @param productIndex index of the product in the catalog
+     * @return Index of the first variant of the product, variants of a product are stored contiguously.
+     */
+    public int getFirstVariantIndex(final int productIndex) {
+        return productVariantOffsets[productIndex];
+    }
+
+    /**
+     * @param productIndex index of the product in the catalog
+     * @return The number of variants of the product.
+     */
+    public int getVariantCount(final int productIndex) {
+        return productVariantOffsets[productIndex + 1] - productVariantOffsets[productIndex];
+    }
+
+    // ----------- Variant columns ---------------
+
+    /**
+     * @return The number of variants in the catalog, across all products.
+     */
+    public int getVariantCount() {
+        return variantIds.length;
+    }
+
+    public long getVariantId(final int variantIndex) {
+        return variantIds[variantIndex];
+    }
+
+    /**
+     * @param variantIndex index of the variant in the catalog
+     * @return Index of the product the variant belongs to.
+     */
+    public int getVariantProductIndex(final int variantIndex) {
+        return variantProductIndices[variantIndex];
+    }
+
+    public String getVariantTitle(final int variantIndex) {
+        return variantTitles[variantIndex];
+    }
+
+    public String getVariantPrice(final int variantIndex) {
+        return variantPrices[variantIndex];
+    }
+
+    /**
+     * @param variantIndex index of the variant in the catalog
+     * @return The price of the variant as a number, {@code NaN} if the price is not set.
+     */
+    public double getVariantPriceValue(final int variantIndex) {
+        return variantPriceValues[variantIndex];
+    }
+
+    public boolean isVariantAvailable(final int variantIndex) {
+        return variantAvailable[variantIndex];
+    }
+
+    /**
+     * @param variantId the unique identifier of the variant
+     * @return Index of the variant in the catalog, or {@code -1} if the catalog doesn't contain such variant.
+     */
+    public int findVariantIndex(final long variantId) {
+        final int position = Arrays.binarySearch(variantIdsSorted, variantId);
+        return position >= 0 ? variantIdsSortedIndices[position] : -1;
+    }
+
+    // ----------- Scanning ---------------
+
+    /**
+     * Writes the indices of the variants accepted by the filter in the given array, doesn't allocate.
+     *
+     * @param filter the filter to apply
+     * @param result array receiving the indices of the accepted variants, must be at least {@link #getVariantCount()} long
+     * @return The number of accepted variants written to {@code result}.
+     */
+    public int filterVariants(final VariantFilter filter, final int[] result) {
+        if (filter == null) {
+            throw new NullPointerException("filter cannot be null");
+        }
+
+        int count = 0;
+        for (int i = 0; i < variantIds.length; i++) {
+            if (filter.accept(this, i)) {
+                result[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param filter the filter to apply
+     * @return The indices of the variants accepted by the filter.
+     */
+    public int[] filterVariants(final VariantFilter filter) {
+        final int[] result = new int[variantIds.length];
+        return Arrays.copyOf(result, filterVariants(filter, result));
+    }
+
+    /**
+     * Sorts the first {@code count} variant indices of the array in place, doesn't allocate.
+     *
+     * @param variantIndices the variant indices to sort
+     * @param count          the number of indices to sort
+     * @param comparator     the order to sort indices in
+     */
+    public void sortVariants(final int[] variantIndices, final int count, final VariantComparator comparator) {
+        if (comparator == null) {
+            throw new NullPointerException("comparator cannot be null");
+        }
+        quickSort(variantIndices, 0, count - 1, comparator);
+    }
+
+    // ----------- Views ---------------
+
+    /**
+     * @param productIndex index of the product in the catalog
+     * @return A view exposing the {@link Product} getters for the product at the given index.
+     */
+    public Product getProduct(final int productIndex) {
+        return new ProductView(this, productIndex);
+    }
+
+    /**
+     * @param variantIndex index of the variant in the catalog
+     * @return A view exposing the {@link ProductVariant} getters for the variant at the given index.
+     */
+    public ProductVariant getVariant(final int variantIndex) {
+        return new ProductVariantView(this, variantIndex);
+    }
+
+    /**
+     * Creates a regular, standalone {@link Product} from the catalog, for instance to serialize it.
+     *
+     * @param productIndex index of the product in the catalog
+     * @return the {@link Product}
+     */
+    public Product toProduct(final int productIndex) {
+        final Product product = new Product();
+        product.productId = productIds[productIndex];
+        product.title = productTitles[productIndex];
+        product.handle = productHandles[productIndex];
+        product.bodyHtml = productBodyHtmls[productIndex];
+        product.vendor = productVendors[productIndex];
+        product.productType = productTypes[productIndex];
+        product.publishedAtDate = toDate(productPublishedAt[productIndex]);
+        product.createdAtDate = toDate(productCreatedAt[productIndex]);
+        product.updatedAtDate = toDate(productUpdatedAt[productIndex]);
+        product.available = productAvailable[productIndex];
+        product.published = productPublished[productIndex];
+        product.images = createImages(productIndex);
+        product.options = createOptions(productIndex);
+        product.tagSet = createTags(productIndex);
+
+        final List<ProductVariant> variants = new ArrayList<>(getVariantCount(productIndex));
+        for (int i = productVariantOffsets[productIndex]; i < productVariantOffsets[productIndex + 1]; i++) {
+            variants.add(toProductVariant(i));
+        }
+        product.variants = variants;
+        return product;
+    }
+
+    /**
+     * Creates a regular, standalone {@link ProductVariant} from the catalog, for instance to serialize it.
+     *
+     * @param variantIndex index of the variant in the catalog
+     * @return the {@link ProductVariant}
+     */
+    public ProductVariant toProductVariant(final int variantIndex) {
+        final ProductVariant variant = new ProductVariant();
+        variant.id = variantIds[variantIndex];
+        variant.title = variantTitles[variantIndex];
+        variant.price = variantPrices[variantIndex];
+        variant.optionValues = createOptionValues(variantIndex);
+        variant.grams = variantGrams[variantIndex];
+        variant.compareAtPrice = variantCompareAtPrices[variantIndex];
+        variant.sku = variantSkus[variantIndex];
+        variant.requiresShipping = variantRequiresShipping[variantIndex];
+        variant.taxable = variantTaxable[variantIndex];
+        variant.position = variantPositions[variantIndex];
+        variant.productId = productIds[variantProductIndices[variantIndex]];
+        variant.createdAtDate = toDate(variantCreatedAt[variantIndex]);
+        variant.updatedAtDate = toDate(variantUpdatedAt[variantIndex]);
+        variant.available = variantAvailable[variantIndex];
+        variant.productTitle = productTitles[variantProductIndices[variantIndex]];
+        variant.imageUrl = getVariantImageUrl(variantIndex);
+        return variant;
+    }
+
+    private String getVariantImageUrl(final int variantIndex) {
+        final int imageIndex = variantImageIndices[variantIndex];
+        return imageIndex != NO_IMAGE ? imageSrcs[imageIndex] : null;
+    }
+
+    private List<ProductVariant> createVariantViews(final int productIndex) {
+        final List<ProductVariant> variants = new ArrayList<>(getVariantCount(productIndex));
+        for (int i = productVariantOffsets[productIndex]; i < productVariantOffsets[productIndex + 1]; i++) {
+            variants.add(new ProductVariantView(this, i));
+        }
+        return variants;
+    }
+
+    private List<Image> createImages(final int productIndex) {
+        final List<Image> images = new ArrayList<>(productImageOffsets[productIndex + 1] - productImageOffsets[productIndex]);
+        for (int i = productImageOffsets[productIndex]; i < productImageOffsets[productIndex + 1]; i++) {
+            final Image image = new Image();
+            image.id = imageIds[i];
+            image.src = imageSrcs[i];
+            image.position = imagePositions[i];
+            image.createdAt = imageCreatedAt[i];
+            image.updatedAt = imageUpdatedAt[i];
+            image.productId = productIds[productIndex];
+
+            final List<Long> ids = new ArrayList<>(imageVariantIdOffsets[i + 1] - imageVariantIdOffsets[i]);
+            for (int j = imageVariantIdOffsets[i]; j < imageVariantIdOffsets[i + 1]; j++) {
+                ids.add(imageVariantIds[j]);
+            }
+            image.variantIds = ids;
+            images.add(image);
+        }
+        return images;
+    }
+
+    private List<Option> createOptions(final int productIndex) {
+        final List<Option> options = new ArrayList<>(productOptionOffsets[productIndex + 1] - productOptionOffsets[productIndex]);
+        for (int i = productOptionOffsets[productIndex]; i < productOptionOffsets[productIndex + 1]; i++) {
+            final Option option = new Option();
+            option.id = optionIds[i];
+            option.name = optionNames[i];
+            option.position = optionPositions[i];
+            option.productId = String.valueOf(productIds[productIndex]);
+            options.add(option);
+        }
+        return options;
+    }
+
+    private List<OptionValue> createOptionValues(final int variantIndex) {
+        final List<OptionValue> optionValues = new ArrayList<>(variantOptionValueOffsets[variantIndex + 1] - variantOptionValueOffsets[variantIndex]);
+        for (int i = variantOptionValueOffsets[variantIndex]; i < variantOptionValueOffsets[variantIndex + 1]; i++) {
+            final OptionValue optionValue = new OptionValue();
+            optionValue.optionId = optionValueOptionIds[i];
+            optionValue.name = optionValueNames[i];
+            optionValue.value = optionValueValues[i];
+            optionValues.add(optionValue);
+        }
+        return optionValues;
+    }
+
+    private Set<String> createTags(final int productIndex) {
+        final Set<String> productTags = new HashSet<>();
+        productTags.addAll(Arrays.asList(tags).subList(productTagOffsets[productIndex], productTagOffsets[productIndex + 1]));
+        return productTags;
+    }
+
+    // ----------- Helpers ---------------
+
+    private int findImage(final int firstImage, final int endImage, final long variantId, final int endImageVariantId) {
+        if (firstImage == endImage) {
+            return NO_IMAGE;
+        }
+
+        for (int i = firstImage; i < endImage; i++) {
+            final int end = i + 1 < endImage ? imageVariantIdOffsets[i + 1] : endImageVariantId;
+            for (int j = imageVariantIdOffsets[i]; j < end; j++) {
+                if (imageVariantIds[j] == variantId) {
+                    return i;
+                }
+            }
+        }
+
+        // The variant did not have an image, use the default image of the product
+        return firstImage;
+    }
+
+    private void quickSort(final int[] indices, int low, int high, final VariantComparator comparator) {
+        while (low < high) {
+            if (high - low < 16) {
+                insertionSort(indices, low, high, comparator);
+                return;
+            }
+
+            final int pivot = indices[low + (high - low) / 2];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (comparator.compare(this, indices[i], pivot) < 0) {
+                    i++;
+                }
+                while (comparator.compare(this, indices[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    final int swap = indices[i];
+                    indices[i] = indices[j];
+                    indices[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+
+            // recurse into the smaller partition, loop on the larger one to bound the stack depth
+            if (j - low < high - i) {
+                quickSort(indices, low, j, comparator);
+                low = i;
+            } else {
+                quickSort(indices, i, high, comparator);
+                high = j;
+            }
+        }
+    }
+
+    private void insertionSort(final int[] indices, final int low, final int high, final VariantComparator comparator) {
+        for (int i = low + 1; i <= high; i++) {
+            final int value = indices[i];
+            int j = i - 1;
+            while (j >= low && comparator.compare(this, indices[j], value) > 0) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = value;
+        }
+    }
+
+    private static int compareLongs(final long left, final long right) {
+        return left < right ? -1 : (left == right ? 0 : 1);
+    }
+
+    private static long toLong(final Long value) {
+        return value != null ? value : 0;
+    }
+
+    private static long toMillis(final Date date) {
+        return date != null ? date.getTime() : NO_DATE;
+    }
+
+    private static Date toDate(final long millis) {
+        return millis != NO_DATE ? new Date(millis) : null;
+    }
+
+    private static double parsePrice(final String price) {
+        if (price == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(price);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * {@link Product} backed by the arrays of a {@link ProductCatalog}
+     */
+    private static final class ProductView extends Product {
+
+        private final transient ProductCatalog catalog;
+
+        private final transient int index;
+
+        ProductView(final ProductCatalog catalog, final int index) {
+            this.catalog = catalog;
+            this.index = index;
+            this.productId = catalog.productIds[index];
+        }
+
+        @Override
+        public boolean isPublished() {
+            return catalog.productPublished[index];
+        }
+
+        @Override
+        public Long getProductId() {
+            return catalog.productIds[index];
+        }
+
+        @Override
+        public String getTitle() {
+            return catalog.productTitles[index];
+        }
+
+        @Override
+        public String getHandle() {
+            return catalog.productHandles[index];
+        }
+
+        @Override
+        public String getBodyHtml() {
+            return catalog.productBodyHtmls[index];
+        }
+
+        @Override
+        @Deprecated
+        public String getPublishedAt() {
+            return DateUtility.toString(getPublishedAtDate());
+        }
+
+        @Override
+        @Deprecated
+        public String getCreatedAt() {
+            return DateUtility.toString(getCreatedAtDate());
+        }
+
+        @Override
+        @Deprecated
+        public String getUpdatedAt() {
+            return DateUtility.toString(getUpdatedAtDate());
+        }
+
+        @Override
+        public Date getPublishedAtDate() {
+            return toDate(catalog.productPublishedAt[index]);
+        }
+
+        @Override
+        public Date getCreatedAtDate() {
+            return toDate(catalog.productCreatedAt[index]);
+        }
+
+        @Override
+        public Date getUpdatedAtDate() {
+            return toDate(catalog.productUpdatedAt[index]);
+        }
+
+        @Override
+        public String getVendor() {
+            return catalog.productVendors[index];
+        }
+
+        @Override
+        public String getProductType() {
+            return catalog.productTypes[index];
+        }
+
+        @Override
+        public Set<String> getTags() {
+            return catalog.createTags(index);
+        }
+
+        @Override
+        public List<ProductVariant> getVariants() {
+            return catalog.createVariantViews(index);
+        }
+
+        @Override
+        public List<Image> getImages() {
+            return catalog.createImages(index);
+        }
+
+        @Override
+        public String getFirstImageUrl() {
+            return hasImage() ? catalog.imageSrcs[catalog.productImageOffsets[index]] : null;
+        }
+
+        @Override
+        public boolean hasImage() {
+            return catalog.productImageOffsets[index + 1] > catalog.productImageOffsets[index];
+        }
+
+        @Override
+        public List<Option> getOptions() {
+            return catalog.createOptions(index);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return catalog.productAvailable[index];
+        }
+
+        @Override
+        public boolean hasDefaultVariant() {
+            if (catalog.getVariantCount(index) != 1) {
+                return false;
+            }
+
+            final int variant = catalog.productVariantOffsets[index];
+            final int optionValue = catalog.variantOptionValueOffsets[variant];
+            if (optionValue == catalog.variantOptionValueOffsets[variant + 1]) {
+                return false;
+            }
+
+            final String value = catalog.optionValueValues[optionValue];
+            return DEFAULT_VARIANT_TITLE.equals(catalog.variantTitles[variant])
+                && (DEFAULT_VARIANT_TITLE.equals(value) || DEFAULT_OPTION_VALUE.equals(value));
+        }
+
+        @Override
+        public ProductVariant getVariant(final List<OptionValue> optionValues) {
+            if (optionValues == null) {
+                return null;
+            }
+
+            final int numOptions = optionValues.size();
+            for (int variant = catalog.productVariantOffsets[index]; variant < catalog.productVariantOffsets[index + 1]; variant++) {
+                final int firstOptionValue = catalog.variantOptionValueOffsets[variant];
+                if (catalog.variantOptionValueOffsets[variant + 1] - firstOptionValue != numOptions) {
+                    continue;
+                }
+
+                for (int i = 0; i < numOptions; i++) {
+                    if (!catalog.optionValueValues[firstOptionValue + i].equals(optionValues.get(i).getValue())) {
+                        break;
+                    } else if (i == numOptions - 1) {
+                        return new ProductVariantView(catalog, variant);
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public Set<String> getPrices() {
+            final Set<String> prices = new LinkedHashSet<>();
+            prices.addAll(Arrays.asList(catalog.variantPrices).subList(catalog.productVariantOffsets[index], catalog.productVariantOffsets[index + 1]));
+            return Collections.unmodifiableSet(prices);
+        }
+
+        @Override
+        public String getMinimumPrice() {
+            String minimumPrice = null;
+            double minimumPriceValue = Double.MAX_VALUE;
+            for (int variant = catalog.productVariantOffsets[index]; variant < catalog.productVariantOffsets[index + 1]; variant++) {
+                if (minimumPrice == null || catalog.variantPriceValues[variant] < minimumPriceValue) {
+                    minimumPrice = catalog.variantPrices[variant];
+                    minimumPriceValue = catalog.variantPriceValues[variant];
+                }
+            }
+            return minimumPrice;
+        }
+
+        @Override
+        public String toJsonString() {
+            return catalog.toProduct(index).toJsonString();
+        }
+    }
+
+    /**
+     * {@link ProductVariant} backed by the arrays of a {@link ProductCatalog}
+     */
+    private static final class ProductVariantView extends ProductVariant {
+
+        private final transient ProductCatalog catalog;
+
+        private final transient int index;
+
+        ProductVariantView(final ProductCatalog catalog, final int index) {
+            this.catalog = catalog;
+            this.index = index;
+            this.id = catalog.variantIds[index];
+        }
+
+        @Override
+        public String getTitle() {
+            return catalog.variantTitles[index];
+        }
+
+        @Override
+        public List<OptionValue> getOptionValues() {
+            return catalog.createOptionValues(index);
+        }
+
+        @Override
+        public String getPrice() {
+            return catalog.variantPrices[index];
+        }
+
+        @Override
+        public long getGrams() {
+            return catalog.variantGrams[index];
+        }
+
+        @Override
+        public String getCompareAtPrice() {
+            return catalog.variantCompareAtPrices[index];
+        }
+
+        @Override
+        public String getSku() {
+            return catalog.variantSkus[index];
+        }
+
+        @Override
+        public boolean isRequiresShipping() {
+            return catalog.variantRequiresShipping[index];
+        }
+
+        @Override
+        public boolean isTaxable() {
+            return catalog.variantTaxable[index];
+        }
+
+        @Override
+        public int getPosition() {
+            return catalog.variantPositions[index];
+        }
+
+        @Override
+        public long getProductId() {
+            return catalog.productIds[catalog.variantProductIndices[index]];
+        }
+
+        @Override
+        public String getImageUrl() {
+            return catalog.getVariantImageUrl(index);
+        }
+
+        @Override
+        public String getProductTitle() {
+            return catalog.productTitles[catalog.variantProductIndices[index]];
+        }
+
+        @Override
+        @Deprecated
+        public String getCreatedAt() {
+            return DateUtility.toString(getCreatedAtDate());
+        }
+
+        @Override
+        @Deprecated
+        public String getUpdatedAt() {
+            return DateUtility.toString(getUpdatedAtDate());
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return catalog.variantAvailable[index];
+        }
+
+        @Override
+        public Date getCreatedAtDate() {
+            return toDate(catalog.variantCreatedAt[index]);
+        }
+
+        @Override
+        public Date getUpdatedAtDate() {
+            return toDate(catalog.variantUpdatedAt[index]);
+        }
+
+        @Override
+        public String toJsonString() {
+            return catalog.toProductVariant(index).toJsonString();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.model;
+
+import com.shopify.buy.utils.StringUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The set of {@link Product} fields requested from, and decoded by, the product listing API. Product grids and lists rarely need
+ * the description, the options or every variant of a product, requesting only the displayed fields reduces the size of the response
+ * and the time spent parsing it. The fields not in the projection are {@code null} in the returned products, see
+ * {@link Product#isLoaded(String)}.
+ */
+public final class ProductProjection {
+
+    public static final String PRODUCT_ID = "product_id";
+
+    public static final String TITLE = "title";
+
+    public static final String HANDLE = "handle";
+
+    public static final String BODY_HTML = "body_html";
+
+    public static final String PUBLISHED_AT = "published_at";
+
+    public static final String CREATED_AT = "created_at";
+
+    public static final String UPDATED_AT = "updated_at";
+
+    public static final String VENDOR = "vendor";
+
+    public static final String PRODUCT_TYPE = "product_type";
+
+    public static final String VARIANTS = "variants";
+
+    public static final String IMAGES = "images";
+
+    public static final String OPTIONS = "options";
+
+    public static final String TAGS = "tags";
+
+    public static final String AVAILABLE = "available";
+
+    public static final String PUBLISHED = "published";
+
+    private static final Set<String> ALL_FIELDS = Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(
+        PRODUCT_ID, TITLE, HANDLE, BODY_HTML, PUBLISHED_AT, CREATED_AT, UPDATED_AT, VENDOR, PRODUCT_TYPE, VARIANTS, IMAGES, OPTIONS, TAGS,
+        AVAILABLE, PUBLISHED
+    )));
+
+    /**
+     * The id, title, handle and availability of the products, e.g. for search suggestions.
+     */
+    public static final ProductProjection SUMMARY = new ProductProjection(PRODUCT_ID, TITLE, HANDLE, AVAILABLE, PUBLISHED);
+
+    /**
+     * The {@link #SUMMARY} fields, the vendor, the images and the variants (for the prices) of the products, e.g. for product grids.
+     */
+    public static final ProductProjection CARD = new ProductProjection(PRODUCT_ID, TITLE, HANDLE, AVAILABLE, PUBLISHED, VENDOR, IMAGES, VARIANTS);
+
+    /**
+     * All the fields of the products, the default.
+     */
+    public static final ProductProjection FULL = new ProductProjection(ALL_FIELDS.toArray(new String[ALL_FIELDS.size()]));
+
+    private final Set<String> fields;
+
+    private final String queryValue;
+
+    private ProductProjection(final String... fields) {
+        final Set<String> fieldSet = new TreeSet<>(Arrays.asList(fields));
+        fieldSet.add(PRODUCT_ID);
+        this.fields = Collections.unmodifiableSet(fieldSet);
+        this.queryValue = StringUtils.join(",", fieldSet);
+    }
+
+    /**
+     * Creates a custom projection. The {@link #PRODUCT_ID} field is always included, it identifies the products.
+     *
+     * @param fields the names of the fields, as the constants of this class, not null or empty
+     * @return the projection of the given fields
+     */
+    public static ProductProjection of(final String... fields) {
+        if (fields == null) {
+            throw new NullPointerException("fields cannot be null");
+        }
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("fields cannot be empty");
+        }
+        for (String field : fields) {
+            if (field == null) {
+                throw new NullPointerException("field cannot be null");
+            }
+            if (!ALL_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("unknown product field: " + field);
+            }
+        }
+        return canonical(new ProductProjection(fields));
+    }
+
+    private static ProductProjection canonical(final ProductProjection projection) {
+        if (SUMMARY.equals(projection)) {
+            return SUMMARY;
+        } else if (CARD.equals(projection)) {
+            return CARD;
+        } else if (FULL.equals(projection)) {
+            return FULL;
+        }
+        return projection;
+    }
+
+    /**
+     * @return the names of the fields of this projection, sorted
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @param field the name of the field
+     * @return {@code true} if the field is part of this projection
+     */
+    public boolean contains(final String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * @return {@code true} if this projection contains all the fields of the products
+     */
+    public boolean isFull() {
+        return fields.size() == ALL_FIELDS.size();
+    }
+
+    /**
+     * @return the value of the {@code fields} query parameter of the product listing API for this projection
+     */
+    public String getQueryValue() {
+        return queryValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProductProjection)) return false;
+
+        ProductProjection that = (ProductProjection) o;
+
+        return fields.equals(that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ProductProjection" + fields;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.utils;
+
+import com.google.gson.Gson;
+import com.shopify.buy.dataprovider.BuyClientUtils;
+import com.shopify.buy.model.Cart;
+import com.shopify.buy.model.CartLineItem;
+import com.shopify.buy.model.ProductVariant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persists a {@link Cart} as a snapshot plus an append-only journal of the mutations applied since the snapshot was taken.
+ * Each mutation made through the store appends a record of a few bytes to the journal, so the cost of persisting a change
+ * doesn't depend on the size of the cart. A variant is written to the journal in full only the first time it shows up.
+ * Once the journal holds more than {@link #DEFAULT_COMPACTION_THRESHOLD} records, the cart is written to a new snapshot and
+ * the journal starts over.
+ * <p>
+ * Snapshots are replaced atomically and tagged with a generation that the journal has to match, so a crash at any point
+ * leaves a consistent cart behind. A record cut short by a crash is dropped on recovery.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class CartStore implements Closeable {
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 512;
+
+    static final String SNAPSHOT_FILE_NAME = "cart.snapshot";
+
+    static final String JOURNAL_FILE_NAME = "cart.journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x43415254;
+
+    private static final int JOURNAL_MAGIC = 0x4341524a;
+
+    private static final byte RECORD_VARIANT = 1;
+
+    private static final byte RECORD_ADD = 2;
+
+    private static final byte RECORD_DECREMENT = 3;
+
+    private static final byte RECORD_SET_QUANTITY = 4;
+
+    private static final byte RECORD_CLEAR = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    private final File snapshotFile;
+
+    private final File journalFile;
+
+    private final int compactionThreshold;
+
+    private final Gson gson = BuyClientUtils.createDefaultGson();
+
+    // variants that can be referenced by id from the current journal
+    private final Map<Long, ProductVariant> variants = new HashMap<>();
+
+    private Cart cart;
+
+    private long generation;
+
+    private int journalRecordCount;
+
+    private DataOutputStream journal;
+
+    /**
+     * Opens the store in {@code directory}, recovering the cart persisted there if any.
+     *
+     * @param directory the directory to keep the snapshot and journal files in, not null
+     * @throws IOException if the directory can't be created or the persisted cart can't be read
+     */
+    public CartStore(final File directory) throws IOException {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens the store in {@code directory}, recovering the cart persisted there if any.
+     *
+     * @param directory           the directory to keep the snapshot and journal files in, not null
+     * @param compactionThreshold number of journal records after which the cart is compacted into a new snapshot, must be positive
+     * @throws IOException if the directory can't be created or the persisted cart can't be read
+     */
+    public CartStore(final File directory, final int compactionThreshold) throws IOException {
+        if (directory == null) {
+            throw new NullPointerException("directory cannot be null");
+        }
+
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("compactionThreshold must be positive");
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+
+        this.directory = directory;
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+        this.compactionThreshold = compactionThreshold;
+
+        recover();
+    }
+
+    /**
+     * @return the persisted cart. It must only be modified through this store, changes made to it directly are not persisted until the next {@link #compact()}.
+     */
+    public Cart getCart() {
+        return cart;
+    }
+
+    /**
+     * Adds the variant to the cart and persists the change.
+     *
+     * @param variant the {@link ProductVariant} to add, not null
+     * @throws IOException if the change can't be persisted
+     * @see Cart#addVariant(ProductVariant)
+     */
+    public void addVariant(final ProductVariant variant) throws IOException {
+        checkVariant(variant);
+        cart.addVariant(variant);
+        writeVariantRecord(RECORD_ADD, variant, 0);
+    }
+
+    /**
+     * Decrements the quantity of the variant in the cart and persists the change.
+     *
+     * @param variant the {@link ProductVariant} to decrement, not null
+     * @throws IOException if the change can't be persisted
+     * @see Cart#decrementVariant(ProductVariant)
+     */
+    public void decrementVariant(final ProductVariant variant) throws IOException {
+        checkVariant(variant);
+        cart.decrementVariant(variant);
+        writeVariantRecord(RECORD_DECREMENT, variant, 0);
+    }
+
+    /**
+     * Sets the quantity of the variant in the cart and persists the change.
+     *
+     * @param variant  the {@link ProductVariant} to update, not null
+     * @param quantity the new quantity
+     * @throws IOException if the change can't be persisted
+     * @see Cart#setVariantQuantity(ProductVariant, int)
+     */
+    public void setVariantQuantity(final ProductVariant variant, final int quantity) throws IOException {
+        checkVariant(variant);
+        cart.setVariantQuantity(variant, quantity);
+        writeVariantRecord(RECORD_SET_QUANTITY, variant, quantity);
+    }
+
+    /**
+     * Removes all the line items from the cart and persists the change.
+     *
+     * @throws IOException if the change can't be persisted
+     */
+    public void clear() throws IOException {
+        cart.clear();
+        openJournal().writeByte(RECORD_CLEAR);
+        onRecordWritten();
+    }
+
+    /**
+     * Writes the cart to a new snapshot and starts a new, empty journal.
+     *
+     * @throws IOException if the snapshot can't be written
+     */
+    public void compact() throws IOException {
+        closeJournal();
+
+        final long newGeneration = generation + 1;
+        final File tempFile = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+        final FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+        try {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeLong(newGeneration);
+            writeBytes(output, cart.toJsonString().getBytes(UTF_8));
+            output.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            fileOutputStream.close();
+        }
+
+        if (!tempFile.renameTo(snapshotFile)) {
+            throw new IOException("Failed to replace " + snapshotFile);
+        }
+
+        // a journal left behind by a crash from here on belongs to the previous generation and is ignored
+        generation = newGeneration;
+        startJournal();
+    }
+
+    /**
+     * Closes the journal, mutations made after this reopen it.
+     *
+     * @throws IOException if the journal can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closeJournal();
+    }
+
+    private void recover() throws IOException {
+        cart = null;
+        generation = 0;
+        if (snapshotFile.exists()) {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+            try {
+                if (input.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Invalid cart snapshot " + snapshotFile);
+                }
+                generation = input.readLong();
+                cart = Cart.fromJson(new String(readBytes(input), UTF_8));
+            } finally {
+                input.close();
+            }
+        }
+
+        if (cart == null) {
+            cart = new Cart();
+        }
+
+        resetVariants();
+        final boolean replayed = replayJournal();
+
+        // start over from a clean snapshot, this also drops a record cut short by a crash
+        if (replayed || !snapshotFile.exists()) {
+            compact();
+        } else {
+            startJournal();
+        }
+    }
+
+    private boolean replayJournal() throws IOException {
+        final DataInputStream input;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+
+        try {
+            if (input.readInt() != JOURNAL_MAGIC || input.readLong() != generation) {
+                return false;
+            }
+
+            while (true) {
+                final byte type = input.readByte();
+                if (type == RECORD_CLEAR) {
+                    cart.clear();
+                    continue;
+                }
+
+                if (type == RECORD_VARIANT) {
+                    final ProductVariant variant = gson.fromJson(new String(readBytes(input), UTF_8), ProductVariant.class);
+                    variants.put(variant.getId(), variant);
+                    continue;
+                }
+
+                final ProductVariant variant = variants.get(input.readLong());
+                final int quantity = type == RECORD_SET_QUANTITY ? input.readInt() : 0;
+                if (variant == null) {
+                    // corrupted record, keep what was replayed so far
+                    return true;
+                }
+
+                switch (type) {
+                    case RECORD_ADD:
+                        cart.addVariant(variant);
+                        break;
+                    case RECORD_DECREMENT:
+                        cart.decrementVariant(variant);
+                        break;
+                    case RECORD_SET_QUANTITY:
+                        cart.setVariantQuantity(variant, quantity);
+                        break;
+                    default:
+                        return true;
+                }
+            }
+        } catch (EOFException e) {
+            // end of the journal, or a record cut short by a crash
+            return true;
+        } finally {
+            input.close();
+        }
+    }
+
+    private void writeVariantRecord(final byte type, final ProductVariant variant, final int quantity) throws IOException {
+        final DataOutputStream output = openJournal();
+        if (!variants.containsKey(variant.getId())) {
+            output.writeByte(RECORD_VARIANT);
+            writeBytes(output, gson.toJson(variant, ProductVariant.class).getBytes(UTF_8));
+            variants.put(variant.getId(), variant);
+        }
+
+        output.writeByte(type);
+        output.writeLong(variant.getId());
+        if (type == RECORD_SET_QUANTITY) {
+            output.writeInt(quantity);
+        }
+        onRecordWritten();
+    }
+
+    private void onRecordWritten() throws IOException {
+        journal.flush();
+        if (++journalRecordCount >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private void startJournal() throws IOException {
+        resetVariants();
+        journalRecordCount = 0;
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, false)));
+        journal.writeInt(JOURNAL_MAGIC);
+        journal.writeLong(generation);
+        journal.flush();
+    }
+
+    private DataOutputStream openJournal() throws IOException {
+        if (journal == null) {
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+        }
+        return journal;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void resetVariants() {
+        // variants in the snapshot don't need to be written to the journal again
+        variants.clear();
+        for (CartLineItem lineItem : cart.getLineItems()) {
+            if (lineItem.getVariant() != null) {
+                variants.put(lineItem.getVariantId(), lineItem.getVariant());
+            }
+        }
+    }
+
+    private static void checkVariant(final ProductVariant variant) {
+        if (variant == null) {
+            throw new NullPointerException("variant cannot be null");
+        }
+
+        if (variant.getId() == null) {
+            throw new IllegalArgumentException("variant id cannot be null");
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream output, final byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            throw new EOFException();
+        }
+
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+}
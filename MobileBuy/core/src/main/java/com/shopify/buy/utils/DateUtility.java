@@ -24,13 +24,12 @@
 
 package com.shopify.buy.utils;
 
-import android.util.Log;
-
 import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import com.shopify.buy.Platform;
 
 import java.lang.reflect.Type;
 import java.text.ParseException;
@@ -86,7 +85,7 @@ public class DateUtility {
         try {
             return new SimpleDateFormat(DEFAULT_DATE_PATTERN, Locale.US).parse(dateString);
         } catch (ParseException e) {
-            Log.e(LOG_TAG, "Could not parse date from string " + dateString);
+            Platform.get().logError(LOG_TAG, "Could not parse date from string " + dateString);
             return null;
         }
     }
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.shopify.buy.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of canonical {@link String} instances used to de-duplicate values that are repeated across many catalog models
+ * (vendor, product type, option names and values, tags, etc). Pooled strings are weakly referenced, once no model holds
+ * on to a string anymore it can be garbage collected together with its pool entry.
+ */
+public final class StringPool {
+
+    private final WeakHashMap<String, WeakReference<String>> pool = new WeakHashMap<>();
+
+    /**
+     * Returns the canonical instance for the given value, adding it to the pool if it is not there yet.
+     *
+     * @param value the string to intern, can be {@code null}
+     * @return the pooled instance equal to {@code value}, or {@code null} if {@code value} is {@code null}
+     */
+    public synchronized String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+
+        final WeakReference<String> reference = pool.get(value);
+        if (reference != null) {
+            final String pooled = reference.get();
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+
+        pool.put(value, new WeakReference<>(value));
+        return value;
+    }
+
+    /**
+     * @return the number of strings currently held by the pool
+     */
+    public synchronized int size() {
+        return pool.size();
+    }
+
+    /**
+     * Removes all the strings from the pool.
+     */
+    public synchronized void clear() {
+        pool.clear();
+    }
+}
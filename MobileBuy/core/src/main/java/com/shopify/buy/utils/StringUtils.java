@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Shopify Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shopify.buy.utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * String helpers with the same behaviour as their {@code android.text.TextUtils} counterparts, so that the models and the client
+ * do not depend on the Android framework.
+ */
+public final class StringUtils {
+
+    /**
+     * @param str the string to check, can be {@code null}
+     * @return {@code true} if the string is {@code null} or has a length of 0
+     */
+    public static boolean isEmpty(final CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    /**
+     * @param a the first string, can be {@code null}
+     * @param b the second string, can be {@code null}
+     * @return {@code true} if both strings are {@code null} or have the same characters
+     */
+    public static boolean equals(final CharSequence a, final CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.length() != b.length()) {
+            return false;
+        }
+        if (a instanceof String && b instanceof String) {
+            return a.equals(b);
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param delimiter the delimiter inserted between the tokens
+     * @param tokens    the tokens to join, converted with {@link String#valueOf(Object)}
+     * @return the joined tokens
+     */
+    public static String join(final CharSequence delimiter, final Object[] tokens) {
+        return join(delimiter, Arrays.asList(tokens));
+    }
+
+    /**
+     * @param delimiter the delimiter inserted between the tokens
+     * @param tokens    the tokens to join, converted with {@link String#valueOf(Object)}
+     * @return the joined tokens
+     */
+    public static String join(final CharSequence delimiter, final Iterable<?> tokens) {
+        final StringBuilder sb = new StringBuilder();
+        final Iterator<?> iterator = tokens.iterator();
+        if (iterator.hasNext()) {
+            sb.append(iterator.next());
+            while (iterator.hasNext()) {
+                sb.append(delimiter);
+                sb.append(iterator.next());
+            }
+        }
+        return sb.toString();
+    }
+
+    private StringUtils() {
+    }
+}
@@ -44,6 +44,7 @@ import android.widget.Button;
 
 import com.shopify.buy.R;
 import com.shopify.buy.customTabs.CustomTabActivityHelper;
+import com.shopify.buy.customTabs.WebCheckoutAccelerator;
 import com.shopify.buy.dataprovider.BuyClient;
 import com.shopify.buy.dataprovider.BuyClientBuilder;
 import com.shopify.buy.dataprovider.BuyClientError;
@@ -76,6 +77,7 @@ public class ProductDetailsFragment extends Fragment {
     private ProductVariant variant;
     private Long productId;
     private BuyClient buyClient;
+    private WebCheckoutAccelerator webCheckoutAccelerator;
     private Shop shop;
 
     private ProductDetailsTheme theme;
@@ -106,6 +108,16 @@ public class ProductDetailsFragment extends Fragment {
         setHasOptionsMenu(true);
         initializeBuyClient();
         initializeProgressDialog();
+
+        // Start and warm up the browser now, so the web checkout opens quickly once the user taps checkout
+        webCheckoutAccelerator = new WebCheckoutAccelerator(getActivity());
+        webCheckoutAccelerator.bind();
+    }
+
+    @Override
+    public void onDestroy() {
+        webCheckoutAccelerator.unbind();
+        super.onDestroy();
     }
 
     @Override
@@ -359,6 +371,7 @@ public class ProductDetailsFragment extends Fragment {
         buyClient.createCheckout(new Checkout(cart), new Callback<Checkout>() {
             @Override
             public void success(Checkout checkout) {
+                webCheckoutAccelerator.mayLaunchCheckout(checkout);
                 launchWebCheckout(checkout);
             }
 
@@ -412,14 +425,11 @@ public class ProductDetailsFragment extends Fragment {
 
         dismissProgressDialog();
 
-        String uri = checkout.getWebUrl();
-
-        CustomTabsIntent customTabsIntent = new CustomTabsIntent.Builder()
+        CustomTabsIntent customTabsIntent = webCheckoutAccelerator.newIntentBuilder()
                 .setToolbarColor(theme.getAppBarBackgroundColor(getResources()))
                 .setShowTitle(true)
                 .build();
-        CustomTabActivityHelper.openCustomTab(
-                getActivity(), customTabsIntent, Uri.parse(uri), new BrowserFallback());
+        webCheckoutAccelerator.launchCheckout(getActivity(), checkout, customTabsIntent, new BrowserFallback());
 
 
         // The checkout was successfully started, let the listener know.